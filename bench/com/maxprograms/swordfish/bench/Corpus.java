@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (c) 2007-2022 Maxprograms.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/epl-v10.html
+ *
+ * Contributors:
+ *     Maxprograms - initial API and implementation
+ *******************************************************************************/
+
+package com.maxprograms.swordfish.bench;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+public class Corpus {
+
+	private static final String[] WORDS = { "the", "file", "menu", "click", "save", "open", "document", "window",
+			"select", "option", "settings", "user", "account", "password", "network", "server", "connection", "error",
+			"message", "display", "button", "dialog", "print", "export", "import", "translation", "memory", "project",
+			"segment", "source", "target", "language", "to", "and", "of", "in", "for", "with", "on", "is", "a",
+			"your", "from", "new", "list", "value", "field", "table", "enter", "press", "check", "update" };
+
+	private Corpus() {
+		// private for security
+	}
+
+	public static String sentence(Random random, int length) {
+		StringBuilder sb = new StringBuilder();
+		while (sb.length() < length) {
+			if (sb.length() > 0) {
+				sb.append(' ');
+			}
+			sb.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		sb.setLength(length);
+		sb.setCharAt(0, Character.toUpperCase(sb.charAt(0)));
+		return sb.toString().trim() + '.';
+	}
+
+	// replaces some words to produce a fuzzy match of the original sentence
+	public static String edit(Random random, String sentence, int edits) {
+		String[] words = sentence.split(" ");
+		for (int i = 0; i < edits; i++) {
+			words[random.nextInt(words.length)] = WORDS[random.nextInt(WORDS.length)];
+		}
+		return String.join(" ", words);
+	}
+
+	// writes a TMX file with en/es units, source and target use the same words
+	public static void tmx(File file, Random random, int units) throws IOException {
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+			writer.write("<tmx version=\"1.4\">\n");
+			writer.write("<header creationtool=\"bench\" creationtoolversion=\"1\" srclang=\"en\" adminlang=\"en\""
+					+ " datatype=\"xml\" o-tmf=\"bench\" segtype=\"sentence\"/>\n<body>\n");
+			for (int i = 0; i < units; i++) {
+				String source = sentence(random, 30 + random.nextInt(120));
+				writer.write("<tu tuid=\"" + i + "\">\n");
+				writer.write("<tuv xml:lang=\"en\"><seg>" + source + "</seg></tuv>\n");
+				writer.write("<tuv xml:lang=\"es\"><seg>" + source.toUpperCase() + "</seg></tuv>\n");
+				writer.write("</tu>\n");
+			}
+			writer.write("</body>\n</tmx>\n");
+		}
+	}
+
+	// writes an XLIFF 2.0 file with one segment per unit, half of them translated
+	public static void xliff(File file, Random random, int units) throws IOException {
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+			writer.write("<xliff xmlns=\"urn:oasis:names:tc:xliff:document:2.0\" version=\"2.0\""
+					+ " srcLang=\"en\" trgLang=\"es\">\n");
+			writer.write("<file id=\"1\" original=\"bench.txt\">\n");
+			for (int i = 0; i < units; i++) {
+				String source = sentence(random, 30 + random.nextInt(120));
+				writer.write("<unit id=\"" + i + "\">\n");
+				if (i % 2 == 0) {
+					writer.write("<segment id=\"1\" state=\"translated\"><source>" + source + "</source><target>"
+							+ source.toUpperCase() + "</target></segment>\n");
+				} else {
+					writer.write("<segment id=\"1\" state=\"initial\"><source>" + source + "</source></segment>\n");
+				}
+				writer.write("</unit>\n");
+			}
+			writer.write("</file>\n</xliff>\n");
+		}
+	}
+}
@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright (c) 2007-2022 Maxprograms.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/epl-v10.html
+ *
+ * Contributors:
+ *     Maxprograms - initial API and implementation
+ *******************************************************************************/
+package com.maxprograms.swordfish.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.maxprograms.swordfish.xliff.DifferenceTagger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DifferenceTaggerBenchmark {
+
+	@Param({ "40", "120", "300" })
+	private int length;
+
+	private String original;
+	private String modified;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(length);
+		original = Corpus.sentence(random, length);
+		modified = Corpus.edit(random, original, Math.max(1, length / 40));
+	}
+
+	@Benchmark
+	public void differences(Blackhole blackhole) {
+		DifferenceTagger tagger = new DifferenceTagger(original, modified);
+		blackhole.consume(tagger.getXDifferences());
+		blackhole.consume(tagger.getYDifferences());
+	}
+}
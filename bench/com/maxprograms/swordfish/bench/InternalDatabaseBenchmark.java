@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2007-2022 Maxprograms.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/epl-v10.html
+ *
+ * Contributors:
+ *     Maxprograms - initial API and implementation
+ *******************************************************************************/
+package com.maxprograms.swordfish.bench;
+
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.maxprograms.swordfish.tm.InternalDatabase;
+import com.maxprograms.swordfish.tm.Match;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@Fork(1)
+public class InternalDatabaseBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Import {
+
+		@Param({ "5000" })
+		int units;
+
+		File folder;
+		File tmx;
+		InternalDatabase db;
+
+		@Setup(Level.Trial)
+		public void createTmx() throws Exception {
+			folder = Workspace.createFolder("import");
+			tmx = Workspace.getTmx(folder, units, units);
+		}
+
+		@Setup(Level.Invocation)
+		public void open() throws Exception {
+			Workspace.delete(new File(folder, "db"));
+			db = new InternalDatabase("db", folder.getAbsolutePath());
+		}
+
+		@TearDown(Level.Invocation)
+		public void close() throws Exception {
+			db.close();
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() throws Exception {
+			Workspace.delete(folder);
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Search {
+
+		@Param({ "5000" })
+		int units;
+
+		File folder;
+		InternalDatabase db;
+		String[] queries;
+		int next;
+
+		@Setup(Level.Trial)
+		public void setup() throws Exception {
+			folder = Workspace.createFolder("search");
+			db = new InternalDatabase("db", folder.getAbsolutePath());
+			db.storeTMX(Workspace.getTmx(folder, units, units).getAbsolutePath(), null, null, null);
+			db.commit();
+			Random random = new Random(units);
+			queries = new String[100];
+			for (int i = 0; i < queries.length; i++) {
+				queries[i] = Corpus.sentence(random, 30 + random.nextInt(120));
+			}
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() throws Exception {
+			db.close();
+			Workspace.delete(folder);
+		}
+
+		String nextQuery() {
+			next = (next + 1) % queries.length;
+			return queries[next];
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 1)
+	@Measurement(iterations = 3)
+	public int storeTMX(Import state) throws Exception {
+		int imported = state.db.storeTMX(state.tmx.getAbsolutePath(), null, null, null);
+		state.db.commit();
+		return imported;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 3, time = 2)
+	@Measurement(iterations = 5, time = 2)
+	public List<Match> searchTranslation(Search state) throws Exception {
+		return state.db.searchTranslation(state.nextQuery(), "en", "es", 60, false, 10);
+	}
+}
@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2007-2022 Maxprograms.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/epl-v10.html
+ *
+ * Contributors:
+ *     Maxprograms - initial API and implementation
+ *******************************************************************************/
+package com.maxprograms.swordfish.bench;
+
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.maxprograms.swordfish.am.MatchAssembler;
+import com.maxprograms.swordfish.tm.InternalDatabase;
+import com.maxprograms.swordfish.tm.Match;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MatchAssemblerBenchmark {
+
+	private File folder;
+	private InternalDatabase memory;
+	private InternalDatabase glossary;
+	private String text;
+	private List<Match> matches;
+
+	@Setup
+	public void setup() throws Exception {
+		folder = Workspace.createFolder("assembler");
+		memory = new InternalDatabase("memory", folder.getAbsolutePath());
+		memory.storeTMX(Workspace.getTmx(folder, 1, 2000).getAbsolutePath(), null, null, null);
+		memory.commit();
+		glossary = new InternalDatabase("glossary", folder.getAbsolutePath());
+		File terms = new File(folder, "terms.tmx");
+		Corpus.tmx(terms, new Random(2), 200);
+		glossary.storeTMX(terms.getAbsolutePath(), null, null, null);
+		glossary.commit();
+		Random random = new Random(3);
+		do {
+			text = Corpus.sentence(random, 80);
+			matches = memory.searchTranslation(text, "en", "es", 30, false, 10);
+		} while (matches.isEmpty());
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		memory.close();
+		glossary.close();
+		Workspace.delete(folder);
+	}
+
+	@Benchmark
+	public Match assembleMatch() throws Exception {
+		return MatchAssembler.assembleMatch(text, matches, glossary, "en", "es");
+	}
+}
@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2007-2022 Maxprograms.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/epl-v10.html
+ *
+ * Contributors:
+ *     Maxprograms - initial API and implementation
+ *******************************************************************************/
+package com.maxprograms.swordfish.bench;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+import com.maxprograms.swordfish.TmsServer;
+
+import org.json.JSONObject;
+
+/**
+ * Temporary folders and corpora used by the benchmarks. Set system property
+ * <code>bench.tmx</code> or <code>bench.xliff</code> to measure with a real
+ * file instead of a synthetic one.
+ */
+public class Workspace {
+
+	private Workspace() {
+		// private for security
+	}
+
+	public static File createFolder(String prefix) throws IOException {
+		return Files.createTempDirectory(prefix).toFile();
+	}
+
+	public static void delete(File folder) throws IOException {
+		if (folder != null && folder.exists()) {
+			TmsServer.deleteFolder(folder.getAbsolutePath());
+		}
+	}
+
+	public static File getTmx(File folder, long seed, int units) throws IOException {
+		String real = System.getProperty("bench.tmx");
+		if (real != null && !real.isEmpty()) {
+			return new File(real);
+		}
+		File tmx = new File(folder, "corpus.tmx");
+		Corpus.tmx(tmx, new Random(seed), units);
+		return tmx;
+	}
+
+	// XliffStore creates its database next to the file, real files are copied
+	public static File getXliff(File folder, long seed, int units) throws IOException {
+		File xliff = new File(folder, "corpus.xlf");
+		String real = System.getProperty("bench.xliff");
+		if (real != null && !real.isEmpty()) {
+			Files.copy(new File(real).toPath(), xliff.toPath());
+		} else {
+			Corpus.xliff(xliff, new Random(seed), units);
+		}
+		return xliff;
+	}
+
+	// XliffStore reads its options and writes tag images in the work folder,
+	// benchmarks use a temporary one instead of the user's Swordfish folder
+	public static void useWorkFolder(File folder) throws IOException {
+		TmsServer.setWorkFolder(folder);
+		File preferences = new File(folder, "preferences.json");
+		JSONObject json = new JSONObject();
+		json.put("acceptUnconfirmed", false);
+		json.put("caseSensitiveSearches", false);
+		json.put("fuzzyTermSearches", false);
+		json.put("catalog", new File(System.getProperty("bench.catalog", "catalog/catalog.xml")).getAbsolutePath());
+		try (FileOutputStream out = new FileOutputStream(preferences)) {
+			out.write(json.toString(2).getBytes(StandardCharsets.UTF_8));
+		}
+	}
+}
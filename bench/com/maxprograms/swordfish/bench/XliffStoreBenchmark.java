@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (c) 2007-2022 Maxprograms.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/epl-v10.html
+ *
+ * Contributors:
+ *     Maxprograms - initial API and implementation
+ *******************************************************************************/
+package com.maxprograms.swordfish.bench;
+
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.maxprograms.swordfish.Constants;
+import com.maxprograms.swordfish.xliff.XliffStore;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XliffStoreBenchmark {
+
+	private static final int PAGE = 100;
+
+	@Param({ "5000" })
+	private int units;
+
+	private File folder;
+	private XliffStore store;
+	private Random random;
+	private int size;
+	private List<JSONObject> segments;
+
+	@Setup
+	public void setup() throws Exception {
+		folder = Workspace.createFolder("xliff");
+		Workspace.useWorkFolder(folder);
+		File xliff = Workspace.getXliff(folder, units, units);
+		store = new XliffStore(xliff.getAbsolutePath(), "en", "es");
+		random = new Random(units);
+		size = store.size();
+		// segments to edit, taken from the file so real corpora work too
+		segments = store.getSegments(0, size, "", "source", false, false, true, true, true, "none", false);
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		store.close();
+		Workspace.delete(folder);
+	}
+
+	@Benchmark
+	public List<JSONObject> getSegments() throws Exception {
+		int start = random.nextInt(Math.max(1, size - PAGE));
+		return store.getSegments(start, PAGE, "", "source", false, false, true, true, true, "none", false);
+	}
+
+	@Benchmark
+	public JSONObject saveSegment() throws Exception {
+		JSONObject segment = segments.get(random.nextInt(segments.size()));
+		JSONObject json = new JSONObject();
+		json.put("file", segment.getString("file"));
+		json.put("unit", segment.getString("unit"));
+		json.put("segment", segment.getString("segment"));
+		json.put("translation", Corpus.sentence(random, 60));
+		json.put("confirm", true);
+		json.put("memory", Constants.NONE);
+		return store.saveSegment(json);
+	}
+}
@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2007-2022 Maxprograms.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/epl-v10.html
+ *
+ * Contributors:
+ *     Maxprograms - initial API and implementation
+ *******************************************************************************/
+
+package com.maxprograms.swordfish;
+
+import java.io.IOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Decides which threads run the requests received by {@link TmsServer}.
+ * <ul>
+ * <li>{@link #SPLIT}: editor calls run in a small pool and calls that wait on
+ * remote engines or scan a whole project run in a separate one, so a few slow
+ * MT or TM lookups cannot hold every thread the editor needs.</li>
+ * <li>{@link #VIRTUAL}: one virtual thread per request, available when the
+ * server runs on Java 21 or newer.</li>
+ * <li>{@link #POOL}: a single pool for all requests.</li>
+ * </ul>
+ */
+public class Dispatcher {
+
+	private static Logger logger = System.getLogger(Dispatcher.class.getName());
+
+	public static final String SPLIT = "split";
+	public static final String VIRTUAL = "virtual";
+	public static final String POOL = "pool";
+
+	private static final int FAST_THREADS = 8;
+	private static final int SLOW_THREADS = 16;
+
+	private static final Set<String> SLOW_CALLS = Set.of("/projects/tmTranslate",
+			"/projects/machineTranslate", "/projects/assembleMatches", "/projects/getSegmentTerms",
+			"/projects/generateStatistics", "/projects/exportHtml", "/projects/replaceText",
+			"/projects/acceptAll100Matches", "/projects/acceptAllMT", "/projects/removeTranslations",
+			"/projects/unconfirmTranslations", "/projects/pseudoTranslate", "/projects/copyAllSources",
+			"/projects/analyzeSpaces", "/projects/analyzeTags", "/glossaries/search", "/glossaries/addTerm",
+			"/services/remoteDatabases", "/services/addDatabases");
+
+	private String mode;
+	private ExecutorService executor;
+	private ExecutorService slowPool;
+
+	public Dispatcher(String mode) {
+		this.mode = mode;
+		if (VIRTUAL.equals(mode)) {
+			executor = createVirtual();
+			if (executor == null) {
+				logger.log(Level.WARNING, "Virtual threads not available, using split pools");
+				this.mode = SPLIT;
+			}
+		} else if (!POOL.equals(mode) && !SPLIT.equals(mode)) {
+			logger.log(Level.WARNING, "Unknown executor mode '" + mode + "', using split pools");
+			this.mode = SPLIT;
+		}
+		if (executor == null) {
+			executor = createPool("http", FAST_THREADS);
+		}
+		if (SPLIT.equals(this.mode)) {
+			slowPool = createPool("http-slow", SLOW_THREADS);
+		}
+	}
+
+	public String getMode() {
+		return mode;
+	}
+
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	public HttpHandler wrap(HttpHandler handler) {
+		if (slowPool == null) {
+			return handler;
+		}
+		return exchange -> {
+			if (!SLOW_CALLS.contains(exchange.getRequestURI().getPath())) {
+				handler.handle(exchange);
+				return;
+			}
+			// the exchange stays open until the handler closes the response body
+			slowPool.execute(() -> {
+				try {
+					handler.handle(exchange);
+				} catch (IOException | RuntimeException e) {
+					logger.log(Level.ERROR, "Error processing " + exchange.getRequestURI().toString(), e);
+					exchange.close();
+				}
+			});
+		};
+	}
+
+	private static ExecutorService createPool(String name, int threads) {
+		AtomicInteger count = new AtomicInteger();
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), r -> new Thread(r, "swordfish-" + name + "-" + count.incrementAndGet()));
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+
+	// looked up by name because the code is compiled for Java 11
+	private static ExecutorService createVirtual() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+			return null;
+		}
+	}
+}
@@ -13,18 +13,14 @@
 package com.maxprograms.swordfish;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
 import java.net.URI;
-import java.net.URISyntaxException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -44,9 +40,11 @@ import com.maxprograms.converters.EncodingResolver;
 import com.maxprograms.languages.Language;
 import com.maxprograms.swordfish.models.Memory;
 import com.maxprograms.swordfish.tbx.Tbx2Tmx;
+import com.maxprograms.swordfish.tm.EnginePool;
 import com.maxprograms.swordfish.tm.ITmEngine;
 import com.maxprograms.swordfish.tm.InternalDatabase;
 import com.maxprograms.swordfish.tm.RemoteDatabase;
+import com.maxprograms.swordfish.xliff.TermScanner;
 import com.maxprograms.xml.Element;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
@@ -61,59 +59,53 @@ public class GlossariesHandler implements HttpHandler {
 	private static Logger logger = System.getLogger(GlossariesHandler.class.getName());
 
 	private static Map<String, Memory> glossaries;
-	private static Map<String, ITmEngine> engines;
-	private static Map<String, JSONObject> openTasks;
+	private static EnginePool engines = new EnginePool("glossary");
 	private static boolean firstRun = true;
 
 	@Override
 	public void handle(HttpExchange exchange) throws IOException {
 		try {
-			String request;
 			URI uri = exchange.getRequestURI();
-			try (InputStream is = exchange.getRequestBody()) {
-				request = TmsServer.readRequestBody(is);
-			}
-			JSONObject response = processRequest(uri.toString(), request);
-			byte[] bytes = response.toString().getBytes(StandardCharsets.UTF_8);
-			exchange.sendResponseHeaders(200, bytes.length);
-			exchange.getResponseHeaders().add("content-type", "application/json; charset=utf-8");
-			try (ByteArrayInputStream stream = new ByteArrayInputStream(bytes)) {
-				try (OutputStream os = exchange.getResponseBody()) {
-					byte[] array = new byte[2048];
-					int read;
-					while ((read = stream.read(array)) != -1) {
-						os.write(array, 0, read);
-					}
-				}
+			JSONObject response;
+			try {
+				response = processRequest(uri.toString(), TmsServer.readRequest(exchange));
+			} catch (JSONException e) {
+				logger.log(Level.ERROR, e.getMessage(), e);
+				response = new JSONObject();
+				response.put(Constants.STATUS, Constants.ERROR);
+				response.put(Constants.REASON, e.getMessage());
 			}
+			TmsServer.sendResponse(exchange, response);
 		} catch (IOException e) {
 			logger.log(Level.ERROR, "Error processing glossary " + exchange.getRequestURI().toString(), e);
 		}
 
 	}
 
-	private JSONObject processRequest(String url, String request) {
+	private JSONObject processRequest(String url, JSONObject json) {
 		if (TmsServer.isDebug()) {
 			logger.log(Level.INFO, url);
 		}
 		JSONObject response = new JSONObject();
 		try {
 			if ("/glossaries/create".equals(url)) {
-				response = createGlossary(request);
+				response = createGlossary(json);
 			} else if ("/glossaries/list".equals(url)) {
 				response = listGlossaries();
 			} else if ("/glossaries/delete".equals(url)) {
-				response = deleteGlossary(request);
+				response = deleteGlossary(json);
 			} else if ("/glossaries/export".equals(url)) {
-				response = exportGlossary(request);
+				response = exportGlossary(json);
 			} else if ("/glossaries/import".equals(url)) {
-				response = importGlossary(request);
+				response = importGlossary(json);
 			} else if ("/glossaries/status".equals(url)) {
-				response = getProcessStatus(request);
+				response = getProcessStatus(json);
+			} else if ("/glossaries/cancel".equals(url)) {
+				response = cancelProcess(json);
 			} else if ("/glossaries/search".equals(url)) {
-				response = searchTerm(request);
+				response = searchTerm(json);
 			} else if ("/glossaries/addTerm".equals(url)) {
-				response = addTerm(request);
+				response = addTerm(json);
 			} else {
 				response.put(Constants.REASON, "Unknown request");
 			}
@@ -131,28 +123,36 @@ public class GlossariesHandler implements HttpHandler {
 		return response;
 	}
 
-	private static JSONObject getProcessStatus(String request) {
-		JSONObject json = new JSONObject(request);
+	private static JSONObject getProcessStatus(JSONObject json) {
 		if (!json.has("process")) {
 			JSONObject error = new JSONObject();
 			error.put(Constants.REASON, "Missing 'process' parameter");
 			return error;
 		}
 		String process = json.getString("process");
-		if (openTasks == null) {
-			openTasks = new Hashtable<>();
-		}
-		if (openTasks.containsKey(process)) {
-			return openTasks.get(process);
+		JSONObject status = JobScheduler.getStatus(process);
+		if (status != null) {
+			return status;
 		}
 		JSONObject error = new JSONObject();
 		error.put(Constants.REASON, "No such process: " + process);
 		return error;
 	}
 
-	private static JSONObject createGlossary(String request) throws IOException, SQLException {
+	private static JSONObject cancelProcess(JSONObject json) {
+		JSONObject result = new JSONObject();
+		if (!json.has("process")) {
+			result.put(Constants.REASON, "Missing 'process' parameter");
+			return result;
+		}
+		if (!JobScheduler.cancel(json.getString("process"))) {
+			result.put(Constants.REASON, "Process not running");
+		}
+		return result;
+	}
+
+	private static JSONObject createGlossary(JSONObject json) throws IOException, SQLException {
 		JSONObject result = new JSONObject();
-		JSONObject json = new JSONObject(request);
 		if (!json.has("id")) {
 			json.put("id", "" + System.currentTimeMillis());
 		}
@@ -175,7 +175,6 @@ public class GlossariesHandler implements HttpHandler {
 
 	private static void loadGlossariesList() throws IOException {
 		glossaries = new Hashtable<>();
-		engines = new Hashtable<>();
 		File home = new File(getWorkFolder());
 		File list = new File(home, "glossaries.json");
 		if (!list.exists()) {
@@ -200,7 +199,7 @@ public class GlossariesHandler implements HttpHandler {
 		}
 		if (firstRun) {
 			firstRun = false;
-			new Thread(() -> {
+			JobScheduler.submit(JobScheduler.MAINTENANCE, null, JobScheduler.LOW, job -> {
 				try {
 					File[] filesList = home.listFiles();
 					for (int i = 0; i < filesList.length; i++) {
@@ -211,7 +210,7 @@ public class GlossariesHandler implements HttpHandler {
 				} catch (IOException e) {
 					logger.log(Level.WARNING, "Error deleting folder", e);
 				}
-			}).start();
+			});
 		}
 	}
 
@@ -249,55 +248,37 @@ public class GlossariesHandler implements HttpHandler {
 		return result;
 	}
 
-	private static JSONObject deleteGlossary(String request) {
+	private static JSONObject deleteGlossary(JSONObject json) {
 		JSONObject result = new JSONObject();
-		final JSONObject json = new JSONObject(request);
 
 		if (json.has("glossaries")) {
-			final String process = "" + System.currentTimeMillis();
-			result.put("process", process);
-			if (openTasks == null) {
-				openTasks = new Hashtable<>();
-			}
-			JSONObject obj = new JSONObject();
-			obj.put(Constants.PROGRESS, Constants.PROCESSING);
-			openTasks.put(process, obj);
-			new Thread(() -> {
-				try {
-					JSONArray array = json.getJSONArray("glossaries");
-					for (int i = 0; i < array.length(); i++) {
-						Memory mem = glossaries.get(array.getString(i));
-						closeGlossary(mem.getId());
-						if (mem.getType().equals(Memory.LOCAL)) {
-							try {
-								File wfolder = new File(getWorkFolder(), mem.getId());
-								TmsServer.deleteFolder(wfolder.getAbsolutePath());
-							} catch (IOException ioe) {
-								logger.log(Level.WARNING, "Folder '" + mem.getId() + "' will be deleted on next start");
-							}
+			String process = JobScheduler.submit(JobScheduler.MAINTENANCE, null, JobScheduler.NORMAL, job -> {
+				JSONArray array = json.getJSONArray("glossaries");
+				for (int i = 0; i < array.length(); i++) {
+					Memory mem = glossaries.get(array.getString(i));
+					TermScanner.invalidate(mem.getId());
+					engines.close(mem.getId());
+					if (mem.getType().equals(Memory.LOCAL)) {
+						try {
+							File wfolder = new File(getWorkFolder(), mem.getId());
+							TmsServer.deleteFolder(wfolder.getAbsolutePath());
+						} catch (IOException ioe) {
+							logger.log(Level.WARNING, "Folder '" + mem.getId() + "' will be deleted on next start");
 						}
-						glossaries.remove(mem.getId());
 					}
-					saveGlossariesList();
-					JSONObject completed = new JSONObject();
-					completed.put(Constants.PROGRESS, Constants.COMPLETED);
-					openTasks.put(process, completed);
-				} catch (IOException | SQLException e) {
-					logger.log(Level.ERROR, e.getMessage(), e);
-					JSONObject error = new JSONObject();
-					error.put(Constants.REASON, e.getMessage());
-					openTasks.put(process, error);
+					glossaries.remove(mem.getId());
 				}
-			}).start();
+				saveGlossariesList();
+			}).getId();
+			result.put("process", process);
 		} else {
 			result.put(Constants.REASON, "Missing 'glossaries' parameter");
 		}
 		return result;
 	}
 
-	private static JSONObject exportGlossary(String request) {
+	private static JSONObject exportGlossary(JSONObject json) {
 		JSONObject result = new JSONObject();
-		final JSONObject json = new JSONObject(request);
 		if (!json.has("glossary")) {
 			result.put(Constants.REASON, "Missing 'glossary' parameter");
 			return result;
@@ -309,20 +290,14 @@ public class GlossariesHandler implements HttpHandler {
 		if (!json.has("srcLang")) {
 			json.put("srcLang", "*all*");
 		}
-		final String process = "" + System.currentTimeMillis();
-		if (openTasks == null) {
-			openTasks = new Hashtable<>();
-		}
-		JSONObject obj = new JSONObject();
-		obj.put(Constants.PROGRESS, Constants.PROCESSING);
-		openTasks.put(process, obj);
-		new Thread(() -> {
+		String glossary = json.getString("glossary");
+		String process = JobScheduler.submit(JobScheduler.EXPORT, glossary, JobScheduler.NORMAL, job -> {
+			if (glossaries == null) {
+				loadGlossariesList();
+			}
+			Memory mem = glossaries.get(glossary);
+			openGlossary(mem);
 			try {
-				if (glossaries == null) {
-					loadGlossariesList();
-				}
-				Memory mem = glossaries.get(json.getString("glossary"));
-				openGlossary(mem);
 				ITmEngine engine = getEngine(mem.getId());
 				File tmx = new File(json.getString("file"));
 				Set<String> langSet = Collections.synchronizedSortedSet(new TreeSet<>());
@@ -335,70 +310,53 @@ public class GlossariesHandler implements HttpHandler {
 					langSet = engine.getAllLanguages();
 				}
 				engine.exportMemory(tmx.getAbsolutePath(), langSet, json.getString("srcLang"));
+			} finally {
 				closeGlossary(mem.getId());
-				JSONObject completed = new JSONObject();
-				completed.put(Constants.PROGRESS, Constants.COMPLETED);
-				openTasks.put(process, completed);
-			} catch (IOException | JSONException | SAXException | ParserConfigurationException | SQLException e) {
-				logger.log(Level.ERROR, e.getMessage(), e);
-				JSONObject error = new JSONObject();
-				error.put(Constants.REASON, e.getMessage());
-				openTasks.put(process, error);
 			}
-		}).start();
+		}).getId();
 		result.put("process", process);
 		return result;
 	}
 
-	public static synchronized void openGlossary(String id) throws IOException, SQLException {
+	// takes a lease on the engine of the glossary, give it back with closeGlossary()
+	public static void openGlossary(String id) throws IOException, SQLException {
 		if (glossaries == null) {
 			loadGlossariesList();
 		}
-		openGlossary(glossaries.get(id));
+		engines.acquire(id, GlossariesHandler::createEngine);
 	}
 
-	public static synchronized void openGlossary(Memory memory) throws IOException, SQLException {
-		if (glossaries == null) {
-			loadGlossariesList();
-		}
-		ITmEngine engine = memory.getType().equals(Memory.LOCAL) ? new InternalDatabase(memory.getId(), getWorkFolder())
+	public static void openGlossary(Memory memory) throws IOException, SQLException {
+		openGlossary(memory.getId());
+	}
+
+	private static ITmEngine createEngine(String id) throws IOException, SQLException {
+		Memory memory = glossaries.get(id);
+		return memory.getType().equals(Memory.LOCAL) ? new InternalDatabase(memory.getId(), getWorkFolder())
 				: new RemoteDatabase(memory.getServer(), memory.getUser(), memory.getPassword(), memory.getId());
-		engines.put(memory.getId(), engine);
 	}
 
 	public static ITmEngine getEngine(String id) throws IOException, SQLException {
 		if (glossaries == null) {
 			loadGlossariesList();
 		}
-		if (!engines.containsKey(id)) {
-			openGlossary(id);
-		}
-		return engines.get(id);
-
+		return engines.get(id, GlossariesHandler::createEngine);
 	}
 
-	public static synchronized void closeGlossary(String id) throws IOException, SQLException {
-		if (engines != null && engines.containsKey(id)) {
-			engines.get(id).close();
-			engines.remove(id);
-		}
+	public static void closeGlossary(String id) {
+		engines.release(id);
 	}
 
 	public static synchronized void closeAll() throws IOException, SQLException {
-		Set<String> keys = engines.keySet();
-		Iterator<String> it = keys.iterator();
-		while (it.hasNext()) {
-			engines.get(it.next()).close();
-		}
-		engines.clear();
+		TermScanner.clearAll();
+		engines.closeAll();
 		if (TmsServer.isDebug()) {
 			logger.log(Level.INFO, "Glossaries closed");
 		}
 	}
 
-	private JSONObject importGlossary(String request) {
+	private JSONObject importGlossary(JSONObject json) {
 		JSONObject result = new JSONObject();
-		JSONObject json = new JSONObject(request);
 		if (!json.has("glossary")) {
 			result.put(Constants.REASON, "Missing 'glossary' parameter");
 			return result;
@@ -415,17 +373,10 @@ public class GlossariesHandler implements HttpHandler {
 			return result;
 		}
 
-		final String process = "" + System.currentTimeMillis();
-		if (openTasks == null) {
-			openTasks = new Hashtable<>();
-		}
-		JSONObject obj = new JSONObject();
-		obj.put(Constants.PROGRESS, Constants.PROCESSING);
-		openTasks.put(process, obj);
-		new Thread(() -> {
+		String process = JobScheduler.submit(JobScheduler.IMPORT, id, JobScheduler.NORMAL, job -> {
+			openGlossary(glossaries.get(id));
+			File tempFile = null;
 			try {
-				openGlossary(glossaries.get(id));
-				File tempFile = null;
 				String tmxFile = glossFile.getAbsolutePath();
 				if (isTBX(glossFile)) {
 					tempFile = File.createTempFile("gloss", ".tmx");
@@ -436,30 +387,17 @@ public class GlossariesHandler implements HttpHandler {
 				String project = json.has("project") ? json.getString("project") : "";
 				String client = json.has("client") ? json.getString("client") : "";
 				String subject = json.has("subject") ? json.getString("subject") : "";
-				try {
-					int imported = engine.storeTMX(tmxFile, project, client, subject);
-					logger.log(Level.INFO, "Imported " + imported);
-					JSONObject completed = new JSONObject();
-					completed.put("imported", imported);
-					completed.put(Constants.PROGRESS, Constants.COMPLETED);
-					openTasks.put(process, completed);
-				} catch (Exception e) {
-					JSONObject error = new JSONObject();
-					error.put(Constants.REASON, e.getMessage());
-					openTasks.put(process, error);
-					logger.log(Level.ERROR, e.getMessage(), e);
-				}
+				int imported = engine.storeTMX(tmxFile, project, client, subject);
+				TermScanner.invalidate(id);
+				logger.log(Level.INFO, "Imported " + imported);
+				job.put("imported", imported);
+			} finally {
 				closeGlossary(id);
 				if (tempFile != null) {
 					Files.delete(tempFile.toPath());
 				}
-			} catch (IOException | SQLException | SAXException | ParserConfigurationException | URISyntaxException e) {
-				logger.log(Level.ERROR, e.getMessage(), e);
-				JSONObject error = new JSONObject();
-				error.put(Constants.REASON, e.getMessage());
-				openTasks.put(process, error);
 			}
-		}).start();
+		}).getId();
 		result.put("process", process);
 		return result;
 	}
@@ -518,9 +456,8 @@ public class GlossariesHandler implements HttpHandler {
 		return string.indexOf("<tmx ") == -1;
 	}
 
-	private JSONObject addTerm(String request) {
+	private JSONObject addTerm(JSONObject json) {
 		JSONObject result = new JSONObject();
-		JSONObject json = new JSONObject(request);
 		if (!json.has("glossary")) {
 			result.put(Constants.REASON, "Missing 'glossary' parameter");
 			return result;
@@ -541,10 +478,14 @@ public class GlossariesHandler implements HttpHandler {
 			tgtSeg.setText(json.getString("targetTerm"));
 			tgtTuv.addContent(tgtSeg);
 			openGlossary(glossaries.get(glossary));
-			ITmEngine engine = getEngine(glossary);
-			engine.storeTu(tu);
-			engine.commit();
-			closeGlossary(glossary);
+			try {
+				ITmEngine engine = getEngine(glossary);
+				engine.storeTu(tu);
+				engine.commit();
+				TermScanner.invalidate(glossary);
+			} finally {
+				closeGlossary(glossary);
+			}
 		} catch (IOException | SQLException e) {
 			logger.log(Level.ERROR, e);
 			result.put("result", Constants.ERROR);
@@ -553,9 +494,8 @@ public class GlossariesHandler implements HttpHandler {
 		return result;
 	}
 
-	public static JSONObject searchTerm(String request) {
+	public static JSONObject searchTerm(JSONObject json) {
 		JSONObject result = new JSONObject();
-		JSONObject json = new JSONObject(request);
 		if (!json.has("glossary")) {
 			result.put(Constants.REASON, "Missing 'glossary' parameter");
 			return result;
@@ -568,8 +508,11 @@ public class GlossariesHandler implements HttpHandler {
 		try {
 			List<Element> matches = new Vector<>();
 			openGlossary(glossaries.get(glossary));
-			matches.addAll(getEngine(glossary).searchAll(searchStr, srcLang, similarity, caseSensitive));
-			closeGlossary(glossary);
+			try {
+				matches.addAll(getEngine(glossary).searchAll(searchStr, srcLang, similarity, caseSensitive));
+			} finally {
+				closeGlossary(glossary);
+			}
 			result.put("count", matches.size());
 			result.put("html", generateHTML(matches));
 		} catch (IOException | SAXException | ParserConfigurationException | SQLException e) {
@@ -0,0 +1,23 @@
+/*******************************************************************************
+ * Copyright (c) 2007-2022 Maxprograms.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/epl-v10.html
+ *
+ * Contributors:
+ *     Maxprograms - initial API and implementation
+ *******************************************************************************/
+
+package com.maxprograms.swordfish;
+
+public interface ITask {
+
+	/**
+	 * Does the work of a job. Results and progress go into the job with
+	 * {@link Job#put(String, Object)}; long tasks should call
+	 * {@link Job#checkCancelled()} between steps.
+	 */
+	void run(Job job) throws Exception;
+}
@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright (c) 2007-2022 Maxprograms.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/epl-v10.html
+ *
+ * Contributors:
+ *     Maxprograms - initial API and implementation
+ *******************************************************************************/
+
+package com.maxprograms.swordfish;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.concurrent.CancellationException;
+
+import org.json.JSONObject;
+
+/**
+ * A background task run by {@link JobScheduler}. The status object is what
+ * the handlers return from their "status" requests.
+ */
+public class Job implements Runnable, Comparable<Job> {
+
+	private static Logger logger = System.getLogger(Job.class.getName());
+
+	public static final String QUEUED = "queued";
+	public static final String RUNNING = "running";
+	public static final String FINISHED = "finished";
+
+	private String id;
+	private String pool;
+	private String key;
+	private int priority;
+	private long sequence;
+	private ITask task;
+	private JSONObject status;
+	private String state;
+	private volatile boolean cancelled;
+	private long finished;
+
+	protected Job(String id, String pool, String key, int priority, long sequence, ITask task) {
+		this.id = id;
+		this.pool = pool;
+		this.key = key;
+		this.priority = priority;
+		this.sequence = sequence;
+		this.task = task;
+		state = QUEUED;
+		status = new JSONObject();
+		status.put(Constants.PROGRESS, Constants.PROCESSING);
+		status.put("state", state);
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getPool() {
+		return pool;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public int getPriority() {
+		return priority;
+	}
+
+	public synchronized void put(String name, Object value) {
+		status.put(name, value);
+	}
+
+	public void setPercentage(int percentage) {
+		put("percentage", percentage);
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	public void checkCancelled() {
+		if (cancelled) {
+			throw new CancellationException("Process cancelled");
+		}
+	}
+
+	protected void cancel() {
+		cancelled = true;
+	}
+
+	public synchronized String getState() {
+		return state;
+	}
+
+	protected synchronized long getFinished() {
+		return finished;
+	}
+
+	public synchronized JSONObject toJSON() {
+		return new JSONObject(status.toString());
+	}
+
+	@Override
+	public void run() {
+		synchronized (this) {
+			if (!QUEUED.equals(state)) {
+				return;
+			}
+			state = RUNNING;
+			status.put("state", state);
+		}
+		try {
+			checkCancelled();
+			task.run(this);
+			put(Constants.PROGRESS, Constants.COMPLETED);
+		} catch (CancellationException e) {
+			setCancelled();
+		} catch (InterruptedException e) {
+			logger.log(Level.WARNING, "Process " + id + " interrupted", e);
+			setError(e.getMessage());
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			logger.log(Level.ERROR, e.getMessage(), e);
+			setError(e.getMessage());
+		} finally {
+			finish();
+			JobScheduler.finished(this);
+		}
+	}
+
+	// finishes a job that never started; returns false if a worker got it first
+	protected boolean discard() {
+		synchronized (this) {
+			if (!QUEUED.equals(state)) {
+				return false;
+			}
+			cancelled = true;
+			setCancelled();
+			finish();
+		}
+		return true;
+	}
+
+	private synchronized void setCancelled() {
+		status.put(Constants.PROGRESS, Constants.ERROR);
+		status.put(Constants.REASON, "Process cancelled");
+		status.put("cancelled", true);
+	}
+
+	private synchronized void setError(String reason) {
+		status.put(Constants.PROGRESS, Constants.ERROR);
+		status.put(Constants.REASON, reason != null ? reason : "Process failed");
+	}
+
+	private synchronized void finish() {
+		state = FINISHED;
+		status.put("state", state);
+		finished = System.currentTimeMillis();
+	}
+
+	@Override
+	public int compareTo(Job o) {
+		if (priority != o.priority) {
+			return Integer.compare(priority, o.priority);
+		}
+		return Long.compare(sequence, o.sequence);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof Job)) {
+			return false;
+		}
+		return id.equals(((Job) obj).id);
+	}
+
+	@Override
+	public int hashCode() {
+		return id.hashCode();
+	}
+}
@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright (c) 2007-2022 Maxprograms.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/epl-v10.html
+ *
+ * Contributors:
+ *     Maxprograms - initial API and implementation
+ *******************************************************************************/
+
+package com.maxprograms.swordfish;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONObject;
+
+/**
+ * Runs the background work of the handlers in bounded pools, one per kind of
+ * job. Jobs that share a key (a project, memory or glossary id) run one at a
+ * time, in priority order. Finished jobs are kept for {@link #TTL}
+ * milliseconds so their final status can be read.
+ */
+public class JobScheduler {
+
+	public static final String IMPORT = "import";
+	public static final String EXPORT = "export";
+	public static final String TRANSLATE = "translate";
+	public static final String SEARCH = "search";
+	public static final String MAINTENANCE = "maintenance";
+
+	public static final int HIGH = 1;
+	public static final int NORMAL = 5;
+	public static final int LOW = 9;
+
+	public static final long TTL = 10 * 60 * 1000L;
+	private static final long SWEEP_INTERVAL = 60 * 1000L;
+
+	private static Map<String, ThreadPoolExecutor> pools = new Hashtable<>();
+	private static Map<String, Job> jobs = new Hashtable<>();
+	private static Map<String, PriorityQueue<Job>> waiting = new HashMap<>();
+	private static Set<String> busyKeys = new HashSet<>();
+	private static AtomicLong lastId = new AtomicLong(System.currentTimeMillis());
+	private static AtomicLong sequence = new AtomicLong();
+	private static AtomicLong lastSweep = new AtomicLong(System.currentTimeMillis());
+
+	static {
+		createPool(IMPORT, 2);
+		createPool(EXPORT, 2);
+		createPool(TRANSLATE, 2);
+		createPool(SEARCH, 4);
+		createPool(MAINTENANCE, 1);
+	}
+
+	private JobScheduler() {
+		// private for security
+	}
+
+	private static void createPool(String name, int threads) {
+		AtomicInteger count = new AtomicInteger();
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new PriorityBlockingQueue<>(), r -> {
+					Thread thread = new Thread(r, "swordfish-" + name + "-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		pool.allowCoreThreadTimeOut(true);
+		pools.put(name, pool);
+	}
+
+	// new projects take the id of the job that creates them, keep it time based
+	public static String newId() {
+		return "" + lastId.updateAndGet(last -> Math.max(last + 1, System.currentTimeMillis()));
+	}
+
+	public static Job submit(String pool, String key, int priority, ITask task) {
+		return submit(newId(), pool, key, priority, task);
+	}
+
+	public static Job submit(String id, String pool, String key, int priority, ITask task) {
+		ThreadPoolExecutor executor = pools.get(pool);
+		if (executor == null) {
+			throw new IllegalArgumentException("Unknown pool: " + pool);
+		}
+		evictFinished();
+		Job job = new Job(id, pool, key, priority, sequence.incrementAndGet(), task);
+		jobs.put(id, job);
+		if (key != null) {
+			synchronized (JobScheduler.class) {
+				if (busyKeys.contains(key)) {
+					waiting.computeIfAbsent(key, k -> new PriorityQueue<>()).add(job);
+					return job;
+				}
+				busyKeys.add(key);
+			}
+		}
+		executor.execute(job);
+		return job;
+	}
+
+	public static JSONObject getStatus(String id) {
+		evictFinished();
+		Job job = jobs.get(id);
+		return job != null ? job.toJSON() : null;
+	}
+
+	/**
+	 * Drops a job that has not started yet. A running job is only flagged; it
+	 * stops at its next {@link Job#checkCancelled()}, so that no H2 or MapDB
+	 * file is left half written by an interrupt.
+	 */
+	public static boolean cancel(String id) {
+		Job job = jobs.get(id);
+		if (job == null || Job.FINISHED.equals(job.getState())) {
+			return false;
+		}
+		boolean removed = false;
+		if (job.getKey() != null) {
+			synchronized (JobScheduler.class) {
+				PriorityQueue<Job> queue = waiting.get(job.getKey());
+				if (queue != null) {
+					removed = queue.remove(job);
+					if (queue.isEmpty()) {
+						waiting.remove(job.getKey());
+					}
+				}
+			}
+		}
+		if (removed) {
+			job.discard();
+			return true;
+		}
+		pools.get(job.getPool()).remove(job);
+		if (job.discard()) {
+			// the job held its key while sitting in the pool queue
+			finished(job);
+			return true;
+		}
+		job.cancel();
+		return true;
+	}
+
+	public static void cancelAll() {
+		Vector<String> ids = new Vector<>();
+		synchronized (jobs) {
+			ids.addAll(jobs.keySet());
+		}
+		for (int i = 0; i < ids.size(); i++) {
+			cancel(ids.get(i));
+		}
+	}
+
+	protected static void finished(Job job) {
+		String key = job.getKey();
+		if (key == null) {
+			return;
+		}
+		Job next = null;
+		synchronized (JobScheduler.class) {
+			PriorityQueue<Job> queue = waiting.get(key);
+			if (queue != null) {
+				next = queue.poll();
+				if (queue.isEmpty()) {
+					waiting.remove(key);
+				}
+			}
+			if (next == null) {
+				busyKeys.remove(key);
+			}
+		}
+		if (next != null) {
+			pools.get(next.getPool()).execute(next);
+		}
+	}
+
+	private static void evictFinished() {
+		long now = System.currentTimeMillis();
+		long last = lastSweep.get();
+		if (now - last < SWEEP_INTERVAL || !lastSweep.compareAndSet(last, now)) {
+			return;
+		}
+		jobs.values().removeIf(job -> Job.FINISHED.equals(job.getState()) && now - job.getFinished() > TTL);
+	}
+}
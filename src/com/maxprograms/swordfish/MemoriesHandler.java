@@ -13,13 +13,10 @@
 package com.maxprograms.swordfish;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
 import java.net.URI;
@@ -43,8 +40,11 @@ import javax.xml.parsers.ParserConfigurationException;
 import com.maxprograms.languages.Language;
 import com.maxprograms.languages.LanguageUtils;
 import com.maxprograms.swordfish.models.Memory;
+import com.maxprograms.swordfish.tm.EnginePool;
+import com.maxprograms.swordfish.tm.FederatedEngine;
 import com.maxprograms.swordfish.tm.ITmEngine;
 import com.maxprograms.swordfish.tm.InternalDatabase;
+import com.maxprograms.swordfish.tm.MemoryWriter;
 import com.maxprograms.swordfish.tm.RemoteDatabase;
 import com.maxprograms.swordfish.xliff.XliffUtils;
 import com.maxprograms.xml.Element;
@@ -54,6 +54,7 @@ import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 import org.xml.sax.SAXException;
 
@@ -62,58 +63,55 @@ public class MemoriesHandler implements HttpHandler {
 	private static Logger logger = System.getLogger(MemoriesHandler.class.getName());
 
 	private static Map<String, Memory> memories;
-	private static Map<String, ITmEngine> engines;
-	private static Map<String, JSONObject> openTasks;
+	private static EnginePool engines = new EnginePool("memory");
+	private static Map<String, MemoryWriter> writers = new Hashtable<>();
 	private static boolean firstRun = true;
 
 	@Override
 	public void handle(HttpExchange exchange) {
 		try {
-			String request;
 			URI uri = exchange.getRequestURI();
-			try (InputStream is = exchange.getRequestBody()) {
-				request = TmsServer.readRequestBody(is);
-			}
-			JSONObject response = processRequest(uri.toString(), request);
-			byte[] bytes = response.toString().getBytes(StandardCharsets.UTF_8);
-			exchange.sendResponseHeaders(200, bytes.length);
-			exchange.getResponseHeaders().add("content-type", "application/json; charset=utf-8");
-			try (ByteArrayInputStream stream = new ByteArrayInputStream(bytes)) {
-				try (OutputStream os = exchange.getResponseBody()) {
-					byte[] array = new byte[2048];
-					int read;
-					while ((read = stream.read(array)) != -1) {
-						os.write(array, 0, read);
-					}
-				}
+			JSONObject response;
+			try {
+				response = processRequest(uri.toString(), TmsServer.readRequest(exchange));
+			} catch (JSONException e) {
+				logger.log(Level.ERROR, e.getMessage(), e);
+				response = new JSONObject();
+				response.put(Constants.STATUS, Constants.ERROR);
+				response.put(Constants.REASON, e.getMessage());
 			}
+			TmsServer.sendResponse(exchange, response);
 		} catch (IOException e) {
 			logger.log(Level.ERROR, "Error processing memory " + exchange.getRequestURI().toString(), e);
 		}
 	}
 
-	private JSONObject processRequest(String url, String request) {
+	private JSONObject processRequest(String url, JSONObject json) {
 		if (TmsServer.isDebug()) {
 			logger.log(Level.INFO, url);
 		}
 		JSONObject response = new JSONObject();
 		try {
 			if ("/memories/create".equals(url)) {
-				response = createMemory(request);
+				response = createMemory(json);
 			} else if ("/memories/list".equals(url)) {
 				response = listMemories();
 			} else if ("/memories/delete".equals(url)) {
-				response = deleteMemory(request);
+				response = deleteMemory(json);
 			} else if ("/memories/export".equals(url)) {
-				response = exportMemory(request);
+				response = exportMemory(json);
 			} else if ("/memories/import".equals(url)) {
-				response = importTMX(request);
+				response = importTMX(json);
 			} else if ("/memories/concordance".equals(url)) {
-				response = concordanceSearch(request);
+				response = concordanceSearch(json);
 			} else if ("/memories/status".equals(url)) {
-				response = getProcessStatus(request);
+				response = getProcessStatus(json);
+			} else if ("/memories/cancel".equals(url)) {
+				response = cancelProcess(json);
 			} else if ("/memories/getLanguages".equals(url)) {
-				response = getLanguages(request);
+				response = getLanguages(json);
+			} else if ("/memories/queueDepth".equals(url)) {
+				response = queueDepth(json);
 			} else {
 				response.put(Constants.REASON, "Unknown request");
 			}
@@ -131,69 +129,72 @@ public class MemoriesHandler implements HttpHandler {
 		return response;
 	}
 
-	private static JSONObject getLanguages(String request) {
+	private static JSONObject queueDepth(JSONObject json) {
 		JSONObject result = new JSONObject();
-		final JSONObject json = new JSONObject(request);
 		if (!json.has("memory")) {
 			result.put(Constants.REASON, "Missing 'memory' parameter");
 			return result;
 		}
-		final String process = "" + System.currentTimeMillis();
-		if (openTasks == null) {
-			openTasks = new Hashtable<>();
+		result.put("depth", getQueueDepth(json.getString("memory")));
+		return result;
+	}
+
+	private static JSONObject getLanguages(JSONObject json) {
+		JSONObject result = new JSONObject();
+		if (!json.has("memory")) {
+			result.put(Constants.REASON, "Missing 'memory' parameter");
+			return result;
 		}
-		JSONObject obj = new JSONObject();
-		obj.put(Constants.PROGRESS, Constants.PROCESSING);
-		openTasks.put(process, obj);
-		new Thread(() -> {
+		String memory = json.getString("memory");
+		String process = JobScheduler.submit(JobScheduler.SEARCH, memory, JobScheduler.HIGH, job -> {
+			if (memories == null) {
+				loadMemoriesList();
+			}
+			open(memory);
 			try {
-				if (memories == null) {
-					loadMemoriesList();
-				}
-				String memory = json.getString("memory");
-				open(memory);
 				ITmEngine engine = getEngine(memory);
 				JSONArray array = new JSONArray();
 				Set<String> langs = engine.getAllLanguages();
 				array.put(langs);
+				job.put("languages", array);
+			} finally {
 				close(memory);
-				JSONObject completed = new JSONObject();
-				completed.put("languages", array);
-				completed.put(Constants.PROGRESS, Constants.COMPLETED);
-				openTasks.put(process, completed);
-			} catch (IOException | SQLException e) {
-				logger.log(Level.ERROR, e.getMessage(), e);
-				JSONObject error = new JSONObject();
-				error.put(Constants.REASON, e.getMessage());
-				openTasks.put(process, error);
 			}
-		}).start();
+		}).getId();
 		result.put("process", process);
 		return result;
 	}
 
-	private static JSONObject getProcessStatus(String request) {
-		JSONObject json = new JSONObject(request);
+	private static JSONObject getProcessStatus(JSONObject json) {
 		if (!json.has("process")) {
 			JSONObject error = new JSONObject();
 			error.put(Constants.REASON, "Missing 'process' parameter");
 			return error;
 		}
 		String process = json.getString("process");
-		if (openTasks == null) {
-			openTasks = new Hashtable<>();
-		}
-		if (openTasks.containsKey(process)) {
-			return openTasks.get(process);
+		JSONObject status = JobScheduler.getStatus(process);
+		if (status != null) {
+			return status;
 		}
 		JSONObject error = new JSONObject();
 		error.put(Constants.REASON, "No such process: " + process);
 		return error;
 	}
 
-	private JSONObject concordanceSearch(String request) {
+	private static JSONObject cancelProcess(JSONObject json) {
+		JSONObject result = new JSONObject();
+		if (!json.has("process")) {
+			result.put(Constants.REASON, "Missing 'process' parameter");
+			return result;
+		}
+		if (!JobScheduler.cancel(json.getString("process"))) {
+			result.put(Constants.REASON, "Process not running");
+		}
+		return result;
+	}
+
+	private JSONObject concordanceSearch(JSONObject json) {
 		JSONObject result = new JSONObject();
-		JSONObject json = new JSONObject(request);
 		if (!json.has("memories")) {
 			result.put(Constants.REASON, "Missing 'memories' parameter");
 			return result;
@@ -204,48 +205,41 @@ public class MemoriesHandler implements HttpHandler {
 		boolean caseSensitive = json.getBoolean("caseSensitive");
 		int limit = json.getInt("limit");
 		JSONArray memoriesArray = json.getJSONArray("memories");
-		final String process = "" + System.currentTimeMillis();
-		if (openTasks == null) {
-			openTasks = new Hashtable<>();
-		}
-		JSONObject obj = new JSONObject();
-		obj.put(Constants.PROGRESS, Constants.PROCESSING);
-		openTasks.put(process, obj);
-		new Thread(() -> {
-			try {
-				if (isRegexp) {
-					try {
-						Pattern.compile(searchStr);
-					} catch (PatternSyntaxException e) {
-						throw new IOException("Invalid regular expression");
-					}
+		String process = JobScheduler.submit(JobScheduler.SEARCH, null, JobScheduler.HIGH, job -> {
+			if (isRegexp) {
+				try {
+					Pattern.compile(searchStr);
+				} catch (PatternSyntaxException e) {
+					throw new IOException("Invalid regular expression");
 				}
-				List<Element> matches = new Vector<>();
+			}
+			FederatedEngine federated = new FederatedEngine("concordance");
+			List<String> opened = new Vector<>();
+			try {
 				for (int i = 0; i < memoriesArray.length(); i++) {
 					String memory = memoriesArray.getString(i);
+					flush(memory);
 					open(memory);
-					ITmEngine engine = getEngine(memory);
-					matches.addAll(engine.concordanceSearch(searchStr, srcLang, limit, isRegexp, caseSensitive));
-					close(memory);
+					opened.add(memory);
+					federated.addEngine(getEngine(memory), 0, FederatedEngine.DEFAULT_TIMEOUT);
+				}
+				List<Element> matches = federated.concordanceSearch(searchStr, srcLang, limit, isRegexp,
+						caseSensitive);
+				job.put("count", matches.size());
+				job.put("html", generateHTML(matches, searchStr, isRegexp, caseSensitive));
+			} finally {
+				federated.close();
+				for (int i = 0; i < opened.size(); i++) {
+					close(opened.get(i));
 				}
-				result.put("count", matches.size());
-				result.put("html", generateHTML(matches, searchStr, isRegexp, caseSensitive));
-				result.put(Constants.PROGRESS, Constants.COMPLETED);
-				openTasks.put(process, result);
-			} catch (IOException | SAXException | ParserConfigurationException | SQLException e) {
-				logger.log(Level.ERROR, e.getMessage(), e);
-				JSONObject error = new JSONObject();
-				error.put(Constants.REASON, e.getMessage());
-				openTasks.put(process, error);
 			}
-		}).start();
+		}).getId();
 		result.put("process", process);
 		return result;
 	}
 
-	private static JSONObject importTMX(String request) {
+	private static JSONObject importTMX(JSONObject json) {
 		JSONObject result = new JSONObject();
-		JSONObject json = new JSONObject(request);
 		if (!json.has("memory")) {
 			result.put(Constants.REASON, "Missing 'memory' parameter");
 			return result;
@@ -261,50 +255,29 @@ public class MemoriesHandler implements HttpHandler {
 			return result;
 		}
 
-		final String process = "" + System.currentTimeMillis();
-		if (openTasks == null) {
-			openTasks = new Hashtable<>();
-		}
-		JSONObject obj = new JSONObject();
-		obj.put(Constants.PROGRESS, Constants.PROCESSING);
-		openTasks.put(process, obj);
-		new Thread(() -> {
+		String process = JobScheduler.submit(JobScheduler.IMPORT, memory, JobScheduler.NORMAL, job -> {
+			flush(memory);
+			open(memory);
 			try {
-				open(memory);
 				ITmEngine engine = getEngine(memory);
 				String project = json.has("project") ? json.getString("project") : "";
 				String client = json.has("client") ? json.getString("client") : "";
 				String subject = json.has("subject") ? json.getString("subject") : "";
-				try {
-					int imported = engine.storeTMX(tmx.getAbsolutePath(), project, client, subject);
-					if (TmsServer.isDebug()) {
-						logger.log(Level.INFO, "Imported " + imported);
-					}
-					JSONObject completed = new JSONObject();
-					completed.put("imported", imported);
-					completed.put(Constants.PROGRESS, Constants.COMPLETED);
-					openTasks.put(process, completed);
-				} catch (Exception e) {
-					JSONObject error = new JSONObject();
-					error.put(Constants.REASON, e.getMessage());
-					openTasks.put(process, error);
-					logger.log(Level.ERROR, e.getMessage(), e);
+				int imported = engine.storeTMX(tmx.getAbsolutePath(), project, client, subject);
+				if (TmsServer.isDebug()) {
+					logger.log(Level.INFO, "Imported " + imported);
 				}
+				job.put("imported", imported);
+			} finally {
 				close(memory);
-			} catch (IOException | SQLException e) {
-				logger.log(Level.ERROR, e.getMessage(), e);
-				JSONObject error = new JSONObject();
-				error.put(Constants.REASON, e.getMessage());
-				openTasks.put(process, error);
 			}
-		}).start();
+		}).getId();
 		result.put("process", process);
 		return result;
 	}
 
-	private static JSONObject exportMemory(String request) {
+	private static JSONObject exportMemory(JSONObject json) {
 		JSONObject result = new JSONObject();
-		final JSONObject json = new JSONObject(request);
 		if (!json.has("memory")) {
 			result.put(Constants.REASON, "Missing 'memory' parameter");
 			return result;
@@ -316,20 +289,14 @@ public class MemoriesHandler implements HttpHandler {
 		if (!json.has("srcLang")) {
 			json.put("srcLang", "*all*");
 		}
-		final String process = "" + System.currentTimeMillis();
-		if (openTasks == null) {
-			openTasks = new Hashtable<>();
-		}
-		JSONObject obj = new JSONObject();
-		obj.put(Constants.PROGRESS, Constants.PROCESSING);
-		openTasks.put(process, obj);
-		new Thread(() -> {
+		String memory = json.getString("memory");
+		String process = JobScheduler.submit(JobScheduler.EXPORT, memory, JobScheduler.NORMAL, job -> {
+			if (memories == null) {
+				loadMemoriesList();
+			}
+			flush(memory);
+			open(memory);
 			try {
-				if (memories == null) {
-					loadMemoriesList();
-				}
-				String memory = json.getString("memory");
-				open(memory);
 				ITmEngine engine = getEngine(memory);
 				File tmx = new File(json.getString("tmx"));
 				Set<String> langSet = Collections.synchronizedSortedSet(new TreeSet<>());
@@ -342,62 +309,37 @@ public class MemoriesHandler implements HttpHandler {
 					langSet = engine.getAllLanguages();
 				}
 				engine.exportMemory(tmx.getAbsolutePath(), langSet, json.getString("srcLang"));
+			} finally {
 				close(memory);
-				JSONObject completed = new JSONObject();
-				completed.put(Constants.PROGRESS, Constants.COMPLETED);
-				openTasks.put(process, completed);
-			} catch (IOException | SAXException | ParserConfigurationException | SQLException e) {
-				logger.log(Level.ERROR, e.getMessage(), e);
-				JSONObject error = new JSONObject();
-				error.put(Constants.REASON, e.getMessage());
-				openTasks.put(process, error);
 			}
-		}).start();
+		}).getId();
 		result.put("process", process);
 		return result;
 	}
 
-	private static JSONObject deleteMemory(String request) {
+	private static JSONObject deleteMemory(JSONObject json) {
 		JSONObject result = new JSONObject();
-		final JSONObject json = new JSONObject(request);
 
 		if (json.has("memories")) {
-			final String process = "" + System.currentTimeMillis();
-			result.put("process", process);
-			if (openTasks == null) {
-				openTasks = new Hashtable<>();
-			}
-			JSONObject obj = new JSONObject();
-			obj.put(Constants.PROGRESS, Constants.PROCESSING);
-			openTasks.put(process, obj);
-			new Thread(() -> {
-				try {
-					JSONArray array = json.getJSONArray("memories");
-					for (int i = 0; i < array.length(); i++) {
-						String id = array.getString(i);
-						Memory memory = memories.get(id);
-						close(id);
-						if (memory.getType().equals(Memory.LOCAL)) {
-							try {
-								File wfolder = new File(getWorkFolder(), id);
-								TmsServer.deleteFolder(wfolder.getAbsolutePath());
-							} catch (IOException ioe) {
-								logger.log(Level.WARNING, "Folder '" + id + "' will be deleted on next start");
-							}
+			String process = JobScheduler.submit(JobScheduler.MAINTENANCE, null, JobScheduler.NORMAL, job -> {
+				JSONArray array = json.getJSONArray("memories");
+				for (int i = 0; i < array.length(); i++) {
+					String id = array.getString(i);
+					Memory memory = memories.get(id);
+					discard(id);
+					if (memory.getType().equals(Memory.LOCAL)) {
+						try {
+							File wfolder = new File(getWorkFolder(), id);
+							TmsServer.deleteFolder(wfolder.getAbsolutePath());
+						} catch (IOException ioe) {
+							logger.log(Level.WARNING, "Folder '" + id + "' will be deleted on next start");
 						}
-						memories.remove(id);
 					}
-					saveMemoriesList();
-					JSONObject completed = new JSONObject();
-					completed.put(Constants.PROGRESS, Constants.COMPLETED);
-					openTasks.put(process, completed);
-				} catch (IOException | SQLException e) {
-					logger.log(Level.ERROR, e.getMessage(), e);
-					JSONObject error = new JSONObject();
-					error.put(Constants.REASON, e.getMessage());
-					openTasks.put(process, error);
+					memories.remove(id);
 				}
-			}).start();
+				saveMemoriesList();
+			}).getId();
+			result.put("process", process);
 		} else {
 			result.put(Constants.REASON, "Missing 'memories' parameter");
 		}
@@ -441,9 +383,8 @@ public class MemoriesHandler implements HttpHandler {
 		return result;
 	}
 
-	private static JSONObject createMemory(String request) throws IOException, SQLException {
+	private static JSONObject createMemory(JSONObject json) throws IOException, SQLException {
 		JSONObject result = new JSONObject();
-		JSONObject json = new JSONObject(request);
 		if (!json.has("id")) {
 			json.put("id", "" + System.currentTimeMillis());
 		}
@@ -466,7 +407,6 @@ public class MemoriesHandler implements HttpHandler {
 
 	private static synchronized void loadMemoriesList() throws IOException {
 		memories = new Hashtable<>();
-		engines = new Hashtable<>();
 		File home = new File(getWorkFolder());
 		File list = new File(home, "memories.json");
 		if (!list.exists()) {
@@ -491,7 +431,7 @@ public class MemoriesHandler implements HttpHandler {
 		}
 		if (firstRun) {
 			firstRun = false;
-			new Thread(() -> {
+			JobScheduler.submit(JobScheduler.MAINTENANCE, null, JobScheduler.LOW, job -> {
 				try {
 					File[] filesList = home.listFiles();
 					for (int i = 0; i < filesList.length; i++) {
@@ -502,7 +442,7 @@ public class MemoriesHandler implements HttpHandler {
 				} catch (IOException e) {
 					logger.log(Level.WARNING, "Error deleting folder", e);
 				}
-			}).start();
+			});
 		}
 	}
 
@@ -531,52 +471,84 @@ public class MemoriesHandler implements HttpHandler {
 		return workFolder.getAbsolutePath();
 	}
 
-	public static synchronized void open(String id) throws IOException, SQLException {
+	// takes a lease on the engine of the memory, give it back with close()
+	public static void open(String id) throws IOException, SQLException {
 		if (memories == null) {
 			loadMemoriesList();
 		}
-		if (!engines.containsKey(id)) {
-			Memory memory = memories.get(id);
-			ITmEngine engine = memory.getType().equals(Memory.LOCAL) ? new InternalDatabase(id, getWorkFolder())
-					: new RemoteDatabase(memory.getServer(), memory.getUser(), memory.getPassword(), id);
-			engines.put(id, engine);
-		}
+		engines.acquire(id, MemoriesHandler::createEngine);
 	}
 
-	public static synchronized void close(String id) throws IOException, SQLException {
-		if (engines != null && engines.containsKey(id)) {
-			engines.get(id).close();
-			engines.remove(id);
+	public static void close(String id) {
+		engines.release(id);
+	}
+
+	private static ITmEngine createEngine(String id) throws IOException, SQLException {
+		Memory memory = memories.get(id);
+		return memory.getType().equals(Memory.LOCAL) ? new InternalDatabase(id, getWorkFolder())
+				: new RemoteDatabase(memory.getServer(), memory.getUser(), memory.getPassword(), id);
+	}
+
+	// stops the writer and closes the engine of a memory that is being removed
+	private static synchronized void discard(String id) throws IOException, SQLException {
+		MemoryWriter writer = writers.remove(id);
+		if (writer != null) {
+			writer.close();
 		}
+		engines.close(id);
 	}
 
 	public static synchronized void closeAll() throws IOException, SQLException {
-		Set<String> keys = engines.keySet();
-		Iterator<String> it = keys.iterator();
-		while (it.hasNext()) {
-			engines.get(it.next()).close();
+		Iterator<MemoryWriter> queues = writers.values().iterator();
+		while (queues.hasNext()) {
+			queues.next().close();
 		}
-		engines.clear();
+		writers.clear();
+		engines.closeAll();
 		if (TmsServer.isDebug()) {
 			logger.log(Level.INFO, "Memories closed");
 		}
 	}
 
+	// queues the TU, it is stored by the writer of the memory that keeps its engine open
+	public static synchronized void storeTu(String id, Element tu) throws IOException, SQLException {
+		MemoryWriter writer = writers.get(id);
+		if (writer == null) {
+			if (memories == null) {
+				loadMemoriesList();
+			}
+			writer = new MemoryWriter(engines.acquire(id, MemoriesHandler::createEngine));
+			writers.put(id, writer);
+		}
+		writer.add(tu);
+	}
+
+	// waits until the confirmed TUs queued for the memory are committed
+	public static void flush(String id) throws IOException {
+		MemoryWriter writer = writers.get(id);
+		if (writer != null) {
+			writer.flush();
+		}
+	}
+
+	public static int getQueueDepth(String id) {
+		MemoryWriter writer = writers.get(id);
+		return writer != null ? writer.getQueueDepth() : 0;
+	}
+
 	public static ITmEngine getEngine(String id) throws IOException, SQLException {
 		if (memories == null) {
 			loadMemoriesList();
 		}
-		if (!engines.containsKey(id)) {
-			open(id);
-		}
-		return engines.get(id);
+		return engines.get(id, MemoriesHandler::createEngine);
 	}
 
 	public static String getName(String id) throws IOException {
 		if (memories == null) {
 			loadMemoriesList();
 		}
-		return memories.get(id).getName();
+		Memory memory = memories.get(id);
+		return memory != null ? memory.getName() : id;
 	}
 
 	private String generateHTML(List<Element> matches, String searchStr, boolean isRegexp, boolean caseSensitive)
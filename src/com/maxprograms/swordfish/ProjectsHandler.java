@@ -13,13 +13,10 @@
 package com.maxprograms.swordfish;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
 import java.net.URI;
@@ -68,7 +65,6 @@ public class ProjectsHandler implements HttpHandler {
 
 	private static Logger logger = System.getLogger(ProjectsHandler.class.getName());
 	private static Map<String, Project> projects;
-	private static Map<String, JSONObject> processes;
 	private static boolean firstRun = true;
 	protected JSONObject projectsList;
 
@@ -78,145 +74,146 @@ public class ProjectsHandler implements HttpHandler {
 
 	private static Map<String, XliffStore> projectStores = new Hashtable<>();
 
+	// responses that can be sent one element per line
+	private static final Map<String, String> LISTS = Map.of("/projects/segments", "segments", "/projects/matches",
+			"matches", "/projects/terms", "terms", "/projects/getSegmentTerms", "terms");
+
 	@Override
 	public void handle(HttpExchange exchange) throws IOException {
 		try {
-			String request;
 			URI uri = exchange.getRequestURI();
-			try (InputStream is = exchange.getRequestBody()) {
-				request = TmsServer.readRequestBody(is);
-			}
 			if (projects == null) {
 				loadProjectsList();
 			}
-			JSONObject response = processRequest(uri.toString(), request);
-			byte[] bytes = response.toString().getBytes(StandardCharsets.UTF_8);
-			exchange.sendResponseHeaders(200, bytes.length);
-			exchange.getResponseHeaders().add("content-type", "application/json; charset=utf-8");
-			try (ByteArrayInputStream stream = new ByteArrayInputStream(bytes)) {
-				try (OutputStream os = exchange.getResponseBody()) {
-					byte[] array = new byte[2048];
-					int read;
-					while ((read = stream.read(array)) != -1) {
-						os.write(array, 0, read);
-					}
-				}
+			JSONObject response;
+			try {
+				response = processRequest(uri.toString(), TmsServer.readRequest(exchange));
+			} catch (JSONException e) {
+				logger.log(Level.ERROR, e.getMessage(), e);
+				response = new JSONObject();
+				response.put(Constants.STATUS, Constants.ERROR);
+				response.put(Constants.REASON, e.getMessage());
 			}
+			TmsServer.sendResponse(exchange, response, LISTS.get(uri.toString()));
 		} catch (IOException e) {
 			logger.log(Level.ERROR, "Error processing projects " + exchange.getRequestURI().toString(), e);
 		}
 	}
 
-	private JSONObject processRequest(String url, String request) {
+	private JSONObject processRequest(String url, JSONObject json) {
 		if (TmsServer.isDebug()) {
 			logger.log(Level.INFO, url);
 		}
 		JSONObject response = new JSONObject();
 		try {
 			if ("/projects/create".equals(url)) {
-				response = createProject(request);
+				response = createProject(json);
 			} else if ("/projects/list".equals(url)) {
 				response = listProjects();
 			} else if ("/projects/get".equals(url)) {
-				response = getProject(request);
+				response = getProject(json);
 			} else if ("/projects/delete".equals(url)) {
-				response = deleteProjects(request);
+				response = deleteProjects(json);
 			} else if ("/projects/translations".equals(url)) {
-				response = exportTranslations(request);
+				response = exportTranslations(json);
 			} else if ("/projects/export".equals(url)) {
-				response = export(request);
+				response = export(json);
 			} else if ("/projects/import".equals(url)) {
-				response = importXliff(request);
+				response = importXliff(json);
 			} else if ("/projects/status".equals(url)) {
-				response = getProcessStatus(request);
+				response = getProcessStatus(json);
+			} else if ("/projects/cancel".equals(url)) {
+				response = cancelProcess(json);
 			} else if ("/projects/close".equals(url)) {
-				response = closeProject(request);
+				response = closeProject(json);
 			} else if ("/projects/files".equals(url)) {
-				response = getProjectFiles(request);
+				response = getProjectFiles(json);
 			} else if ("/projects/segments".equals(url)) {
-				response = getSegments(request);
+				response = getSegments(json);
 			} else if ("/projects/count".equals(url)) {
-				response = getSegmentsCount(request);
+				response = getSegmentsCount(json);
 			} else if ("/projects/save".equals(url)) {
-				response = save(request);
+				response = save(json);
+			} else if ("/projects/propagated".equals(url)) {
+				response = getPropagated(json);
 			} else if ("/projects/saveSource".equals(url)) {
-				response = saveSource(request);
+				response = saveSource(json);
 			} else if ("/projects/matches".equals(url)) {
-				response = getMatches(request);
+				response = getMatches(json);
 			} else if ("/projects/machineTranslate".equals(url)) {
-				response = machineTranslate(request);
+				response = machineTranslate(json);
 			} else if ("/projects/assembleMatches".equals(url)) {
-				response = assembleMatches(request);
+				response = assembleMatches(json);
 			} else if ("/projects/applyAmAll".equals(url)) {
-				response = assembleMatchesAll(request);
+				response = assembleMatchesAll(json);
 			} else if ("/projects/removeAssembledMatches".equals(url)) {
-				response = removeAssembledMatches(request);
+				response = removeAssembledMatches(json);
 			} else if ("/projects/tmTranslate".equals(url)) {
-				response = tmTranslate(request);
+				response = tmTranslate(json);
 			} else if ("/projects/tmTranslateAll".equals(url)) {
-				response = tmTranslateAll(request);
+				response = tmTranslateAll(json);
 			} else if ("/projects/projectMemories".equals(url)) {
-				response = getProjectMemories(request);
+				response = getProjectMemories(json);
 			} else if ("/projects/setMemory".equals(url)) {
-				response = setProjectMemory(request);
+				response = setProjectMemory(json);
 			} else if ("/projects/exportTmx".equals(url)) {
-				response = exportTMX(request);
+				response = exportTMX(json);
 			} else if ("/projects/removeTranslations".equals(url)) {
-				response = removeTranslations(request);
+				response = removeTranslations(json);
 			} else if ("/projects/unconfirmTranslations".equals(url)) {
-				response = unconfirmTranslations(request);
+				response = unconfirmTranslations(json);
 			} else if ("/projects/pseudoTranslate".equals(url)) {
-				response = pseudoTranslate(request);
+				response = pseudoTranslate(json);
 			} else if ("/projects/copyAllSources".equals(url)) {
-				response = copyAllSources(request);
+				response = copyAllSources(json);
 			} else if ("/projects/confirmAllTranslations".equals(url)) {
-				response = confirmAllTranslations(request);
+				response = confirmAllTranslations(json);
 			} else if ("/projects/acceptAll100Matches".equals(url)) {
-				response = acceptAll100Matches(request);
+				response = acceptAll100Matches(json);
 			} else if ("/projects/generateStatistics".equals(url)) {
-				response = generateStatistics(request);
+				response = generateStatistics(json);
 			} else if ("/projects/exportHtml".equals(url)) {
-				response = exportHTML(request);
+				response = exportHTML(json);
 			} else if ("/projects/replaceText".equals(url)) {
-				response = replaceText(request);
+				response = replaceText(json);
 			} else if ("/projects/applyMtAll".equals(url)) {
-				response = applyMtAll(request);
+				response = applyMtAll(json);
 			} else if ("/projects/acceptAllMT".equals(url)) {
-				response = acceptAllMT(request);
+				response = acceptAllMT(json);
 			} else if ("/projects/removeMatches".equals(url)) {
-				response = removeMatches(request);
+				response = removeMatches(json);
 			} else if ("/projects/removeMT".equals(url)) {
-				response = removeMT(request);
+				response = removeMT(json);
 			} else if ("/projects/setGlossary".equals(url)) {
-				response = setProjectGlossary(request);
+				response = setProjectGlossary(json);
 			} else if ("/projects/projectGlossaries".equals(url)) {
-				response = getProjectGlossaries(request);
+				response = getProjectGlossaries(json);
 			} else if ("/projects/terms".equals(url)) {
-				response = getTerms(request);
+				response = getTerms(json);
 			} else if ("/projects/getSegmentTerms".equals(url)) {
-				response = getSegmentTerms(request);
+				response = getSegmentTerms(json);
 			} else if ("/projects/getProjectTerms".equals(url)) {
-				response = getProjectTerms(request);
+				response = getProjectTerms(json);
 			} else if ("/projects/lockSegment".equals(url)) {
-				response = lockSegment(request);
+				response = lockSegment(json);
 			} else if ("/projects/lockDuplicates".equals(url)) {
-				response = lockDuplicates(request);
+				response = lockDuplicates(json);
 			} else if ("/projects/unlockAll".equals(url)) {
-				response = unlockAll(request);
+				response = unlockAll(json);
 			} else if ("/projects/analyzeSpaces".equals(url)) {
-				response = analyzeSpaces(request);
+				response = analyzeSpaces(json);
 			} else if ("/projects/analyzeTags".equals(url)) {
-				response = analyzeTags(request);
+				response = analyzeTags(json);
 			} else if ("/projects/splitSegment".equals(url)) {
-				response = splitSegment(request);
+				response = splitSegment(json);
 			} else if ("/projects/mergeSegment".equals(url)) {
-				response = mergeSegment(request);
+				response = mergeSegment(json);
 			} else if ("/projects/getNotes".equals(url)) {
-				response = getNotes(request);
+				response = getNotes(json);
 			} else if ("/projects/addNote".equals(url)) {
-				response = addNote(request);
+				response = addNote(json);
 			} else if ("/projects/removeNote".equals(url)) {
-				response = removeNote(request);
+				response = removeNote(json);
 			} else {
 				response.put(Constants.REASON, "Unknown request");
 			}
@@ -234,8 +231,7 @@ public class ProjectsHandler implements HttpHandler {
 		return response;
 	}
 
-	private JSONObject getProject(String request) {
-		JSONObject json = new JSONObject(request);
+	private JSONObject getProject(JSONObject json) {
 		if (!projects.containsKey(json.getString("project"))) {
 			JSONObject result = new JSONObject();
 			result.put(Constants.REASON, "Project does not exist");
@@ -244,9 +240,8 @@ public class ProjectsHandler implements HttpHandler {
 		return projects.get(json.getString("project")).toJSON();
 	}
 
-	private JSONObject getProjectFiles(String request) {
+	private JSONObject getProjectFiles(JSONObject json) {
 		JSONObject result = new JSONObject();
-		JSONObject json = new JSONObject(request);
 		if (!projects.containsKey(json.getString("project"))) {
 			result.put(Constants.REASON, "Project does not exist");
 			return result;
@@ -262,12 +257,8 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject getProcessStatus(String request) {
-		JSONObject json = new JSONObject(request);
-		if (processes == null) {
-			processes = new Hashtable<>();
-		}
-		JSONObject result = processes.get(json.getString("process"));
+	private JSONObject getProcessStatus(JSONObject json) {
+		JSONObject result = JobScheduler.getStatus(json.getString("process"));
 		if (result == null) {
 			result = new JSONObject();
 			result.put(Constants.PROGRESS, Constants.ERROR);
@@ -276,9 +267,16 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject exportTranslations(String request) {
+	private JSONObject cancelProcess(JSONObject json) {
+		JSONObject result = new JSONObject();
+		if (!JobScheduler.cancel(json.getString("process"))) {
+			result.put(Constants.REASON, "Process not running");
+		}
+		return result;
+	}
+
+	private JSONObject exportTranslations(JSONObject json) {
 		JSONObject result = new JSONObject();
-		JSONObject json = new JSONObject(request);
 		String project = json.getString("project");
 		String output = json.getString("output");
 		if (!projectStores.containsKey(project)) {
@@ -293,41 +291,14 @@ public class ProjectsHandler implements HttpHandler {
 				return result;
 			}
 		}
-		String id = "" + System.currentTimeMillis();
+		String id = JobScheduler.submit(JobScheduler.EXPORT, project, JobScheduler.NORMAL,
+				job -> projectStores.get(project).exportTranslations(output)).getId();
 		result.put("process", id);
-		if (processes == null) {
-			processes = new Hashtable<>();
-		}
-		JSONObject obj = new JSONObject();
-		obj.put(Constants.PROGRESS, Constants.PROCESSING);
-		processes.put(id, obj);
-		try {
-			Thread thread = new Thread() {
-				@Override
-				public void run() {
-					try {
-						projectStores.get(project).exportTranslations(output);
-						obj.put(Constants.PROGRESS, Constants.COMPLETED);
-						processes.put(id, obj);
-					} catch (Exception e) {
-						logger.log(Level.ERROR, e);
-						obj.put(Constants.PROGRESS, Constants.ERROR);
-						obj.put(Constants.REASON, e.getMessage());
-						processes.put(id, obj);
-					}
-				}
-			};
-			thread.start();
-		} catch (Exception e) {
-			logger.log(Level.ERROR, "Error exporting translations", e);
-			result.put(Constants.REASON, e.getMessage());
-		}
 		return result;
 	}
 
-	private JSONObject export(String request) {
+	private JSONObject export(JSONObject json) {
 		JSONObject result = new JSONObject();
-		JSONObject json = new JSONObject(request);
 		String project = json.getString("project");
 		String output = json.getString("output");
 		if (!projectStores.containsKey(project)) {
@@ -342,41 +313,14 @@ public class ProjectsHandler implements HttpHandler {
 				return result;
 			}
 		}
-		String id = "" + System.currentTimeMillis();
+		String id = JobScheduler.submit(JobScheduler.EXPORT, project, JobScheduler.NORMAL,
+				job -> projectStores.get(project).exportXliff(output)).getId();
 		result.put("process", id);
-		if (processes == null) {
-			processes = new Hashtable<>();
-		}
-		JSONObject obj = new JSONObject();
-		obj.put(Constants.PROGRESS, Constants.PROCESSING);
-		processes.put(id, obj);
-		try {
-			Thread thread = new Thread() {
-				@Override
-				public void run() {
-					try {
-						projectStores.get(project).exportXliff(output);
-						obj.put(Constants.PROGRESS, Constants.COMPLETED);
-						processes.put(id, obj);
-					} catch (IOException | SAXException | ParserConfigurationException | SQLException e) {
-						logger.log(Level.ERROR, e);
-						obj.put(Constants.PROGRESS, Constants.ERROR);
-						obj.put(Constants.REASON, e.getMessage());
-						processes.put(id, obj);
-					}
-				}
-			};
-			thread.start();
-		} catch (Exception e) {
-			logger.log(Level.ERROR, "Error exporting translations", e);
-			result.put(Constants.REASON, e.getMessage());
-		}
 		return result;
 	}
 
-	private JSONObject exportTMX(String request) {
+	private JSONObject exportTMX(JSONObject json) {
 		JSONObject result = new JSONObject();
-		JSONObject json = new JSONObject(request);
 		String project = json.getString("project");
 		String output = json.getString("output");
 		if (!projectStores.containsKey(project)) {
@@ -391,44 +335,17 @@ public class ProjectsHandler implements HttpHandler {
 				return result;
 			}
 		}
-		String id = "" + System.currentTimeMillis();
+		String id = JobScheduler.submit(JobScheduler.EXPORT, project, JobScheduler.NORMAL, job -> {
+			Project prj = projects.get(project);
+			projectStores.get(project).exportTMX(output, prj.getDescription(), prj.getClient(), prj.getSubject());
+		}).getId();
 		result.put("process", id);
-		if (processes == null) {
-			processes = new Hashtable<>();
-		}
-		JSONObject obj = new JSONObject();
-		obj.put(Constants.PROGRESS, Constants.PROCESSING);
-		processes.put(id, obj);
-		try {
-			Thread thread = new Thread() {
-				@Override
-				public void run() {
-					try {
-						Project prj = projects.get(project);
-						projectStores.get(project).exportTMX(output, prj.getDescription(), prj.getClient(),
-								prj.getSubject());
-						obj.put(Constants.PROGRESS, Constants.COMPLETED);
-						processes.put(id, obj);
-					} catch (IOException | SAXException | ParserConfigurationException | SQLException e) {
-						logger.log(Level.ERROR, e);
-						obj.put(Constants.PROGRESS, Constants.ERROR);
-						obj.put(Constants.REASON, e.getMessage());
-						processes.put(id, obj);
-					}
-				}
-			};
-			thread.start();
-		} catch (Exception e) {
-			logger.log(Level.ERROR, "Error exporting TMX", e);
-			result.put(Constants.REASON, e.getMessage());
-		}
 		return result;
 	}
 
-	private JSONObject deleteProjects(String request) {
+	private JSONObject deleteProjects(JSONObject json) {
 		JSONObject result = new JSONObject();
 		try {
-			JSONObject json = new JSONObject(request);
 			JSONArray array = json.getJSONArray("projects");
 			for (int i = 0; i < array.length(); i++) {
 				String project = array.getString(i);
@@ -494,7 +411,7 @@ public class ProjectsHandler implements HttpHandler {
 		sortProjects();
 		if (firstRun) {
 			firstRun = false;
-			new Thread(() -> {
+			JobScheduler.submit(JobScheduler.MAINTENANCE, null, JobScheduler.LOW, job -> {
 				try {
 					File[] filesList = home.listFiles();
 					for (int i = 0; i < filesList.length; i++) {
@@ -505,7 +422,7 @@ public class ProjectsHandler implements HttpHandler {
 				} catch (IOException e) {
 					logger.log(Level.WARNING, "Error deleting folder", e);
 				}
-			}).start();
+			});
 		}
 	}
 
@@ -544,9 +461,8 @@ public class ProjectsHandler implements HttpHandler {
 		}
 	}
 
-	private JSONObject getSegments(String request) {
+	private JSONObject getSegments(JSONObject json) {
 		JSONObject result = new JSONObject();
-		JSONObject json = new JSONObject(request);
 		String project = json.getString("project");
 		if (project == null) {
 			logger.log(Level.ERROR, "Null project requested");
@@ -598,9 +514,8 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject getSegmentsCount(String request) {
+	private JSONObject getSegmentsCount(JSONObject json) {
 		JSONObject result = new JSONObject();
-		JSONObject json = new JSONObject(request);
 		String project = json.getString("project");
 		if (!projectStores.containsKey(project)) {
 			try {
@@ -625,9 +540,8 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject createProject(String request) {
+	private JSONObject createProject(JSONObject json) {
 		JSONObject result = new JSONObject();
-		JSONObject json = new JSONObject(request);
 		JSONArray files = json.getJSONArray("files");
 
 		SortedSet<String> filesList = new TreeSet<>();
@@ -636,14 +550,7 @@ public class ProjectsHandler implements HttpHandler {
 		}
 		String filesRoot = Join.findTreeRoot(filesList);
 
-		String id = "" + System.currentTimeMillis();
-		result.put("process", id);
-		if (processes == null) {
-			processes = new Hashtable<>();
-		}
-		JSONObject obj = new JSONObject();
-		obj.put(Constants.PROGRESS, Constants.PROCESSING);
-		processes.put(id, obj);
+		String id = JobScheduler.newId();
 		try {
 			loadPreferences();
 			String description = json.getString("description");
@@ -664,113 +571,102 @@ public class ProjectsHandler implements HttpHandler {
 			File projectFolder = new File(getWorkFolder(), id);
 			Files.createDirectories(projectFolder.toPath());
 			List<SourceFile> sourceFiles = new ArrayList<>();
-			Thread thread = new Thread() {
-				@Override
-				public void run() {
-					try {
-						List<String> xliffs = new ArrayList<>();
-						for (int i = 0; i < files.length(); i++) {
-							JSONObject file = files.getJSONObject(i);
-							String fullName = file.getString("file");
-							String shortName = fullName.substring(filesRoot.length());
-							if (shortName.startsWith("/") || shortName.startsWith("\\")) {
-								shortName = shortName.substring(1);
-							}
-							SourceFile sf = new SourceFile(shortName, FileFormats.getFullName(file.getString("type")),
-									file.getString("encoding"));
-							sourceFiles.add(sf);
-
-							boolean paragraph = paragraphSegmentation;
-							boolean mustResegment = false;
-							if (!paragraphSegmentation) {
-								mustResegment = true;
-								paragraph = true;
-							}
-
-							File source = new File(fullName);
-							File xliff = new File(projectFolder, shortName + ".xlf");
-							if (!xliff.getParentFile().exists()) {
-								Files.createDirectories(xliff.getParentFile().toPath());
-							}
-							File skl = new File(projectFolder, shortName + ".skl");
-
-							Map<String, String> params = new HashMap<>();
-							params.put("source", source.getAbsolutePath());
-							params.put("xliff", xliff.getAbsolutePath());
-							params.put("skeleton", skl.getAbsolutePath());
-							params.put("format", sf.getType());
-							params.put("catalog", catalogFile);
-							params.put("srcEncoding", sf.getEncoding());
-							params.put("paragraph", paragraph ? "yes" : "no");
-							params.put("srxFile", srxFile);
-							params.put("srcLang", json.getString("srcLang"));
-							params.put("tgtLang", json.getString("tgtLang"));
-
-							List<String> res = Convert.run(params);
-
-							if ("0".equals(res.get(0))) {
-								res = ToXliff2.run(xliff, catalogFile);
-								if (mustResegment && "0".equals(res.get(0))) {
-									res = Resegmenter.run(xliff.getAbsolutePath(), srxFile, json.getString("srcLang"),
-											catalogFile);
-								}
-							}
-							if (!"0".equals(res.get(0))) {
-								if (TmsServer.isDebug()) {
-									logger.log(Level.INFO, "Conversion failed for: " + file.toString(2));
-								}
-								try {
-									TmsServer.deleteFolder(projectFolder.getAbsolutePath());
-								} catch (IOException e) {
-									logger.log(Level.ERROR, e);
-								}
-								throw new IOException(res.get(1));
-							}
-							xliffs.add(xliff.getAbsolutePath());
-						}
-						if (xliffs.size() > 1) {
-							File main = new File(projectFolder, p.getId() + ".xlf");
-							Join.join(xliffs, main.getAbsolutePath());
-							for (int i = 0; i < xliffs.size(); i++) {
-								File x = new File(xliffs.get(i));
-								Files.delete(x.toPath());
-							}
-							p.setXliff(main.getAbsolutePath());
-						} else {
-							p.setXliff(xliffs.get(0));
-						}
-						ServicesHandler.addClient(json.getString("client"));
-						ServicesHandler.addSubject(json.getString("subject"));
-						if (!p.getDescription().endsWith(sourceFiles.get(0).getFile())) {
-							ServicesHandler.addProject(p.getDescription());
-						}
+			JobScheduler.submit(id, JobScheduler.IMPORT, id, JobScheduler.NORMAL, job -> {
+				List<String> xliffs = new ArrayList<>();
+				for (int i = 0; i < files.length(); i++) {
+					job.checkCancelled();
+					JSONObject file = files.getJSONObject(i);
+					String fullName = file.getString("file");
+					String shortName = fullName.substring(filesRoot.length());
+					if (shortName.startsWith("/") || shortName.startsWith("\\")) {
+						shortName = shortName.substring(1);
+					}
+					SourceFile sf = new SourceFile(shortName, FileFormats.getFullName(file.getString("type")),
+							file.getString("encoding"));
+					sourceFiles.add(sf);
+
+					boolean paragraph = paragraphSegmentation;
+					boolean mustResegment = false;
+					if (!paragraphSegmentation) {
+						mustResegment = true;
+						paragraph = true;
+					}
 
-						p.setFiles(sourceFiles);
-						projects.put(id, p);
-						projectsList.getJSONArray("projects").put(p.toJSON());
-						sortProjects();
-						saveProjectsList();
-						if (applyTM) {
-							XliffStore store = new XliffStore(p.getXliff(), p.getSourceLang().getCode(),
-									p.getTargetLang().getCode());
-							store.tmTranslateAll(memory, 0, processes, id);
+					File source = new File(fullName);
+					File xliff = new File(projectFolder, shortName + ".xlf");
+					if (!xliff.getParentFile().exists()) {
+						Files.createDirectories(xliff.getParentFile().toPath());
+					}
+					File skl = new File(projectFolder, shortName + ".skl");
+
+					Map<String, String> params = new HashMap<>();
+					params.put("source", source.getAbsolutePath());
+					params.put("xliff", xliff.getAbsolutePath());
+					params.put("skeleton", skl.getAbsolutePath());
+					params.put("format", sf.getType());
+					params.put("catalog", catalogFile);
+					params.put("srcEncoding", sf.getEncoding());
+					params.put("paragraph", paragraph ? "yes" : "no");
+					params.put("srxFile", srxFile);
+					params.put("srcLang", json.getString("srcLang"));
+					params.put("tgtLang", json.getString("tgtLang"));
+
+					List<String> res = Convert.run(params);
+
+					if ("0".equals(res.get(0))) {
+						res = ToXliff2.run(xliff, catalogFile);
+						if (mustResegment && "0".equals(res.get(0))) {
+							res = Resegmenter.run(xliff.getAbsolutePath(), srxFile, json.getString("srcLang"),
+									catalogFile);
 						}
-						if (searchTerms) {
-							XliffStore store = new XliffStore(p.getXliff(), p.getSourceLang().getCode(),
-									p.getTargetLang().getCode());
-							store.getProjectTerms(glossary);
+					}
+					if (!"0".equals(res.get(0))) {
+						if (TmsServer.isDebug()) {
+							logger.log(Level.INFO, "Conversion failed for: " + file.toString(2));
+						}
+						try {
+							TmsServer.deleteFolder(projectFolder.getAbsolutePath());
+						} catch (IOException e) {
+							logger.log(Level.ERROR, e);
 						}
-						obj.put(Constants.PROGRESS, Constants.COMPLETED);
-						processes.put(id, obj);
-					} catch (Exception e) {
-						logger.log(Level.ERROR, e.getMessage(), e);
-						obj.put(Constants.PROGRESS, Constants.ERROR);
-						obj.put(Constants.REASON, e.getMessage());
-						processes.put(id, obj);
+						throw new IOException(res.get(1));
+					}
+					xliffs.add(xliff.getAbsolutePath());
+				}
+				if (xliffs.size() > 1) {
+					File main = new File(projectFolder, p.getId() + ".xlf");
+					Join.join(xliffs, main.getAbsolutePath());
+					for (int i = 0; i < xliffs.size(); i++) {
+						File x = new File(xliffs.get(i));
+						Files.delete(x.toPath());
 					}
+					p.setXliff(main.getAbsolutePath());
+				} else {
+					p.setXliff(xliffs.get(0));
+				}
+				ServicesHandler.addClient(json.getString("client"));
+				ServicesHandler.addSubject(json.getString("subject"));
+				if (!p.getDescription().endsWith(sourceFiles.get(0).getFile())) {
+					ServicesHandler.addProject(p.getDescription());
+				}
+
+				p.setFiles(sourceFiles);
+				projects.put(id, p);
+				projectsList.getJSONArray("projects").put(p.toJSON());
+				sortProjects();
+				saveProjectsList();
+				if (applyTM) {
+					XliffStore store = new XliffStore(p.getXliff(), p.getSourceLang().getCode(),
+							p.getTargetLang().getCode());
+					store.tmTranslateAll(memory, 0, job);
 				}
-			};
-			thread.start();
+				if (searchTerms) {
+					XliffStore store = new XliffStore(p.getXliff(), p.getSourceLang().getCode(),
+							p.getTargetLang().getCode());
+					store.getProjectTerms(glossary);
+				}
+			});
+			result.put("process", id);
 			result.put(Constants.STATUS, Constants.SUCCESS);
 		} catch (IOException e) {
 			logger.log(Level.ERROR, e);
@@ -806,7 +702,7 @@ public class ProjectsHandler implements HttpHandler {
 		return workFolder;
 	}
 
-	private JSONObject closeProject(String request) {
+	private JSONObject closeProject(JSONObject json) {
 		JSONObject result = new JSONObject();
 		if (projects == null) {
 			result.put(Constants.REASON, "Project list not loaded");
@@ -816,7 +712,6 @@ public class ProjectsHandler implements HttpHandler {
 			result.put(Constants.REASON, "Projects map is null");
 			return result;
 		}
-		JSONObject json = new JSONObject(request);
 		String project = json.getString("project");
 		if (projectStores.containsKey(project)) {
 			try {
@@ -851,9 +746,8 @@ public class ProjectsHandler implements HttpHandler {
 		}
 	}
 
-	private JSONObject save(String request) {
+	private JSONObject save(JSONObject json) {
 		JSONObject result = new JSONObject();
-		JSONObject json = new JSONObject(request);
 		String project = json.getString("project");
 		try {
 			result = projectStores.get(project).saveSegment(json);
@@ -867,9 +761,30 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject saveSource(String request) {
+	private JSONObject getPropagated(JSONObject json) {
+		JSONObject result = new JSONObject();
+		String project = json.getString("project");
+		if (!projectStores.containsKey(project)) {
+			result.put(Constants.REASON, "Project is not open");
+			return result;
+		}
+		try {
+			XliffStore store = projectStores.get(project);
+			result = store.getPropagated();
+			if (!result.getBoolean("pending")) {
+				JSONObject status = store.getTranslationStatus();
+				result.put("statistics", status);
+				updateProjectStatus(project, status.getInt("percentage"));
+			}
+		} catch (IOException | SQLException e) {
+			logger.log(Level.ERROR, e);
+			result.put(Constants.REASON, e.getMessage());
+		}
+		return result;
+	}
+
+	private JSONObject saveSource(JSONObject json) {
 		JSONObject result = new JSONObject();
-		JSONObject json = new JSONObject(request);
 		String project = json.getString("project");
 		try {
 			projectStores.get(project).saveSource(json);
@@ -896,9 +811,8 @@ public class ProjectsHandler implements HttpHandler {
 		}
 	}
 
-	private JSONObject getMatches(String request) {
+	private JSONObject getMatches(JSONObject json) {
 		JSONObject result = new JSONObject();
-		JSONObject json = new JSONObject(request);
 		String project = json.getString("project");
 		try {
 			if (projectStores.containsKey(project)) {
@@ -912,7 +826,7 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject machineTranslate(String request) {
+	private JSONObject machineTranslate(JSONObject json) {
 		JSONObject result = new JSONObject();
 		try {
 			MT translator = new MT();
@@ -920,7 +834,6 @@ public class ProjectsHandler implements HttpHandler {
 				result.put(Constants.REASON, "MT engines not enabled");
 				return result;
 			}
-			JSONObject json = new JSONObject(request);
 			String project = json.getString("project");
 			if (projectStores.containsKey(project)) {
 				result.put("matches", projectStores.get(project).machineTranslate(json, translator));
@@ -936,10 +849,9 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject tmTranslate(String request) {
+	private JSONObject tmTranslate(JSONObject json) {
 		JSONObject result = new JSONObject();
 		try {
-			JSONObject json = new JSONObject(request);
 			String project = json.getString("project");
 			if (projectStores.containsKey(project)) {
 				result.put("matches", projectStores.get(project).tmTranslate(json));
@@ -952,10 +864,9 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject assembleMatches(String request) {
+	private JSONObject assembleMatches(JSONObject json) {
 		JSONObject result = new JSONObject();
 		try {
-			JSONObject json = new JSONObject(request);
 			String project = json.getString("project");
 			if (projectStores.containsKey(project)) {
 				projectStores.get(project).assembleMatches(json);
@@ -969,10 +880,9 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject assembleMatchesAll(String request) {
+	private JSONObject assembleMatchesAll(JSONObject json) {
 		JSONObject result = new JSONObject();
 		try {
-			JSONObject json = new JSONObject(request);
 			String project = json.getString("project");
 
 			if (!projectStores.containsKey(project)) {
@@ -981,33 +891,12 @@ public class ProjectsHandler implements HttpHandler {
 						prj.getTargetLang().getCode());
 				projectStores.put(project, store);
 			}
-			String id = "" + System.currentTimeMillis();
-			result.put("process", id);
-			if (processes == null) {
-				processes = new Hashtable<>();
-			}
-			JSONObject obj = new JSONObject();
-			obj.put(Constants.PROGRESS, Constants.PROCESSING);
-			processes.put(id, obj);
-			Thread thread = new Thread() {
-				@Override
-				public void run() {
-					try {
-						if (projectStores.containsKey(project)) {
-							projectStores.get(project).assembleMatchesAll(json);
-						}
-						obj.put(Constants.PROGRESS, Constants.COMPLETED);
-						processes.put(id, obj);
-					} catch (IOException | SQLException | JSONException | SAXException
-							| ParserConfigurationException e) {
-						logger.log(Level.WARNING, e.getMessage(), e);
-						obj.put(Constants.PROGRESS, Constants.ERROR);
-						obj.put(Constants.REASON, e.getMessage());
-						processes.put(id, obj);
-					}
+			String id = JobScheduler.submit(JobScheduler.TRANSLATE, project, JobScheduler.NORMAL, job -> {
+				if (projectStores.containsKey(project)) {
+					projectStores.get(project).assembleMatchesAll(json);
 				}
-			};
-			thread.start();
+			}).getId();
+			result.put("process", id);
 		} catch (IOException | SAXException | ParserConfigurationException | URISyntaxException | SQLException e) {
 			logger.log(Level.ERROR, e);
 			result.put(Constants.REASON, e.getMessage());
@@ -1015,10 +904,9 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject tmTranslateAll(String request) {
+	private JSONObject tmTranslateAll(JSONObject json) {
 		JSONObject result = new JSONObject();
 		try {
-			JSONObject json = new JSONObject(request);
 			String project = json.getString("project");
 			String memory = json.getString("memory");
 			int penalization = json.has("penalization") ? json.getInt("penalization") : 0;
@@ -1028,33 +916,11 @@ public class ProjectsHandler implements HttpHandler {
 						prj.getTargetLang().getCode());
 				projectStores.put(project, store);
 			}
-			String id = "" + System.currentTimeMillis();
-			result.put("process", id);
-			if (processes == null) {
-				processes = new Hashtable<>();
-			}
-			JSONObject obj = new JSONObject();
-			obj.put("percentage", 0);
-			obj.put(Constants.PROGRESS, Constants.PROCESSING);
-			processes.put(id, obj);
-			Thread thread = new Thread() {
-				@Override
-				public void run() {
-					try {
-						obj.put("translated",
-								projectStores.get(project).tmTranslateAll(memory, penalization, processes, id));
-						obj.put(Constants.PROGRESS, Constants.COMPLETED);
-						processes.put(id, obj);
-					} catch (JSONException | IOException | SQLException | SAXException
-							| ParserConfigurationException e) {
-						logger.log(Level.WARNING, e.getMessage(), e);
-						obj.put(Constants.PROGRESS, Constants.ERROR);
-						obj.put(Constants.REASON, e.getMessage());
-						processes.put(id, obj);
-					}
-				}
-			};
-			thread.start();
+			Job job = JobScheduler.submit(JobScheduler.TRANSLATE, project, JobScheduler.NORMAL,
+					task -> task.put("translated",
+							projectStores.get(project).tmTranslateAll(memory, penalization, task)));
+			job.setPercentage(0);
+			result.put("process", job.getId());
 		} catch (Exception e) {
 			logger.log(Level.ERROR, e.getMessage(), e);
 			result.put(Constants.REASON, e.getMessage());
@@ -1062,9 +928,8 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject getProjectMemories(String request) {
+	private JSONObject getProjectMemories(JSONObject json) {
 		JSONObject result = new JSONObject();
-		JSONObject json = new JSONObject(request);
 		try {
 			result.put("memories", MemoriesHandler.getMemories());
 			result.put("default", projects.get(json.getString("project")).getMemory());
@@ -1075,9 +940,8 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject getProjectGlossaries(String request) {
+	private JSONObject getProjectGlossaries(JSONObject json) {
 		JSONObject result = new JSONObject();
-		JSONObject json = new JSONObject(request);
 		try {
 			result.put("glossaries", GlossariesHandler.getGlossaries());
 			result.put("default", projects.get(json.getString("project")).getGlossary());
@@ -1088,10 +952,9 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject setProjectMemory(String request) {
+	private JSONObject setProjectMemory(JSONObject json) {
 		JSONObject result = new JSONObject();
 		try {
-			JSONObject json = new JSONObject(request);
 			String project = json.getString("project");
 			String memory = json.getString("memory");
 			projects.get(project).setMemory(memory);
@@ -1111,10 +974,9 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject setProjectGlossary(String request) {
+	private JSONObject setProjectGlossary(JSONObject json) {
 		JSONObject result = new JSONObject();
 		try {
-			JSONObject json = new JSONObject(request);
 			String project = json.getString("project");
 			String glossary = json.getString("glossary");
 			projects.get(project).setMemory(glossary);
@@ -1134,62 +996,41 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject importXliff(String request) {
+	private JSONObject importXliff(JSONObject json) {
 		JSONObject result = new JSONObject();
-		JSONObject json = new JSONObject(request);
-		String id = "" + System.currentTimeMillis();
-		result.put("process", id);
-		if (processes == null) {
-			processes = new Hashtable<>();
-		}
-		JSONObject obj = new JSONObject();
-		obj.put(Constants.PROGRESS, Constants.PROCESSING);
-		processes.put(id, obj);
+		String id = JobScheduler.newId();
 		try {
 			String description = json.getString("project");
 			File xliffFile = new File(json.getString("xliff"));
 			if (!xliffFile.exists()) {
 				throw new IOException("XLIFF file does not exist");
 			}
-			Thread thread = new Thread() {
-				@Override
-				public void run() {
-					try {
-						JSONObject details = XliffUtils.getProjectDetails(xliffFile);
-						Project p = new Project(id, description, Project.NEW,
-								LanguageUtils.getLanguage(details.getString("sourceLang")),
-								LanguageUtils.getLanguage(details.getString("targetLang")), json.getString("client"),
-								json.getString("subject"), json.getString("memory"), json.getString("glossary"),
-								LocalDate.now());
-						p.setFiles(details.getJSONArray("files"));
-						File projectFolder = new File(getWorkFolder(), id);
-						Files.createDirectories(projectFolder.toPath());
-						File projectXliff = new File(projectFolder, xliffFile.getName());
-						Files.copy(xliffFile.toPath(), projectXliff.toPath());
-						Skeletons.extractSkeletons(xliffFile, projectXliff);
-						p.setXliff(projectXliff.getAbsolutePath());
-						XliffStore store = new XliffStore(p.getXliff(), p.getSourceLang().getCode(),
-								p.getTargetLang().getCode());
-						JSONObject status = store.getTranslationStatus();
-						store.close();
-						p.setStatus(status.getInt("percentage"));
-						ServicesHandler.addClient(json.getString("client"));
-						ServicesHandler.addSubject(json.getString("subject"));
-						projects.put(id, p);
-						projectsList.getJSONArray("projects").put(p.toJSON());
-						saveProjectsList();
-						obj.put(Constants.PROGRESS, Constants.COMPLETED);
-						processes.put(id, obj);
-					} catch (IOException | SAXException | ParserConfigurationException | URISyntaxException
-							| SQLException e) {
-						logger.log(Level.WARNING, e.getMessage(), e);
-						obj.put(Constants.PROGRESS, Constants.ERROR);
-						obj.put(Constants.REASON, e.getMessage());
-						processes.put(id, obj);
-					}
-				}
-			};
-			thread.start();
+			JobScheduler.submit(id, JobScheduler.IMPORT, id, JobScheduler.NORMAL, job -> {
+				JSONObject details = XliffUtils.getProjectDetails(xliffFile);
+				Project p = new Project(id, description, Project.NEW,
+						LanguageUtils.getLanguage(details.getString("sourceLang")),
+						LanguageUtils.getLanguage(details.getString("targetLang")), json.getString("client"),
+						json.getString("subject"), json.getString("memory"), json.getString("glossary"),
+						LocalDate.now());
+				p.setFiles(details.getJSONArray("files"));
+				File projectFolder = new File(getWorkFolder(), id);
+				Files.createDirectories(projectFolder.toPath());
+				File projectXliff = new File(projectFolder, xliffFile.getName());
+				Files.copy(xliffFile.toPath(), projectXliff.toPath());
+				Skeletons.extractSkeletons(xliffFile, projectXliff);
+				p.setXliff(projectXliff.getAbsolutePath());
+				XliffStore store = new XliffStore(p.getXliff(), p.getSourceLang().getCode(),
+						p.getTargetLang().getCode());
+				JSONObject status = store.getTranslationStatus();
+				store.close();
+				p.setStatus(status.getInt("percentage"));
+				ServicesHandler.addClient(json.getString("client"));
+				ServicesHandler.addSubject(json.getString("subject"));
+				projects.put(id, p);
+				projectsList.getJSONArray("projects").put(p.toJSON());
+				saveProjectsList();
+			});
+			result.put("process", id);
 		} catch (IOException e) {
 			logger.log(Level.ERROR, e);
 			result.put(Constants.STATUS, Constants.ERROR);
@@ -1198,10 +1039,9 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject removeTranslations(String request) {
+	private JSONObject removeTranslations(JSONObject json) {
 		JSONObject result = new JSONObject();
 		try {
-			JSONObject json = new JSONObject(request);
 			String project = json.getString("project");
 			if (projectStores.containsKey(project)) {
 				projectStores.get(project).removeTranslations();
@@ -1216,10 +1056,9 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject removeAssembledMatches(String request) {
+	private JSONObject removeAssembledMatches(JSONObject json) {
 		JSONObject result = new JSONObject();
 		try {
-			JSONObject json = new JSONObject(request);
 			String project = json.getString("project");
 			if (projectStores.containsKey(project)) {
 				projectStores.get(project).removeMatches("am");
@@ -1231,10 +1070,9 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject removeMatches(String request) {
+	private JSONObject removeMatches(JSONObject json) {
 		JSONObject result = new JSONObject();
 		try {
-			JSONObject json = new JSONObject(request);
 			String project = json.getString("project");
 			if (projectStores.containsKey(project)) {
 				projectStores.get(project).removeMatches("tm");
@@ -1246,10 +1084,9 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject removeMT(String request) {
+	private JSONObject removeMT(JSONObject json) {
 		JSONObject result = new JSONObject();
 		try {
-			JSONObject json = new JSONObject(request);
 			String project = json.getString("project");
 			if (projectStores.containsKey(project)) {
 				projectStores.get(project).removeMatches("mt");
@@ -1261,10 +1098,9 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject unconfirmTranslations(String request) {
+	private JSONObject unconfirmTranslations(JSONObject json) {
 		JSONObject result = new JSONObject();
 		try {
-			JSONObject json = new JSONObject(request);
 			String project = json.getString("project");
 			if (projectStores.containsKey(project)) {
 				projectStores.get(project).unconfirmTranslations();
@@ -1279,10 +1115,9 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject pseudoTranslate(String request) {
+	private JSONObject pseudoTranslate(JSONObject json) {
 		JSONObject result = new JSONObject();
 		try {
-			JSONObject json = new JSONObject(request);
 			String project = json.getString("project");
 			if (projectStores.containsKey(project)) {
 				projectStores.get(project).pseudoTranslate();
@@ -1297,10 +1132,9 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject copyAllSources(String request) {
+	private JSONObject copyAllSources(JSONObject json) {
 		JSONObject result = new JSONObject();
 		try {
-			JSONObject json = new JSONObject(request);
 			String project = json.getString("project");
 			if (projectStores.containsKey(project)) {
 				projectStores.get(project).copyAllSources();
@@ -1315,41 +1149,20 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject confirmAllTranslations(String request) {
+	private JSONObject confirmAllTranslations(JSONObject json) {
 		JSONObject result = new JSONObject();
 		try {
-			String id = "" + System.currentTimeMillis();
-			result.put("process", id);
-			if (processes == null) {
-				processes = new Hashtable<>();
-			}
-			JSONObject obj = new JSONObject();
-			obj.put(Constants.PROGRESS, Constants.PROCESSING);
-			processes.put(id, obj);
-			Thread thread = new Thread() {
-				@Override
-				public void run() {
-					try {
-						JSONObject json = new JSONObject(request);
-						String project = json.getString("project");
-						String memory = json.getString("memory");
-						if (projectStores.containsKey(project)) {
-							projectStores.get(project).confirmAllTranslations(memory);
-							JSONObject status = projectStores.get(project).getTranslationStatus();
-							obj.put("statistics", status);
-							updateProjectStatus(project, status.getInt("percentage"));
-						}
-						obj.put(Constants.PROGRESS, Constants.COMPLETED);
-						processes.put(id, obj);
-					} catch (IOException | SQLException | SAXException | ParserConfigurationException e) {
-						logger.log(Level.WARNING, e.getMessage(), e);
-						obj.put(Constants.PROGRESS, Constants.ERROR);
-						obj.put(Constants.REASON, e.getMessage());
-						processes.put(id, obj);
-					}
+			String project = json.getString("project");
+			String memory = json.getString("memory");
+			String id = JobScheduler.submit(JobScheduler.TRANSLATE, project, JobScheduler.NORMAL, job -> {
+				if (projectStores.containsKey(project)) {
+					projectStores.get(project).confirmAllTranslations(memory);
+					JSONObject status = projectStores.get(project).getTranslationStatus();
+					job.put("statistics", status);
+					updateProjectStatus(project, status.getInt("percentage"));
 				}
-			};
-			thread.start();
+			}).getId();
+			result.put("process", id);
 		} catch (JSONException e) {
 			logger.log(Level.ERROR, e);
 			result.put(Constants.REASON, e.getMessage());
@@ -1357,10 +1170,9 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject acceptAll100Matches(String request) {
+	private JSONObject acceptAll100Matches(JSONObject json) {
 		JSONObject result = new JSONObject();
 		try {
-			JSONObject json = new JSONObject(request);
 			String project = json.getString("project");
 			if (projectStores.containsKey(project)) {
 				projectStores.get(project).acceptAll100Matches();
@@ -1375,10 +1187,9 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject generateStatistics(String request) {
+	private JSONObject generateStatistics(JSONObject json) {
 		JSONObject result = new JSONObject();
 		try {
-			JSONObject json = new JSONObject(request);
 			String project = json.getString("project");
 			if (!projectStores.containsKey(project)) {
 				try {
@@ -1403,10 +1214,9 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject exportHTML(String request) {
+	private JSONObject exportHTML(JSONObject json) {
 		JSONObject result = new JSONObject();
 		try {
-			JSONObject json = new JSONObject(request);
 			String project = json.getString("project");
 			Project prj = projects.get(project);
 			if (!projectStores.containsKey(project)) {
@@ -1430,10 +1240,9 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject replaceText(String request) {
+	private JSONObject replaceText(JSONObject json) {
 		JSONObject result = new JSONObject();
 		try {
-			JSONObject json = new JSONObject(request);
 			String project = json.getString("project");
 			if (projectStores.containsKey(project)) {
 				projectStores.get(project).replaceText(json);
@@ -1448,7 +1257,7 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject applyMtAll(String request) {
+	private JSONObject applyMtAll(JSONObject json) {
 		JSONObject result = new JSONObject();
 		try {
 			MT translator = new MT();
@@ -1456,52 +1265,23 @@ public class ProjectsHandler implements HttpHandler {
 				result.put(Constants.REASON, "MT engines not enabled");
 				return result;
 			}
-			String id = "" + System.currentTimeMillis();
-			result.put("process", id);
-			if (processes == null) {
-				processes = new Hashtable<>();
-			}
-			JSONObject obj = new JSONObject();
-			obj.put(Constants.PROGRESS, Constants.PROCESSING);
-			processes.put(id, obj);
-			Thread thread = new Thread() {
-				@Override
-				public void run() {
-					try {
-						JSONObject json = new JSONObject(request);
-						String project = json.getString("project");
-						if (projectStores.containsKey(project)) {
-							projectStores.get(project).applyMtAll(translator);
-						}
-						obj.put(Constants.PROGRESS, Constants.COMPLETED);
-						processes.put(id, obj);
-					} catch (InterruptedException e) {
-						logger.log(Level.WARNING, "MT interrupted", e);
-						obj.put(Constants.PROGRESS, Constants.ERROR);
-						obj.put(Constants.REASON, e.getMessage());
-						processes.put(id, obj);
-						Thread.currentThread().interrupt();
-					} catch (IOException | SQLException | JSONException | SAXException
-							| ParserConfigurationException e) {
-						logger.log(Level.WARNING, e.getMessage(), e);
-						obj.put(Constants.PROGRESS, Constants.ERROR);
-						obj.put(Constants.REASON, e.getMessage());
-						processes.put(id, obj);
-					}
+			String project = json.getString("project");
+			String id = JobScheduler.submit(JobScheduler.TRANSLATE, project, JobScheduler.LOW, job -> {
+				if (projectStores.containsKey(project)) {
+					projectStores.get(project).applyMtAll(translator, job);
 				}
-			};
-			thread.start();
-		} catch (IOException e) {
+			}).getId();
+			result.put("process", id);
+		} catch (IOException | JSONException e) {
 			logger.log(Level.ERROR, e);
 			result.put(Constants.REASON, e.getMessage());
 		}
 		return result;
 	}
 
-	private JSONObject acceptAllMT(String request) {
+	private JSONObject acceptAllMT(JSONObject json) {
 		JSONObject result = new JSONObject();
 		try {
-			JSONObject json = new JSONObject(request);
 			String project = json.getString("project");
 			if (projectStores.containsKey(project)) {
 				projectStores.get(project).acceptAllMT();
@@ -1516,10 +1296,9 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject getTerms(String request) {
+	private JSONObject getTerms(JSONObject json) {
 		JSONObject result = new JSONObject();
 		try {
-			JSONObject json = new JSONObject(request);
 			String project = json.getString("project");
 			if (projectStores.containsKey(project)) {
 				result.put("terms", projectStores.get(project).getTerms(json));
@@ -1531,9 +1310,8 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject getSegmentTerms(String request) {
+	private JSONObject getSegmentTerms(JSONObject json) {
 		JSONObject result = new JSONObject();
-		JSONObject json = new JSONObject(request);
 		try {
 			String project = json.getString("project");
 			if (projectStores.containsKey(project)) {
@@ -1546,49 +1324,29 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject getProjectTerms(String request) {
+	private JSONObject getProjectTerms(JSONObject json) {
 		JSONObject result = new JSONObject();
-		final JSONObject json = new JSONObject(request);
-		String id = "" + System.currentTimeMillis();
-		result.put("process", id);
-		if (processes == null) {
-			processes = new Hashtable<>();
-		}
-		JSONObject obj = new JSONObject();
-		obj.put(Constants.PROGRESS, Constants.PROCESSING);
-		processes.put(id, obj);
 		try {
-			Thread thread = new Thread() {
-				@Override
-				public void run() {
-					try {
-						String project = json.getString("project");
-						if (!projectStores.containsKey(project)) {
-							Project prj = projects.get(project);
-							XliffStore store = new XliffStore(prj.getXliff(), prj.getSourceLang().getCode(),
-									prj.getTargetLang().getCode());
-							projectStores.put(project, store);
-						}
-						obj.put("segments", projectStores.get(project).getProjectTerms(json.getString("glossary")));
-						obj.put(Constants.PROGRESS, Constants.COMPLETED);
-						processes.put(id, obj);
-					} catch (SQLException | JSONException | IOException | SAXException | ParserConfigurationException
-							| URISyntaxException e) {
-						logger.log(Level.ERROR, e);
-						result.put(Constants.REASON, e.getMessage());
-					}
+			String project = json.getString("project");
+			String glossary = json.getString("glossary");
+			String id = JobScheduler.submit(JobScheduler.TRANSLATE, project, JobScheduler.NORMAL, job -> {
+				if (!projectStores.containsKey(project)) {
+					Project prj = projects.get(project);
+					XliffStore store = new XliffStore(prj.getXliff(), prj.getSourceLang().getCode(),
+							prj.getTargetLang().getCode());
+					projectStores.put(project, store);
 				}
-			};
-			thread.start();
+				job.put("segments", projectStores.get(project).getProjectTerms(glossary, job));
+			}).getId();
+			result.put("process", id);
 		} catch (JSONException e) {
 			result.put(Constants.REASON, e.getMessage());
 		}
 		return result;
 	}
 
-	private JSONObject lockSegment(String request) {
+	private JSONObject lockSegment(JSONObject json) {
 		JSONObject result = new JSONObject();
-		JSONObject json = new JSONObject(request);
 		try {
 			String project = json.getString("project");
 			if (projectStores.containsKey(project)) {
@@ -1601,9 +1359,8 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject lockDuplicates(String request) {
+	private JSONObject lockDuplicates(JSONObject json) {
 		JSONObject result = new JSONObject();
-		JSONObject json = new JSONObject(request);
 		try {
 			String project = json.getString("project");
 			if (projectStores.containsKey(project)) {
@@ -1616,9 +1373,8 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject unlockAll(String request) {
+	private JSONObject unlockAll(JSONObject json) {
 		JSONObject result = new JSONObject();
-		JSONObject json = new JSONObject(request);
 		try {
 			String project = json.getString("project");
 			if (projectStores.containsKey(project)) {
@@ -1631,9 +1387,8 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject analyzeSpaces(String request) {
+	private JSONObject analyzeSpaces(JSONObject json) {
 		JSONObject result = new JSONObject();
-		JSONObject json = new JSONObject(request);
 		try {
 			String project = json.getString("project");
 			if (projectStores.containsKey(project)) {
@@ -1646,9 +1401,8 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject analyzeTags(String request) {
+	private JSONObject analyzeTags(JSONObject json) {
 		JSONObject result = new JSONObject();
-		JSONObject json = new JSONObject(request);
 		try {
 			String project = json.getString("project");
 			if (projectStores.containsKey(project)) {
@@ -1661,9 +1415,8 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject splitSegment(String request) {
+	private JSONObject splitSegment(JSONObject json) {
 		JSONObject result = new JSONObject();
-		JSONObject json = new JSONObject(request);
 		try {
 			String project = json.getString("project");
 			if (projectStores.containsKey(project)) {
@@ -1676,9 +1429,8 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject mergeSegment(String request) {
+	private JSONObject mergeSegment(JSONObject json) {
 		JSONObject result = new JSONObject();
-		JSONObject json = new JSONObject(request);
 		try {
 			String project = json.getString("project");
 			if (projectStores.containsKey(project)) {
@@ -1691,9 +1443,8 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject getNotes(String request) {
+	private JSONObject getNotes(JSONObject json) {
 		JSONObject result = new JSONObject();
-		JSONObject json = new JSONObject(request);
 		try {
 			String project = json.getString("project");
 			if (projectStores.containsKey(project)) {
@@ -1707,9 +1458,8 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject addNote(String request) {
+	private JSONObject addNote(JSONObject json) {
 		JSONObject result = new JSONObject();
-		JSONObject json = new JSONObject(request);
 		try {
 			String project = json.getString("project");
 			if (projectStores.containsKey(project)) {
@@ -1723,9 +1473,8 @@ public class ProjectsHandler implements HttpHandler {
 		return result;
 	}
 
-	private JSONObject removeNote(String request) {
+	private JSONObject removeNote(JSONObject json) {
 		JSONObject result = new JSONObject();
-		JSONObject json = new JSONObject(request);
 		try {
 			String project = json.getString("project");
 			if (projectStores.containsKey(project)) {
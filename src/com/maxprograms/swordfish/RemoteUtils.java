@@ -31,9 +31,8 @@ public class RemoteUtils {
         // empty for security
     }
 
-    public static JSONObject remoteDatabases(String request) {
+    public static JSONObject remoteDatabases(JSONObject json) {
         JSONObject result = new JSONObject();
-        JSONObject json = new JSONObject(request);
         try {
             String ticket = getTicket(json.getString("server"), json.getString("user"), json.getString("password"));
             result.put("memories", getRemoteMemories(json.getString("server"), ticket));
@@ -13,13 +13,10 @@
 package com.maxprograms.swordfish;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
 import java.net.URI;
@@ -59,6 +56,7 @@ import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 import org.xml.sax.SAXException;
 
@@ -73,30 +71,23 @@ public class ServicesHandler implements HttpHandler {
     @Override
     public void handle(HttpExchange exchange) throws IOException {
         try {
-            String request;
             URI uri = exchange.getRequestURI();
-            try (InputStream is = exchange.getRequestBody()) {
-                request = TmsServer.readRequestBody(is);
-            }
-            JSONObject response = processRequest(uri.toString(), request);
-            byte[] bytes = response.toString().getBytes(StandardCharsets.UTF_8);
-            exchange.sendResponseHeaders(200, bytes.length);
-            exchange.getResponseHeaders().add("content-type", "application/json; charset=utf-8");
-            try (ByteArrayInputStream stream = new ByteArrayInputStream(bytes)) {
-                try (OutputStream os = exchange.getResponseBody()) {
-                    byte[] array = new byte[2048];
-                    int read;
-                    while ((read = stream.read(array)) != -1) {
-                        os.write(array, 0, read);
-                    }
-                }
+            JSONObject response;
+            try {
+                response = processRequest(uri.toString(), TmsServer.readRequest(exchange));
+            } catch (JSONException e) {
+                logger.log(Level.ERROR, e.getMessage(), e);
+                response = new JSONObject();
+                response.put(Constants.STATUS, Constants.ERROR);
+                response.put(Constants.REASON, e.getMessage());
             }
+            TmsServer.sendResponse(exchange, response);
         } catch (IOException e) {
             logger.log(Level.ERROR, "Error processing service request" + exchange.getRequestURI().toString(), e);
         }
     }
 
-    private JSONObject processRequest(String url, String request) {
+    private JSONObject processRequest(String url, JSONObject json) {
         JSONObject result = null;
         try {
             if ("/services/getLanguages".equals(url)) {
@@ -106,7 +97,7 @@ public class ServicesHandler implements HttpHandler {
             } else if ("/services/getCharsets".equals(url)) {
                 result = getCharsets();
             } else if ("/services/getFileType".equals(url)) {
-                result = getFileType(request);
+                result = getFileType(json);
             } else if ("/services/getClients".equals(url)) {
                 result = getClients();
             } else if ("/services/getSubjects".equals(url)) {
@@ -116,33 +107,33 @@ public class ServicesHandler implements HttpHandler {
             } else if ("/services/getMTLanguages".equals(url)) {
                 result = getMTLanguages();
             } else if ("/services/getSpellingLanguages".equals(url)) {
-                result = getSpellingLanguages(request);
+                result = getSpellingLanguages(json);
             } else if ("/services/remoteDatabases".equals(url)) {
-                result = RemoteUtils.remoteDatabases(request);
+                result = RemoteUtils.remoteDatabases(json);
             } else if ("/services/addDatabases".equals(url)) {
-                result = addDatabases(request);
+                result = addDatabases(json);
             } else if ("/services/xmlFilters".equals(url)) {
-                result = getXmlFilters(request);
+                result = getXmlFilters(json);
             } else if ("/services/importFilter".equals(url)) {
-                result = importXmlFilter(request);
+                result = importXmlFilter(json);
             } else if ("/services/removeFilters".equals(url)) {
-                result = removeFilters(request);
+                result = removeFilters(json);
             } else if ("/services/exportFilters".equals(url)) {
-                result = exportFilters(request);
+                result = exportFilters(json);
             } else if ("/services/addFilter".equals(url)) {
-                result = addFilter(request);
+                result = addFilter(json);
             } else if ("/services/filterData".equals(url)) {
-                result = getFilterData(request);
+                result = getFilterData(json);
             } else if ("/services/saveElement".equals(url)) {
-                result = saveElement(request);
+                result = saveElement(json);
             } else if ("/services/removeElements".equals(url)) {
-                result = removeElements(request);
+                result = removeElements(json);
             } else if ("/services/systemInfo".equals(url)) {
                 result = getSystemInformation();
             } else {
                 result = new JSONObject();
                 result.put("url", url);
-                result.put("request", request);
+                result.put("request", json);
                 result.put(Constants.REASON, "Unknown request");
             }
             if (!result.has(Constants.REASON)) {
@@ -191,9 +182,8 @@ public class ServicesHandler implements HttpHandler {
         return result;
     }
 
-    private JSONObject addDatabases(String request) throws ParseException, IOException {
+    private JSONObject addDatabases(JSONObject json) throws ParseException, IOException {
         JSONObject result = new JSONObject();
-        JSONObject json = new JSONObject(request);
         String server = json.getString("server");
         String user = json.getString("user");
         String password = json.getString("password");
@@ -215,9 +205,8 @@ public class ServicesHandler implements HttpHandler {
         return result;
     }
 
-    private JSONObject getXmlFilters(String request) {
+    private JSONObject getXmlFilters(JSONObject json) {
         JSONObject result = new JSONObject();
-        JSONObject json = new JSONObject(request);
         File appFolder = new File(json.getString("path"));
         File xmlFiltersFolder = new File(appFolder, "xmlfilter");
         JSONArray array = new JSONArray();
@@ -243,9 +232,8 @@ public class ServicesHandler implements HttpHandler {
         return result;
     }
 
-    private JSONObject importXmlFilter(String request) {
+    private JSONObject importXmlFilter(JSONObject json) {
         JSONObject result = new JSONObject();
-        JSONObject json = new JSONObject(request);
         File appFolder = new File(json.getString("path"));
         File xmlFiltersFolder = new File(appFolder, "xmlfilter");
         File file = new File(json.getString("file"));
@@ -280,9 +268,8 @@ public class ServicesHandler implements HttpHandler {
         return json.getString("catalog");
     }
 
-    private JSONObject removeFilters(String request) throws IOException {
+    private JSONObject removeFilters(JSONObject json) throws IOException {
         JSONObject result = new JSONObject();
-        JSONObject json = new JSONObject(request);
         File appFolder = new File(json.getString("path"));
         File xmlFiltersFolder = new File(appFolder, "xmlfilter");
         JSONArray files = json.getJSONArray("files");
@@ -293,9 +280,8 @@ public class ServicesHandler implements HttpHandler {
         return result;
     }
 
-    private JSONObject exportFilters(String request) throws IOException {
+    private JSONObject exportFilters(JSONObject json) throws IOException {
         JSONObject result = new JSONObject();
-        JSONObject json = new JSONObject(request);
         File appFolder = new File(json.getString("path"));
         File xmlFiltersFolder = new File(appFolder, "xmlfilter");
         File targetFolder = new File(json.getString("folder"));
@@ -311,9 +297,8 @@ public class ServicesHandler implements HttpHandler {
         return result;
     }
 
-    private JSONObject addFilter(String request) throws IOException {
+    private JSONObject addFilter(JSONObject json) throws IOException {
         JSONObject result = new JSONObject();
-        JSONObject json = new JSONObject(request);
         File appFolder = new File(json.getString("path"));
         File xmlFiltersFolder = new File(appFolder, "xmlfilter");
         File configFile = new File(xmlFiltersFolder, "config_" + json.getString("root") + ".xml");
@@ -329,10 +314,9 @@ public class ServicesHandler implements HttpHandler {
         return result;
     }
 
-    private JSONObject getFilterData(String request)
+    private JSONObject getFilterData(JSONObject json)
             throws SAXException, IOException, ParserConfigurationException, URISyntaxException {
         JSONObject result = new JSONObject();
-        JSONObject json = new JSONObject(request);
         File appFolder = new File(json.getString("path"));
         File xmlFiltersFolder = new File(appFolder, "xmlfilter");
         File configFile = new File(xmlFiltersFolder, json.getString("file"));
@@ -343,10 +327,9 @@ public class ServicesHandler implements HttpHandler {
         return result;
     }
 
-    private JSONObject saveElement(String request)
+    private JSONObject saveElement(JSONObject json)
             throws SAXException, IOException, ParserConfigurationException, URISyntaxException {
         JSONObject result = new JSONObject();
-        JSONObject json = new JSONObject(request);
         File appFolder = new File(json.getString("path"));
         File xmlFiltersFolder = new File(appFolder, "xmlfilter");
         File configFile = new File(xmlFiltersFolder, json.getString("filter"));
@@ -416,10 +399,9 @@ public class ServicesHandler implements HttpHandler {
         return result;
     }
 
-    private JSONObject removeElements(String request)
+    private JSONObject removeElements(JSONObject json)
             throws SAXException, IOException, ParserConfigurationException, URISyntaxException {
         JSONObject result = new JSONObject();
-        JSONObject json = new JSONObject(request);
         Set<String> names = new TreeSet<>();
         JSONArray array = json.getJSONArray("elements");
         for (int i = 0; i < array.length(); i++) {
@@ -459,9 +441,8 @@ public class ServicesHandler implements HttpHandler {
         return result;
     }
 
-    private JSONObject getFileType(String request) {
+    private JSONObject getFileType(JSONObject json) {
         JSONObject result = new JSONObject();
-        JSONObject json = new JSONObject(request);
         JSONArray files = json.getJSONArray("files");
         JSONArray detailsArray = new JSONArray();
         for (int i = 0; i < files.length(); i++) {
@@ -678,11 +659,10 @@ public class ServicesHandler implements HttpHandler {
         return result;
     }
 
-    private JSONObject getSpellingLanguages(String request) {
+    private JSONObject getSpellingLanguages(JSONObject json) {
         JSONObject result = new JSONObject();
         try {
             JSONArray array = new JSONArray();
-            JSONObject json = new JSONObject(request);
             JSONArray languages = json.getJSONArray("languages");
             for (int i = 0; i < languages.length(); i++) {
                 String code = languages.getString(i);
@@ -12,42 +12,56 @@
 
 package com.maxprograms.swordfish;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
 import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.sql.SQLException;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
 
+import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 
+import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONTokener;
 
 public class TmsServer implements HttpHandler {
 
 	private static Logger logger = System.getLogger(TmsServer.class.getName());
+	private static final String NDJSON = "application/x-ndjson";
+	private static final int MAX_REQUEST_BUFFER = 1024 * 1024;
+	private static ThreadLocal<byte[]> requestBuffers = ThreadLocal.withInitial(() -> new byte[8192]);
 	private HttpServer server;
+	private Dispatcher dispatcher;
 	private static boolean debug;
 	private static File workDir;
 
-	public TmsServer(Integer port) throws IOException {
+	public TmsServer(Integer port, String executorMode) throws IOException {
 		server = HttpServer.create(new InetSocketAddress(port), 0);
+		dispatcher = new Dispatcher(executorMode);
 	}
 
 	public static void main(String[] args) {
 		String port = "8070";
+		String executorMode = Dispatcher.SPLIT;
 		for (int i = 0; i < args.length; i++) {
 			String arg = args[i];
 			if (arg.equals("-version")) {
@@ -57,12 +71,15 @@ public class TmsServer implements HttpHandler {
 			if (arg.equals("-port") && (i + 1) < args.length) {
 				port = args[i + 1];
 			}
+			if (arg.equals("-executor") && (i + 1) < args.length) {
+				executorMode = args[i + 1];
+			}
 			if (arg.equals("-debug")) {
 				debug = true;
 			}
 		}
 		try {
-			TmsServer instance = new TmsServer(Integer.valueOf(port));
+			TmsServer instance = new TmsServer(Integer.valueOf(port), executorMode);
 			instance.run();
 		} catch (Exception e) {
 			logger.log(Level.ERROR, "Server error", e);
@@ -70,15 +87,15 @@ public class TmsServer implements HttpHandler {
 	}
 
 	private void run() {
-		server.createContext("/projects", new ProjectsHandler());
-		server.createContext("/memories", new MemoriesHandler());
-		server.createContext("/glossaries", new GlossariesHandler());
-		server.createContext("/services", new ServicesHandler());
+		server.createContext("/projects", dispatcher.wrap(new ProjectsHandler()));
+		server.createContext("/memories", dispatcher.wrap(new MemoriesHandler()));
+		server.createContext("/glossaries", dispatcher.wrap(new GlossariesHandler()));
+		server.createContext("/services", dispatcher.wrap(new ServicesHandler()));
 		server.createContext("/", this);
-		server.setExecutor(new ThreadPoolExecutor(4, 8, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(100)));
+		server.setExecutor(dispatcher.getExecutor());
 		server.start();
 		if (debug) {
-			logger.log(Level.INFO, "TMS server started");
+			logger.log(Level.INFO, "TMS server started, executor mode: " + dispatcher.getMode());
 		}
 	}
 
@@ -86,18 +103,14 @@ public class TmsServer implements HttpHandler {
 	public void handle(HttpExchange t) throws IOException {
 		JSONObject obj = new JSONObject();
 		try {
-			String request = "";
-			try (InputStream is = t.getRequestBody()) {
-				request = readRequestBody(is);
-			}
-			if (request.isBlank()) {
+			JSONObject json = readRequest(t);
+			if (json.isEmpty()) {
 				throw new IOException("Empty request");
 			}
 			if (debug) {
-				logger.log(Level.INFO, request);
+				logger.log(Level.INFO, json.toString());
 			}
 			String response = "";
-			JSONObject json = new JSONObject(request);
 			String command = json.getString("command");
 			switch (command) {
 				case "version":
@@ -143,20 +156,105 @@ public class TmsServer implements HttpHandler {
 	}
 
 	private void closeAll() throws IOException, SQLException {
+		JobScheduler.cancelAll();
 		MemoriesHandler.closeAll();
 		ProjectsHandler.closeAll();
 		GlossariesHandler.closeAll();
 	}
 
-	protected static String readRequestBody(InputStream is) throws IOException {
-		StringBuilder request = new StringBuilder();
-		try (BufferedReader rd = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
-			String line;
-			while ((line = rd.readLine()) != null) {
-				request.append(line);
+	/**
+	 * Parses the JSON body of a request. A body of known length is read in one
+	 * pass into a buffer kept by the calling thread; gzip bodies and bodies sent
+	 * without length are parsed as they arrive. An empty body gives an empty
+	 * object.
+	 */
+	protected static JSONObject readRequest(HttpExchange exchange) throws IOException {
+		Headers headers = exchange.getRequestHeaders();
+		String length = headers.getFirst("Content-Length");
+		boolean gzip = "gzip".equalsIgnoreCase(headers.getFirst("Content-Encoding"));
+		try (InputStream is = exchange.getRequestBody()) {
+			if (gzip || length == null) {
+				InputStream stream = new BufferedInputStream(gzip ? new GZIPInputStream(is) : is);
+				return parseRequest(new InputStreamReader(stream, StandardCharsets.UTF_8));
+			}
+			int size;
+			try {
+				size = Integer.parseInt(length.trim());
+			} catch (NumberFormatException e) {
+				throw new IOException("Invalid Content-Length: " + length);
+			}
+			byte[] buffer = requestBuffer(size);
+			int read = is.readNBytes(buffer, 0, size);
+			return parseRequest(
+					new InputStreamReader(new ByteArrayInputStream(buffer, 0, read), StandardCharsets.UTF_8));
+		}
+	}
+
+	private static byte[] requestBuffer(int size) {
+		if (size > MAX_REQUEST_BUFFER) {
+			return new byte[size];
+		}
+		byte[] buffer = requestBuffers.get();
+		if (buffer.length < size) {
+			buffer = new byte[Math.max(size, buffer.length * 2)];
+			requestBuffers.set(buffer);
+		}
+		return buffer;
+	}
+
+	private static JSONObject parseRequest(Reader reader) {
+		JSONTokener tokener = new JSONTokener(reader);
+		if (tokener.nextClean() == 0) {
+			return new JSONObject();
+		}
+		tokener.back();
+		return new JSONObject(tokener);
+	}
+
+	protected static void sendResponse(HttpExchange exchange, JSONObject response) throws IOException {
+		sendResponse(exchange, response, null);
+	}
+
+	/**
+	 * Writes the response with chunked transfer, serializing straight into the
+	 * response body. Clients that accept {@value #NDJSON} get the members of the
+	 * response other than {@code list} on the first line and one element of
+	 * {@code list} per line after it.
+	 */
+	protected static void sendResponse(HttpExchange exchange, JSONObject response, String list) throws IOException {
+		Object items = list != null ? response.opt(list) : null;
+		String accept = exchange.getRequestHeaders().getFirst("Accept");
+		boolean ndjson = items instanceof JSONArray && accept != null && accept.contains(NDJSON);
+		exchange.getResponseHeaders().add("content-type", (ndjson ? NDJSON : "application/json") + "; charset=utf-8");
+		exchange.sendResponseHeaders(200, 0);
+		try (Writer writer = new BufferedWriter(
+				new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+			if (!ndjson) {
+				response.write(writer);
+				return;
 			}
+			response.remove(list);
+			response.write(writer);
+			JSONArray array = (JSONArray) items;
+			for (int i = 0; i < array.length(); i++) {
+				writer.write('\n');
+				Object item = array.get(i);
+				if (item instanceof JSONObject) {
+					((JSONObject) item).write(writer);
+				} else if (item instanceof JSONArray) {
+					((JSONArray) item).write(writer);
+				} else {
+					writer.write(JSONObject.valueToString(item));
+				}
+			}
+			writer.write('\n');
+		} catch (JSONException e) {
+			// org.json wraps the errors of the underlying writer
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw e;
 		}
-		return request.toString();
 	}
 
 	public static File getWorkFolder() throws IOException {
@@ -176,6 +274,11 @@ public class TmsServer implements HttpHandler {
 		return workDir;
 	}
 
+	// used by tools and benchmarks that must not write in the user's Swordfish folder
+	public static void setWorkFolder(File folder) {
+		workDir = folder;
+	}
+
 	public static void deleteFolder(String folder) throws IOException {
 		File f = new File(folder);
 		if (f.isDirectory()) {
@@ -54,8 +54,6 @@ public class MatchAssembler {
     private static final String START = "<span class='difference'>";
     private static final String END = "</span>";
 
-    private static SAXBuilder builder;
-
     private MatchAssembler() {
         // private for security
     }
@@ -237,9 +235,8 @@ public class MatchAssembler {
     }
 
     private static Element buildElement(String string) throws SAXException, IOException, ParserConfigurationException {
-        if (builder == null) {
-            builder = new SAXBuilder();
-        }
+        // a new builder on each call, matches are assembled from several threads
+        SAXBuilder builder = new SAXBuilder();
         Document doc = builder.build(new ByteArrayInputStream(string.getBytes(StandardCharsets.UTF_8)));
         return doc.getRootElement();
     }
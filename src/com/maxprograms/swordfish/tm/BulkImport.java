@@ -0,0 +1,242 @@
+/*******************************************************************************
+ * Copyright (c) 2007-2022 Maxprograms.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/epl-v10.html
+ *
+ * Contributors:
+ *     Maxprograms - initial API and implementation
+ *******************************************************************************/
+
+package com.maxprograms.swordfish.tm;
+
+import java.io.IOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.Vector;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.maxprograms.languages.LanguageUtils;
+import com.maxprograms.swordfish.tmx.ITuHandler;
+import com.maxprograms.xml.Element;
+
+/**
+ * Bulk load of a TMX file. The parser thread hands TUs to a pool that builds
+ * the TUVs and their n-grams; a single writer thread stores them in order using
+ * JDBC batches. N-gram postings are collected in memory and merged into the
+ * fuzzy index once, when the import ends. The import is a single transaction,
+ * after a failure nothing is kept.
+ */
+class BulkImport implements ITuHandler {
+
+	private static final Logger logger = System.getLogger(BulkImport.class.getName());
+
+	private static final int BATCH = 500;
+
+	private static final Future<Prepared> END = CompletableFuture.completedFuture(null);
+
+	private InternalDatabase db;
+	private Connection conn;
+	private TuDatabase tuDb;
+	private FuzzyIndex fuzzyIndex;
+	private ExecutorService pool;
+	private BlockingQueue<Future<Prepared>> queue;
+	private Thread writer;
+	private volatile Exception failure;
+
+	public BulkImport(InternalDatabase db, Connection conn, TuDatabase tuDb, FuzzyIndex fuzzyIndex, int threads) {
+		this.db = db;
+		this.conn = conn;
+		this.tuDb = tuDb;
+		this.fuzzyIndex = fuzzyIndex;
+		pool = Executors.newFixedThreadPool(threads);
+		queue = new ArrayBlockingQueue<>(threads * 256);
+		writer = new Thread(this::write, "TMX import writer");
+		writer.start();
+	}
+
+	@Override
+	public void handleTu(Element tu) throws IOException, SQLException {
+		checkFailure();
+		String tuid = tu.getAttributeValue("tuid");
+		if (tuid.isEmpty()) {
+			// ids are assigned in document order
+			tu.setAttribute("tuid", db.nextId());
+		}
+		try {
+			queue.put(pool.submit(() -> prepare(tu)));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+	}
+
+	// waits for pending TUs and merges the collected postings into the index
+	public void finish() throws IOException, SQLException {
+		await();
+		if (failure != null) {
+			rollback();
+			checkFailure();
+		}
+		fuzzyIndex.finishBulk();
+	}
+
+	// discards the import when the TMX file could not be parsed
+	public void abort() throws IOException, SQLException {
+		queue.clear();
+		await();
+		rollback();
+	}
+
+	private void await() {
+		try {
+			queue.put(END);
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			failure = e;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private void rollback() throws IOException, SQLException {
+		conn.rollback();
+		tuDb.rollback();
+		fuzzyIndex.abortBulk();
+	}
+
+	private void checkFailure() throws IOException, SQLException {
+		if (failure instanceof SQLException) {
+			throw (SQLException) failure;
+		}
+		if (failure != null) {
+			throw new IOException(failure);
+		}
+	}
+
+	private Prepared prepare(Element tu) throws IOException {
+		db.prepareTu(tu);
+		Prepared result = new Prepared(tu);
+		Set<String> tuLangs = new TreeSet<>();
+		List<Element> tuvs = tu.getChildren("tuv");
+		Iterator<Element> it = tuvs.iterator();
+		while (it.hasNext()) {
+			Element tuv = it.next();
+			String lang = LanguageUtils.normalizeCode(tuv.getAttributeValue("xml:lang"));
+			if (lang != null && !tuLangs.contains(lang)) {
+				Element seg = tuv.getChild("seg");
+				String puretext = TMUtils.extractText(seg);
+				if (puretext.length() < 1) {
+					result.empty.add(lang);
+					continue;
+				}
+				tuLangs.add(lang);
+				result.tuvs.add(new Tuv(result.tuid, lang, seg.toString(), puretext));
+				result.ngrams.add(NGrams.getNGrams(puretext));
+			}
+		}
+		return result;
+	}
+
+	private void write() {
+		// MERGE replaces TUVs already present, like exists() and delete() in storeTu()
+		String merge = "MERGE INTO tuv (tuid, lang, seg, puretext, textlength) KEY (tuid, lang) VALUES (?,?,?,?,?)";
+		try (PreparedStatement store = conn.prepareStatement(merge);
+				PreparedStatement delete = conn.prepareStatement("DELETE FROM tuv WHERE tuid=? AND lang=?")) {
+			int batched = 0;
+			while (true) {
+				Future<Prepared> future = queue.take();
+				if (future == END) {
+					break;
+				}
+				Prepared tu;
+				try {
+					tu = future.get();
+				} catch (ExecutionException e) {
+					logger.log(Level.WARNING, "Error storing TU", e.getCause());
+					continue;
+				}
+				if (!tu.empty.isEmpty()) {
+					store.executeBatch();
+					batched = 0;
+					for (int i = 0; i < tu.empty.size(); i++) {
+						delete.setString(1, tu.tuid);
+						delete.setString(2, tu.empty.get(i));
+						delete.execute();
+					}
+				}
+				for (int i = 0; i < tu.tuvs.size(); i++) {
+					Tuv tuv = tu.tuvs.get(i);
+					store.setString(1, tu.tuid);
+					store.setString(2, tuv.getLang());
+					store.setString(3, tuv.getSegment());
+					store.setString(4, tuv.getPureText());
+					store.setInt(5, tuv.getPureText().length());
+					store.addBatch();
+					batched++;
+					fuzzyIndex.addBulk(tuv.getLang(), tu.tuid, tu.ngrams.get(i));
+				}
+				if (!tu.tuvs.isEmpty()) {
+					tuDb.store(tu.tuid, tu.element);
+				}
+				if (batched >= BATCH) {
+					store.executeBatch();
+					batched = 0;
+				}
+			}
+			store.executeBatch();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			failure = e;
+		} catch (SQLException | IOException e) {
+			failure = e;
+			// let the parser continue so it is not blocked on a full queue
+			queue.clear();
+			drain();
+		}
+	}
+
+	// discards remaining work after a failure, until the end marker arrives
+	private void drain() {
+		try {
+			while (queue.take() != END) {
+				// the import failed, handleTu() reports it
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static class Prepared {
+
+		Element element;
+		String tuid;
+		List<Tuv> tuvs;
+		List<int[]> ngrams;
+		List<String> empty;
+
+		Prepared(Element element) {
+			this.element = element;
+			tuid = element.getAttributeValue("tuid");
+			tuvs = new Vector<>();
+			ngrams = new Vector<>();
+			empty = new Vector<>();
+		}
+	}
+}
@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2007-2022 Maxprograms.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/epl-v10.html
+ *
+ * Contributors:
+ *     Maxprograms - initial API and implementation
+ *******************************************************************************/
+
+
+package com.maxprograms.swordfish.tm;
+
+import java.io.IOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.sql.SQLException;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared open engines. Callers take a lease with {@link #acquire} and give it
+ * back with {@link #release}; engines without leases stay open for reuse until
+ * they are idle for too long or room is needed for another engine.
+ */
+public class EnginePool {
+
+	private static final Logger logger = System.getLogger(EnginePool.class.getName());
+
+	public static final int MAX_OPEN = 10;
+	public static final long IDLE_TIMEOUT = 10 * 60 * 1000L;
+
+	private String name;
+	private int maxOpen;
+	private long idleTimeout;
+	private Map<String, Entry> entries;
+	private ScheduledExecutorService evictor;
+
+	public EnginePool(String name) {
+		this(name, MAX_OPEN, IDLE_TIMEOUT);
+	}
+
+	public EnginePool(String name, int maxOpen, long idleTimeout) {
+		this.name = name;
+		this.maxOpen = maxOpen;
+		this.idleTimeout = idleTimeout;
+		entries = new Hashtable<>();
+	}
+
+	public synchronized ITmEngine acquire(String id, IEngineFactory factory) throws IOException, SQLException {
+		Entry entry = getEntry(id, factory);
+		entry.leases++;
+		return entry.engine;
+	}
+
+	public synchronized void release(String id) {
+		Entry entry = entries.get(id);
+		if (entry != null && entry.leases > 0) {
+			entry.leases--;
+			entry.lastUsed = System.currentTimeMillis();
+		}
+	}
+
+	// returns the open engine without taking a lease, opening it if necessary
+	public synchronized ITmEngine get(String id, IEngineFactory factory) throws IOException, SQLException {
+		return getEntry(id, factory).engine;
+	}
+
+	public synchronized int getLeases(String id) {
+		Entry entry = entries.get(id);
+		return entry != null ? entry.leases : 0;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	// closes the engine even if it has leases, used before deleting its data
+	public synchronized void close(String id) throws IOException, SQLException {
+		Entry entry = entries.remove(id);
+		if (entry != null) {
+			entry.engine.close();
+		}
+	}
+
+	public synchronized void closeAll() throws IOException, SQLException {
+		if (evictor != null) {
+			evictor.shutdownNow();
+			evictor = null;
+		}
+		Iterator<Entry> it = entries.values().iterator();
+		while (it.hasNext()) {
+			it.next().engine.close();
+		}
+		entries.clear();
+	}
+
+	public synchronized void evictIdle() {
+		long now = System.currentTimeMillis();
+		Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<String, Entry> e = it.next();
+			Entry entry = e.getValue();
+			if (entry.leases == 0 && now - entry.lastUsed >= idleTimeout) {
+				it.remove();
+				closeQuietly(e.getKey(), entry);
+			}
+		}
+	}
+
+	private Entry getEntry(String id, IEngineFactory factory) throws IOException, SQLException {
+		Entry entry = entries.get(id);
+		if (entry == null) {
+			if (entries.size() >= maxOpen) {
+				evictOldest();
+			}
+			entry = new Entry(factory.open(id));
+			entries.put(id, entry);
+			startEvictor();
+		}
+		entry.lastUsed = System.currentTimeMillis();
+		return entry;
+	}
+
+	// makes room closing the engine without leases that was used less recently
+	private void evictOldest() {
+		String oldest = null;
+		long lastUsed = Long.MAX_VALUE;
+		Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<String, Entry> e = it.next();
+			if (e.getValue().leases == 0 && e.getValue().lastUsed < lastUsed) {
+				oldest = e.getKey();
+				lastUsed = e.getValue().lastUsed;
+			}
+		}
+		if (oldest == null) {
+			logger.log(Level.WARNING, "All " + entries.size() + " " + name + " engines are in use");
+			return;
+		}
+		closeQuietly(oldest, entries.remove(oldest));
+	}
+
+	private void startEvictor() {
+		if (evictor == null) {
+			evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "Idle " + name + " engines");
+				thread.setDaemon(true);
+				return thread;
+			});
+			long period = Math.max(1000L, idleTimeout / 4);
+			evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void closeQuietly(String id, Entry entry) {
+		try {
+			entry.engine.close();
+		} catch (IOException | SQLException e) {
+			logger.log(Level.WARNING, "Error closing engine " + id, e);
+		}
+	}
+
+	private static class Entry {
+
+		ITmEngine engine;
+		int leases;
+		long lastUsed;
+
+		Entry(ITmEngine engine) {
+			this.engine = engine;
+		}
+	}
+}
@@ -0,0 +1,296 @@
+/*******************************************************************************
+ * Copyright (c) 2007-2022 Maxprograms.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/epl-v10.html
+ *
+ * Contributors:
+ *     Maxprograms - initial API and implementation
+ *******************************************************************************/
+
+package com.maxprograms.swordfish.tm;
+
+import java.io.IOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import com.maxprograms.xml.Element;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.xml.sax.SAXException;
+
+/**
+ * Read-only view of several memories. Searches run on all engines in
+ * parallel, each one with its own timeout; engines that fail or time out are
+ * skipped. Engines are not closed by this class, their owner closes them.
+ */
+public class FederatedEngine implements ITmEngine {
+
+	private static final Logger logger = System.getLogger(FederatedEngine.class.getName());
+
+	public static final long DEFAULT_TIMEOUT = 15000;
+
+	private String name;
+	private List<ITmEngine> engines;
+	private List<Integer> penalties;
+	private List<Long> timeouts;
+	private ExecutorService pool;
+
+	public FederatedEngine(String name) {
+		this.name = name;
+		engines = new Vector<>();
+		penalties = new Vector<>();
+		timeouts = new Vector<>();
+	}
+
+	/**
+	 * @param penalty subtracted from the similarity of the matches found in
+	 *                <code>engine</code>
+	 * @param timeout milliseconds to wait for <code>engine</code> in each search
+	 */
+	public void addEngine(ITmEngine engine, int penalty, long timeout) {
+		engines.add(engine);
+		penalties.add(penalty);
+		timeouts.add(timeout);
+	}
+
+	public List<ITmEngine> getEngines() {
+		return engines;
+	}
+
+	@Override
+	public String getType() {
+		return FederatedEngine.class.getName();
+	}
+
+	@Override
+	public synchronized void close() {
+		if (pool != null) {
+			// an interrupt would close the H2 and MapDB files of shared engines, so late
+			// lookups are left to finish before the caller releases their engines
+			pool.shutdown();
+			try {
+				if (!pool.awaitTermination(DEFAULT_TIMEOUT, TimeUnit.MILLISECONDS)) {
+					logger.log(Level.WARNING, "Memory lookups still running in " + name);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			pool = null;
+		}
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public List<Match> searchTranslation(String searchStr, String srcLang, String tgtLang, int similarity,
+			boolean caseSensitive) throws IOException, SAXException, ParserConfigurationException, SQLException {
+		return searchTranslation(searchStr, srcLang, tgtLang, similarity, caseSensitive, 0);
+	}
+
+	@Override
+	public List<Match> searchTranslation(String searchStr, String srcLang, String tgtLang, int similarity,
+			boolean caseSensitive, int maxResults)
+			throws IOException, SAXException, ParserConfigurationException, SQLException {
+		List<List<Match>> results = fanOut(engine -> penalize(engine,
+				engine.searchTranslation(searchStr, srcLang, tgtLang, similarity, caseSensitive, maxResults)));
+		// keep the best scored copy of each source/target pair
+		Map<String, Match> unique = new Hashtable<>();
+		for (int i = 0; i < results.size(); i++) {
+			List<Match> list = results.get(i);
+			for (int j = 0; j < list.size(); j++) {
+				Match match = list.get(j);
+				if (match.getSimilarity() < similarity) {
+					continue;
+				}
+				String key = match.getSource().toString() + match.getTarget().toString();
+				Match old = unique.get(key);
+				if (old == null || match.compareTo(old) < 0) {
+					unique.put(key, match);
+				}
+			}
+		}
+		List<Match> result = new Vector<>(unique.values());
+		Collections.sort(result);
+		if (maxResults > 0 && result.size() > maxResults) {
+			result = new Vector<>(result.subList(0, maxResults));
+		}
+		return result;
+	}
+
+	private List<Match> penalize(ITmEngine engine, List<Match> matches) {
+		int penalty = penalties.get(engines.indexOf(engine));
+		if (penalty > 0) {
+			for (int i = 0; i < matches.size(); i++) {
+				Match match = matches.get(i);
+				match.setSimilarity(Math.max(0, match.getSimilarity() - penalty));
+			}
+		}
+		return matches;
+	}
+
+	@Override
+	public List<Element> searchAll(String searchStr, String srcLang, int similarity, boolean caseSensitive)
+			throws IOException, SAXException, ParserConfigurationException, SQLException {
+		return mergeTus(fanOut(engine -> engine.searchAll(searchStr, srcLang, similarity, caseSensitive)));
+	}
+
+	@Override
+	public List<Element> concordanceSearch(String searchStr, String srcLang, int limit, boolean isRegexp,
+			boolean caseSensitive) throws IOException, SAXException, ParserConfigurationException, SQLException {
+		return mergeTus(
+				fanOut(engine -> engine.concordanceSearch(searchStr, srcLang, limit, isRegexp, caseSensitive)));
+	}
+
+	private static List<Element> mergeTus(List<List<Element>> results) {
+		List<Element> result = new Vector<>();
+		Set<String> seen = new HashSet<>();
+		for (int i = 0; i < results.size(); i++) {
+			List<Element> list = results.get(i);
+			for (int j = 0; j < list.size(); j++) {
+				Element tu = list.get(j);
+				if (seen.add(tu.toString())) {
+					result.add(tu);
+				}
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public Set<String> getAllClients() throws SQLException, IOException {
+		return union(fanOut(ITmEngine::getAllClients));
+	}
+
+	@Override
+	public Set<String> getAllLanguages() throws SQLException, IOException {
+		return union(fanOut(ITmEngine::getAllLanguages));
+	}
+
+	@Override
+	public Set<String> getAllProjects() throws SQLException, IOException {
+		return union(fanOut(ITmEngine::getAllProjects));
+	}
+
+	@Override
+	public Set<String> getAllSubjects() throws SQLException, IOException {
+		return union(fanOut(ITmEngine::getAllSubjects));
+	}
+
+	private static Set<String> union(List<Set<String>> results) {
+		Set<String> result = Collections.synchronizedSortedSet(new TreeSet<>());
+		for (int i = 0; i < results.size(); i++) {
+			result.addAll(results.get(i));
+		}
+		return result;
+	}
+
+	@Override
+	public void commit() throws SQLException, IOException {
+		// read only, nothing to commit
+	}
+
+	@Override
+	public void rollback() throws SQLException, IOException {
+		// read only, nothing to roll back
+	}
+
+	@Override
+	public int storeTMX(String tmxFile, String project, String customer, String subject) throws IOException {
+		throw new IOException("Federated memories are read only");
+	}
+
+	@Override
+	public void exportMemory(String tmxfile, Set<String> langs, String srcLang) throws IOException {
+		throw new IOException("Federated memories cannot be exported");
+	}
+
+	@Override
+	public void storeTu(Element tu) throws IOException {
+		throw new IOException("Federated memories are read only");
+	}
+
+	@Override
+	public Element getTu(String tuid) throws IOException {
+		throw new IOException("TU lookup is not supported by federated memories");
+	}
+
+	@Override
+	public void removeTu(String tuid) throws IOException {
+		throw new IOException("Federated memories are read only");
+	}
+
+	@Override
+	public void deleteDatabase() throws IOException {
+		throw new IOException("Federated memories are read only");
+	}
+
+	@Override
+	public JSONArray batchTranslate(JSONObject params) throws IOException {
+		throw new IOException("Batch translation is not supported by federated memories");
+	}
+
+	private synchronized ExecutorService getPool() {
+		if (pool == null) {
+			pool = Executors.newCachedThreadPool();
+		}
+		return pool;
+	}
+
+	// results of the engines that answered in time, in the order engines were added
+	private <T> List<T> fanOut(EngineCall<T> call) {
+		long start = System.currentTimeMillis();
+		ExecutorService executor = getPool();
+		List<Future<T>> futures = new Vector<>();
+		for (int i = 0; i < engines.size(); i++) {
+			ITmEngine engine = engines.get(i);
+			futures.add(executor.submit((Callable<T>) () -> call.apply(engine)));
+		}
+		List<T> result = new Vector<>();
+		for (int i = 0; i < futures.size(); i++) {
+			String engineName = engines.get(i).getName();
+			long wait = start + timeouts.get(i) - System.currentTimeMillis();
+			try {
+				result.add(futures.get(i).get(Math.max(0, wait), TimeUnit.MILLISECONDS));
+			} catch (TimeoutException e) {
+				// a lookup that already started runs to completion and its result is dropped
+				futures.get(i).cancel(false);
+				logger.log(Level.WARNING, "Memory " + engineName + " did not answer in time");
+			} catch (ExecutionException e) {
+				logger.log(Level.WARNING, "Error searching memory " + engineName, e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		return result;
+	}
+
+	private interface EngineCall<T> {
+		T apply(ITmEngine engine) throws IOException, SAXException, ParserConfigurationException, SQLException;
+	}
+}
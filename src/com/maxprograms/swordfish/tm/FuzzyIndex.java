@@ -14,69 +14,280 @@ package com.maxprograms.swordfish.tm;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.file.Files;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableSet;
 import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.mapdb.DB;
 import org.mapdb.DBMaker;
 import org.mapdb.Fun;
 
+/**
+ * N-gram index of a memory. TUs are identified by a dense ordinal and each
+ * language keeps its postings in a {@link PostingsFile}.
+ */
 public class FuzzyIndex {
 
-	private Map<String, NavigableSet<Fun.Tuple2<Integer, String>>> maps;
-	private Map<String, DB> databases;
+	private static final Logger logger = System.getLogger(FuzzyIndex.class.getName());
+
+	private Map<String, PostingsFile> postings;
+	private Map<String, PostingsBuffer> bulk;
+	private DB ordinalsDb;
+	private Map<String, Integer> ordinals;
+	private Map<Integer, String> tuids;
+	// size() of a MapDB map walks the whole tree, keep the count here
+	private int ordinalCount;
 	private File folder;
+	private ReentrantReadWriteLock lock;
+	private ThreadLocal<int[]> accumulators;
+	private ThreadLocal<IntList> touchedLists;
 
-	public FuzzyIndex(File folder) {
+	public FuzzyIndex(File folder) throws IOException {
 		this.folder = folder;
-		databases = new Hashtable<>();
-		maps = new Hashtable<>();
+		postings = new Hashtable<>();
+		bulk = new Hashtable<>();
+		try {
+			ordinalsDb = DBMaker.newFileDB(new File(folder, "fuzzy_ordinals")).closeOnJvmShutdown().make();
+		} catch (Error ioe) {
+			throw new IOException(ioe.getMessage());
+		}
+		ordinals = ordinalsDb.getHashMap("ordinals");
+		tuids = ordinalsDb.getHashMap("tuids");
+		ordinalCount = ordinals.size();
+		lock = new ReentrantReadWriteLock();
+		accumulators = ThreadLocal.withInitial(() -> new int[0]);
+		touchedLists = ThreadLocal.withInitial(IntList::new);
 	}
 
-	NavigableSet<Fun.Tuple2<Integer, String>> getIndex(String lang) throws IOException {
-		if (!maps.containsKey(lang)) {
-			DB mapdb = null;
+	private PostingsFile getIndex(String lang) throws IOException {
+		PostingsFile file = postings.get(lang);
+		if (file == null) {
+			lock.writeLock().lock();
 			try {
-				mapdb = DBMaker.newFileDB(new File(folder, "index_" + lang)).closeOnJvmShutdown().make();
-			} catch (Error ioe) {
-				throw new IOException(ioe.getMessage());
+				if (!postings.containsKey(lang)) {
+					PostingsFile created = new PostingsFile(folder, lang);
+					postings.put(lang, created);
+					if (created.isEmpty()) {
+						upgrade(lang, created);
+					}
+				}
+				file = postings.get(lang);
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+		return file;
+	}
+
+	public void add(String lang, String tuid, int[] ngrams) throws IOException {
+		lock.writeLock().lock();
+		try {
+			PostingsFile file = getIndex(lang);
+			int ordinal = getOrdinal(tuid);
+			for (int i = 0; i < ngrams.length; i++) {
+				file.add(ngrams[i], ordinal);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	// postings are kept aside until finishBulk(), searches do not see them before
+	public void addBulk(String lang, String tuid, int[] ngrams) throws IOException {
+		int ordinal;
+		lock.writeLock().lock();
+		try {
+			getIndex(lang);
+			ordinal = getOrdinal(tuid);
+		} finally {
+			lock.writeLock().unlock();
+		}
+		PostingsBuffer buffer = bulk.get(lang);
+		if (buffer == null) {
+			buffer = new PostingsBuffer(folder, lang);
+			bulk.put(lang, buffer);
+		}
+		for (int i = 0; i < ngrams.length; i++) {
+			buffer.add(ngrams[i], ordinal);
+		}
+	}
+
+	public void finishBulk() throws IOException {
+		lock.writeLock().lock();
+		try {
+			ordinalsDb.commit();
+			Iterator<String> keys = bulk.keySet().iterator();
+			while (keys.hasNext()) {
+				String lang = keys.next();
+				getIndex(lang).merge(bulk.get(lang));
+			}
+			bulk.clear();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	// drops the postings of a failed import and the ordinals it assigned
+	public void abortBulk() throws IOException {
+		lock.writeLock().lock();
+		try {
+			Iterator<String> keys = bulk.keySet().iterator();
+			while (keys.hasNext()) {
+				bulk.get(keys.next()).delete();
 			}
-			NavigableSet<Fun.Tuple2<Integer, String>> multiMap = mapdb.getTreeSet(lang);
-			databases.put(lang, mapdb);
-			maps.put(lang, multiMap);
+			bulk.clear();
+			ordinalsDb.rollback();
+			ordinalCount = ordinals.size();
+		} finally {
+			lock.writeLock().unlock();
 		}
-		return maps.get(lang);
 	}
 
-	public synchronized void commit() {
-		Set<String> set = databases.keySet();
-		Iterator<String> keys = set.iterator();
-		while (keys.hasNext()) {
-			String key = keys.next();
-			databases.get(key).commit();
+	// safe for concurrent use, each thread counts hits in its own accumulator
+	List<Candidate> search(String lang, int[] ngrams, int min, int max) throws IOException {
+		List<Candidate> result = new Vector<>();
+		PostingsFile file = getIndex(lang);
+		lock.readLock().lock();
+		try {
+			int[] accumulator = accumulators.get();
+			if (accumulator.length < ordinalCount) {
+				accumulator = new int[ordinalCount];
+				accumulators.set(accumulator);
+			}
+			int[] counts = accumulator;
+			IntList touched = touchedLists.get();
+			touched.clear();
+			for (int i = 0; i < ngrams.length; i++) {
+				file.forEach(ngrams[i], ordinal -> {
+					if (counts[ordinal]++ == 0) {
+						touched.add(ordinal);
+					}
+				});
+			}
+			for (int i = 0; i < touched.size(); i++) {
+				int ordinal = touched.get(i);
+				int count = counts[ordinal];
+				counts[ordinal] = 0;
+				if (count >= min && count <= max) {
+					result.add(new Candidate(tuids.get(ordinal), count));
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
 		}
+		return result;
 	}
 
-	public void rollback() {
-		Set<String> set = databases.keySet();
-		Iterator<String> keys = set.iterator();
-		while (keys.hasNext()) {
-			String key = keys.next();
-			databases.get(key).rollback();
+	private int getOrdinal(String tuid) {
+		Integer ordinal = ordinals.get(tuid);
+		if (ordinal == null) {
+			ordinal = ordinalCount++;
+			ordinals.put(tuid, ordinal);
+			tuids.put(ordinal, tuid);
 		}
+		return ordinal;
 	}
 
-	public synchronized void close() {
-		Set<String> set = databases.keySet();
-		Iterator<String> keys = set.iterator();
-		while (keys.hasNext()) {
-			DB db = databases.get(keys.next());
-			db.close();
+	// move entries from the MapDB tree set used by previous versions
+	private void upgrade(String lang, PostingsFile file) throws IOException {
+		File legacy = new File(folder, "index_" + lang);
+		if (!legacy.exists()) {
+			return;
+		}
+		logger.log(Level.INFO, "Upgrading fuzzy index for " + lang);
+		DB mapdb = null;
+		try {
+			mapdb = DBMaker.newFileDB(legacy).readOnly().make();
+		} catch (Error ioe) {
+			throw new IOException(ioe.getMessage());
+		}
+		NavigableSet<Fun.Tuple2<Integer, String>> set = mapdb.getTreeSet(lang);
+		Iterator<Fun.Tuple2<Integer, String>> it = set.iterator();
+		while (it.hasNext()) {
+			Fun.Tuple2<Integer, String> entry = it.next();
+			file.add(entry.a, getOrdinal(entry.b));
+		}
+		mapdb.close();
+		ordinalsDb.commit();
+		file.compact();
+		File[] files = folder.listFiles();
+		for (int i = 0; i < files.length; i++) {
+			String name = files[i].getName();
+			if (name.equals(legacy.getName()) || name.startsWith(legacy.getName() + ".")) {
+				Files.delete(files[i].toPath());
+			}
+		}
+	}
+
+	public void commit() throws IOException {
+		lock.writeLock().lock();
+		try {
+			ordinalsDb.commit();
+			Set<String> set = postings.keySet();
+			Iterator<String> keys = set.iterator();
+			while (keys.hasNext()) {
+				postings.get(keys.next()).commit();
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void rollback() throws IOException {
+		lock.writeLock().lock();
+		try {
+			ordinalsDb.rollback();
+			ordinalCount = ordinals.size();
+			Set<String> set = postings.keySet();
+			Iterator<String> keys = set.iterator();
+			while (keys.hasNext()) {
+				postings.get(keys.next()).rollback();
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void close() throws IOException {
+		lock.writeLock().lock();
+		try {
+			ordinalsDb.commit();
+			Set<String> set = postings.keySet();
+			Iterator<String> keys = set.iterator();
+			while (keys.hasNext()) {
+				postings.get(keys.next()).close();
+			}
+			postings.clear();
+			ordinalsDb.close();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	static class Candidate {
+
+		private String tuid;
+		private int count;
+
+		Candidate(String tuid, int count) {
+			this.tuid = tuid;
+			this.count = count;
+		}
+
+		String getTuid() {
+			return tuid;
+		}
+
+		int getCount() {
+			return count;
 		}
-		databases.clear();
-		maps.clear();
 	}
 }
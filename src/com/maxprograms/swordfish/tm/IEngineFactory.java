@@ -0,0 +1,25 @@
+/*******************************************************************************
+ * Copyright (c) 2007-2022 Maxprograms.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/epl-v10.html
+ *
+ * Contributors:
+ *     Maxprograms - initial API and implementation
+ *******************************************************************************/
+
+
+package com.maxprograms.swordfish.tm;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * Opens the engine of a memory or glossary for an {@link EnginePool}.
+ */
+public interface IEngineFactory {
+
+	ITmEngine open(String id) throws IOException, SQLException;
+}
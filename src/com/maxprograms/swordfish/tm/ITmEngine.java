@@ -50,6 +50,10 @@ public interface ITmEngine {
 	public abstract List<Match> searchTranslation(String searchStr, String srcLang, String tgtLang, int similarity,
 			boolean caseSensitive) throws IOException, SAXException, ParserConfigurationException, SQLException;
 
+	public abstract List<Match> searchTranslation(String searchStr, String srcLang, String tgtLang, int similarity,
+			boolean caseSensitive, int maxResults)
+			throws IOException, SAXException, ParserConfigurationException, SQLException;
+
 	public abstract List<Element> searchAll(String searchStr, String srcLang, int similarity, boolean caseSensitive)
 			throws IOException, SAXException, ParserConfigurationException, SQLException;
 
@@ -60,6 +64,8 @@ public interface ITmEngine {
 
 	public abstract void commit() throws SQLException, IOException;
 
+	public abstract void rollback() throws SQLException, IOException;
+
 	public abstract Element getTu(String tuid)
 			throws IOException, SAXException, ParserConfigurationException, SQLException;
 
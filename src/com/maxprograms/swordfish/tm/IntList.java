@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2007-2022 Maxprograms.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/epl-v10.html
+ *
+ * Contributors:
+ *     Maxprograms - initial API and implementation
+ *******************************************************************************/
+
+package com.maxprograms.swordfish.tm;
+
+import java.util.Arrays;
+
+class IntList {
+
+	private int[] values;
+	private int size;
+	private boolean sorted;
+
+	public IntList() {
+		this(8);
+	}
+
+	public IntList(int capacity) {
+		values = new int[Math.max(capacity, 1)];
+		sorted = true;
+	}
+
+	public void add(int value) {
+		if (size == values.length) {
+			values = Arrays.copyOf(values, size * 2);
+		}
+		if (size > 0 && values[size - 1] >= value) {
+			sorted = false;
+		}
+		values[size++] = value;
+	}
+
+	public int get(int i) {
+		return values[i];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		size = 0;
+		sorted = true;
+	}
+
+	// sorts the list and removes duplicated values
+	public void sortUnique() {
+		if (sorted) {
+			return;
+		}
+		Arrays.sort(values, 0, size);
+		int j = 0;
+		for (int i = 0; i < size; i++) {
+			if (j == 0 || values[j - 1] != values[i]) {
+				values[j++] = values[i];
+			}
+		}
+		size = j;
+		sorted = true;
+	}
+
+	public int[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+}
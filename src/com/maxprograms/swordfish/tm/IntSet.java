@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2007-2022 Maxprograms.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/epl-v10.html
+ *
+ * Contributors:
+ *     Maxprograms - initial API and implementation
+ *******************************************************************************/
+package com.maxprograms.swordfish.tm;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing set of int values meant to be cleared and reused.
+ */
+class IntSet {
+
+	private int[] table;
+	private boolean[] used;
+	private int mask;
+	private IntList values;
+
+	public IntSet() {
+		this(64);
+	}
+
+	public IntSet(int capacity) {
+		int size = Integer.highestOneBit(Math.max(capacity, 4) * 2 - 1);
+		table = new int[size];
+		used = new boolean[size];
+		mask = size - 1;
+		values = new IntList(capacity);
+	}
+
+	public boolean add(int value) {
+		int slot = mix(value) & mask;
+		while (used[slot]) {
+			if (table[slot] == value) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		table[slot] = value;
+		used[slot] = true;
+		values.add(value);
+		if (values.size() * 2 > table.length) {
+			rehash();
+		}
+		return true;
+	}
+
+	public int size() {
+		return values.size();
+	}
+
+	// values in insertion order
+	public int[] toArray() {
+		return values.toArray();
+	}
+
+	public void clear() {
+		if (values.size() * 8 < table.length) {
+			for (int i = 0; i < values.size(); i++) {
+				int slot = mix(values.get(i)) & mask;
+				while (used[slot]) {
+					used[slot] = false;
+					slot = (slot + 1) & mask;
+				}
+			}
+		} else {
+			Arrays.fill(used, false);
+		}
+		values.clear();
+	}
+
+	private void rehash() {
+		int size = table.length * 2;
+		table = new int[size];
+		used = new boolean[size];
+		mask = size - 1;
+		for (int i = 0; i < values.size(); i++) {
+			int value = values.get(i);
+			int slot = mix(value) & mask;
+			while (used[slot]) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = value;
+			used[slot] = true;
+		}
+	}
+
+	private static int mix(int value) {
+		int h = value * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
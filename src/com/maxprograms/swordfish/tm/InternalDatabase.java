@@ -12,10 +12,14 @@
 
 package com.maxprograms.swordfish.tm;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringReader;
+import java.io.Writer;
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
 import java.nio.charset.StandardCharsets;
@@ -28,15 +32,25 @@ import java.sql.Statement;
 import java.text.MessageFormat;
 import java.util.Calendar;
 import java.util.Collections;
-import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.NavigableSet;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
 
 import javax.xml.parsers.ParserConfigurationException;
 
@@ -45,35 +59,38 @@ import com.maxprograms.swordfish.Constants;
 import com.maxprograms.swordfish.MemoriesHandler;
 import com.maxprograms.swordfish.TmsServer;
 import com.maxprograms.swordfish.tmx.TMXReader;
+import com.maxprograms.xml.Attribute;
 import com.maxprograms.xml.Element;
-import com.maxprograms.xml.Indenter;
 import com.maxprograms.xml.XMLUtils;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
-import org.mapdb.Fun;
-import org.mapdb.Fun.Tuple2;
 import org.xml.sax.SAXException;
 
 public class InternalDatabase implements ITmEngine {
 
 	protected static final Logger logger = System.getLogger(InternalDatabase.class.getName());
 
+	private static final int HYDRATION_CHUNK = 64;
+	private static final int EXPORT_BUFFER = 1 << 16;
+	private static final int EXPORT_FETCH = 1000;
+
 	private String dbname;
 	private String url;
 	private Connection conn;
+	private BlockingQueue<Connection> readers;
 	private PreparedStatement storeTUV;
 	private PreparedStatement deleteTUV;
 	private PreparedStatement searchTUV;
 	private String currProject;
 	private String currSubject;
 	private String currCustomer;
-	private FileOutputStream output;
 	private String creationDate;
 	private FuzzyIndex fuzzyIndex;
 	private TuDatabase tuDb;
 	private File database;
 	private long next;
+	private ThreadPoolExecutor batchPool;
 
 	public InternalDatabase(String dbname, String workFolder) throws SQLException, IOException {
 		this.dbname = dbname;
@@ -87,6 +104,7 @@ public class InternalDatabase implements ITmEngine {
 		}
 		url = "jdbc:h2:" + database.getAbsolutePath() + "/db;DB_CLOSE_ON_EXIT=FALSE";
 		conn = DriverManager.getConnection(url);
+		readers = new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors());
 
 		if (!exists) {
 			createTable();
@@ -140,10 +158,18 @@ public class InternalDatabase implements ITmEngine {
 	}
 
 	@Override
-	public synchronized void close() throws SQLException {
+	public synchronized void close() throws SQLException, IOException {
+		if (batchPool != null) {
+			batchPool.shutdown();
+			batchPool = null;
+		}
 		storeTUV.close();
 		deleteTUV.close();
 		searchTUV.close();
+		Connection reader;
+		while ((reader = readers.poll()) != null) {
+			reader.close();
+		}
 		conn.commit();
 		conn.close();
 		fuzzyIndex.commit();
@@ -162,14 +188,22 @@ public class InternalDatabase implements ITmEngine {
 	}
 
 	@Override
-	public synchronized void commit() throws SQLException {
+	public synchronized void commit() throws SQLException, IOException {
 		conn.commit();
 		fuzzyIndex.commit();
 		tuDb.commit();
 	}
 
 	@Override
-	public int storeTMX(String tmxFile, String project, String customer, String subject)
+	public synchronized void rollback() throws SQLException, IOException {
+		conn.rollback();
+		fuzzyIndex.rollback();
+		tuDb.rollback();
+	}
+
+	// holds the engine lock, as MemoryWriter does, so writers never roll back each other's work
+	@Override
+	public synchronized int storeTMX(String tmxFile, String project, String customer, String subject)
 			throws SQLException, IOException, SAXException, ParserConfigurationException {
 		int imported = 0;
 		next = 0l;
@@ -189,8 +223,15 @@ public class InternalDatabase implements ITmEngine {
 
 		startTransaction();
 
-		TMXReader reader = new TMXReader(this);
-		reader.parse(new File(tmxFile).toURI().toURL());
+		BulkImport bulk = new BulkImport(this, conn, tuDb, fuzzyIndex, Runtime.getRuntime().availableProcessors());
+		TMXReader reader = new TMXReader(bulk);
+		try {
+			reader.parse(new File(tmxFile).toURI().toURL());
+		} catch (IOException | SAXException | ParserConfigurationException | RuntimeException e) {
+			bulk.abort();
+			throw e;
+		}
+		bulk.finish();
 		imported = reader.getCount();
 
 		commit();
@@ -199,59 +240,87 @@ public class InternalDatabase implements ITmEngine {
 
 	@Override
 	public void exportMemory(String tmxfile, Set<String> langs, String srcLang) throws IOException, SQLException {
-		output = new FileOutputStream(tmxfile);
-		writeHeader(srcLang);
-		writeString("<body>\n");
+		OutputStream stream = new FileOutputStream(tmxfile);
+		if (tmxfile.toLowerCase().endsWith(".gz")) {
+			stream = new GZIPOutputStream(stream, EXPORT_BUFFER);
+		}
+		try (Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), EXPORT_BUFFER)) {
+			writeHeader(writer, srcLang);
+			writer.write("<body>\n");
+			exportTus(writer, langs);
+			writer.write("</body>\n");
+			writer.write("</tmx>\n");
+		}
+	}
 
-		try (PreparedStatement stmt = conn.prepareStatement("SELECT lang, seg FROM tuv WHERE tuid=?")) {
-			try (Statement tus = conn.createStatement()) {
-				try (ResultSet tuKeys = tus.executeQuery("SELECT DISTINCT TUID from TUV")) {
-					while (tuKeys.next()) {
-						String tuid = tuKeys.getString(1);
-						Element tu = tuDb.getTu(tuid);
-						stmt.setString(1, tuid);
-						int count = 0;
-						try (ResultSet rs = stmt.executeQuery()) {
-							while (rs.next()) {
-								String lang = rs.getString(1);
-								String seg = TMUtils.getString(rs.getNCharacterStream(2));
-								if (seg.equals("<seg></seg>") || !langs.contains(lang)) {
-									continue;
-								}
-								try {
-									Element tuv = TMUtils.buildTuv(lang, seg);
-									tu.addContent(tuv);
-									count++;
-								} catch (Exception e) {
-									logger.log(Level.ERROR, "Error building tuv", e);
-									logger.log(Level.INFO, "seg: " + seg);
-								}
-							}
-						}
+	// single scan in primary key order, segments are written as stored
+	private void exportTus(Writer writer, Set<String> langs) throws IOException, SQLException {
+		Connection reader = getReader();
+		try (Statement stmt = reader.createStatement()) {
+			stmt.setFetchSize(EXPORT_FETCH);
+			try (ResultSet rs = stmt.executeQuery("SELECT tuid, lang, seg FROM tuv ORDER BY tuid, lang")) {
+				String current = null;
+				StringBuilder tuvs = new StringBuilder();
+				int count = 0;
+				while (rs.next()) {
+					String tuid = rs.getString(1);
+					if (!tuid.equals(current)) {
 						if (count >= 2) {
-							Indenter.indent(tu, 2);
-							writeString(tu.toString() + "\n");
+							writeTu(writer, current, tuvs);
 						}
+						current = tuid;
+						tuvs.setLength(0);
+						count = 0;
+					}
+					String lang = rs.getString(2);
+					if (!langs.contains(lang)) {
+						continue;
+					}
+					String seg = TMUtils.getString(rs.getNCharacterStream(3));
+					if (seg.equals("<seg></seg>")) {
+						continue;
 					}
+					if (!seg.startsWith("<seg>")) {
+						seg = "<seg>" + seg + "</seg>";
+					}
+					tuvs.append("    <tuv xml:lang=\"").append(lang).append("\">\n      ").append(seg)
+							.append("\n    </tuv>\n");
+					count++;
+				}
+				if (count >= 2) {
+					writeTu(writer, current, tuvs);
 				}
 			}
+		} finally {
+			releaseReader(reader);
 		}
-
-		writeString("</body>\n");
-		writeString("</tmx>\n");
-		output.close();
 	}
 
-	private void writeString(String string) throws IOException {
-		output.write(string.getBytes(StandardCharsets.UTF_8));
+	private void writeTu(Writer writer, String tuid, StringBuilder tuvs) throws IOException {
+		Element tu = tuDb.getTu(tuid);
+		writer.write("  <tu");
+		List<Attribute> attributes = tu.getAttributes();
+		for (int i = 0; i < attributes.size(); i++) {
+			writer.write(' ');
+			writer.write(attributes.get(i).toString());
+		}
+		writer.write(">\n");
+		List<Element> children = tu.getChildren();
+		for (int i = 0; i < children.size(); i++) {
+			writer.write("    ");
+			writer.write(children.get(i).toString());
+			writer.write('\n');
+		}
+		writer.append(tuvs);
+		writer.write("  </tu>\n");
 	}
 
-	private void writeHeader(String srcLang) throws IOException {
-		writeString("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
-		writeString(
+	private static void writeHeader(Writer writer, String srcLang) throws IOException {
+		writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		writer.write(
 				"<!DOCTYPE tmx PUBLIC \"-//LISA OSCAR:1998//DTD for Translation Memory eXchange//EN\" \"tmx14.dtd\" >\n");
-		writeString("<tmx version=\"1.4\">\n");
-		writeString("<header creationtool=\"" + Constants.APPNAME + "\" creationtoolversion=\"" + Constants.VERSION
+		writer.write("<tmx version=\"1.4\">\n");
+		writer.write("<header creationtool=\"" + Constants.APPNAME + "\" creationtoolversion=\"" + Constants.VERSION
 				+ "\" srclang=\"" + srcLang + "\" "
 				+ " adminlang=\"en\" datatype=\"xml\" o-tmf=\"unknown\" segtype=\"block\" creationdate=\""
 				+ TMUtils.creationDate() + "\"/>\n");
@@ -288,8 +357,28 @@ public class InternalDatabase implements ITmEngine {
 	@Override
 	public List<Match> searchTranslation(String searchStr, String srcLang, String tgtLang, int similarity,
 			boolean caseSensitive) throws SAXException, IOException, ParserConfigurationException, SQLException {
+		return searchTranslation(searchStr, srcLang, tgtLang, similarity, caseSensitive, 0);
+	}
+
+	@Override
+	public List<Match> searchTranslation(String searchStr, String srcLang, String tgtLang, int similarity,
+			boolean caseSensitive, int maxResults)
+			throws SAXException, IOException, ParserConfigurationException, SQLException {
+		Connection reader = getReader();
+		try {
+			return searchTranslation(reader, searchStr, srcLang, tgtLang, similarity, caseSensitive, maxResults);
+		} finally {
+			releaseReader(reader);
+		}
+	}
+
+	private List<Match> searchTranslation(Connection connection, String searchStr, String srcLang, String tgtLang,
+			int similarity, boolean caseSensitive, int maxResults)
+			throws SAXException, IOException, ParserConfigurationException, SQLException {
 		// search for TUs with a given source and target language
 		List<Match> result = new Vector<>();
+		// worst match at the head
+		PriorityQueue<Match> best = new PriorityQueue<>(Collections.reverseOrder());
 
 		int[] ngrams = null;
 		ngrams = NGrams.getNGrams(searchStr);
@@ -303,84 +392,98 @@ public class InternalDatabase implements ITmEngine {
 		int minLength = searchStr.length() * similarity / 100;
 		int maxLength = searchStr.length() * (200 - similarity) / 100;
 
-		Hashtable<String, Integer> candidates = new Hashtable<>();
-
-		try (PreparedStatement stmt = conn.prepareStatement(
-				"SELECT puretext, seg, textlength FROM tuv WHERE lang=? AND tuid=? AND textlength>=? AND textlength<=?")) {
+		String search = caseSensitive ? searchStr : searchStr.toLowerCase();
+		String inList = inList(HYDRATION_CHUNK);
+		try (PreparedStatement stmt = connection.prepareStatement(
+				"SELECT tuid, puretext, seg FROM tuv WHERE lang=? AND textlength>=? AND textlength<=? AND tuid IN ("
+						+ inList + ")")) {
 			stmt.setString(1, srcLang);
-			stmt.setInt(3, minLength);
-			stmt.setInt(4, maxLength);
-
-			try (PreparedStatement stmt2 = conn.prepareStatement("SELECT lang, seg FROM tuv WHERE tuid=? AND lang=?")) {
-				stmt2.setString(2, tgtLang);
-
-				NavigableSet<Fun.Tuple2<Integer, String>> index = fuzzyIndex.getIndex(srcLang);
-				for (int i = 0; i < ngrams.length; i++) {
-					Iterable<String> keys = Fun.filter(index, ngrams[i]);
-					Iterator<String> it = keys.iterator();
-					while (it.hasNext()) {
-						String tuid = it.next();
-						if (candidates.containsKey(tuid)) {
-							int count = candidates.get(tuid);
-							candidates.put(tuid, count + 1);
-						} else {
-							candidates.put(tuid, 1);
+			stmt.setInt(2, minLength);
+			stmt.setInt(3, maxLength);
+
+			try (PreparedStatement stmt2 = connection
+					.prepareStatement("SELECT tuid, seg FROM tuv WHERE lang=? AND tuid IN (" + inList + ")")) {
+				stmt2.setString(1, tgtLang);
+
+				List<FuzzyIndex.Candidate> candidates = fuzzyIndex.search(srcLang, ngrams, min, max);
+				if (maxResults > 0) {
+					// likely matches first, so the heap threshold rises early; n-gram overlap
+					// is not a bound on similarity, so every candidate is still scored
+					Collections.sort(candidates, (a, b) -> Integer.compare(b.getCount(), a.getCount()));
+				}
+				int from = 0;
+				while (from < candidates.size()) {
+					int to = Math.min(from + HYDRATION_CHUNK, candidates.size());
+					List<String> tuids = new Vector<>();
+					for (int i = from; i < to; i++) {
+						tuids.add(candidates.get(i).getTuid());
+					}
+					from = to;
+
+					Map<String, Integer> distances = new HashMap<>();
+					Map<String, String> sources = new HashMap<>();
+					setInList(stmt, 4, tuids);
+					try (ResultSet rs = stmt.executeQuery()) {
+						while (rs.next()) {
+							String tuid = rs.getString(1);
+							String pure = TMUtils.getString(rs.getNCharacterStream(2));
+							boolean full = maxResults > 0 && best.size() == maxResults;
+							int threshold = full ? Math.max(similarity, best.peek().getSimilarity()) : similarity;
+							int distance = MatchQuality.similarity(search, caseSensitive ? pure : pure.toLowerCase(),
+									threshold);
+							boolean keep = !full || distance >= best.peek().getSimilarity();
+							if (distance >= similarity && keep) {
+								distances.put(tuid, distance);
+								sources.put(tuid, TMUtils.getString(rs.getNCharacterStream(3)));
+							}
 						}
 					}
-				}
-				Enumeration<String> tuids = candidates.keys();
-				while (tuids.hasMoreElements()) {
-					String tuid = tuids.nextElement();
-					int count = candidates.get(tuid);
-					if (count >= min && count <= max) {
-						stmt.setString(2, tuid);
-						try (ResultSet rs = stmt.executeQuery()) {
-							while (rs.next()) {
-								String pure = TMUtils.getString(rs.getNCharacterStream(1));
-								String srcSeg = TMUtils.getString(rs.getNCharacterStream(2));
-								int distance;
-								if (caseSensitive) {
-									distance = MatchQuality.similarity(searchStr, pure);
-								} else {
-									distance = MatchQuality.similarity(searchStr.toLowerCase(), pure.toLowerCase());
-								}
-								if (distance >= similarity) {
-									stmt2.setString(1, tuid);
-									stmt2.setString(2, tgtLang);
-									boolean tgtFound = false;
-									Element target = null;
-									try (ResultSet rs2 = stmt2.executeQuery()) {
-										while (rs2.next()) {
-											String lang = rs2.getString(1);
-											String seg = TMUtils.getString(rs2.getNCharacterStream(2));
-											target = TMUtils.buildTuv(lang, seg);
-											tgtFound = true;
-										}
-									}
-									if (tgtFound) {
-										Element source = TMUtils.buildTuv(srcLang, srcSeg);
-										Map<String, String> propsMap = new Hashtable<>();
-										Element tu = getTu(tuid);
-										List<Element> props = tu.getChildren("prop");
-										Iterator<Element> pt = props.iterator();
-										while (pt.hasNext()) {
-											Element prop = pt.next();
-											propsMap.put(prop.getAttributeValue("type"), prop.getText());
-										}
-										Match match = new Match(source, target, distance, dbname, propsMap);
-										result.add(match);
-									}
-								}
+					if (distances.isEmpty()) {
+						continue;
+					}
+					setInList(stmt2, 2, new Vector<>(distances.keySet()));
+					try (ResultSet rs2 = stmt2.executeQuery()) {
+						while (rs2.next()) {
+							String tuid = rs2.getString(1);
+							Element target = TMUtils.buildTuv(tgtLang, TMUtils.getString(rs2.getNCharacterStream(2)));
+							Element source = TMUtils.buildTuv(srcLang, sources.get(tuid));
+							Map<String, String> propsMap = new Hashtable<>();
+							List<Element> props = tuDb.getTu(tuid).getChildren("prop");
+							Iterator<Element> pt = props.iterator();
+							while (pt.hasNext()) {
+								Element prop = pt.next();
+								propsMap.put(prop.getAttributeValue("type"), prop.getText());
+							}
+							Match match = new Match(source, target, distances.get(tuid), dbname, propsMap);
+							best.add(match);
+							if (maxResults > 0 && best.size() > maxResults) {
+								best.poll();
 							}
 						}
 					}
 				}
 			}
 		}
+		result.addAll(best);
 		Collections.sort(result);
 		return result;
 	}
 
+	private static String inList(int size) {
+		StringBuilder sb = new StringBuilder("?");
+		for (int i = 1; i < size; i++) {
+			sb.append(",?");
+		}
+		return sb.toString();
+	}
+
+	// fills all HYDRATION_CHUNK placeholders, repeating the last value when needed
+	private static void setInList(PreparedStatement stmt, int first, List<String> values) throws SQLException {
+		for (int i = 0; i < HYDRATION_CHUNK; i++) {
+			stmt.setString(first + i, values.get(Math.min(i, values.size() - 1)));
+		}
+	}
+
 	@Override
 	public List<Element> concordanceSearch(String searchStr, String srcLang, int limit, boolean isRegexp,
 			boolean caseSensitive) throws SQLException, SAXException, IOException, ParserConfigurationException {
@@ -414,12 +517,7 @@ public class InternalDatabase implements ITmEngine {
 			}
 		}
 
-		Iterator<String> it = candidates.iterator();
-		while (it.hasNext()) {
-			String tuid = it.next();
-			Element tu = getTu(tuid);
-			result.add(tu);
-		}
+		result.addAll(getTus(conn, candidates));
 		return result;
 	}
 
@@ -432,7 +530,39 @@ public class InternalDatabase implements ITmEngine {
 			tuid = nextId();
 			tu.setAttribute("tuid", tuid);
 		}
+		prepareTu(tu);
+
+		storeTUV.setString(1, tuid);
+
+		Iterator<Element> it = tuvs.iterator();
+		while (it.hasNext()) {
+			Element tuv = it.next();
+			String lang = LanguageUtils.normalizeCode(tuv.getAttributeValue("xml:lang"));
+			if (lang != null && !tuLangs.contains(lang)) {
+				if (exists(tuid, lang)) {
+					delete(tuid, lang);
+				}
+				Element seg = tuv.getChild("seg");
+				String puretext = TMUtils.extractText(seg);
+				if (puretext.length() < 1) {
+					continue;
+				}
+				storeTUV.setString(2, lang);
+				storeTUV.setNCharacterStream(3, new StringReader(seg.toString()));
+				storeTUV.setNCharacterStream(4, new StringReader(puretext));
+				storeTUV.setInt(5, puretext.length());
+				storeTUV.execute();
+				tuLangs.add(lang);
+
+				tuDb.store(tuid, tu);
+
+				fuzzyIndex.add(lang, tuid, NGrams.getNGrams(puretext));
+			}
+		}
+	}
 
+	// adds the properties and attributes of the import context, also used by bulk imports
+	void prepareTu(Element tu) {
 		Hashtable<String, String> props = new Hashtable<>();
 		List<Element> properties = tu.getChildren("prop");
 		Iterator<Element> kt = properties.iterator();
@@ -485,44 +615,9 @@ public class InternalDatabase implements ITmEngine {
 		if (tu.getAttributeValue("creationid").isEmpty()) {
 			tu.setAttribute("creationid", System.getProperty("user.name"));
 		}
-
-		storeTUV.setString(1, tuid);
-
-		Iterator<Element> it = tuvs.iterator();
-		while (it.hasNext()) {
-			Element tuv = it.next();
-			String lang = LanguageUtils.normalizeCode(tuv.getAttributeValue("xml:lang"));
-			if (lang != null && !tuLangs.contains(lang)) {
-				if (exists(tuid, lang)) {
-					delete(tuid, lang);
-				}
-				Element seg = tuv.getChild("seg");
-				String puretext = TMUtils.extractText(seg);
-				if (puretext.length() < 1) {
-					continue;
-				}
-				storeTUV.setString(2, lang);
-				storeTUV.setNCharacterStream(3, new StringReader(seg.toString()));
-				storeTUV.setNCharacterStream(4, new StringReader(puretext));
-				storeTUV.setInt(5, puretext.length());
-				storeTUV.execute();
-				tuLangs.add(lang);
-
-				tuDb.store(tuid, tu);
-
-				int[] ngrams = NGrams.getNGrams(puretext);
-				NavigableSet<Fun.Tuple2<Integer, String>> index = fuzzyIndex.getIndex(lang);
-				for (int i = 0; i < ngrams.length; i++) {
-					Tuple2<Integer, String> entry = Fun.t2(ngrams[i], tuid);
-					if (!index.contains(entry)) {
-						index.add(entry);
-					}
-				}
-			}
-		}
 	}
 
-	private String nextId() {
+	String nextId() {
 		if (next == 0l) {
 			next = Calendar.getInstance().getTimeInMillis();
 		}
@@ -598,6 +693,58 @@ public class InternalDatabase implements ITmEngine {
 		return tu;
 	}
 
+	private List<Element> getTus(Connection connection, List<String> tuids)
+			throws SQLException, SAXException, IOException, ParserConfigurationException {
+		List<Element> result = new Vector<>();
+		try (PreparedStatement stmt = connection
+				.prepareStatement("SELECT tuid, lang, seg FROM tuv WHERE tuid IN (" + inList(HYDRATION_CHUNK) + ")")) {
+			for (int from = 0; from < tuids.size(); from += HYDRATION_CHUNK) {
+				List<String> chunk = tuids.subList(from, Math.min(from + HYDRATION_CHUNK, tuids.size()));
+				Map<String, Element> tus = new HashMap<>();
+				for (int i = 0; i < chunk.size(); i++) {
+					tus.put(chunk.get(i), tuDb.getTu(chunk.get(i)));
+				}
+				setInList(stmt, 1, chunk);
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						String seg = TMUtils.getString(rs.getNCharacterStream(3));
+						if (seg.equals("<seg></seg>")) {
+							continue;
+						}
+						tus.get(rs.getString(1)).addContent(TMUtils.buildTuv(rs.getString(2), seg));
+					}
+				}
+				for (int i = 0; i < chunk.size(); i++) {
+					result.add(tus.get(chunk.get(i)));
+				}
+			}
+		}
+		return result;
+	}
+
+	// pure source text, source and target segments of the TUs that have both languages
+	public List<String[]> getSegmentPairs(String srcLang, String tgtLang) throws SQLException, IOException {
+		List<String[]> result = new Vector<>();
+		Connection reader = getReader();
+		try (PreparedStatement stmt = reader.prepareStatement(
+				"SELECT s.puretext, s.seg, t.seg FROM tuv s, tuv t WHERE s.tuid=t.tuid AND s.lang=? AND t.lang=?")) {
+			stmt.setString(1, srcLang);
+			stmt.setString(2, tgtLang);
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					String target = TMUtils.getString(rs.getNCharacterStream(3));
+					if (!target.equals("<seg></seg>")) {
+						result.add(new String[] { TMUtils.getString(rs.getNCharacterStream(1)),
+								TMUtils.getString(rs.getNCharacterStream(2)), target });
+					}
+				}
+			}
+		} finally {
+			releaseReader(reader);
+		}
+		return result;
+	}
+
 	@Override
 	public void removeTu(String tuid) throws IOException, SQLException, SAXException, ParserConfigurationException {
 		Element tu = getTu(tuid);
@@ -625,6 +772,16 @@ public class InternalDatabase implements ITmEngine {
 	@Override
 	public List<Element> searchAll(String searchStr, String srcLang, int similarity, boolean caseSensitive)
 			throws IOException, SAXException, ParserConfigurationException, SQLException {
+		Connection reader = getReader();
+		try {
+			return searchAll(reader, searchStr, srcLang, similarity, caseSensitive);
+		} finally {
+			releaseReader(reader);
+		}
+	}
+
+	private List<Element> searchAll(Connection connection, String searchStr, String srcLang, int similarity,
+			boolean caseSensitive) throws IOException, SAXException, ParserConfigurationException, SQLException {
 		List<Element> result = new Vector<>();
 
 		int[] ngrams = NGrams.getNGrams(searchStr);
@@ -638,53 +795,35 @@ public class InternalDatabase implements ITmEngine {
 		int minLength = searchStr.length() * similarity / 100;
 		int maxLength = searchStr.length() * (200 - similarity) / 100;
 
-		Map<String, Integer> candidates = new Hashtable<>();
-
-		try (PreparedStatement stmt = conn.prepareStatement(
-				"SELECT puretext FROM tuv WHERE lang=? AND tuid=? AND textlength>=? AND textlength<=?")) {
+		String search = caseSensitive ? searchStr : searchStr.toLowerCase();
+		List<String> selected = new Vector<>();
+		try (PreparedStatement stmt = connection.prepareStatement(
+				"SELECT tuid, puretext FROM tuv WHERE lang=? AND textlength>=? AND textlength<=? AND tuid IN ("
+						+ inList(HYDRATION_CHUNK) + ")")) {
 			stmt.setString(1, srcLang);
-			stmt.setInt(3, minLength);
-			stmt.setInt(4, maxLength);
-
-			NavigableSet<Fun.Tuple2<Integer, String>> index = fuzzyIndex.getIndex(srcLang);
-			for (int i = 0; i < ngrams.length; i++) {
-				Iterable<String> keys = Fun.filter(index, ngrams[i]);
-				Iterator<String> it = keys.iterator();
-				while (it.hasNext()) {
-					String tuid = it.next();
-					if (candidates.containsKey(tuid)) {
-						int count = candidates.get(tuid);
-						candidates.put(tuid, count + 1);
-					} else {
-						candidates.put(tuid, 1);
-					}
+			stmt.setInt(2, minLength);
+			stmt.setInt(3, maxLength);
+
+			List<FuzzyIndex.Candidate> candidates = fuzzyIndex.search(srcLang, ngrams, min, max);
+			for (int from = 0; from < candidates.size(); from += HYDRATION_CHUNK) {
+				List<String> tuids = new Vector<>();
+				for (int i = from; i < Math.min(from + HYDRATION_CHUNK, candidates.size()); i++) {
+					tuids.add(candidates.get(i).getTuid());
 				}
-			}
-			Set<String> tuids = candidates.keySet();
-			Iterator<String> it = tuids.iterator();
-			while (it.hasNext()) {
-				String tuid = it.next();
-				int count = candidates.get(tuid);
-				if (count >= min && count <= max) {
-					stmt.setString(2, tuid);
-					try (ResultSet rs = stmt.executeQuery()) {
-						while (rs.next()) {
-							String pure = TMUtils.getString(rs.getNCharacterStream(1));
-							int distance;
-							if (caseSensitive) {
-								distance = MatchQuality.similarity(searchStr, pure);
-							} else {
-								distance = MatchQuality.similarity(searchStr.toLowerCase(), pure.toLowerCase());
-							}
-							if (distance >= similarity) {
-								Element tu = getTu(tuid);
-								result.add(tu);
-							}
+				setInList(stmt, 4, tuids);
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						String pure = TMUtils.getString(rs.getNCharacterStream(2));
+						int distance = MatchQuality.similarity(search, caseSensitive ? pure : pure.toLowerCase(),
+								similarity);
+						if (distance >= similarity) {
+							selected.add(rs.getString(1));
 						}
 					}
 				}
 			}
 		}
+		result.addAll(getTus(connection, selected));
 		return result;
 	}
 
@@ -694,17 +833,90 @@ public class InternalDatabase implements ITmEngine {
 		JSONArray result = new JSONArray();
 		String srcLang = params.getString("srcLang");
 		String tgtLang = params.getString("tgtLang");
+		int maxResults = params.has("maxResults") ? params.getInt("maxResults") : 0;
 		JSONArray segments = params.getJSONArray("segments");
-		for (int i = 0; i < segments.length(); i++) {
-			JSONObject json = segments.getJSONObject(i);
-			List<Match> matches = searchTranslation(json.getString("pure"), srcLang, tgtLang, 60, false);
-			JSONArray array = new JSONArray();
-			for (int j = 0; j < matches.size(); j++) {
-				array.put(matches.get(j).toJSON());
+		int threads = params.has("threads") ? params.getInt("threads") : Runtime.getRuntime().availableProcessors();
+		ExecutorService pool = getBatchPool(Math.max(1, threads));
+		List<Future<JSONArray>> futures = new Vector<>();
+		try {
+			for (int i = 0; i < segments.length(); i++) {
+				String pure = segments.getJSONObject(i).getString("pure");
+				futures.add(pool.submit(() -> {
+					List<Match> matches = searchTranslation(pure, srcLang, tgtLang, 60, false, maxResults);
+					JSONArray array = new JSONArray();
+					for (int j = 0; j < matches.size(); j++) {
+						array.put(matches.get(j).toJSON());
+					}
+					return array;
+				}));
+			}
+			// collect in submission order to keep the order of the segments
+			for (int i = 0; i < segments.length(); i++) {
+				JSONObject json = segments.getJSONObject(i);
+				json.put("matches", futures.get(i).get());
+				result.put(json);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Batch translation interrupted");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof SQLException) {
+				throw (SQLException) cause;
+			}
+			if (cause instanceof SAXException) {
+				throw (SAXException) cause;
+			}
+			if (cause instanceof ParserConfigurationException) {
+				throw (ParserConfigurationException) cause;
+			}
+			throw new IOException(cause.getMessage(), cause);
+		} finally {
+			// drops what is still queued after an error; running searches are not interrupted
+			for (int i = 0; i < futures.size(); i++) {
+				futures.get(i).cancel(false);
 			}
-			json.put("matches", array);
-			result.put(json);
 		}
 		return result;
 	}
+
+	// kept for the life of the memory, so the batches of a TM-all run share their threads
+	private synchronized ExecutorService getBatchPool(int threads) {
+		if (batchPool == null) {
+			AtomicInteger count = new AtomicInteger();
+			batchPool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+					r -> {
+						Thread thread = new Thread(r, "swordfish-tm-batch-" + count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					});
+			batchPool.allowCoreThreadTimeOut(true);
+		} else if (threads > batchPool.getMaximumPoolSize()) {
+			batchPool.setMaximumPoolSize(threads);
+			batchPool.setCorePoolSize(threads);
+		} else if (threads < batchPool.getMaximumPoolSize()) {
+			batchPool.setCorePoolSize(threads);
+			batchPool.setMaximumPoolSize(threads);
+		}
+		return batchPool;
+	}
+
+	// read only connections used by searches, so they can run in parallel
+	private Connection getReader() throws SQLException {
+		Connection reader = readers.poll();
+		if (reader == null) {
+			reader = DriverManager.getConnection(url);
+			reader.setReadOnly(true);
+		}
+		return reader;
+	}
+
+	private void releaseReader(Connection reader) throws SQLException {
+		if (!readers.offer(reader)) {
+			reader.close();
+		}
+	}
 }
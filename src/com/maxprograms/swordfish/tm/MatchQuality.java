@@ -16,79 +16,138 @@ public class MatchQuality {
 
     static final int PENALTY = 2;
 
+    private static final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
     private MatchQuality() {
         // private for security
     }
 
-    private static String lcs(String x, String y) {
-        int m = x.length();
-        int n = y.length();
-        int max = 0;
-        int mx = 0;
-
-        // opt[i][j] = length of LCS of x[i..M] and y[j..N]
-        int[][] opt = new int[m + 1][n + 1];
-
-        // fill the matrix
-        for (int i = 1; i <= m; i++) {
-            for (int j = 1; j <= n; j++) {
-                if (x.charAt(i - 1) == y.charAt(j - 1)) {
-                    opt[i][j] = opt[i - 1][j - 1] + 1;
-                    if (opt[i][j] > max) {
-                        // remember where the maximum length is
-                        max = opt[i][j];
-                        mx = i;
-                    }
-                } else {
-                    opt[i][j] = 0;
-                }
-            }
-        }
-
-        // recover the LCS
-        StringBuilder result = new StringBuilder();
-        while (max > 0) {
-            result.insert(0, x.charAt(mx - 1));
-            max--;
-            mx--;
-        }
-        return result.toString();
+    public static int similarity(String x, String y) {
+        return similarity(x, y, 0);
     }
 
-    public static int similarity(String x, String y) {
-        int result = 0;
+    /**
+     * Same score as {@link #similarity(String, String)} when it is at least
+     * <code>threshold</code>. Otherwise returns a value below
+     * <code>threshold</code> as soon as the remaining characters cannot reach it.
+     */
+    public static int similarity(String x, String y, int threshold) {
         x = x.trim();
         y = y.trim();
         int longest = Math.max(x.length(), y.length());
         if (longest == 0) {
             return 0;
         }
-        String a;
-        String b;
+        Scratch s = scratch.get();
+        s.ensureCapacity(longest);
+        char[] a = s.a;
+        char[] b = s.b;
+        // a is the longest string
         if (x.length() == longest) {
-            a = x;
-            b = y;
+            x.getChars(0, longest, a, 0);
+            y.getChars(0, y.length(), b, 0);
         } else {
-            a = y;
-            b = x;
+            y.getChars(0, longest, a, 0);
+            x.getChars(0, x.length(), b, 0);
         }
-        // a is the longest string
+        int m = longest;
+        int n = longest == x.length() ? y.length() : x.length();
+        int minimum = longest * PENALTY / 100;
         int count = -1;
-        int idx;
-        String lcs = lcs(a, b);
-        while (!lcs.trim().isEmpty() && lcs.length() > longest * PENALTY / 100) {
+        while (true) {
+            if (threshold > 0) {
+                // best possible result if every remaining char of b was matched
+                int bound = 100 * (longest - m + n) / longest - count * PENALTY;
+                if (bound < threshold) {
+                    return Math.max(0, bound);
+                }
+            }
+            long found = longestCommon(a, m, b, n, s.row);
+            int length = (int) (found >>> 32);
+            int start = (int) found - length;
+            if (length <= minimum || isBlank(a, start, start + length)) {
+                break;
+            }
             count++;
-            idx = a.indexOf(lcs);
-            a = a.substring(0, idx) + a.substring(idx + lcs.length());
-            idx = b.indexOf(lcs);
-            b = b.substring(0, idx) + b.substring(idx + lcs.length());
-            lcs = lcs(a, b);
+            n = remove(b, n, indexOf(b, n, a, start, length), length);
+            m = remove(a, m, indexOf(a, m, a, start, length), length);
         }
-        result = 100 * (longest - a.length()) / longest - count * PENALTY;
+        int result = 100 * (longest - m) / longest - count * PENALTY;
         if (result < 0) {
             result = 0;
         }
         return result;
     }
 
-}
\ No newline at end of file
+    // finds the first longest common substring scanning a, returns its length and end in a
+    private static long longestCommon(char[] a, int m, char[] b, int n, int[] row) {
+        for (int j = 0; j <= n; j++) {
+            row[j] = 0;
+        }
+        int max = 0;
+        int mx = 0;
+        for (int i = 1; i <= m; i++) {
+            char c = a[i - 1];
+            int diagonal = 0;
+            for (int j = 1; j <= n; j++) {
+                int up = row[j];
+                if (c == b[j - 1]) {
+                    int value = diagonal + 1;
+                    row[j] = value;
+                    if (value > max) {
+                        // remember where the maximum length is
+                        max = value;
+                        mx = i;
+                    }
+                } else {
+                    row[j] = 0;
+                }
+                diagonal = up;
+            }
+        }
+        return ((long) max << 32) | mx;
+    }
+
+    // same as String.trim().isEmpty()
+    private static boolean isBlank(char[] array, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (array[i] > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // first position of pattern[from..from+length) in text[0..size)
+    private static int indexOf(char[] text, int size, char[] pattern, int from, int length) {
+        for (int i = 0; i + length <= size; i++) {
+            int k = 0;
+            while (k < length && text[i + k] == pattern[from + k]) {
+                k++;
+            }
+            if (k == length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int remove(char[] array, int size, int idx, int length) {
+        System.arraycopy(array, idx + length, array, idx, size - idx - length);
+        return size - length;
+    }
+
+    private static class Scratch {
+        char[] a = new char[256];
+        char[] b = new char[256];
+        int[] row = new int[257];
+
+        void ensureCapacity(int size) {
+            if (a.length < size) {
+                a = new char[size];
+                b = new char[size];
+                row = new int[size + 1];
+            }
+        }
+    }
+}
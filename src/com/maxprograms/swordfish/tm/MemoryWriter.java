@@ -0,0 +1,248 @@
+/*******************************************************************************
+ * Copyright (c) 2007-2022 Maxprograms.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/epl-v10.html
+ *
+ * Contributors:
+ *     Maxprograms - initial API and implementation
+ *******************************************************************************/
+
+
+package com.maxprograms.swordfish.tm;
+
+import java.io.IOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+import com.maxprograms.xml.Element;
+
+/**
+ * Write-behind queue of a memory. TUs are stored by a single thread that keeps
+ * the engine open, a TU queued again before it is written replaces the
+ * previous version. Batches are written holding the engine lock, so rolling
+ * back a failed one never discards the work of another writer. After a failed
+ * batch each TU is retried on its own; a TU that keeps failing is dropped after
+ * {@link #MAX_ATTEMPTS} tries. Errors are thrown by the next add() or flush().
+ */
+public class MemoryWriter {
+
+	private static final Logger logger = System.getLogger(MemoryWriter.class.getName());
+
+	public static final int BATCH_SIZE = 200;
+	public static final long COMMIT_INTERVAL = 2000;
+	public static final int MAX_ATTEMPTS = 3;
+
+	private ITmEngine engine;
+	private Map<String, Element> queue;
+	private Map<String, Integer> attempts;
+	private int writing;
+	private int flushing;
+	private boolean closed;
+	private Exception failure;
+	private Thread worker;
+
+	public MemoryWriter(ITmEngine engine) {
+		this.engine = engine;
+		queue = new LinkedHashMap<>();
+		attempts = new HashMap<>();
+		worker = new Thread(this::run, "TM writer " + engine.getName());
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	public synchronized void add(Element tu) throws IOException {
+		if (closed) {
+			throw new IOException("Memory writer closed");
+		}
+		String tuid = tu.getAttributeValue("tuid");
+		queue.remove(tuid);
+		queue.put(tuid, tu);
+		attempts.remove(tuid);
+		if (queue.size() == 1 || queue.size() >= BATCH_SIZE) {
+			// start the commit timer or write a full batch
+			notifyAll();
+		}
+		// the TU is queued even when an earlier batch failed
+		checkFailure();
+	}
+
+	// TUs waiting to be stored or being stored
+	public synchronized int getQueueDepth() {
+		return queue.size() + writing;
+	}
+
+	// waits until every queued TU is stored and committed
+	public synchronized void flush() throws IOException {
+		flushing++;
+		notifyAll();
+		try {
+			while ((!queue.isEmpty() || writing > 0) && worker.isAlive() && failure == null) {
+				wait(100);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			flushing--;
+		}
+		checkFailure();
+	}
+
+	// reports the last failed batch once
+	private void checkFailure() throws IOException {
+		if (failure != null) {
+			Exception e = failure;
+			failure = null;
+			throw new IOException("Error storing TUs in " + engine.getName(), e);
+		}
+	}
+
+	// flushes the queue and stops the writer, the engine is not closed
+	public void close() {
+		synchronized (this) {
+			closed = true;
+			notifyAll();
+		}
+		try {
+			worker.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void run() {
+		while (true) {
+			List<Element> batch = new Vector<>();
+			synchronized (this) {
+				try {
+					if (!waitForBatch()) {
+						notifyAll();
+						return;
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					closed = true;
+					continue;
+				}
+				Iterator<Element> it = queue.values().iterator();
+				while (it.hasNext() && batch.size() < BATCH_SIZE) {
+					batch.add(it.next());
+					it.remove();
+				}
+				writing = batch.size();
+			}
+			List<Element> failed = new Vector<>();
+			Exception error = store(batch, failed);
+			synchronized (this) {
+				for (int i = 0; i < batch.size(); i++) {
+					if (!failed.contains(batch.get(i))) {
+						attempts.remove(batch.get(i).getAttributeValue("tuid"));
+					}
+				}
+				if (error != null) {
+					if (closed) {
+						logger.log(Level.ERROR, failed.size() + " TUs not stored in " + engine.getName(), error);
+					} else {
+						requeue(failed);
+					}
+					failure = error;
+				}
+				writing = 0;
+				notifyAll();
+			}
+		}
+	}
+
+	// returns false when the writer is closed and nothing is left to store
+	private boolean waitForBatch() throws InterruptedException {
+		long deadline = System.currentTimeMillis() + COMMIT_INTERVAL;
+		while (true) {
+			if (queue.isEmpty()) {
+				if (closed) {
+					return false;
+				}
+				wait(COMMIT_INTERVAL);
+				deadline = System.currentTimeMillis() + COMMIT_INTERVAL;
+				continue;
+			}
+			long remaining = deadline - System.currentTimeMillis();
+			if (closed || flushing > 0 || queue.size() >= BATCH_SIZE || remaining <= 0) {
+				return true;
+			}
+			wait(remaining);
+		}
+	}
+
+	// stores and commits the batch, after an error each TU is tried alone and the failed ones are returned
+	private Exception store(List<Element> batch, List<Element> failed) {
+		synchronized (engine) {
+			try {
+				write(batch);
+				return null;
+			} catch (IOException | SQLException e) {
+				logger.log(Level.WARNING, "Error storing TUs in " + engine.getName(), e);
+				rollback();
+			}
+			Exception error = null;
+			for (int i = 0; i < batch.size(); i++) {
+				Element tu = batch.get(i);
+				try {
+					write(List.of(tu));
+				} catch (IOException | SQLException e) {
+					rollback();
+					failed.add(tu);
+					error = e;
+				}
+			}
+			return error;
+		}
+	}
+
+	private void write(List<Element> tus) throws IOException, SQLException {
+		for (int i = 0; i < tus.size(); i++) {
+			engine.storeTu(tus.get(i));
+		}
+		engine.commit();
+	}
+
+	// only this writer has uncommitted work while it holds the engine lock
+	private void rollback() {
+		try {
+			engine.rollback();
+		} catch (IOException | SQLException e) {
+			logger.log(Level.ERROR, "Error rolling back " + engine.getName(), e);
+		}
+	}
+
+	// puts failed TUs back in front, TUs queued again since then keep the newer version
+	private void requeue(List<Element> failed) {
+		Map<String, Element> pending = new LinkedHashMap<>();
+		for (int i = 0; i < failed.size(); i++) {
+			Element tu = failed.get(i);
+			String tuid = tu.getAttributeValue("tuid");
+			if (queue.containsKey(tuid)) {
+				// replaced by a newer version
+				continue;
+			}
+			int count = attempts.getOrDefault(tuid, 0) + 1;
+			if (count >= MAX_ATTEMPTS) {
+				attempts.remove(tuid);
+				logger.log(Level.ERROR, "TU " + tuid + " dropped from " + engine.getName() + " after " + count + " attempts");
+			} else {
+				attempts.put(tuid, count);
+				pending.put(tuid, tu);
+			}
+		}
+		pending.putAll(queue);
+		queue = pending;
+	}
+}
@@ -12,10 +12,8 @@
 
 package com.maxprograms.swordfish.tm;
 
-import java.util.Hashtable;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.Locale;
 import java.util.StringTokenizer;
 import java.util.Vector;
 
@@ -30,39 +28,69 @@ public class NGrams {
 	// allow hyphen in terms
 	public static final String TERM_SEPARATORS = " \u00A0\r\n\f\t\u2028\u2029,.;\":<>¿?¡!()[]{}=+/*\u00AB\u00BB\u201C\u201D\u201E\uFF00";
 
-	public static int[] getNGrams(String source) {
-		String src = source.toLowerCase();
-		List<String> words = buildWordList(src, SEPARATORS);
-		Map<String, String> table = new Hashtable<>();
+	private static final boolean[] SEPARATOR_TABLE = separatorTable();
+	private static final ThreadLocal<IntSet> sets = ThreadLocal.withInitial(IntSet::new);
 
-		Iterator<String> it = words.iterator();
-		while (it.hasNext()) {
-			String word = it.next();
-			char[] array = word.toCharArray();
-			int length = word.length();
-			int ngrams = length / NGRAMSIZE;
-			if (ngrams * NGRAMSIZE < length) {
-				ngrams++;
-			}
-			for (int i = 0; i < ngrams; i++) {
-				StringBuilder gram = new StringBuilder();
-				for (int j = 0; j < NGRAMSIZE; j++) {
-					if (i * NGRAMSIZE + j < length) {
-						char c = array[i * NGRAMSIZE + j];
-						gram.append(c);
-					}
+	public static int[] getNGrams(String source) {
+		// only ASCII text can skip toLowerCase(), unless the locale has its own rules for 'I'
+		String language = Locale.getDefault().getLanguage();
+		boolean ascii = !"tr".equals(language) && !"az".equals(language) && isAscii(source);
+		String src = ascii ? source : source.toLowerCase();
+		IntSet set = sets.get();
+		set.clear();
+		int length = src.length();
+		int hash = 0;
+		int chars = 0;
+		for (int i = 0; i < length; i++) {
+			char c = src.charAt(i);
+			if (isSeparator(c)) {
+				if (chars > 0) {
+					set.add(hash);
+					hash = 0;
+					chars = 0;
 				}
-				table.put("" + gram.toString().hashCode(), "");
+				continue;
+			}
+			if (ascii && c >= 'A' && c <= 'Z') {
+				c += 'a' - 'A';
 			}
+			// same value as String.hashCode() of each group of NGRAMSIZE chars in a word
+			hash = 31 * hash + c;
+			chars++;
+			if (chars == NGRAMSIZE) {
+				set.add(hash);
+				hash = 0;
+				chars = 0;
+			}
+		}
+		if (chars > 0) {
+			set.add(hash);
 		}
+		return set.toArray();
+	}
 
-		Iterator<String> keys = table.keySet().iterator();
-		int[] result = new int[table.size()];
-		int idx = 0;
-		while (keys.hasNext()) {
-			result[idx++] = Integer.parseInt(keys.next());
+	private static boolean isAscii(String string) {
+		for (int i = 0; i < string.length(); i++) {
+			if (string.charAt(i) >= 0x80) {
+				return false;
+			}
 		}
-		return result;
+		return true;
+	}
+
+	private static boolean isSeparator(char c) {
+		return c < SEPARATOR_TABLE.length ? SEPARATOR_TABLE[c] : SEPARATORS.indexOf(c) != -1;
+	}
+
+	private static boolean[] separatorTable() {
+		boolean[] table = new boolean[256];
+		for (int i = 0; i < SEPARATORS.length(); i++) {
+			char c = SEPARATORS.charAt(i);
+			if (c < table.length) {
+				table[c] = true;
+			}
+		}
+		return table;
 	}
 
 	public static List<String> buildWordList(String src, String separator) {
@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2007-2022 Maxprograms.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/epl-v10.html
+ *
+ * Contributors:
+ *     Maxprograms - initial API and implementation
+ *******************************************************************************/
+
+package com.maxprograms.swordfish.tm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Vector;
+
+/**
+ * Postings collected during a bulk import. Entries are kept as
+ * <code>(hash &lt;&lt; 32) | ordinal</code> values; when the buffer is full it
+ * is sorted and written to a run file, and {@link #cursor()} merges all runs
+ * in (hash, ordinal) order.
+ */
+class PostingsBuffer {
+
+	private static final int CAPACITY = 1 << 22;
+
+	private File folder;
+	private String lang;
+	private long[] buffer;
+	private int size;
+	private List<File> runs;
+
+	public PostingsBuffer(File folder, String lang) {
+		this.folder = folder;
+		this.lang = lang;
+		buffer = new long[1024];
+		runs = new Vector<>();
+	}
+
+	public void add(int hash, int ordinal) throws IOException {
+		if (size == buffer.length) {
+			if (size == CAPACITY) {
+				spill();
+			} else {
+				buffer = Arrays.copyOf(buffer, Math.min(CAPACITY, size * 2));
+			}
+		}
+		buffer[size++] = ((long) hash << 32) | ordinal;
+	}
+
+	public boolean isEmpty() {
+		return size == 0 && runs.isEmpty();
+	}
+
+	private void spill() throws IOException {
+		Arrays.sort(buffer, 0, size);
+		File run = new File(folder, "fuzzy_" + lang + ".run" + runs.size());
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(run), 1 << 16))) {
+			for (int i = 0; i < size; i++) {
+				out.writeLong(buffer[i]);
+			}
+		}
+		runs.add(run);
+		size = 0;
+	}
+
+	public Cursor cursor() throws IOException {
+		Arrays.sort(buffer, 0, size);
+		return new Cursor();
+	}
+
+	public void delete() throws IOException {
+		for (int i = 0; i < runs.size(); i++) {
+			Files.deleteIfExists(runs.get(i).toPath());
+		}
+		runs.clear();
+		buffer = new long[1024];
+		size = 0;
+	}
+
+	class Cursor {
+
+		private PriorityQueue<Source> queue;
+
+		Cursor() throws IOException {
+			queue = new PriorityQueue<>();
+			for (int i = 0; i < runs.size(); i++) {
+				Source source = new Source(runs.get(i));
+				if (source.advance()) {
+					queue.add(source);
+				}
+			}
+			Source memory = new Source(null);
+			if (memory.advance()) {
+				queue.add(memory);
+			}
+		}
+
+		boolean hasNext() {
+			return !queue.isEmpty();
+		}
+
+		int peekHash() {
+			return (int) (queue.peek().current >> 32);
+		}
+
+		int nextOrdinal() throws IOException {
+			Source source = queue.poll();
+			int ordinal = (int) source.current;
+			if (source.advance()) {
+				queue.add(source);
+			} else {
+				source.close();
+			}
+			return ordinal;
+		}
+	}
+
+	// a run file, or the in-memory buffer when file is null
+	private class Source implements Comparable<Source> {
+
+		private DataInputStream in;
+		private int position;
+		long current;
+
+		Source(File file) throws IOException {
+			if (file != null) {
+				in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+			}
+		}
+
+		boolean advance() throws IOException {
+			if (in == null) {
+				if (position < size) {
+					current = buffer[position++];
+					return true;
+				}
+				return false;
+			}
+			try {
+				current = in.readLong();
+				return true;
+			} catch (EOFException eof) {
+				return false;
+			}
+		}
+
+		void close() throws IOException {
+			if (in != null) {
+				in.close();
+			}
+		}
+
+		@Override
+		public int compareTo(Source o) {
+			return Long.compare(current, o.current);
+		}
+	}
+}
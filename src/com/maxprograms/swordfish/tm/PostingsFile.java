@@ -0,0 +1,416 @@
+/*******************************************************************************
+ * Copyright (c) 2007-2022 Maxprograms.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/epl-v10.html
+ *
+ * Contributors:
+ *     Maxprograms - initial API and implementation
+ *******************************************************************************/
+
+package com.maxprograms.swordfish.tm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Postings of one language: an immutable, memory-mapped file with sorted and
+ * delta/varint encoded TU ordinals per n-gram hash, plus a journal with the
+ * entries added since the file was last merged.
+ *
+ * File layout: magic, version, postings blob, key table with (hash, count,
+ * offset) entries sorted by hash, key count, table offset, total postings and
+ * magic again.
+ */
+class PostingsFile {
+
+	private static final Logger logger = System.getLogger(PostingsFile.class.getName());
+
+	private static final int MAGIC = 0x53464958;
+	private static final int VERSION = 1;
+	private static final int HEADER = 8;
+	private static final int FOOTER = 24;
+	private static final int ENTRY = 16;
+	private static final int CHUNK_BITS = 30;
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	private static final int MIN_MERGE = 1 << 20;
+
+	private File folder;
+	private String lang;
+	private long generation;
+
+	private MappedByteBuffer[] chunks;
+	private int keys;
+	private long tableOffset;
+	private long total;
+
+	private Map<Integer, IntList> delta;
+	private int deltaSize;
+	private IntList pending;
+	private File journal;
+
+	public PostingsFile(File folder, String lang) throws IOException {
+		this.folder = folder;
+		this.lang = lang;
+		delta = new HashMap<>();
+		pending = new IntList();
+		journal = new File(folder, "fuzzy_" + lang + ".log");
+		generation = -1;
+		File[] files = folder.listFiles();
+		if (files != null) {
+			for (int i = 0; i < files.length; i++) {
+				long gen = getGeneration(files[i].getName());
+				if (gen > generation && isComplete(files[i])) {
+					generation = gen;
+				}
+			}
+		}
+		if (generation != -1) {
+			map(getFile(generation));
+		}
+		deleteOldGenerations();
+		replayJournal();
+	}
+
+	public boolean isEmpty() {
+		return keys == 0 && deltaSize == 0;
+	}
+
+	public void add(int hash, int ordinal) {
+		IntList list = delta.get(hash);
+		if (list == null) {
+			list = new IntList(4);
+			delta.put(hash, list);
+		}
+		list.add(ordinal);
+		deltaSize++;
+		pending.add(hash);
+		pending.add(ordinal);
+	}
+
+	public void forEach(int hash, IntConsumer consumer) {
+		IntList added = delta.get(hash);
+		if (added != null) {
+			// concurrent readers may find the same unsorted list
+			synchronized (added) {
+				added.sortUnique();
+			}
+		}
+		int j = 0;
+		long entry = find(hash);
+		if (entry != -1) {
+			int count = readInt(entry + 4);
+			long pos = HEADER + readLong(entry + 8);
+			int value = 0;
+			for (int i = 0; i < count; i++) {
+				int shift = 0;
+				int gap = 0;
+				byte b;
+				do {
+					b = get(pos++);
+					gap |= (b & 0x7F) << shift;
+					shift += 7;
+				} while ((b & 0x80) != 0);
+				value += gap;
+				while (added != null && j < added.size() && added.get(j) < value) {
+					consumer.accept(added.get(j++));
+				}
+				if (added != null && j < added.size() && added.get(j) == value) {
+					j++;
+				}
+				consumer.accept(value);
+			}
+		}
+		while (added != null && j < added.size()) {
+			consumer.accept(added.get(j++));
+		}
+	}
+
+	public void commit() throws IOException {
+		if (!pending.isEmpty()) {
+			try (FileOutputStream out = new FileOutputStream(journal, true)) {
+				try (DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out))) {
+					for (int i = 0; i < pending.size(); i++) {
+						data.writeInt(pending.get(i));
+					}
+					data.flush();
+					out.getFD().sync();
+				}
+			}
+			pending.clear();
+		}
+		if (deltaSize > Math.max(MIN_MERGE, total / 4)) {
+			merge();
+		}
+	}
+
+	public void rollback() throws IOException {
+		pending.clear();
+		delta.clear();
+		deltaSize = 0;
+		replayJournal();
+	}
+
+	public void compact() throws IOException {
+		commit();
+		if (deltaSize > 0) {
+			merge();
+		}
+	}
+
+	// merges postings of a bulk import, the journal is not used for them
+	public void merge(PostingsBuffer buffer) throws IOException {
+		commit();
+		if (buffer.isEmpty()) {
+			if (deltaSize > 0) {
+				merge();
+			}
+			return;
+		}
+		writeGeneration(buffer.cursor());
+		buffer.delete();
+	}
+
+	// the journal is replayed on open, merging is left to commit()
+	public void close() throws IOException {
+		commit();
+		chunks = null;
+	}
+
+	private void merge() throws IOException {
+		writeGeneration(null);
+	}
+
+	private void writeGeneration(PostingsBuffer.Cursor cursor) throws IOException {
+		long gen = generation + 1;
+		File tmp = new File(folder, "fuzzy_" + lang + "." + gen + ".tmp");
+		int[] deltaKeys = new int[delta.size()];
+		int k = 0;
+		Iterator<Integer> it = delta.keySet().iterator();
+		while (it.hasNext()) {
+			deltaKeys[k++] = it.next();
+		}
+		Arrays.sort(deltaKeys);
+
+		IntList tableHashes = new IntList(keys + deltaKeys.length);
+		IntList tableCounts = new IntList(keys + deltaKeys.length);
+		long[] tableOffsets = new long[keys + deltaKeys.length];
+		long postings = 0;
+		IntList merged = new IntList();
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			long offset = 0;
+			int i = 0;
+			int j = 0;
+			while (i < keys || j < deltaKeys.length || (cursor != null && cursor.hasNext())) {
+				// smallest hash among the mapped file, the delta and the bulk cursor
+				long hash = Long.MAX_VALUE;
+				if (i < keys) {
+					hash = readInt(entry(i));
+				}
+				if (j < deltaKeys.length) {
+					hash = Math.min(hash, deltaKeys[j]);
+				}
+				if (cursor != null && cursor.hasNext()) {
+					hash = Math.min(hash, cursor.peekHash());
+				}
+				if (i < keys && readInt(entry(i)) == hash) {
+					i++;
+				}
+				if (j < deltaKeys.length && deltaKeys[j] == hash) {
+					j++;
+				}
+				merged.clear();
+				forEach((int) hash, merged::add);
+				while (cursor != null && cursor.hasNext() && cursor.peekHash() == hash) {
+					merged.add(cursor.nextOrdinal());
+				}
+				merged.sortUnique();
+				if (tableHashes.size() == tableOffsets.length) {
+					tableOffsets = Arrays.copyOf(tableOffsets, tableOffsets.length * 2 + 16);
+				}
+				tableOffsets[tableHashes.size()] = offset;
+				tableHashes.add((int) hash);
+				tableCounts.add(merged.size());
+				postings += merged.size();
+				int last = 0;
+				for (int n = 0; n < merged.size(); n++) {
+					int value = merged.get(n);
+					offset += writeVarint(out, value - last);
+					last = value;
+				}
+			}
+			for (int n = 0; n < tableHashes.size(); n++) {
+				out.writeInt(tableHashes.get(n));
+				out.writeInt(tableCounts.get(n));
+				out.writeLong(tableOffsets[n]);
+			}
+			out.writeInt(tableHashes.size());
+			out.writeLong(HEADER + offset);
+			out.writeLong(postings);
+			out.writeInt(MAGIC);
+		}
+		File target = getFile(gen);
+		Files.move(tmp.toPath(), target.toPath());
+		generation = gen;
+		map(target);
+		delta.clear();
+		deltaSize = 0;
+		Files.deleteIfExists(journal.toPath());
+		deleteOldGenerations();
+	}
+
+	private static int writeVarint(DataOutputStream out, int value) throws IOException {
+		int bytes = 1;
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+			bytes++;
+		}
+		out.writeByte(value);
+		return bytes;
+	}
+
+	private void map(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			try (FileChannel channel = raf.getChannel()) {
+				long length = channel.size();
+				int count = (int) ((length + CHUNK_SIZE - 1) >>> CHUNK_BITS);
+				chunks = new MappedByteBuffer[count];
+				for (int i = 0; i < count; i++) {
+					long start = (long) i << CHUNK_BITS;
+					chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK_SIZE, length - start));
+				}
+				keys = readInt(length - FOOTER);
+				tableOffset = readLong(length - FOOTER + 4);
+				total = readLong(length - FOOTER + 12);
+			}
+		}
+	}
+
+	private long entry(int i) {
+		return tableOffset + (long) i * ENTRY;
+	}
+
+	private long find(int hash) {
+		int low = 0;
+		int high = keys - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int value = readInt(entry(mid));
+			if (value < hash) {
+				low = mid + 1;
+			} else if (value > hash) {
+				high = mid - 1;
+			} else {
+				return entry(mid);
+			}
+		}
+		return -1;
+	}
+
+	private byte get(long pos) {
+		return chunks[(int) (pos >>> CHUNK_BITS)].get((int) (pos & (CHUNK_SIZE - 1)));
+	}
+
+	private int readInt(long pos) {
+		return ((get(pos) & 0xFF) << 24) | ((get(pos + 1) & 0xFF) << 16) | ((get(pos + 2) & 0xFF) << 8)
+				| (get(pos + 3) & 0xFF);
+	}
+
+	private long readLong(long pos) {
+		return ((long) readInt(pos) << 32) | (readInt(pos + 4) & 0xFFFFFFFFL);
+	}
+
+	private void replayJournal() throws IOException {
+		if (!journal.exists()) {
+			return;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journal)))) {
+			while (true) {
+				int hash = in.readInt();
+				int ordinal = in.readInt();
+				IntList list = delta.get(hash);
+				if (list == null) {
+					list = new IntList(4);
+					delta.put(hash, list);
+				}
+				list.add(ordinal);
+				deltaSize++;
+			}
+		} catch (EOFException eof) {
+			// end of journal, a truncated last entry is discarded
+		}
+	}
+
+	private File getFile(long gen) {
+		return new File(folder, "fuzzy_" + lang + "." + gen + ".idx");
+	}
+
+	private long getGeneration(String name) {
+		String prefix = "fuzzy_" + lang + ".";
+		if (name.startsWith(prefix) && name.endsWith(".idx")) {
+			try {
+				return Long.parseLong(name.substring(prefix.length(), name.length() - 4));
+			} catch (NumberFormatException e) {
+				// not an index file
+			}
+		}
+		return -1;
+	}
+
+	private static boolean isComplete(File file) {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			if (raf.length() < HEADER + FOOTER || raf.readInt() != MAGIC || raf.readInt() != VERSION) {
+				return false;
+			}
+			raf.seek(raf.length() - 4);
+			return raf.readInt() == MAGIC;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private void deleteOldGenerations() {
+		File[] files = folder.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (int i = 0; i < files.length; i++) {
+			String name = files[i].getName();
+			long gen = getGeneration(name);
+			boolean stale = (gen != -1 && gen != generation)
+					|| (name.startsWith("fuzzy_" + lang + ".") && name.endsWith(".tmp"));
+			if (stale) {
+				try {
+					Files.delete(files[i].toPath());
+				} catch (IOException e) {
+					// still mapped on some platforms, will be removed on next open
+					logger.log(Level.DEBUG, "Unable to delete " + name);
+				}
+			}
+		}
+	}
+}
@@ -26,6 +26,7 @@ import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -318,6 +319,17 @@ public class RemoteDatabase implements ITmEngine {
         return matches;
     }
 
+    @Override
+    public List<Match> searchTranslation(String searchStr, String srcLang, String tgtLang, int similarity,
+            boolean caseSensitive, int maxResults) throws IOException, SAXException, ParserConfigurationException {
+        List<Match> matches = searchTranslation(searchStr, srcLang, tgtLang, similarity, caseSensitive);
+        if (maxResults > 0 && matches.size() > maxResults) {
+            Collections.sort(matches);
+            return new Vector<>(matches.subList(0, maxResults));
+        }
+        return matches;
+    }
+
     @Override
     public List<Element> searchAll(String searchStr, String srcLang, int similarity, boolean caseSensitive)
             throws IOException, SAXException, ParserConfigurationException {
@@ -374,6 +386,11 @@ public class RemoteDatabase implements ITmEngine {
         postMessage("/memories", params);
     }
 
+    @Override
+    public void rollback() {
+        // TUs are stored by the server as they are posted, nothing to roll back
+    }
+
     @Override
     public Element getTu(String tuid) throws IOException, SAXException, ParserConfigurationException {
         JSONObject params = new JSONObject();
@@ -13,6 +13,7 @@
 package com.maxprograms.swordfish.tm;
 
 import java.io.File;
+import java.util.List;
 import java.util.Set;
 import java.util.Vector;
 
@@ -51,7 +52,10 @@ public class TuDatabase {
 	}
 
 	public synchronized void store(String tuid, Element tu) {
-		tu.removeChild("tuv");
+		List<Element> tuvs = tu.getChildren("tuv");
+		for (int i = 0; i < tuvs.size(); i++) {
+			tu.removeChild(tuvs.get(i));
+		}
 		if (tu.getChildren().isEmpty()) {
 			tu.setContent(new Vector<>());
 		}
@@ -0,0 +1,26 @@
+/*******************************************************************************
+ * Copyright (c) 2007-2022 Maxprograms.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/epl-v10.html
+ *
+ * Contributors:
+ *     Maxprograms - initial API and implementation
+ *******************************************************************************/
+
+package com.maxprograms.swordfish.tmx;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+import com.maxprograms.xml.Element;
+
+/**
+ * Receives the TUs of a TMX file as they are parsed.
+ */
+public interface ITuHandler {
+
+	void handleTu(Element tu) throws IOException, SQLException;
+}
@@ -38,12 +38,18 @@ class TMXContentHandler implements IContentHandler {
 	private boolean inCDATA = false;
 	private int count;
 	private ITmEngine db;
-	
+	private ITuHandler tuHandler;
+
 	public TMXContentHandler(ITmEngine tmEngine) {
 		db = tmEngine;
 		stack = new ConcurrentLinkedDeque<>();
 	}
 
+	public TMXContentHandler(ITuHandler handler) {
+		tuHandler = handler;
+		stack = new ConcurrentLinkedDeque<>();
+	}
+
 	@Override
 	public void characters(char[] ch, int start, int length) throws SAXException {
 		if (!inCDATA && current != null) {
@@ -58,7 +64,16 @@ class TMXContentHandler implements IContentHandler {
 
 	@Override
 	public void endElement(String uri, String localName, String qName) throws SAXException {
-		if (localName.equals("tu")) {
+		if (localName.equals("tu") && tuHandler != null) {
+			try {
+				tuHandler.handleTu(current);
+			} catch (IOException | SQLException e) {
+				throw new SAXException(e);
+			}
+			count++;
+			current = null;
+			stack.clear();
+		} else if (localName.equals("tu")) {
 			try {
 				db.storeTu(current);
 				if (count % 500 == 0) {
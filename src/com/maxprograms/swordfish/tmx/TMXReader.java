@@ -28,7 +28,15 @@ public class TMXReader {
 	private TMXContentHandler handler;
 
 	public TMXReader(ITmEngine database) {
-		handler = new TMXContentHandler(database);
+		this(new TMXContentHandler(database));
+	}
+
+	public TMXReader(ITuHandler tuHandler) {
+		this(new TMXContentHandler(tuHandler));
+	}
+
+	private TMXReader(TMXContentHandler handler) {
+		this.handler = handler;
 		builder = new SAXBuilder();
 		builder.setEntityResolver(new TMXResolver());
 		builder.setContentHandler(handler);
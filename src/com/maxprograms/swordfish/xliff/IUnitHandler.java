@@ -0,0 +1,31 @@
+/*******************************************************************************
+ * Copyright (c) 2007-2022 Maxprograms.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/epl-v10.html
+ *
+ * Contributors:
+ *     Maxprograms - initial API and implementation
+ *******************************************************************************/
+
+package com.maxprograms.swordfish.xliff;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+import com.maxprograms.xml.Element;
+
+/**
+ * Receives the files and units of an XLIFF document as they are parsed. File
+ * elements are delivered without their children.
+ */
+interface IUnitHandler {
+
+    void startFile(Element file) throws IOException, SQLException;
+
+    void handleUnit(Element unit) throws IOException, SQLException;
+
+    void endFile() throws IOException, SQLException;
+}
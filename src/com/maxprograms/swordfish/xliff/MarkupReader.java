@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2007-2022 Maxprograms.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/epl-v10.html
+ *
+ * Contributors:
+ *     Maxprograms - initial API and implementation
+ *******************************************************************************/
+
+package com.maxprograms.swordfish.xliff;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.maxprograms.xml.XMLUtils;
+
+/**
+ * Splits XML text in character data and markup without building a tree. Each
+ * tag, comment, CDATA section, processing instruction or declaration is
+ * returned as it appears in the file.
+ */
+class MarkupReader {
+
+    private Reader reader;
+
+    public MarkupReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    // next character of text, '<' starts markup that must be read with readMarkup()
+    public int read() throws IOException {
+        return reader.read();
+    }
+
+    public String readMarkup() throws IOException {
+        StringBuilder markup = new StringBuilder("<");
+        int c = next(markup);
+        if (c == '?') {
+            readUntil(markup, "?>");
+        } else if (c == '!') {
+            c = next(markup);
+            if (c == '-') {
+                readUntil(markup, "-->");
+            } else if (c == '[') {
+                readUntil(markup, "]]>");
+            } else {
+                readDeclaration(markup);
+            }
+        } else {
+            readTag(markup, c);
+        }
+        return markup.toString();
+    }
+
+    private int next(StringBuilder markup) throws IOException {
+        int c = reader.read();
+        if (c == -1) {
+            throw new IOException("Unexpected end of file");
+        }
+        markup.append((char) c);
+        return c;
+    }
+
+    private void readUntil(StringBuilder markup, String end) throws IOException {
+        int length = markup.length();
+        while (markup.length() < length + end.length() - 1 || !endsWith(markup, end)) {
+            next(markup);
+        }
+    }
+
+    private static boolean endsWith(StringBuilder builder, String end) {
+        int offset = builder.length() - end.length();
+        if (offset < 0) {
+            return false;
+        }
+        for (int i = 0; i < end.length(); i++) {
+            if (builder.charAt(offset + i) != end.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // attribute values may contain '>'
+    private void readTag(StringBuilder markup, int c) throws IOException {
+        int quote = 0;
+        while (quote != 0 || c != '>') {
+            if (quote == 0 && (c == '"' || c == '\'')) {
+                quote = c;
+            } else if (c == quote) {
+                quote = 0;
+            }
+            c = next(markup);
+        }
+    }
+
+    // DOCTYPE and other declarations, with an optional internal subset
+    private void readDeclaration(StringBuilder markup) throws IOException {
+        int quote = 0;
+        int depth = 0;
+        int c = markup.charAt(markup.length() - 1);
+        while (quote != 0 || depth > 0 || c != '>') {
+            if (quote == 0 && (c == '"' || c == '\'')) {
+                quote = c;
+            } else if (c == quote) {
+                quote = 0;
+            } else if (quote == 0 && c == '[') {
+                depth++;
+            } else if (quote == 0 && c == ']') {
+                depth--;
+            }
+            c = next(markup);
+        }
+    }
+
+    public static boolean isStartTag(String markup) {
+        return markup.length() > 1 && markup.charAt(1) != '/' && markup.charAt(1) != '!' && markup.charAt(1) != '?';
+    }
+
+    public static boolean isEndTag(String markup) {
+        return markup.startsWith("</");
+    }
+
+    public static boolean isEmptyTag(String markup) {
+        return isStartTag(markup) && markup.endsWith("/>");
+    }
+
+    public static String getName(String markup) {
+        int start = markup.startsWith("</") ? 2 : 1;
+        int end = start;
+        while (end < markup.length()) {
+            char c = markup.charAt(end);
+            if (Character.isWhitespace(c) || c == '>' || c == '/') {
+                break;
+            }
+            end++;
+        }
+        return markup.substring(start, end);
+    }
+
+    public static String getAttribute(String markup, String name) {
+        Pattern pattern = Pattern.compile("\\s" + Pattern.quote(name) + "\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)')");
+        Matcher matcher = pattern.matcher(markup);
+        if (!matcher.find()) {
+            return "";
+        }
+        String value = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+        return XMLUtils.uncleanText(value);
+    }
+}
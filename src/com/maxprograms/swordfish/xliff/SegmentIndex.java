@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (c) 2007-2022 Maxprograms.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/epl-v10.html
+ *
+ * Contributors:
+ *     Maxprograms - initial API and implementation
+ *******************************************************************************/
+
+
+package com.maxprograms.swordfish.xliff;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+import com.maxprograms.swordfish.tm.NGrams;
+
+/**
+ * In-memory n-gram index of the segment sources of a project, used to find
+ * the segments worth scoring when a translation is propagated.
+ */
+class SegmentIndex {
+
+    private Map<Integer, Postings> postings;
+    private Map<String, Integer> ordinals;
+    private List<String> keys;
+    private List<int[]> grams;
+    private int removed;
+
+    public SegmentIndex() {
+        clear();
+    }
+
+    public final void clear() {
+        postings = new HashMap<>();
+        ordinals = new HashMap<>();
+        keys = new Vector<>();
+        grams = new Vector<>();
+        removed = 0;
+    }
+
+    public static String key(String file, String unit, String segment) {
+        return file + '\n' + unit + '\n' + segment;
+    }
+
+    public static String[] split(String key) {
+        return key.split("\n", 3);
+    }
+
+    public void put(String key, String text) {
+        remove(key);
+        insert(key, NGrams.getNGrams(text));
+    }
+
+    private void insert(String key, int[] ngrams) {
+        int ordinal = keys.size();
+        keys.add(key);
+        grams.add(ngrams);
+        ordinals.put(key, ordinal);
+        for (int i = 0; i < ngrams.length; i++) {
+            postings.computeIfAbsent(ngrams[i], k -> new Postings()).add(ordinal);
+        }
+    }
+
+    public void remove(String key) {
+        Integer ordinal = ordinals.remove(key);
+        if (ordinal == null) {
+            return;
+        }
+        // postings keep the ordinal until the next compaction, searches skip it
+        keys.set(ordinal, null);
+        grams.set(ordinal, null);
+        removed++;
+        if (removed > 1024 && removed > keys.size() / 2) {
+            compact();
+        }
+    }
+
+    /**
+     * Keys of the segments that share at least <code>similarity</code> percent
+     * of the n-grams of <code>text</code>, ordered by number of shared n-grams.
+     */
+    public List<String> search(String text, int similarity) {
+        List<String> result = new Vector<>();
+        int[] ngrams = NGrams.getNGrams(text);
+        if (ngrams.length == 0) {
+            return result;
+        }
+        int min = Math.max(1, ngrams.length * similarity / 100);
+        int[] counts = new int[keys.size()];
+        for (int i = 0; i < ngrams.length; i++) {
+            Postings list = postings.get(ngrams[i]);
+            if (list != null) {
+                for (int j = 0; j < list.size; j++) {
+                    counts[list.values[j]]++;
+                }
+            }
+        }
+        List<int[]> found = new Vector<>();
+        for (int ordinal = 0; ordinal < counts.length; ordinal++) {
+            if (counts[ordinal] >= min && keys.get(ordinal) != null) {
+                found.add(new int[] { ordinal, counts[ordinal] });
+            }
+        }
+        found.sort((a, b) -> Integer.compare(b[1], a[1]));
+        for (int i = 0; i < found.size(); i++) {
+            result.add(keys.get(found.get(i)[0]));
+        }
+        return result;
+    }
+
+    private void compact() {
+        List<String> oldKeys = keys;
+        List<int[]> oldGrams = grams;
+        clear();
+        for (int i = 0; i < oldKeys.size(); i++) {
+            if (oldKeys.get(i) != null) {
+                insert(oldKeys.get(i), oldGrams.get(i));
+            }
+        }
+    }
+
+    private static class Postings {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+/*******************************************************************************
+ * Copyright (c) 2007-2022 Maxprograms.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/epl-v10.html
+ *
+ * Contributors:
+ *     Maxprograms - initial API and implementation
+ *******************************************************************************/
+
+
+package com.maxprograms.swordfish.xliff;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Vector;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import com.maxprograms.languages.LanguageUtils;
+import com.maxprograms.swordfish.GlossariesHandler;
+import com.maxprograms.swordfish.MemoriesHandler;
+import com.maxprograms.swordfish.am.Term;
+import com.maxprograms.swordfish.tm.ITmEngine;
+import com.maxprograms.swordfish.tm.InternalDatabase;
+import com.maxprograms.swordfish.tm.NGrams;
+import com.maxprograms.swordfish.tm.TMUtils;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Aho-Corasick automaton with the source terms of a glossary. Finds in a
+ * single pass the terms equal to a window of up to
+ * {@link XliffStore#MAXTERMLENGTH} words of a segment, the same windows that
+ * are otherwise looked up one by one.
+ */
+public class TermScanner {
+
+    private static Map<String, TermScanner> scanners = new Hashtable<>();
+
+    private boolean caseSensitive;
+    private boolean cjk;
+
+    private List<Map<Character, Integer>> trie;
+    private List<Integer> ends;
+    private Map<String, Integer> keys;
+    private List<List<Term>> terms;
+
+    private char[][] labels;
+    private int[][] targets;
+    private int[] fail;
+    private int[] output;
+    private int[] dictionary;
+    private int[] lengths;
+
+    public TermScanner(boolean caseSensitive, boolean cjk) {
+        this.caseSensitive = caseSensitive;
+        this.cjk = cjk;
+        trie = new Vector<>();
+        ends = new Vector<>();
+        keys = new HashMap<>();
+        terms = new Vector<>();
+        addState();
+    }
+
+    /**
+     * Exact matcher for the source terms of a glossary, built on first use.
+     * Returns null when the engine cannot list its terms.
+     */
+    public static synchronized TermScanner getScanner(String id, String srcLang, String tgtLang,
+            boolean caseSensitive) throws IOException, SQLException, SAXException, ParserConfigurationException {
+        String key = id + '|' + srcLang + '|' + tgtLang + '|' + caseSensitive;
+        TermScanner scanner = scanners.get(key);
+        if (scanner == null) {
+            ITmEngine engine = GlossariesHandler.getEngine(id);
+            if (!(engine instanceof InternalDatabase)) {
+                return null;
+            }
+            String name = GlossariesHandler.getGlossaryName(id);
+            scanner = new TermScanner(caseSensitive, LanguageUtils.getLanguage(srcLang).isCJK());
+            List<String[]> pairs = ((InternalDatabase) engine).getSegmentPairs(srcLang, tgtLang);
+            for (int i = 0; i < pairs.size(); i++) {
+                String[] pair = pairs.get(i);
+                // fuzzy searches cannot find text without n-grams
+                if (NGrams.getNGrams(pair[0]).length > 0) {
+                    String source = MemoriesHandler.pureText(TMUtils.buildTuv(srcLang, pair[1]).getChild("seg"));
+                    String target = MemoriesHandler.pureText(TMUtils.buildTuv(tgtLang, pair[2]).getChild("seg"));
+                    scanner.add(pair[0], new Term(source, target, srcLang, tgtLang, name));
+                }
+            }
+            scanner.compile();
+            scanners.put(key, scanner);
+        }
+        return scanner;
+    }
+
+    // drops the scanners of a glossary after its terms change
+    public static synchronized void invalidate(String id) {
+        Iterator<String> it = scanners.keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().startsWith(id + '|')) {
+                it.remove();
+            }
+        }
+    }
+
+    public static synchronized void clearAll() {
+        scanners.clear();
+    }
+
+    public boolean isEmpty() {
+        return terms.isEmpty();
+    }
+
+    public void add(String text, Term term) {
+        // searches compare lengths first, padded text never matches a window
+        if (text.isEmpty() || !text.equals(text.trim())) {
+            return;
+        }
+        String key = fold(text);
+        Integer index = keys.get(key);
+        if (index == null) {
+            index = terms.size();
+            keys.put(key, index);
+            terms.add(new Vector<>());
+            int state = 0;
+            for (int i = 0; i < key.length(); i++) {
+                Integer next = trie.get(state).get(key.charAt(i));
+                if (next == null) {
+                    next = addState();
+                    trie.get(state).put(key.charAt(i), next);
+                }
+                state = next;
+            }
+            ends.set(state, index);
+        }
+        List<Term> list = terms.get(index);
+        if (!list.contains(term)) {
+            list.add(term);
+        }
+    }
+
+    private int addState() {
+        trie.add(new HashMap<>());
+        ends.add(-1);
+        return trie.size() - 1;
+    }
+
+    // builds the failure and dictionary links, no terms can be added after this
+    public void compile() {
+        int size = trie.size();
+        labels = new char[size][];
+        targets = new int[size][];
+        fail = new int[size];
+        output = new int[size];
+        dictionary = new int[size];
+        lengths = new int[terms.size()];
+        for (int state = 0; state < size; state++) {
+            Map<Character, Integer> map = trie.get(state);
+            char[] chars = new char[map.size()];
+            Iterator<Character> it = map.keySet().iterator();
+            for (int i = 0; it.hasNext(); i++) {
+                chars[i] = it.next();
+            }
+            Arrays.sort(chars);
+            int[] next = new int[chars.length];
+            for (int i = 0; i < chars.length; i++) {
+                next[i] = map.get(chars[i]);
+            }
+            labels[state] = chars;
+            targets[state] = next;
+            output[state] = ends.get(state);
+        }
+        Iterator<Map.Entry<String, Integer>> it = keys.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Integer> entry = it.next();
+            lengths[entry.getValue()] = entry.getKey().length();
+        }
+        dictionary[0] = -1;
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int i = 0; i < targets[0].length; i++) {
+            fail[targets[0][i]] = 0;
+            dictionary[targets[0][i]] = -1;
+            queue.add(targets[0][i]);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int i = 0; i < labels[state].length; i++) {
+                char c = labels[state][i];
+                int child = targets[state][i];
+                int f = fail[state];
+                while (f > 0 && next(f, c) == -1) {
+                    f = fail[f];
+                }
+                int target = next(f, c);
+                fail[child] = target == -1 ? 0 : target;
+                dictionary[child] = output[fail[child]] != -1 ? fail[child] : dictionary[fail[child]];
+                queue.add(child);
+            }
+        }
+        trie = null;
+        ends = null;
+        keys = null;
+    }
+
+    private int next(int state, char c) {
+        int i = Arrays.binarySearch(labels[state], c);
+        return i >= 0 ? targets[state][i] : -1;
+    }
+
+    /**
+     * Terms whose source is equal to a window of up to
+     * {@link XliffStore#MAXTERMLENGTH} consecutive words, joined with a space
+     * or without separator in CJK languages.
+     */
+    public List<Term> scan(List<String> words) {
+        List<Term> result = new Vector<>();
+        if (words.isEmpty() || lengths.length == 0) {
+            return result;
+        }
+        int[] offsets = new int[words.size()];
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words.size(); i++) {
+            if (i > 0 && !cjk) {
+                text.append(' ');
+            }
+            offsets[i] = text.length();
+            text.append(fold(words.get(i)));
+        }
+        // index of the word that starts at a position and of the word that ends there
+        int[] starts = new int[text.length() + 1];
+        int[] ends = new int[text.length() + 1];
+        Arrays.fill(starts, -1);
+        Arrays.fill(ends, -1);
+        for (int i = 0; i < words.size(); i++) {
+            starts[offsets[i]] = i;
+            ends[offsets[i] + words.get(i).length()] = i;
+        }
+        boolean[] found = new boolean[lengths.length];
+        int state = 0;
+        for (int pos = 0; pos < text.length(); pos++) {
+            char c = text.charAt(pos);
+            int target = next(state, c);
+            while (target == -1 && state > 0) {
+                state = fail[state];
+                target = next(state, c);
+            }
+            state = target == -1 ? 0 : target;
+            int match = output[state] != -1 ? state : dictionary[state];
+            while (match != -1) {
+                int index = output[match];
+                int first = starts[pos + 1 - lengths[index]];
+                int last = ends[pos + 1];
+                if (!found[index] && first != -1 && last != -1 && last - first < XliffStore.MAXTERMLENGTH) {
+                    found[index] = true;
+                    List<Term> list = terms.get(index);
+                    for (int i = 0; i < list.size(); i++) {
+                        if (!result.contains(list.get(i))) {
+                            result.add(list.get(i));
+                        }
+                    }
+                }
+                match = dictionary[match];
+            }
+        }
+        return result;
+    }
+
+    // same folding as String.equalsIgnoreCase(), one char for each char
+    private String fold(String string) {
+        if (caseSensitive) {
+            return string;
+        }
+        char[] chars = string.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (c) 2007-2022 Maxprograms.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/epl-v10.html
+ *
+ * Contributors:
+ *     Maxprograms - initial API and implementation
+ *******************************************************************************/
+
+package com.maxprograms.swordfish.xliff;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Vector;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.xml.sax.SAXException;
+
+import com.maxprograms.xml.Document;
+import com.maxprograms.xml.Element;
+import com.maxprograms.xml.SAXBuilder;
+
+/**
+ * Reads an XLIFF file without keeping it in memory. Units are collected in
+ * groups of {@link #UNITS_PER_PARSE}, parsed inside copies of their ancestors
+ * and passed to an {@link IUnitHandler}.
+ */
+class XliffLoader {
+
+    public static final int UNITS_PER_PARSE = 100;
+
+    private SAXBuilder builder;
+    private IUnitHandler handler;
+
+    private List<String> ancestors;
+    private StringBuilder units;
+    private int count;
+
+    public XliffLoader(SAXBuilder builder, IUnitHandler handler) {
+        this.builder = builder;
+        this.handler = handler;
+    }
+
+    /**
+     * Returns false without calling the handler when the file is not UTF-8 or
+     * has a DOCTYPE declaration, these files must be parsed as a whole.
+     */
+    public boolean load(File file) throws IOException, SQLException, SAXException, ParserConfigurationException {
+        byte[] bom = new byte[2];
+        try (FileInputStream input = new FileInputStream(file)) {
+            if (input.read(bom) == 2 && ((bom[0] == (byte) 0xFE && bom[1] == (byte) 0xFF)
+                    || (bom[0] == (byte) 0xFF && bom[1] == (byte) 0xFE))) {
+                return false;
+            }
+        }
+        ancestors = new Vector<>();
+        units = new StringBuilder();
+        count = 0;
+        try (Reader in = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), 65536)) {
+            MarkupReader reader = new MarkupReader(in);
+            boolean started = false;
+            StringBuilder unit = null;
+            int c;
+            while ((c = reader.read()) != -1) {
+                if (c != '<') {
+                    if (unit != null) {
+                        unit.append((char) c);
+                    }
+                    continue;
+                }
+                String markup = reader.readMarkup();
+                if (unit != null) {
+                    unit.append(markup);
+                    if (MarkupReader.isEndTag(markup) && "unit".equals(MarkupReader.getName(markup))) {
+                        addUnit(unit.toString());
+                        unit = null;
+                    }
+                    continue;
+                }
+                if (!started && !isSupported(markup)) {
+                    return false;
+                }
+                if (MarkupReader.isEndTag(markup)) {
+                    flush();
+                    if (!ancestors.isEmpty()) {
+                        String name = MarkupReader.getName(ancestors.remove(ancestors.size() - 1));
+                        if ("file".equals(name)) {
+                            handler.endFile();
+                        }
+                    }
+                } else if (MarkupReader.isStartTag(markup)) {
+                    started = true;
+                    String name = MarkupReader.getName(markup);
+                    boolean empty = MarkupReader.isEmptyTag(markup);
+                    if ("unit".equals(name)) {
+                        if (empty) {
+                            addUnit(markup);
+                        } else {
+                            unit = new StringBuilder(markup);
+                        }
+                        continue;
+                    }
+                    flush();
+                    ancestors.add(empty ? markup.substring(0, markup.length() - 2) + '>' : markup);
+                    if ("file".equals(name)) {
+                        handler.startFile(parse(""));
+                    }
+                    if (empty) {
+                        ancestors.remove(ancestors.size() - 1);
+                        if ("file".equals(name)) {
+                            handler.endFile();
+                        }
+                    }
+                }
+            }
+            if (unit != null) {
+                throw new IOException("Unexpected end of file");
+            }
+            flush();
+        }
+        return true;
+    }
+
+    private static boolean isSupported(String markup) {
+        if (markup.startsWith("<!DOCTYPE")) {
+            return false;
+        }
+        if (markup.startsWith("<?xml ")) {
+            String encoding = MarkupReader.getAttribute(markup, "encoding");
+            return encoding.isEmpty() || "UTF-8".equalsIgnoreCase(encoding);
+        }
+        return true;
+    }
+
+    private void addUnit(String unit) throws IOException, SQLException, SAXException, ParserConfigurationException {
+        units.append(unit);
+        count++;
+        if (count == UNITS_PER_PARSE) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException, SQLException, SAXException, ParserConfigurationException {
+        if (count == 0) {
+            return;
+        }
+        Element parent = parse(units.toString());
+        units = new StringBuilder();
+        count = 0;
+        Iterator<Element> it = parent.getChildren("unit").iterator();
+        while (it.hasNext()) {
+            handler.handleUnit(it.next());
+        }
+    }
+
+    // returns the innermost ancestor with the given content
+    private Element parse(String content) throws SAXException, IOException, ParserConfigurationException {
+        StringBuilder wrapper = new StringBuilder();
+        for (int i = 0; i < ancestors.size(); i++) {
+            wrapper.append(ancestors.get(i));
+        }
+        wrapper.append(content);
+        for (int i = ancestors.size() - 1; i >= 0; i--) {
+            wrapper.append("</").append(MarkupReader.getName(ancestors.get(i))).append('>');
+        }
+        Document doc = builder.build(new ByteArrayInputStream(wrapper.toString().getBytes(StandardCharsets.UTF_8)));
+        Element e = doc.getRootElement();
+        for (int i = 1; i < ancestors.size(); i++) {
+            e = e.getChildren().get(0);
+        }
+        return e;
+    }
+}
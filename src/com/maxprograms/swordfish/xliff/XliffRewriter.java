@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2007-2022 Maxprograms.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/epl-v10.html
+ *
+ * Contributors:
+ *     Maxprograms - initial API and implementation
+ *******************************************************************************/
+
+package com.maxprograms.swordfish.xliff;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.xml.sax.SAXException;
+
+import com.maxprograms.xml.Document;
+import com.maxprograms.xml.Element;
+import com.maxprograms.xml.Indenter;
+import com.maxprograms.xml.SAXBuilder;
+import com.maxprograms.xml.XMLNode;
+import com.maxprograms.xml.XMLOutputter;
+
+/**
+ * Copies an XLIFF file written by {@link XMLOutputter} character by character,
+ * re-emitting only the units listed as changed. Changed units are parsed with
+ * their ancestors, updated and serialized as a full rewrite would do.
+ */
+class XliffRewriter {
+
+    private SAXBuilder builder;
+    private Map<String, Set<String>> changed;
+    private IUnitUpdater updater;
+
+    private MarkupReader reader;
+    private Writer writer;
+    private List<String> ancestors;
+    private String currentFile;
+    private int rewritten;
+
+    public XliffRewriter(SAXBuilder builder, Map<String, Set<String>> changed, IUnitUpdater updater) {
+        this.builder = builder;
+        this.changed = changed;
+        this.updater = updater;
+    }
+
+    public int rewrite(File input, File output)
+            throws IOException, SQLException, SAXException, ParserConfigurationException {
+        ancestors = new Vector<>();
+        currentFile = "";
+        rewritten = 0;
+        try (Reader in = new BufferedReader(
+                new InputStreamReader(new FileInputStream(input), StandardCharsets.UTF_8), 65536);
+                Writer out = new BufferedWriter(
+                        new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8), 65536)) {
+            reader = new MarkupReader(in);
+            writer = out;
+            StringBuilder unit = null;
+            int c;
+            while ((c = reader.read()) != -1) {
+                if (c != '<') {
+                    if (unit != null) {
+                        unit.append((char) c);
+                    } else {
+                        writer.write(c);
+                    }
+                    continue;
+                }
+                String markup = reader.readMarkup();
+                if (unit != null) {
+                    unit.append(markup);
+                    if (MarkupReader.isEndTag(markup) && "unit".equals(MarkupReader.getName(markup))) {
+                        writer.write(updateUnit(unit.toString()));
+                        unit = null;
+                    }
+                    continue;
+                }
+                if (MarkupReader.isEndTag(markup)) {
+                    if (!ancestors.isEmpty()) {
+                        ancestors.remove(ancestors.size() - 1);
+                    }
+                } else if (MarkupReader.isStartTag(markup)) {
+                    String name = MarkupReader.getName(markup);
+                    boolean empty = MarkupReader.isEmptyTag(markup);
+                    if ("unit".equals(name) && !empty && isChanged(MarkupReader.getAttribute(markup, "id"))) {
+                        unit = new StringBuilder(markup);
+                        continue;
+                    }
+                    if ("file".equals(name)) {
+                        currentFile = MarkupReader.getAttribute(markup, "id");
+                    }
+                    if (!empty) {
+                        ancestors.add(markup);
+                    }
+                }
+                writer.write(markup);
+            }
+            if (unit != null) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        return rewritten;
+    }
+
+    private boolean isChanged(String unit) {
+        Set<String> units = changed.get(currentFile);
+        return units != null && units.contains(unit);
+    }
+
+    // the unit is parsed inside copies of its ancestors to keep namespaces and xml:space
+    private String updateUnit(String unit) throws IOException, SQLException, SAXException, ParserConfigurationException {
+        StringBuilder wrapper = new StringBuilder();
+        for (int i = 0; i < ancestors.size(); i++) {
+            wrapper.append(ancestors.get(i));
+        }
+        wrapper.append(unit);
+        for (int i = ancestors.size() - 1; i >= 0; i--) {
+            wrapper.append("</").append(MarkupReader.getName(ancestors.get(i))).append('>');
+        }
+        Document doc = builder.build(new ByteArrayInputStream(wrapper.toString().getBytes(StandardCharsets.UTF_8)));
+        Element e = doc.getRootElement();
+        boolean preserve = false;
+        for (int i = 0; i < ancestors.size(); i++) {
+            preserve = preserve || "preserve".equals(e.getAttributeValue("xml:space"));
+            Element child = e.getChildren().get(0);
+            List<XMLNode> content = new Vector<>();
+            content.add(child);
+            e.setContent(content);
+            e = child;
+        }
+        updater.update(currentFile, e);
+        if (!preserve) {
+            // same levels Indenter.indent(root, 2) uses in a full rewrite
+            Indenter.indent(e, ancestors.size() + 1, 2);
+        }
+        XMLOutputter outputter = new XMLOutputter();
+        outputter.preserveSpace(true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        outputter.output(doc, out);
+        String result = out.toString(StandardCharsets.UTF_8);
+        int start = -1;
+        int from = 0;
+        while (start == -1) {
+            int index = result.indexOf("<unit", from);
+            if (index == -1) {
+                throw new IOException("Unit not found in rewritten text");
+            }
+            char next = result.charAt(index + 5);
+            if (next == '>' || next == '/' || Character.isWhitespace(next)) {
+                start = index;
+            }
+            from = index + 1;
+        }
+        int end = result.lastIndexOf("</unit>");
+        rewritten++;
+        return end < start ? result.substring(start, result.indexOf('>', start) + 1)
+                : result.substring(start, end + 7);
+    }
+}
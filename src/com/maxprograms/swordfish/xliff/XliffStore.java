@@ -23,6 +23,7 @@ import java.lang.System.Logger.Level;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
@@ -34,11 +35,20 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -54,11 +64,13 @@ import com.maxprograms.stats.RepetitionAnalysis;
 import com.maxprograms.stats.SvgStats;
 import com.maxprograms.swordfish.Constants;
 import com.maxprograms.swordfish.GlossariesHandler;
+import com.maxprograms.swordfish.Job;
 import com.maxprograms.swordfish.MemoriesHandler;
 import com.maxprograms.swordfish.TmsServer;
 import com.maxprograms.swordfish.am.MatchAssembler;
 import com.maxprograms.swordfish.am.Term;
 import com.maxprograms.swordfish.mt.MT;
+import com.maxprograms.swordfish.tm.FederatedEngine;
 import com.maxprograms.swordfish.tm.ITmEngine;
 import com.maxprograms.swordfish.tm.Match;
 import com.maxprograms.swordfish.tm.MatchQuality;
@@ -85,6 +97,7 @@ public class XliffStore {
     Logger logger = System.getLogger(XliffStore.class.getName());
 
     public static final int THRESHOLD = 60;
+    public static final int MAXMATCHES = 10;
     public static final int MAXTERMLENGTH = 5;
 
     public static final String SVG_BLANK = "<svg xmlns='http://www.w3.org/2000/svg' height='24' viewBox='0 0 24 24' width='24'></svg>";
@@ -93,6 +106,18 @@ public class XliffStore {
     public static final String SVG_FINAL = "<svg xmlns='http://www.w3.org/2000/svg' height='24' viewBox='0 0 24 24' width='24'><path d='M19 3H5c-1.1 0-2 .9-2 2v14c0 1.1.9 2 2 2h14c1.1 0 2-.9 2-2V5c0-1.1-.9-2-2-2zm0 16H5V5h14v14zM17.99 9l-1.41-1.42-6.59 6.59-2.58-2.57-1.42 1.41 4 3.99z'/></svg>";
     public static final String SVG_LOCK = "<svg xmlns='http://www.w3.org/2000/svg' height='24' viewBox='0 0 24 24' width='24'><path d='M18 8h-1V6c0-2.76-2.24-5-5-5S7 3.24 7 6v2H6c-1.1 0-2 .9-2 2v10c0 1.1.9 2 2 2h12c1.1 0 2-.9 2-2V10c0-1.1-.9-2-2-2zM9 6c0-1.66 1.34-3 3-3s3 1.34 3 3v2H9V6zm9 14H6V10h12v10zm-6-3c1.1 0 2-.9 2-2s-.9-2-2-2-2 .9-2 2 .9 2 2 2z'/></svg>";
 
+    // segments and words per file: all, translated, confirmed and locked
+    private static final String COUNTERS = "COUNT(*), SUM(words), "
+            + "SUM(CASE WHEN state<>'initial' THEN 1 ELSE 0 END), SUM(CASE WHEN state<>'initial' THEN words ELSE 0 END), "
+            + "SUM(CASE WHEN state='final' THEN 1 ELSE 0 END), SUM(CASE WHEN state='final' THEN words ELSE 0 END), "
+            + "SUM(CASE WHEN translate='N' THEN 1 ELSE 0 END), SUM(CASE WHEN translate='N' THEN words ELSE 0 END)";
+
+    private static final String[] STATUS_KEYS = { "words", "segments", "untranslated", "untranslatedSegments",
+            "translated", "translatedSegments", "confirmed", "confirmedSegments", "locked", "lockedSegments" };
+    private static final String[] ANALYSIS_KEYS = { "newSegments", "100Segments", "95Segments", "85Segments",
+            "75Segments", "50Segments", "intRepSegment", "extRepSegment", "newWords", "100Words", "95Words", "85Words",
+            "75Words", "50Words", "tags", "intRep", "extRep" };
+
     private String xliffFile;
     private SAXBuilder builder;
     private Document document;
@@ -107,7 +132,6 @@ public class XliffStore {
     private PreparedStatement getMatches;
     private PreparedStatement bestMatch;
     private PreparedStatement insertTerm;
-    private PreparedStatement getTerms;
     private PreparedStatement getUnitData;
     private PreparedStatement getSource;
     private PreparedStatement getTargetStmt;
@@ -119,14 +143,24 @@ public class XliffStore {
     private PreparedStatement getNotesStmt;
     private PreparedStatement insertNoteStmt;
     private PreparedStatement getSegment;
+    private PreparedStatement markDirtyStmt;
+    private PreparedStatement countUnitStmt;
+    private PreparedStatement adjustCountersStmt;
 
     private Statement stmt;
+
+    private static final int READERS = 3;
+    private static final int READ_ATTEMPTS = 3;
+    private static final int H2_GENERAL_ERROR = 50000;
+    private List<Connection> readerConnections;
+    private BlockingQueue<Connection> readers;
     private boolean preserve;
 
     private static String catalog;
     private static boolean acceptUnconfirmed;
     private static boolean fuzzyTermSearches;
     private static boolean caseSensitiveSearches;
+    private static int tmThreads;
 
     private int index;
     private int nextId;
@@ -138,12 +172,18 @@ public class XliffStore {
     private String srcLang;
     private String tgtLang;
 
-    private static int tag;
-    private Map<String, String> tagsMap;
     private Map<String, Element> notesMap;
+    private boolean loading;
+
+    private static final int RENDER_CACHE_SIZE = 2000;
+    private static final int LOAD_COMMIT = 1000;
+    private Map<String, RenderedSegment> renderCache;
 
-    private static Pattern pattern;
-    private static String lastFilterText;
+    private SegmentIndex sourceIndex;
+    private PreparedStatement getCandidate;
+    private ExecutorService propagator;
+    private List<JSONObject> propagated;
+    private int pendingPropagations;
 
     public XliffStore(String xliffFile, String sourceLang, String targetLang)
             throws SAXException, IOException, ParserConfigurationException, URISyntaxException, SQLException {
@@ -231,6 +271,54 @@ public class XliffStore {
             conn.commit();
             indexSegments();
         }
+        try (Statement createIndex = conn.createStatement()) {
+            createIndex.execute("CREATE INDEX IF NOT EXISTS segments_idx ON segments(idx)");
+        }
+        conn.commit();
+        boolean needsDirty = true;
+        try (Statement stm = conn.createStatement()) {
+            String sql = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME='DIRTY'";
+            try (ResultSet rs = stm.executeQuery(sql)) {
+                while (rs.next()) {
+                    needsDirty = rs.getInt(1) == 0;
+                }
+            }
+        }
+        if (needsDirty) {
+            // units changed before the table existed are unknown, rewrite all of them
+            try (Statement create = conn.createStatement()) {
+                create.execute("CREATE TABLE dirty (file VARCHAR(50), unitId VARCHAR(256) NOT NULL, PRIMARY KEY(file, unitId) );");
+                create.execute("INSERT INTO dirty (file, unitId) SELECT file, unitId FROM units");
+            }
+            conn.commit();
+        }
+        boolean needsCounters = true;
+        try (Statement stm = conn.createStatement()) {
+            String sql = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME='COUNTERS'";
+            try (ResultSet rs = stm.executeQuery(sql)) {
+                while (rs.next()) {
+                    needsCounters = rs.getInt(1) == 0;
+                }
+            }
+        }
+        if (needsCounters) {
+            try (Statement create = conn.createStatement()) {
+                create.execute("CREATE TABLE counters (file VARCHAR(50) NOT NULL, segments INTEGER NOT NULL, "
+                        + "words INTEGER NOT NULL, translatedSegments INTEGER NOT NULL, translatedWords INTEGER NOT NULL, "
+                        + "confirmedSegments INTEGER NOT NULL, confirmedWords INTEGER NOT NULL, "
+                        + "lockedSegments INTEGER NOT NULL, lockedWords INTEGER NOT NULL, PRIMARY KEY(file) );");
+            }
+            countAll();
+            conn.commit();
+        }
+        renderCache = Collections.synchronizedMap(new LinkedHashMap<>(RENDER_CACHE_SIZE, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RenderedSegment> eldest) {
+                return size() > RENDER_CACHE_SIZE;
+            }
+        });
 
         getUnitData = conn.prepareStatement("SELECT data, compressed FROM units WHERE file=? AND unitId=?");
         getSource = conn.prepareStatement(
@@ -249,19 +337,52 @@ public class XliffStore {
                 "SELECT type, similarity FROM matches WHERE file=? AND unitId=? AND segId=? ORDER BY similarity DESC LIMIT 1");
         insertTerm = conn.prepareStatement(
                 "INSERT INTO terms (file, unitId, segId, termid, origin, source, target) VALUES(?,?,?,?,?,?,?)");
-        getTerms = conn.prepareStatement(
-                "SELECT termid, origin, source, target FROM terms WHERE file=? AND unitId=? AND segId=? ORDER BY source");
         checkTerm = conn
                 .prepareStatement("SELECT target FROM terms WHERE file=? AND unitId=? AND segId=? AND termid=?");
         getNotesStmt = conn.prepareStatement("SELECT noteId, note FROM notes WHERE file=? AND unitId=? AND segId=?");
         getSegment = conn.prepareStatement("SELECT source, target FROM segments WHERE file=? AND unitId=? AND segId=?");
+        getCandidate = conn.prepareStatement(
+                "SELECT source, state, tags, translate FROM segments WHERE file=? AND unitId=? AND segId=? AND type='S'");
+        markDirtyStmt = conn.prepareStatement("MERGE INTO dirty (file, unitId) KEY (file, unitId) VALUES (?,?)");
+        countUnitStmt = conn
+                .prepareStatement("SELECT " + COUNTERS + " FROM segments WHERE type='S' AND file=? AND unitId=?");
+        adjustCountersStmt = conn.prepareStatement(
+                "UPDATE counters SET segments=segments+?, words=words+?, translatedSegments=translatedSegments+?, "
+                        + "translatedWords=translatedWords+?, confirmedSegments=confirmedSegments+?, "
+                        + "confirmedWords=confirmedWords+?, lockedSegments=lockedSegments+?, lockedWords=lockedWords+? "
+                        + "WHERE file=?");
         stmt = conn.createStatement();
         if (needsLoading) {
-            document = builder.build(xliffFile);
             parseDocument();
+            markDirty("SELECT file, unitId FROM units");
+            countAll();
             conn.commit();
             indexSegments();
         }
+        // grid and status reads see the last committed state on their own
+        // connections, so they don't queue behind a long write
+        readerConnections = new Vector<>();
+        readers = new ArrayBlockingQueue<>(READERS);
+        for (int i = 0; i < READERS; i++) {
+            Connection reader = DriverManager.getConnection(url);
+            reader.setReadOnly(true);
+            readerConnections.add(reader);
+            readers.add(reader);
+        }
+        sourceIndex = new SegmentIndex();
+        buildSourceIndex();
+        propagated = new Vector<>();
+        propagator = Executors.newSingleThreadExecutor();
+    }
+
+    private synchronized void buildSourceIndex() throws SQLException, IOException {
+        sourceIndex.clear();
+        try (ResultSet rs = stmt.executeQuery("SELECT file, unitId, segId, sourceText FROM segments WHERE type='S'")) {
+            while (rs.next()) {
+                String key = SegmentIndex.key(rs.getString(1), rs.getString(2), rs.getString(3));
+                sourceIndex.put(key, TMUtils.getString(rs.getNCharacterStream(4)));
+            }
+        }
     }
 
     private void createTables() throws SQLException {
@@ -294,27 +415,83 @@ public class XliffStore {
         }
     }
 
-    private void parseDocument() throws SQLException, IOException {
+    private void parseDocument() throws SQLException, IOException, SAXException, ParserConfigurationException {
         insertFile = conn.prepareStatement("INSERT INTO files (id, name) VALUES (?,?)");
         insertUnit = conn.prepareStatement("INSERT INTO units (file, unitId, data, compressed) VALUES (?,?,?,?)");
         insertSegmentStmt = conn.prepareStatement(
                 "INSERT INTO segments (file, unitId, segId, type, state, child, translate, tags, space, source, sourceText, target, targetText, words) VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?)");
         insertNoteStmt = conn
                 .prepareStatement("INSERT INTO notes (file, unitId, segId, noteId, note) values (?,?,?,?,?)");
-        recurse(document.getRootElement());
+        loading = true;
+        try {
+            XliffLoader loader = new XliffLoader(builder, new IUnitHandler() {
+
+                private int count;
+
+                @Override
+                public void startFile(Element file) throws SQLException {
+                    XliffStore.this.startFile(file);
+                }
+
+                @Override
+                public void handleUnit(Element unit) throws IOException, SQLException {
+                    recurse(unit);
+                    count++;
+                    if (count % LOAD_COMMIT == 0) {
+                        executeBatches();
+                        conn.commit();
+                    }
+                }
+
+                @Override
+                public void endFile() throws SQLException {
+                    XliffStore.this.endFile();
+                }
+            });
+            if (!loader.load(new File(xliffFile))) {
+                document = builder.build(xliffFile);
+                recurse(document.getRootElement());
+            }
+            executeBatches();
+        } finally {
+            loading = false;
+        }
         insertFile.close();
         insertUnit.close();
         insertNoteStmt.close();
         insertSegmentStmt.close();
     }
 
+    // while loading, rows are added to batches that run every LOAD_COMMIT units
+    private void executeBatches() throws SQLException {
+        insertFile.executeBatch();
+        insertUnit.executeBatch();
+        insertSegmentStmt.executeBatch();
+        insertNoteStmt.executeBatch();
+    }
+
+    private void startFile(Element file) throws SQLException {
+        currentFile = file.getAttributeValue("id");
+        insertFile.setString(1, currentFile);
+        insertFile.setNCharacterStream(2, new StringReader(file.getAttributeValue("original")));
+        if (loading) {
+            insertFile.addBatch();
+        } else {
+            insertFile.execute();
+        }
+        index = 0;
+    }
+
+    private void endFile() throws SQLException {
+        if (loading) {
+            executeBatches();
+        }
+        conn.commit();
+    }
+
     private void recurse(Element e) throws SQLException, IOException {
         if ("file".equals(e.getName())) {
-            currentFile = e.getAttributeValue("id");
-            insertFile.setString(1, currentFile);
-            insertFile.setNCharacterStream(2, new StringReader(e.getAttributeValue("original")));
-            insertFile.execute();
-            index = 0;
+            startFile(e);
         }
         if ("unit".equals(e.getName())) {
             tagCount = 0;
@@ -366,7 +543,11 @@ public class XliffStore {
                 insertUnit.setString(2, currentUnit);
                 insertUnit.setString(3, dataString);
                 insertUnit.setString(4, "N");
-                insertUnit.execute();
+                if (loading) {
+                    insertUnit.addBatch();
+                } else {
+                    insertUnit.execute();
+                }
             }
             Element glossary = e.getChild("gls:glossary");
             if (glossary != null) {
@@ -446,7 +627,7 @@ public class XliffStore {
             recurse(it.next());
         }
         if ("file".equals(e.getName())) {
-            conn.commit();
+            endFile();
         }
     }
 
@@ -491,7 +672,11 @@ public class XliffStore {
         insertSegmentStmt.setNCharacterStream(12, new StringReader(target != null ? target.toString() : ""));
         insertSegmentStmt.setNCharacterStream(13, new StringReader(target != null ? XliffUtils.pureText(target) : ""));
         insertSegmentStmt.setInt(14, type.equals("S") ? RepetitionAnalysis.wordCount(pureSource, srcLang) : 0);
-        insertSegmentStmt.execute();
+        if (loading) {
+            insertSegmentStmt.addBatch();
+        } else {
+            insertSegmentStmt.execute();
+        }
     }
 
     private void insertMatch(String file, String unit, Element match) throws SQLException, IOException {
@@ -523,16 +708,23 @@ public class XliffStore {
         insertNoteStmt.setString(3, segId);
         insertNoteStmt.setString(4, note.getAttributeValue("id", unit));
         insertNoteStmt.setNCharacterStream(5, new StringReader(note.getText()));
-        insertNoteStmt.execute();
+        if (loading) {
+            insertNoteStmt.addBatch();
+        } else {
+            insertNoteStmt.execute();
+        }
     }
 
     public int size() throws SQLException {
         int count = 0;
         String sql = "SELECT count(*) FROM segments WHERE type='S'";
-        try (ResultSet rs = stmt.executeQuery(sql)) {
+        Connection reader = getReader();
+        try (Statement query = reader.createStatement(); ResultSet rs = query.executeQuery(sql)) {
             while (rs.next()) {
                 count = rs.getInt(1);
             }
+        } finally {
+            release(reader);
         }
         return count;
     }
@@ -546,14 +738,25 @@ public class XliffStore {
         }
     }
 
-    public synchronized List<JSONObject> getSegments(int start, int count, String filterText, String filterLanguage,
+    public List<JSONObject> getSegments(int start, int count, String filterText, String filterLanguage,
             boolean caseSensitiveFilter, boolean regExp, boolean showUntranslated, boolean showTranslated,
             boolean showConfirmed, String sortOption, boolean sortDesc)
             throws SQLException, SAXException, IOException, ParserConfigurationException, DataFormatException {
         List<JSONObject> result = new Vector<>();
+        TagContext context = new TagContext();
         StringBuilder queryBuilder = new StringBuilder();
         queryBuilder.append(
-                "SELECT file, unitId, segId, child, source, target, tags, state, space, translate, sourceText, targetText, idx FROM segments WHERE type='S'");
+                "SELECT s.file, s.unitId, s.segId, s.child, s.source, s.target, s.tags, s.state, s.space, s.translate, s.sourceText, s.targetText, s.idx, "
+                        + "(SELECT m.type || ' ' || m.similarity FROM matches m WHERE m.file=s.file AND m.unitId=s.unitId AND m.segId=s.segId ORDER BY m.similarity DESC LIMIT 1), "
+                        + "EXISTS(SELECT 1 FROM notes n WHERE n.file=s.file AND n.unitId=s.unitId AND n.segId=s.segId), "
+                        + "CASE WHEN s.tags > 0 THEN u.data ELSE NULL END, u.compressed "
+                        + "FROM segments s LEFT JOIN units u ON u.file=s.file AND u.unitId=s.unitId WHERE s.type='S'");
+        // unfiltered pages in document order seek on idx instead of skipping rows
+        boolean keyset = filterText.isEmpty() && sortOption.equals("none") && !sortDesc;
+        if (keyset) {
+            queryBuilder.append(" AND s.idx >= ");
+            queryBuilder.append(start);
+        }
         if (!filterText.isEmpty()) {
             if (regExp) {
                 try {
@@ -600,8 +803,10 @@ public class XliffStore {
                 queryBuilder.append(" AND state <> 'final'");
             }
         }
-        if (sortOption.equals("none")) {
-            queryBuilder.append(" ORDER BY file, child ");
+        if (keyset) {
+            queryBuilder.append(" ORDER BY s.idx ");
+        } else if (sortOption.equals("none")) {
+            queryBuilder.append(" ORDER BY s.file, s.child ");
         }
         if (sortOption.equals("source")) {
             queryBuilder.append(" ORDER BY sourceText");
@@ -617,9 +822,13 @@ public class XliffStore {
         }
         queryBuilder.append(" LIMIT ");
         queryBuilder.append(count);
-        queryBuilder.append(" OFFSET ");
-        queryBuilder.append(start);
-        try (ResultSet rs = stmt.executeQuery(queryBuilder.toString())) {
+        if (!keyset) {
+            queryBuilder.append(" OFFSET ");
+            queryBuilder.append(start);
+        }
+        Connection reader = getReader();
+        try (Statement query = reader.createStatement();
+                ResultSet rs = readQuery(query, queryBuilder.toString())) {
             while (rs.next()) {
                 String file = rs.getString(1);
                 String unit = rs.getString(2);
@@ -633,31 +842,44 @@ public class XliffStore {
                 String sourceText = TMUtils.getString(rs.getNCharacterStream(11));
                 String targetText = TMUtils.getString(rs.getNCharacterStream(12));
                 int idx = rs.getInt(13);
-
-                JSONObject tagsData = new JSONObject();
-                if (tags > 0) {
-                    tagsData = getUnitData(file, unit);
-                }
-                Element source = XliffUtils.buildElement(src);
-
-                Element target = new Element("target");
-                if (source.hasAttribute("xml:space")) {
-                    target.setAttribute("xml:space", source.getAttributeValue("xml:space"));
-                }
-                if (tgt != null && !tgt.isBlank()) {
-                    target = XliffUtils.buildElement(tgt);
-                }
+                String best = rs.getString(14);
+                boolean notes = rs.getBoolean(15);
+                String data = rs.getString(16);
+                boolean compressed = "Y".equals(rs.getString(17));
 
                 boolean checkErrors = segTranslate
                         && (segState.equals("final") || (segState.equals("translated") && acceptUnconfirmed));
 
-                boolean tagErrors = false;
-                boolean spaceErrors = false;
-                if (checkErrors) {
-                    tagErrors = hasTagErrors(source, target);
-                    spaceErrors = hasSpaceErrors(sourceText, targetText);
+                // highlighted rows depend on the filter, only plain renderings are kept
+                String key = file + '\n' + unit + '\n' + segId;
+                RenderedSegment rendered = filterText.isEmpty() ? renderCache.get(key) : null;
+                if (rendered == null || !rendered.matches(src, tgt, data, segPreserve)) {
+                    JSONObject tagsData = new JSONObject();
+                    if (data != null) {
+                        tagsData = parseUnitData(data, compressed);
+                    }
+                    Element source = XliffUtils.buildElement(src);
+
+                    Element target = new Element("target");
+                    if (source.hasAttribute("xml:space")) {
+                        target.setAttribute("xml:space", source.getAttributeValue("xml:space"));
+                    }
+                    if (tgt != null && !tgt.isBlank()) {
+                        target = XliffUtils.buildElement(tgt);
+                    }
+                    rendered = new RenderedSegment(src, tgt, data, segPreserve);
+                    rendered.tagErrors = hasTagErrors(source, target);
+                    rendered.spaceErrors = hasSpaceErrors(sourceText, targetText);
+                    context.reset();
+                    rendered.source = addHtmlTags(context, source, filterText, caseSensitiveFilter, regExp,
+                            tagsData, segPreserve);
+                    context.tag = 1;
+                    rendered.target = addHtmlTags(context, target, filterText, caseSensitiveFilter, regExp,
+                            tagsData, segPreserve);
+                    if (filterText.isEmpty()) {
+                        renderCache.put(key, rendered);
+                    }
                 }
-                tagsMap = new Hashtable<>();
                 JSONObject row = new JSONObject();
                 row.put("index", idx);
                 row.put("file", file);
@@ -666,16 +888,16 @@ public class XliffStore {
                 row.put("state", segState);
                 row.put("translate", segTranslate);
                 row.put("preserve", segPreserve);
-                tag = 1;
-                row.put("source", addHtmlTags(source, filterText, caseSensitiveFilter, regExp, tagsData, segPreserve));
-                tag = 1;
-                row.put("target", addHtmlTags(target, filterText, caseSensitiveFilter, regExp, tagsData, segPreserve));
-                row.put("match", getBestMatch(file, unit, segId));
-                row.put("hasNotes", hasNotes(file, unit, segId));
-                row.put("tagErrors", tagErrors);
-                row.put("spaceErrors", spaceErrors);
+                row.put("source", rendered.source);
+                row.put("target", rendered.target);
+                row.put("match", bestMatch(best));
+                row.put("hasNotes", notes);
+                row.put("tagErrors", checkErrors && rendered.tagErrors);
+                row.put("spaceErrors", checkErrors && rendered.spaceErrors);
                 result.add(row);
             }
+        } finally {
+            release(reader);
         }
         return result;
     }
@@ -694,11 +916,22 @@ public class XliffStore {
     }
 
     public JSONArray getNotes(String file, String unit, String segId) throws SQLException, IOException {
+        Connection reader = getReader();
+        try (PreparedStatement prep = reader
+                .prepareStatement("SELECT noteId, note FROM notes WHERE file=? AND unitId=? AND segId=?")) {
+            return readNotes(prep, file, unit, segId);
+        } finally {
+            release(reader);
+        }
+    }
+
+    private static JSONArray readNotes(PreparedStatement prep, String file, String unit, String segId)
+            throws SQLException, IOException {
         JSONArray array = new JSONArray();
-        getNotesStmt.setString(1, file);
-        getNotesStmt.setString(2, unit);
-        getNotesStmt.setString(3, segId);
-        try (ResultSet rs = getNotesStmt.executeQuery()) {
+        prep.setString(1, file);
+        prep.setString(2, unit);
+        prep.setString(3, segId);
+        try (ResultSet rs = prep.executeQuery()) {
             while (rs.next()) {
                 JSONObject note = new JSONObject();
                 note.put("id", rs.getString(1));
@@ -709,7 +942,7 @@ public class XliffStore {
         return array;
     }
 
-    public JSONArray addNote(String file, String unit, String segId, String noteText) throws SQLException, IOException {
+    public synchronized JSONArray addNote(String file, String unit, String segId, String noteText) throws SQLException, IOException {
         String sql = "SELECT noteId FROM notes WHERE file=? AND unitId=? AND segId=?";
         int maxId = 0;
         try (PreparedStatement prep = conn.prepareStatement(sql)) {
@@ -739,6 +972,7 @@ public class XliffStore {
             prep.setNCharacterStream(5, new StringReader(noteText));
             prep.executeUpdate();
         }
+        markDirty(file, unit);
         conn.commit();
         JSONArray array = new JSONArray();
         getNotesStmt.setString(1, file);
@@ -755,7 +989,7 @@ public class XliffStore {
         return array;
     }
 
-    public JSONArray removeNote(String file, String unit, String segId, String noteId)
+    public synchronized JSONArray removeNote(String file, String unit, String segId, String noteId)
             throws SQLException, IOException {
         String sql = "DELETE FROM notes WHERE file=? AND unitId=? AND segId=? AND noteId=?";
         try (PreparedStatement prep = conn.prepareStatement(sql)) {
@@ -765,6 +999,7 @@ public class XliffStore {
             prep.setString(4, noteId);
             prep.executeUpdate();
         }
+        markDirty(file, unit);
         conn.commit();
         JSONArray array = new JSONArray();
         getNotesStmt.setString(1, file);
@@ -819,17 +1054,81 @@ public class XliffStore {
         return similarity;
     }
 
+    // best match as selected by getSegments: "type similarity" or null
+    private static int bestMatch(String best) {
+        if (best == null) {
+            return 0;
+        }
+        int space = best.indexOf(' ');
+        String type = best.substring(0, space).trim();
+        if (type.isEmpty() || Constants.MT.equals(type) || Constants.AM.equals(type)) {
+            return 0;
+        }
+        return Integer.parseInt(best.substring(space + 1));
+    }
+
     private synchronized JSONObject getUnitData(String file, String unit) throws SQLException, DataFormatException {
-        getUnitData.setString(1, file);
-        getUnitData.setString(2, unit);
+        return getUnitData(getUnitData, file, unit);
+    }
+
+    private static JSONObject getUnitData(PreparedStatement prep, String file, String unit)
+            throws SQLException, DataFormatException {
+        prep.setString(1, file);
+        prep.setString(2, unit);
         String data = "";
         boolean compressed = false;
-        try (ResultSet rs = getUnitData.executeQuery()) {
+        try (ResultSet rs = prep.executeQuery()) {
             while (rs.next()) {
                 data = rs.getString(1);
                 compressed = "Y".equals(rs.getString(2));
             }
         }
+        return parseUnitData(data, compressed);
+    }
+
+    private Connection getReader() throws SQLException {
+        try {
+            return readers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection");
+        }
+    }
+
+    private void release(Connection reader) {
+        readers.add(reader);
+    }
+
+    // source and plain source text of a segment, the lock is only held for the query
+    private synchronized String[] readSource(String file, String unit, String segment)
+            throws SQLException, IOException {
+        String[] result = new String[] { "", "" };
+        getSource.setString(1, file);
+        getSource.setString(2, unit);
+        getSource.setString(3, segment);
+        try (ResultSet rs = getSource.executeQuery()) {
+            while (rs.next()) {
+                result[0] = TMUtils.getString(rs.getNCharacterStream(1));
+                result[1] = TMUtils.getString(rs.getNCharacterStream(2));
+            }
+        }
+        return result;
+    }
+
+    // H2 may fail copying a CLOB that a concurrent commit has just replaced
+    private static ResultSet readQuery(Statement stmt, String sql) throws SQLException {
+        for (int attempt = 1;; attempt++) {
+            try {
+                return stmt.executeQuery(sql);
+            } catch (SQLException e) {
+                if (attempt == READ_ATTEMPTS || e.getErrorCode() != H2_GENERAL_ERROR) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static JSONObject parseUnitData(String data, boolean compressed) throws DataFormatException {
         if (data.isEmpty()) {
             return new JSONObject();
         }
@@ -840,6 +1139,16 @@ public class XliffStore {
     }
 
     public void close() throws SQLException {
+        propagator.shutdown();
+        try {
+            // pending propagations still need the connection
+            propagator.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (int i = 0; i < readerConnections.size(); i++) {
+            readerConnections.get(i).close();
+        }
         getUnitData.close();
         getSource.close();
         getTargetStmt.close();
@@ -849,10 +1158,13 @@ public class XliffStore {
         getMatches.close();
         bestMatch.close();
         insertTerm.close();
-        getTerms.close();
         checkTerm.close();
         getNotesStmt.close();
         getSegment.close();
+        getCandidate.close();
+        markDirtyStmt.close();
+        countUnitStmt.close();
+        adjustCountersStmt.close();
         stmt.close();
         conn.commit();
         conn.close();
@@ -884,6 +1196,8 @@ public class XliffStore {
         acceptUnconfirmed = json.getBoolean("acceptUnconfirmed");
         caseSensitiveSearches = json.getBoolean("caseSensitiveSearches");
         fuzzyTermSearches = json.getBoolean("fuzzyTermSearches");
+        tmThreads = Math.max(1,
+                json.has("tmThreads") ? json.getInt("tmThreads") : Runtime.getRuntime().availableProcessors());
         catalog = json.getString("catalog");
     }
 
@@ -938,12 +1252,12 @@ public class XliffStore {
 
         target.setContent(translated.getContent());
         String pureTarget = XliffUtils.pureText(target);
-        JSONArray propagated = new JSONArray();
         updateTarget(file, unit, segment, target, pureTarget, confirm);
         if (confirm && !pureTarget.isBlank() && (!unchanged || !wasFinal)) {
-            propagated = propagate(source, target);
+            schedulePropagation(source, target);
         }
-        result.put("propagated", propagated);
+        result.put("propagated", drainPropagated());
+        result.put("pending", pendingPropagations > 0);
 
         boolean checkErrors = translatable && (confirm || !pureTarget.isEmpty());
 
@@ -958,29 +1272,15 @@ public class XliffStore {
         result.put("spaceErrors", spaceErrors);
 
         if (!memory.equals(Constants.NONE) && !pureTarget.isBlank() && confirm) {
-            Thread thread = new Thread() {
-                @Override
-                public void run() {
-                    try {
-                        StringBuilder key = new StringBuilder();
-                        key.append(xliffFile.hashCode());
-                        key.append('-');
-                        key.append(file);
-                        key.append('-');
-                        key.append(unit);
-                        key.append('-');
-                        key.append(segment);
-                        MemoriesHandler.open(memory);
-                        ITmEngine engine = MemoriesHandler.getEngine(memory);
-                        engine.storeTu(XliffUtils.toTu(key.toString(), source, target, tags, srcLang, tgtLang));
-                        engine.commit();
-                        MemoriesHandler.close(memory);
-                    } catch (IOException | SQLException e) {
-                        logger.log(Level.ERROR, e);
-                    }
-                }
-            };
-            thread.start();
+            StringBuilder key = new StringBuilder();
+            key.append(xliffFile.hashCode());
+            key.append('-');
+            key.append(file);
+            key.append('-');
+            key.append(unit);
+            key.append('-');
+            key.append(segment);
+            MemoriesHandler.storeTu(memory, XliffUtils.toTu(key.toString(), source, target, tags, srcLang, tgtLang));
         }
         return result;
     }
@@ -1039,32 +1339,29 @@ public class XliffStore {
             prep.setString(5, segment);
             prep.executeUpdate();
         }
+        markDirty(file, unit);
+        conn.commit();
+        renderCache.remove(file + '\n' + unit + '\n' + segment);
+        sourceIndex.put(SegmentIndex.key(file, unit, segment), pureSource);
     }
 
-    public synchronized JSONObject getTranslationStatus() throws SQLException {
+    public JSONObject getTranslationStatus() throws SQLException {
         JSONObject result = new JSONObject();
         int total = 0;
         int translated = 0;
         int confirmed = 0;
         int segments = 0;
-        String sql = "SELECT SUM(words), COUNT(*) FROM segments WHERE type='S'";
-        try (ResultSet rs = stmt.executeQuery(sql)) {
+        String sql = "SELECT SUM(words), SUM(segments), SUM(confirmedWords), SUM(translatedWords) FROM counters";
+        Connection reader = getReader();
+        try (Statement query = reader.createStatement(); ResultSet rs = query.executeQuery(sql)) {
             while (rs.next()) {
                 total = rs.getInt(1);
                 segments = rs.getInt(2);
+                confirmed = rs.getInt(3);
+                translated = rs.getInt(4);
             }
-        }
-        sql = "SELECT SUM(words) FROM segments WHERE state='final' AND type='S'";
-        try (ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                confirmed = rs.getInt(1);
-            }
-        }
-        sql = "SELECT SUM(words) FROM segments WHERE state <> 'initial' AND type='S'";
-        try (ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                translated = rs.getInt(1);
-            }
+        } finally {
+            release(reader);
         }
         int percentage = 0;
         if (total != 0) {
@@ -1094,69 +1391,125 @@ public class XliffStore {
         updateTargetStmt.setString(4, file);
         updateTargetStmt.setString(5, unit);
         updateTargetStmt.setString(6, segment);
+        countUnit(file, unit, -1);
         updateTargetStmt.executeUpdate();
+        countUnit(file, unit, 1);
+        markDirty(file, unit);
         conn.commit();
+        renderCache.remove(file + '\n' + unit + '\n' + segment);
     }
 
-    private JSONArray propagate(Element source, Element target)
-            throws SQLException, SAXException, IOException, ParserConfigurationException, DataFormatException {
-        JSONArray result = new JSONArray();
-        String dummySource = dummyTagger(source);
-        String query = "SELECT file, unitId, segId, source, state, tags, space FROM segments WHERE translate='Y' AND type='S' AND state <> 'final' ";
-        try (ResultSet rs = stmt.executeQuery(query)) {
-            while (rs.next()) {
-                Element candidate = XliffUtils.buildElement(TMUtils.getString(rs.getNCharacterStream(4)));
-                int differences = tagDifferences(source, candidate);
-                String dummy = dummyTagger(candidate);
-                int similarity = MatchQuality.similarity(dummySource, dummy) - differences;
-                if (similarity > THRESHOLD) {
-                    String file = rs.getString(1);
-                    String unit = rs.getString(2);
-                    String segment = rs.getString(3);
-                    Element sourceElement = XliffUtils.buildElement(rs.getNString(4));
-                    int tags = rs.getInt(6);
-                    JSONObject tagsData = new JSONObject();
-                    if (tags > 0) {
-                        tagsData = getUnitData(file, unit);
-                    }
-                    if (similarity == 100 && Constants.INITIAL.equals(state)) {
-                        tagsMap = new Hashtable<>();
-                        tag = 1;
-                        addHtmlTags(candidate, "", false, false, tagsData, true);
-
-                        JSONObject row = new JSONObject();
-                        row.put("file", file);
-                        row.put("unit", unit);
-                        row.put("segment", segment);
-                        row.put("match", 100);
-                        tag = 1;
-                        String translation = addHtmlTags(target, "", false, false, tagsData, true);
-                        row.put("target", translation);
-                        result.put(row);
-
-                        Element translated = XliffUtils.buildElement("<target>" + translation + "</target>");
-                        translated.setAttribute("xml:space", preserve ? "preserve" : "default");
-                        translated.setContent(target.getContent());
-                        if (!translated.getChildren().isEmpty()) {
-                            translated = fixTags(sourceElement, source, target);
-                        }
-                        updateTarget(file, unit, segment, translated, XliffUtils.pureText(translated), false);
+    // candidates are scored on a background thread, rows are collected with getPropagated()
+    private void schedulePropagation(Element source, Element target) {
+        List<String> candidates = sourceIndex.search(XliffUtils.pureText(source), THRESHOLD);
+        if (candidates.isEmpty()) {
+            return;
+        }
+        pendingPropagations++;
+        propagator.submit(() -> {
+            try {
+                String dummySource = dummyTagger(source);
+                for (int i = 0; i < candidates.size(); i++) {
+                    // release the store between candidates so the editor is not blocked
+                    synchronized (this) {
+                        propagate(candidates.get(i), source, target, dummySource);
                     }
-                    insertMatch(file, unit, segment, "Self", Constants.TM, similarity, source, target, tagsData);
-                    conn.commit();
-                    int best = getBestMatch(file, unit, segment);
-                    JSONObject row = new JSONObject();
-                    row.put("file", file);
-                    row.put("unit", unit);
-                    row.put("segment", segment);
-                    row.put("match", best);
-                    result.put(row);
+                }
+            } catch (SQLException | SAXException | IOException | ParserConfigurationException
+                    | DataFormatException e) {
+                logger.log(Level.ERROR, "Error propagating translation", e);
+            } finally {
+                synchronized (this) {
+                    pendingPropagations--;
                 }
             }
+        });
+    }
+
+    public synchronized JSONObject getPropagated() {
+        JSONObject result = new JSONObject();
+        result.put("propagated", drainPropagated());
+        result.put("pending", pendingPropagations > 0);
+        return result;
+    }
+
+    private synchronized JSONArray drainPropagated() {
+        JSONArray result = new JSONArray();
+        for (int i = 0; i < propagated.size(); i++) {
+            result.put(propagated.get(i));
         }
+        propagated.clear();
         return result;
     }
 
+    private void propagate(String key, Element source, Element target, String dummySource)
+            throws SQLException, SAXException, IOException, ParserConfigurationException, DataFormatException {
+        String[] parts = SegmentIndex.split(key);
+        String file = parts[0];
+        String unit = parts[1];
+        String segment = parts[2];
+        String src = null;
+        String candidateState = "";
+        int tags = 0;
+        boolean candidateTranslate = false;
+        getCandidate.setString(1, file);
+        getCandidate.setString(2, unit);
+        getCandidate.setString(3, segment);
+        try (ResultSet rs = getCandidate.executeQuery()) {
+            while (rs.next()) {
+                src = TMUtils.getString(rs.getNCharacterStream(1));
+                candidateState = rs.getString(2);
+                tags = rs.getInt(3);
+                candidateTranslate = "Y".equals(rs.getString(4));
+            }
+        }
+        if (src == null || !candidateTranslate || Constants.FINAL.equals(candidateState)) {
+            return;
+        }
+        Element candidate = XliffUtils.buildElement(src);
+        int differences = tagDifferences(source, candidate);
+        String dummy = dummyTagger(candidate);
+        int similarity = MatchQuality.similarity(dummySource, dummy, THRESHOLD + 1 + differences) - differences;
+        if (similarity > THRESHOLD) {
+            Element sourceElement = XliffUtils.buildElement(src);
+            JSONObject tagsData = new JSONObject();
+            if (tags > 0) {
+                tagsData = getUnitData(file, unit);
+            }
+            if (similarity == 100 && Constants.INITIAL.equals(candidateState)) {
+                TagContext context = new TagContext();
+                addHtmlTags(context, candidate, "", false, false, tagsData, true);
+
+                JSONObject row = new JSONObject();
+                row.put("file", file);
+                row.put("unit", unit);
+                row.put("segment", segment);
+                row.put("match", 100);
+                context.tag = 1;
+                String translation = addHtmlTags(context, target, "", false, false, tagsData, true);
+                row.put("target", translation);
+                propagated.add(row);
+
+                Element translated = XliffUtils.buildElement("<target>" + translation + "</target>");
+                translated.setAttribute("xml:space", preserve ? "preserve" : "default");
+                translated.setContent(target.getContent());
+                if (!translated.getChildren().isEmpty()) {
+                    translated = fixTags(sourceElement, source, target);
+                }
+                updateTarget(file, unit, segment, translated, XliffUtils.pureText(translated), false);
+            }
+            insertMatch(file, unit, segment, "Self", Constants.TM, similarity, source, target, tagsData);
+            conn.commit();
+            int best = getBestMatch(file, unit, segment);
+            JSONObject row = new JSONObject();
+            row.put("file", file);
+            row.put("unit", unit);
+            row.put("segment", segment);
+            row.put("match", best);
+            propagated.add(row);
+        }
+    }
+
     private int tagDifferences(Element source, Element candidate) {
         int a = source.getChildren().size();
         int b = candidate.getChildren().size();
@@ -1233,6 +1586,7 @@ public class XliffStore {
                 updateMatch.setString(10, segment);
                 updateMatch.setString(11, matchId);
                 updateMatch.execute();
+                markDirty(file, unit);
                 return;
             }
         }
@@ -1248,6 +1602,7 @@ public class XliffStore {
         insertMatch.setString(10, data);
         insertMatch.setString(11, "N");
         insertMatch.execute();
+        markDirty(file, unit);
     }
 
     private JSONArray getMatches(String file, String unit, String segment) throws SQLException, IOException {
@@ -1303,7 +1658,7 @@ public class XliffStore {
         return string.toString();
     }
 
-    private String addHtmlTags(Element seg, JSONObject originalData) throws IOException {
+    private String addHtmlTags(TagContext context, Element seg, JSONObject originalData) throws IOException {
         if (seg == null) {
             return "";
         }
@@ -1321,8 +1676,8 @@ public class XliffStore {
                 String type = e.getName();
                 if (type.equals("pc")) {
                     String id = e.getAttributeValue("id");
-                    if (!tagsMap.containsKey("pc" + id)) {
-                        XliffUtils.checkSVG(tag);
+                    if (!context.tagsMap.containsKey("pc" + id)) {
+                        XliffUtils.checkSVG(context.tag);
                         String header = XliffUtils.getHeader(e);
                         StringBuilder sb = new StringBuilder();
                         sb.append("<img data-ref='");
@@ -1330,16 +1685,16 @@ public class XliffStore {
                         sb.append("' src='");
                         sb.append(TmsServer.getWorkFolder().toURI().toURL().toString());
                         sb.append("images/");
-                        sb.append(tag++);
+                        sb.append(context.tag++);
                         sb.append(".svg' align='bottom' alt='' title=\"");
                         sb.append(XliffUtils.unquote(XliffUtils.cleanAngles(header)));
                         sb.append("\"/>");
-                        tagsMap.put("pc" + id, sb.toString());
+                        context.tagsMap.put("pc" + id, sb.toString());
                     }
-                    text.append(tagsMap.get("pc" + id));
-                    text.append(addHtmlTags(e, originalData));
-                    if (!tagsMap.containsKey("/pc" + id)) {
-                        XliffUtils.checkSVG(tag);
+                    text.append(context.tagsMap.get("pc" + id));
+                    text.append(addHtmlTags(context, e, originalData));
+                    if (!context.tagsMap.containsKey("/pc" + id)) {
+                        XliffUtils.checkSVG(context.tag);
                         String tail = "</pc>";
                         StringBuilder sb = new StringBuilder();
                         sb.append("<img data-ref='/");
@@ -1347,17 +1702,17 @@ public class XliffStore {
                         sb.append("' src='");
                         sb.append(TmsServer.getWorkFolder().toURI().toURL().toString());
                         sb.append("images/");
-                        sb.append(tag++);
+                        sb.append(context.tag++);
                         sb.append(".svg' align='bottom' alt='' title=\"");
                         sb.append(XliffUtils.unquote(XliffUtils.cleanAngles(tail)));
                         sb.append("\"/>");
-                        tagsMap.put("/pc" + id, sb.toString());
+                        context.tagsMap.put("/pc" + id, sb.toString());
                     }
-                    text.append("/" + tagsMap.get(e.getName() + id));
+                    text.append("/" + context.tagsMap.get(e.getName() + id));
                 } else if (type.equals("mrk")) {
                     String id = e.getAttributeValue("id");
-                    if (!tagsMap.containsKey("mrk" + id)) {
-                        XliffUtils.checkSVG(tag);
+                    if (!context.tagsMap.containsKey("mrk" + id)) {
+                        XliffUtils.checkSVG(context.tag);
                         String header = XliffUtils.getHeader(e);
                         StringBuilder sb = new StringBuilder();
                         sb.append("<img data-ref='");
@@ -1365,18 +1720,18 @@ public class XliffStore {
                         sb.append("' src='");
                         sb.append(TmsServer.getWorkFolder().toURI().toURL().toString());
                         sb.append("images/");
-                        sb.append(tag++);
+                        sb.append(context.tag++);
                         sb.append(".svg' align='bottom' alt='' title=\"");
                         sb.append(XliffUtils.unquote(XliffUtils.cleanAngles(header)));
                         sb.append("\"/>");
-                        tagsMap.put("mrk" + id, sb.toString());
+                        context.tagsMap.put("mrk" + id, sb.toString());
                     }
-                    text.append(tagsMap.get(e.getName() + id));
+                    text.append(context.tagsMap.get(e.getName() + id));
                     text.append("<span " + XliffUtils.STYLE + ">");
                     text.append(e.getText());
                     text.append("</span>");
-                    if (!tagsMap.containsKey("/mrk" + id)) {
-                        XliffUtils.checkSVG(tag);
+                    if (!context.tagsMap.containsKey("/mrk" + id)) {
+                        XliffUtils.checkSVG(context.tag);
                         String tail = "</mrk>";
                         StringBuilder sb = new StringBuilder();
                         sb.append("<img data-ref='/");
@@ -1384,41 +1739,41 @@ public class XliffStore {
                         sb.append("' src='");
                         sb.append(TmsServer.getWorkFolder().toURI().toURL().toString());
                         sb.append("images/");
-                        sb.append(tag++);
+                        sb.append(context.tag++);
                         sb.append(".svg' align='bottom' alt='' title=\"");
                         sb.append(XliffUtils.unquote(XliffUtils.cleanAngles(tail)));
                         sb.append("\"/>");
-                        tagsMap.put("/mrk" + id, sb.toString());
+                        context.tagsMap.put("/mrk" + id, sb.toString());
                     }
-                    text.append(tagsMap.get("/mrk" + id));
+                    text.append(context.tagsMap.get("/mrk" + id));
                 } else if (type.equals("cp")) {
                     String hex = "cp" + e.getAttributeValue("hex");
-                    if (!tagsMap.containsKey(hex)) {
-                        XliffUtils.checkSVG(tag);
+                    if (!context.tagsMap.containsKey(hex)) {
+                        XliffUtils.checkSVG(context.tag);
                         StringBuilder sb = new StringBuilder();
                         sb.append("<img data-ref='");
                         sb.append(hex);
                         sb.append("' src='");
                         sb.append(TmsServer.getWorkFolder().toURI().toURL().toString());
                         sb.append("images/");
-                        sb.append(tag++);
+                        sb.append(context.tag++);
                         sb.append(".svg' align='bottom' alt='' title=\"");
                         sb.append(XliffUtils.unquote(XliffUtils.cleanAngles(e.toString())));
                         sb.append("\"/>");
-                        tagsMap.put(hex, sb.toString());
+                        context.tagsMap.put(hex, sb.toString());
                     }
-                    text.append(tagsMap.get(hex));
+                    text.append(context.tagsMap.get(hex));
                 } else {
                     String dataRef = e.getAttributeValue("dataRef");
-                    if (!tagsMap.containsKey(dataRef)) {
-                        XliffUtils.checkSVG(tag);
+                    if (!context.tagsMap.containsKey(dataRef)) {
+                        XliffUtils.checkSVG(context.tag);
                         StringBuilder sb = new StringBuilder();
                         sb.append("<img data-ref='");
                         sb.append(dataRef);
                         sb.append("' src='");
                         sb.append(TmsServer.getWorkFolder().toURI().toURL().toString());
                         sb.append("images/");
-                        sb.append(tag++);
+                        sb.append(context.tag++);
                         sb.append(".svg' align='bottom' alt='' title=\"");
                         String title = "";
                         if (originalData.has(dataRef)) {
@@ -1426,17 +1781,17 @@ public class XliffStore {
                         }
                         sb.append(XliffUtils.unquote(XliffUtils.cleanAngles(title)));
                         sb.append("\"/>");
-                        tagsMap.put(dataRef, sb.toString());
+                        context.tagsMap.put(dataRef, sb.toString());
                     }
-                    text.append(tagsMap.get(dataRef));
+                    text.append(context.tagsMap.get(dataRef));
                 }
             }
         }
         return text.toString();
     }
 
-    private String addHtmlTags(Element seg, String filterText, boolean caseSensitive, boolean regExp,
-            JSONObject originalData, boolean preserve) throws IOException {
+    private String addHtmlTags(TagContext context, Element seg, String filterText, boolean caseSensitive,
+            boolean regExp, JSONObject originalData, boolean preserve) throws IOException {
         if (seg == null) {
             return "";
         }
@@ -1450,10 +1805,7 @@ public class XliffStore {
                     text.append(XliffUtils.cleanString(((TextNode) o).getText()));
                 } else {
                     if (regExp) {
-                        if (pattern == null || !filterText.equals(lastFilterText)) {
-                            pattern = Pattern.compile(filterText);
-                            lastFilterText = filterText;
-                        }
+                        Pattern pattern = context.getPattern(filterText);
                         String s = ((TextNode) o).getText();
                         Matcher matcher = pattern.matcher(s);
                         if (matcher.find()) {
@@ -1492,37 +1844,37 @@ public class XliffStore {
                     }
                 }
             } else if (o.getNodeType() == XMLNode.ELEMENT_NODE) {
-                text.append(inline2html((Element) o, originalData));
+                text.append(inline2html(context, (Element) o, originalData));
             }
         }
         return preserve ? XliffUtils.highlightSpaces(text.toString()) : text.toString().trim();
     }
 
-    private String inline2html(Element e, JSONObject originalData) throws IOException {
+    private String inline2html(TagContext context, Element e, JSONObject originalData) throws IOException {
         // empty: <cp>, <ph>, <sc>, <ec>, <sm> and <em>.
         // paired: <pc>, <mrk>,
         StringBuilder text = new StringBuilder();
         String type = e.getName();
         if (type.equals("pc")) {
             String id = e.getAttributeValue("id");
-            if (!tagsMap.containsKey("pc" + id)) {
-                XliffUtils.checkSVG(tag);
+            if (!context.tagsMap.containsKey("pc" + id)) {
+                XliffUtils.checkSVG(context.tag);
                 String header = XliffUtils.getHeader(e);
                 StringBuilder sb = new StringBuilder();
                 sb.append("<img data-ref='");
                 sb.append(id);
                 sb.append("' data-id='");
-                sb.append(tag);
+                sb.append(context.tag);
                 sb.append("' src='");
                 sb.append(TmsServer.getWorkFolder().toURI().toURL().toString());
                 sb.append("images/");
-                sb.append(tag++);
+                sb.append(context.tag++);
                 sb.append(".svg' align='bottom' alt='' title=\"");
                 sb.append(XliffUtils.unquote(XliffUtils.cleanAngles(header)));
                 sb.append("\"/>");
-                tagsMap.put("pc" + id, sb.toString());
+                context.tagsMap.put("pc" + id, sb.toString());
             }
-            text.append(tagsMap.get("pc" + id));
+            text.append(context.tagsMap.get("pc" + id));
             List<XMLNode> content = e.getContent();
             Iterator<XMLNode> it = content.iterator();
             while (it.hasNext()) {
@@ -1532,48 +1884,48 @@ public class XliffStore {
                     text.append(XMLUtils.cleanText(s));
                 }
                 if (node.getNodeType() == XMLNode.ELEMENT_NODE) {
-                    text.append(inline2html((Element) node, originalData));
+                    text.append(inline2html(context, (Element) node, originalData));
                 }
             }
-            if (!tagsMap.containsKey("/pc" + id)) {
-                XliffUtils.checkSVG(tag);
+            if (!context.tagsMap.containsKey("/pc" + id)) {
+                XliffUtils.checkSVG(context.tag);
                 StringBuilder sb = new StringBuilder();
                 sb.append("<img data-ref='/");
                 sb.append(e.getAttributeValue("id"));
                 sb.append("' data-id='");
-                sb.append(tag);
+                sb.append(context.tag);
                 sb.append("' src='");
                 sb.append(TmsServer.getWorkFolder().toURI().toURL().toString());
                 sb.append("images/");
-                sb.append(tag++);
+                sb.append(context.tag++);
                 sb.append(".svg' align='bottom' alt='' title=\"");
                 sb.append(XliffUtils.unquote(XliffUtils.cleanAngles("</pc>")));
                 sb.append("\"/>");
-                tagsMap.put("/pc" + id, sb.toString());
+                context.tagsMap.put("/pc" + id, sb.toString());
             }
-            text.append(tagsMap.get("/pc" + id));
+            text.append(context.tagsMap.get("/pc" + id));
         } else if (type.equals("mrk")) {
             String id = e.getAttributeValue("id");
             boolean isTerm = e.getAttributeValue("type").equals("term");
             if (!isTerm) {
-                if (!tagsMap.containsKey("mrk" + id)) {
-                    XliffUtils.checkSVG(tag);
+                if (!context.tagsMap.containsKey("mrk" + id)) {
+                    XliffUtils.checkSVG(context.tag);
                     String header = XliffUtils.getHeader(e);
                     StringBuilder sb = new StringBuilder();
                     sb.append("<img data-ref='");
                     sb.append(id);
                     sb.append("' data-id='");
-                    sb.append(tag);
+                    sb.append(context.tag);
                     sb.append("' src='");
                     sb.append(TmsServer.getWorkFolder().toURI().toURL().toString());
                     sb.append("images/");
-                    sb.append(tag++);
+                    sb.append(context.tag++);
                     sb.append(".svg' align='bottom' alt='' title=\"");
                     sb.append(XliffUtils.unquote(XliffUtils.cleanAngles(header)));
                     sb.append("\"/>");
-                    tagsMap.put("mrk" + id, sb.toString());
+                    context.tagsMap.put("mrk" + id, sb.toString());
                 }
-                text.append(tagsMap.get(e.getName() + id));
+                text.append(context.tagsMap.get(e.getName() + id));
                 text.append("<span " + XliffUtils.STYLE + ">");
             } else {
                 text.append("<span " + XliffUtils.STYLE + " title=\"" + e.getAttributeValue("value") + "\">");
@@ -1587,81 +1939,81 @@ public class XliffStore {
                     text.append(XMLUtils.cleanText(s));
                 }
                 if (node.getNodeType() == XMLNode.ELEMENT_NODE) {
-                    text.append(inline2html((Element) node, originalData));
+                    text.append(inline2html(context, (Element) node, originalData));
                 }
             }
             text.append("</span>");
             if (!isTerm) {
-                if (!tagsMap.containsKey("/mrk" + id)) {
-                    XliffUtils.checkSVG(tag);
+                if (!context.tagsMap.containsKey("/mrk" + id)) {
+                    XliffUtils.checkSVG(context.tag);
                     StringBuilder sb = new StringBuilder();
                     sb.append("<img data-ref='/");
                     sb.append(e.getAttributeValue("id"));
                     sb.append("' data-id='");
-                    sb.append(tag);
+                    sb.append(context.tag);
                     sb.append("' src='");
                     sb.append(TmsServer.getWorkFolder().toURI().toURL().toString());
                     sb.append("images/");
-                    sb.append(tag++);
+                    sb.append(context.tag++);
                     sb.append(".svg' align='bottom' alt='' title=\"");
                     sb.append(XliffUtils.unquote(XliffUtils.cleanAngles("</mrk>")));
                     sb.append("\"/>");
-                    tagsMap.put("/mrk" + id, sb.toString());
+                    context.tagsMap.put("/mrk" + id, sb.toString());
                 }
-                text.append(tagsMap.get("/mrk" + id));
+                text.append(context.tagsMap.get("/mrk" + id));
             }
         } else if (type.equals("cp")) {
             String hex = "cp" + e.getAttributeValue("hex");
-            if (!tagsMap.containsKey(hex)) {
-                XliffUtils.checkSVG(tag);
+            if (!context.tagsMap.containsKey(hex)) {
+                XliffUtils.checkSVG(context.tag);
                 StringBuilder sb = new StringBuilder();
                 sb.append("<img data-ref='");
                 sb.append(hex);
                 sb.append("' data-id='");
-                sb.append(tag);
+                sb.append(context.tag);
                 sb.append("' src='");
                 sb.append(TmsServer.getWorkFolder().toURI().toURL().toString());
                 sb.append("images/");
-                sb.append(tag++);
+                sb.append(context.tag++);
                 sb.append(".svg' align='bottom' alt='' title=\"");
                 sb.append(XliffUtils.unquote(XliffUtils.cleanAngles(e.toString())));
                 sb.append("\"/>");
-                tagsMap.put(hex, sb.toString());
+                context.tagsMap.put(hex, sb.toString());
             }
-            text.append(tagsMap.get(hex));
+            text.append(context.tagsMap.get(hex));
         } else if ("ph".equals(type)) {
             String id = e.getAttributeValue("id");
-            if (!tagsMap.containsKey("ph" + id)) {
-                XliffUtils.checkSVG(tag);
+            if (!context.tagsMap.containsKey("ph" + id)) {
+                XliffUtils.checkSVG(context.tag);
                 String title = originalData.has(id) ? originalData.getString(id) : e.toString();
                 StringBuilder sb = new StringBuilder();
                 sb.append("<img data-ref='");
                 sb.append(id);
                 sb.append("' data-id='");
-                sb.append(tag);
+                sb.append(context.tag);
                 sb.append("' src='");
                 sb.append(TmsServer.getWorkFolder().toURI().toURL().toString());
                 sb.append("images/");
-                sb.append(tag++);
+                sb.append(context.tag++);
                 sb.append(".svg' align='bottom' alt='' title=\"");
                 sb.append(XliffUtils.unquote(XliffUtils.cleanAngles(title)));
                 sb.append("\"/>");
-                tagsMap.put("ph" + id, sb.toString());
+                context.tagsMap.put("ph" + id, sb.toString());
             }
-            text.append(tagsMap.get("ph" + id));
+            text.append(context.tagsMap.get("ph" + id));
         } else {
             String dataRef = e.getAttributeValue("dataRef");
-            if (!tagsMap.containsKey(dataRef)) {
-                XliffUtils.checkSVG(tag);
+            if (!context.tagsMap.containsKey(dataRef)) {
+                XliffUtils.checkSVG(context.tag);
                 StringBuilder sb = new StringBuilder();
                 sb.append("<img data-ref='");
                 sb.append(dataRef);
                 sb.append("' data-id='");
-                sb.append(tag);
+                sb.append(context.tag);
                 sb.append("' src='");
                 sb.append(TmsServer.getWorkFolder().toURI().toURL().toString());
                 sb.append("images/");
-                sb.append(tag++);
+                sb.append(context.tag++);
                 sb.append(".svg' align='bottom' alt='' title=\"");
                 String title = "";
                 if (originalData.has(dataRef)) {
@@ -1669,9 +2021,9 @@ public class XliffStore {
                 }
                 sb.append(XliffUtils.unquote(XliffUtils.cleanAngles(title)));
                 sb.append("\"/>");
-                tagsMap.put(dataRef, sb.toString());
+                context.tagsMap.put(dataRef, sb.toString());
             }
-            text.append(tagsMap.get(dataRef));
+            text.append(context.tagsMap.get(dataRef));
         }
         return text.toString();
     }
@@ -1709,7 +2061,7 @@ public class XliffStore {
         return result;
     }
 
-    public synchronized JSONArray getTaggedtMatches(JSONObject json)
+    public JSONArray getTaggedtMatches(JSONObject json)
             throws SQLException, SAXException, IOException, ParserConfigurationException, DataFormatException {
         JSONArray result = new JSONArray();
 
@@ -1717,76 +2069,86 @@ public class XliffStore {
         String unit = json.getString("unit");
         String segment = json.getString("segment");
 
-        JSONObject originalData = getUnitData(file, unit);
-        Element originalSource = null;
-
-        getSource.setString(1, file);
-        getSource.setString(2, unit);
-        getSource.setString(3, segment);
-        try (ResultSet rs = getSource.executeQuery()) {
-            while (rs.next()) {
-                String src = TMUtils.getString(rs.getNCharacterStream(1));
-                originalSource = XliffUtils.buildElement(src);
+        Connection reader = getReader();
+        try (PreparedStatement unitData = reader
+                .prepareStatement("SELECT data, compressed FROM units WHERE file=? AND unitId=?");
+                PreparedStatement sourceStmt = reader
+                        .prepareStatement("SELECT source FROM segments WHERE file=? AND unitId=? AND segId=?");
+                PreparedStatement matchesStmt = reader.prepareStatement(
+                        "SELECT file, unitId, segId, matchId, origin, type, similarity, source, target FROM matches WHERE file=? AND unitId=? AND segId=? ORDER BY similarity DESC")) {
+            JSONObject originalData = getUnitData(unitData, file, unit);
+            Element originalSource = null;
+
+            sourceStmt.setString(1, file);
+            sourceStmt.setString(2, unit);
+            sourceStmt.setString(3, segment);
+            try (ResultSet rs = sourceStmt.executeQuery()) {
+                while (rs.next()) {
+                    String src = TMUtils.getString(rs.getNCharacterStream(1));
+                    originalSource = XliffUtils.buildElement(src);
+                }
             }
-        }
-        List<Element> originalTags = originalSource.getChildren();
-        String dummySource = dummyTagger(originalSource);
-
-        getMatches.setString(1, file);
-        getMatches.setString(2, unit);
-        getMatches.setString(3, segment);
-        try (ResultSet rs = getMatches.executeQuery()) {
-            while (rs.next()) {
-                tag = 1;
-                JSONObject match = new JSONObject();
-                match.put("file", file);
-                match.put("unit", unit);
-                match.put("segment", segment);
-                match.put("matchId", rs.getString(4));
-                match.put("origin", rs.getString(5));
-                match.put("type", rs.getString(6));
-                match.put("similarity", rs.getInt(7));
-                match.put("srcLang", srcLang);
-                match.put("tgtLang", tgtLang);
+            List<Element> originalTags = originalSource.getChildren();
+            String dummySource = dummyTagger(originalSource);
 
-                String src = TMUtils.getString(rs.getNCharacterStream(8));
-                Element source = XliffUtils.buildElement(src);
-                String tgt = TMUtils.getString(rs.getNCharacterStream(9));
-                Element target = XliffUtils.buildElement(tgt);
+            matchesStmt.setString(1, file);
+            matchesStmt.setString(2, unit);
+            matchesStmt.setString(3, segment);
+            try (ResultSet rs = matchesStmt.executeQuery()) {
+                while (rs.next()) {
+                    TagContext context = new TagContext();
+                    JSONObject match = new JSONObject();
+                    match.put("file", file);
+                    match.put("unit", unit);
+                    match.put("segment", segment);
+                    match.put("matchId", rs.getString(4));
+                    match.put("origin", rs.getString(5));
+                    match.put("type", rs.getString(6));
+                    match.put("similarity", rs.getInt(7));
+                    match.put("srcLang", srcLang);
+                    match.put("tgtLang", tgtLang);
+
+                    String src = TMUtils.getString(rs.getNCharacterStream(8));
+                    Element source = XliffUtils.buildElement(src);
+                    String tgt = TMUtils.getString(rs.getNCharacterStream(9));
+                    Element target = XliffUtils.buildElement(tgt);
 
-                List<Element> sourceTags = source.getChildren();
-                List<Element> targetTags = target.getChildren();
+                    List<Element> sourceTags = source.getChildren();
+                    List<Element> targetTags = target.getChildren();
 
-                for (int i = 0; i < sourceTags.size(); i++) {
-                    Element sourceTag = sourceTags.get(i);
-                    for (int j = 0; j < targetTags.size(); j++) {
-                        Element targetTag = targetTags.get(j);
-                        if (sourceTag.equals(targetTag) && i < originalTags.size()) {
-                            targetTag.clone(originalTags.get(i));
+                    for (int i = 0; i < sourceTags.size(); i++) {
+                        Element sourceTag = sourceTags.get(i);
+                        for (int j = 0; j < targetTags.size(); j++) {
+                            Element targetTag = targetTags.get(j);
+                            if (sourceTag.equals(targetTag) && i < originalTags.size()) {
+                                targetTag.clone(originalTags.get(i));
+                            }
+                        }
+                        if (i < originalTags.size()) {
+                            sourceTag.clone(originalTags.get(i));
                         }
                     }
-                    if (i < originalTags.size()) {
-                        sourceTag.clone(originalTags.get(i));
-                    }
-                }
 
-                String taggedSource = addHtmlTags(source, originalData);
+                    String taggedSource = addHtmlTags(context, source, originalData);
 
-                List<String[]> tags = XliffUtils.harvestTags(taggedSource);
-                for (int i = 0; i < tags.size(); i++) {
-                    taggedSource = taggedSource.replace(tags.get(i)[1], "" + (char) (0xF300 + (i + 1)));
-                }
+                    List<String[]> tags = XliffUtils.harvestTags(taggedSource);
+                    for (int i = 0; i < tags.size(); i++) {
+                        taggedSource = taggedSource.replace(tags.get(i)[1], "" + (char) (0xF300 + (i + 1)));
+                    }
 
-                DifferenceTagger tagger = new DifferenceTagger(dummySource, taggedSource);
-                String tagged = tagger.getYDifferences();
-                for (int i = 0; i < tags.size(); i++) {
-                    tagged = tagged.replace("" + (char) (0xF300 + (i + 1)), tags.get(i)[1]);
-                }
+                    DifferenceTagger tagger = new DifferenceTagger(dummySource, taggedSource);
+                    String tagged = tagger.getYDifferences();
+                    for (int i = 0; i < tags.size(); i++) {
+                        tagged = tagged.replace("" + (char) (0xF300 + (i + 1)), tags.get(i)[1]);
+                    }
 
-                match.put("source", tagged);
-                match.put("target", addHtmlTags(target, "", false, false, originalData, true));
-                result.put(match);
+                    match.put("source", tagged);
+                    match.put("target", addHtmlTags(context, target, "", false, false, originalData, true));
+                    result.put(match);
+                }
             }
+        } finally {
+            release(reader);
         }
         return result;
     }
@@ -1946,21 +2308,92 @@ public class XliffStore {
         }
     }
 
-    public void updateXliff() throws SQLException, SAXException, IOException, ParserConfigurationException {
-        document = builder.build(xliffFile);
-        document.getRootElement().setAttribute("xmlns:mtc", "urn:oasis:names:tc:xliff:matches:2.0");
-        document.getRootElement().setAttribute("xmlns:gls", "urn:oasis:names:tc:xliff:glossary:2.0");
+    public synchronized void updateXliff() throws SQLException, SAXException, IOException, ParserConfigurationException {
+        Map<String, Set<String>> dirty = new HashMap<>();
+        int count = 0;
+        try (ResultSet rs = stmt.executeQuery("SELECT file, unitId FROM dirty")) {
+            while (rs.next()) {
+                dirty.computeIfAbsent(rs.getString(1), k -> new HashSet<>()).add(rs.getString(2));
+                count++;
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+        int units = 0;
+        try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM units")) {
+            while (rs.next()) {
+                units = rs.getInt(1);
+            }
+        }
         unitMatches = conn.prepareStatement(
                 "SELECT file, unitId, segId, matchId, origin, type, similarity, source, target, data, compressed FROM matches WHERE file=? AND unitId=? ORDER BY segId, similarity DESC");
         unitTerms = conn.prepareStatement(
                 "SELECT file, unitId, segId, termId, origin, source, target FROM terms WHERE file=? AND unitId=? ORDER BY segId");
         unitNotes = conn
                 .prepareStatement("SELECT segId, noteId, note FROM notes WHERE file=? AND unitId=? ORDER BY segId");
-        recurseUpdating(document.getRootElement());
-        unitTerms.close();
-        unitMatches.close();
-        unitNotes.close();
-        saveXliff();
+        try {
+            if (count * 2 < units) {
+                // unchanged units are copied as they are, parsing each changed unit
+                // on its own only pays off while most units are unchanged
+                File xliff = new File(xliffFile);
+                File updated = new File(xliff.getParentFile(), xliff.getName() + ".tmp");
+                XliffRewriter rewriter = new XliffRewriter(builder, dirty, (file, unit) -> {
+                    currentFile = file;
+                    recurseUpdating(unit);
+                });
+                rewriter.rewrite(xliff, updated);
+                Files.move(updated.toPath(), xliff.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                document = builder.build(xliffFile);
+                document.getRootElement().setAttribute("xmlns:mtc", "urn:oasis:names:tc:xliff:matches:2.0");
+                document.getRootElement().setAttribute("xmlns:gls", "urn:oasis:names:tc:xliff:glossary:2.0");
+                recurseUpdating(document.getRootElement());
+                saveXliff();
+            }
+        } finally {
+            unitTerms.close();
+            unitMatches.close();
+            unitNotes.close();
+        }
+        stmt.execute("DELETE FROM dirty");
+        conn.commit();
+    }
+
+    private void markDirty(String file, String unit) throws SQLException {
+        markDirtyStmt.setString(1, file);
+        markDirtyStmt.setString(2, unit);
+        markDirtyStmt.executeUpdate();
+    }
+
+    // marks the units selected by a query that returns file and unitId
+    private void markDirty(String query) throws SQLException {
+        stmt.execute("MERGE INTO dirty (file, unitId) KEY (file, unitId) " + query);
+    }
+
+    // adds (sign 1) or removes (sign -1) the segments of a unit from the counters of its file
+    private synchronized void countUnit(String file, String unit, int sign) throws SQLException {
+        countUnitStmt.setString(1, file);
+        countUnitStmt.setString(2, unit);
+        try (ResultSet rs = countUnitStmt.executeQuery()) {
+            while (rs.next()) {
+                for (int i = 1; i <= 8; i++) {
+                    adjustCountersStmt.setInt(i, sign * rs.getInt(i));
+                }
+            }
+        }
+        adjustCountersStmt.setString(9, file);
+        adjustCountersStmt.executeUpdate();
+    }
+
+    // rebuilds all counters, used after loading and by operations that touch many segments
+    private void countAll() throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("DELETE FROM counters");
+            st.execute("INSERT INTO counters SELECT file, " + COUNTERS + " FROM segments WHERE type='S' GROUP BY file");
+            st.execute("INSERT INTO counters SELECT id, 0, 0, 0, 0, 0, 0, 0, 0 FROM files "
+                    + "WHERE id NOT IN (SELECT file FROM counters)");
+        }
     }
 
     private void recurseUpdating(Element e)
@@ -2040,7 +2473,7 @@ public class XliffStore {
                 st = Constants.TRANSLATED;
                 logger.log(Level.WARNING, "Changing segment state from 'initial' to 'translated'");
             }
-            JSONArray notesArray = getNotes(currentFile, currentUnit, id);
+            JSONArray notesArray = readNotes(getNotesStmt, currentFile, currentUnit, id);
             if (notesArray.length() > 0) {
                 target = FromXliff2.removeComments(target);
                 for (int i = 0; i < notesArray.length(); i++) {
@@ -2250,29 +2683,23 @@ public class XliffStore {
         String unit = json.getString("unit");
         String segment = json.getString("segment");
 
-        String sourceText = "";
-        getSource.setString(1, file);
-        getSource.setString(2, unit);
-        getSource.setString(3, segment);
-        try (ResultSet rs = getSource.executeQuery()) {
-            while (rs.next()) {
-                sourceText = TMUtils.getString(rs.getNCharacterStream(2));
-            }
-        }
+        String sourceText = readSource(file, unit, segment)[1];
         Element source = XliffUtils.buildElement("<source>" + XMLUtils.cleanText(sourceText) + "</source>");
         JSONObject tagsData = new JSONObject();
         List<JSONObject> translations = translator.translate(sourceText);
-        Iterator<JSONObject> it = translations.iterator();
-        while (it.hasNext()) {
-            JSONObject translation = it.next();
-            String origin = translation.getString("key");
-            source.setAttribute("xml:lang", translation.getString("srcLang"));
-            String targetText = "<target>" + XMLUtils.cleanText(translation.getString("target")) + "</target>";
-            Element target = XliffUtils.buildElement(targetText);
-            target.setAttribute("xml:lang", translation.getString("tgtLang"));
-            insertMatch(file, unit, segment, origin, Constants.MT, 0, source, target, tagsData);
+        synchronized (this) {
+            Iterator<JSONObject> it = translations.iterator();
+            while (it.hasNext()) {
+                JSONObject translation = it.next();
+                String origin = translation.getString("key");
+                source.setAttribute("xml:lang", translation.getString("srcLang"));
+                String targetText = "<target>" + XMLUtils.cleanText(translation.getString("target")) + "</target>";
+                Element target = XliffUtils.buildElement(targetText);
+                target.setAttribute("xml:lang", translation.getString("tgtLang"));
+                insertMatch(file, unit, segment, origin, Constants.MT, 0, source, target, tagsData);
+            }
+            conn.commit();
         }
-        conn.commit();
         return getTaggedtMatches(json);
     }
 
@@ -2282,37 +2709,37 @@ public class XliffStore {
         String unit = json.getString("unit");
         String segment = json.getString("segment");
 
-        String pure = "";
-        getSource.setString(1, file);
-        getSource.setString(2, unit);
-        getSource.setString(3, segment);
-        try (ResultSet rs = getSource.executeQuery()) {
-            while (rs.next()) {
-                pure = TMUtils.getString(rs.getNCharacterStream(2));
-            }
-        }
+        String pure = readSource(file, unit, segment)[1];
 
-        String memory = json.getString("memory");
-        MemoriesHandler.open(memory);
-        ITmEngine tmEngine = MemoriesHandler.getEngine(memory);
-        List<Match> tmMatches = tmEngine.searchTranslation(pure, srcLang, tgtLang, 60, false);
-        MemoriesHandler.close(memory);
+        List<String> memories = getMemories(json);
+        ITmEngine tmEngine = openMemories(memories, json);
+        List<Match> tmMatches;
+        try {
+            tmMatches = tmEngine.searchTranslation(pure, srcLang, tgtLang, 60, false, MAXMATCHES);
+        } finally {
+            closeMemories(tmEngine, memories);
+        }
 
         String glossary = json.getString("glossary");
         GlossariesHandler.openGlossary(glossary);
-        ITmEngine glossEngine = GlossariesHandler.getEngine(glossary);
-
-        Match match = MatchAssembler.assembleMatch(pure, tmMatches, glossEngine, srcLang, tgtLang);
-        if (match != null) {
-            Element matchSource = match.getSource();
-            matchSource.setAttribute("xml:lang", srcLang);
-            Element matchTarget = match.getTarget();
-            matchTarget.setAttribute("xml:lang", tgtLang);
-            insertMatch(file, unit, segment, "Auto", Constants.AM, match.getSimilarity(), matchSource, matchTarget,
-                    new JSONObject());
-            conn.commit();
+        try {
+            ITmEngine glossEngine = GlossariesHandler.getEngine(glossary);
+
+            Match match = MatchAssembler.assembleMatch(pure, tmMatches, glossEngine, srcLang, tgtLang);
+            if (match != null) {
+                Element matchSource = match.getSource();
+                matchSource.setAttribute("xml:lang", srcLang);
+                Element matchTarget = match.getTarget();
+                matchTarget.setAttribute("xml:lang", tgtLang);
+                synchronized (this) {
+                    insertMatch(file, unit, segment, "Auto", Constants.AM, match.getSimilarity(), matchSource,
+                            matchTarget, new JSONObject());
+                    conn.commit();
+                }
+            }
+        } finally {
+            GlossariesHandler.closeGlossary(glossary);
         }
-        GlossariesHandler.closeGlossary(glossary);
     }
 
     public void assembleMatchesAll(JSONObject json)
@@ -2323,42 +2750,77 @@ public class XliffStore {
         ITmEngine tmEngine = MemoriesHandler.getEngine(memory);
 
         String glossary = json.getString("glossary");
-        GlossariesHandler.openGlossary(glossary);
+        try {
+            GlossariesHandler.openGlossary(glossary);
+        } catch (IOException | SQLException e) {
+            MemoriesHandler.close(memory);
+            throw e;
+        }
         ITmEngine glossEngine = GlossariesHandler.getEngine(glossary);
 
-        String sql = "SELECT file, unitId, segId, sourceText FROM segments WHERE state <> 'final'";
-        try (ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                String file = rs.getString(1);
-                String unit = rs.getString(2);
-                String segment = rs.getString(3);
-                String pure = TMUtils.getString(rs.getNCharacterStream(4));
-                try {
-                    List<Match> tmMatches = tmEngine.searchTranslation(pure, srcLang, tgtLang, 60, false);
-
-                    Match match = MatchAssembler.assembleMatch(pure, tmMatches, glossEngine, srcLang, tgtLang);
-                    if (match != null) {
-                        Element matchSource = match.getSource();
-                        matchSource.setAttribute("xml:lang", srcLang);
-                        Element matchTarget = match.getTarget();
-                        matchTarget.setAttribute("xml:lang", tgtLang);
-                        insertMatch(file, unit, segment, "Auto", Constants.AM, match.getSimilarity(), matchSource,
-                                matchTarget, new JSONObject());
-                        conn.commit();
+        ExecutorService pool = Executors.newFixedThreadPool(tmThreads);
+        try {
+            String sql = "SELECT file, unitId, segId, sourceText FROM segments WHERE state <> 'final'";
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                List<String[]> batch = new Vector<>();
+                boolean more = true;
+                while (more) {
+                    more = rs.next();
+                    if (more) {
+                        batch.add(new String[] { rs.getString(1), rs.getString(2), rs.getString(3),
+                                TMUtils.getString(rs.getNCharacterStream(4)) });
+                    }
+                    if (batch.size() == 250 || (!more && !batch.isEmpty())) {
+                        assembleBatch(batch, tmEngine, glossEngine, pool);
+                        batch.clear();
                     }
-                } catch (IOException | ParserConfigurationException | SAXException | SQLException ex) {
-                    // Ignore errors in individual segments
-                    JSONObject errorSegment = new JSONObject();
-                    errorSegment.put("file", file);
-                    errorSegment.put("unit", unit);
-                    errorSegment.put("segment", segment);
-                    logger.log(Level.WARNING,
-                            "Error assembling matches: " + ex.getMessage() + "\n" + errorSegment.toString());
                 }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Match assembly interrupted");
+        } finally {
+            pool.shutdown();
+            MemoriesHandler.close(memory);
+            GlossariesHandler.closeGlossary(glossary);
+        }
+    }
+
+    private void assembleBatch(List<String[]> batch, ITmEngine tmEngine, ITmEngine glossEngine,
+            ExecutorService pool) throws InterruptedException {
+        List<Future<Match>> futures = new Vector<>();
+        for (int i = 0; i < batch.size(); i++) {
+            String pure = batch.get(i)[3];
+            futures.add(pool.submit(() -> {
+                List<Match> tmMatches = tmEngine.searchTranslation(pure, srcLang, tgtLang, 60, false, MAXMATCHES);
+                return MatchAssembler.assembleMatch(pure, tmMatches, glossEngine, srcLang, tgtLang);
+            }));
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            String file = batch.get(i)[0];
+            String unit = batch.get(i)[1];
+            String segment = batch.get(i)[2];
+            try {
+                Match match = futures.get(i).get();
+                if (match != null) {
+                    Element matchSource = match.getSource();
+                    matchSource.setAttribute("xml:lang", srcLang);
+                    Element matchTarget = match.getTarget();
+                    matchTarget.setAttribute("xml:lang", tgtLang);
+                    insertMatch(file, unit, segment, "Auto", Constants.AM, match.getSimilarity(), matchSource,
+                            matchTarget, new JSONObject());
+                    conn.commit();
+                }
+            } catch (ExecutionException | IOException | SQLException ex) {
+                // Ignore errors in individual segments
+                JSONObject errorSegment = new JSONObject();
+                errorSegment.put("file", file);
+                errorSegment.put("unit", unit);
+                errorSegment.put("segment", segment);
+                logger.log(Level.WARNING,
+                        "Error assembling matches: " + ex.getMessage() + "\n" + errorSegment.toString());
+            }
         }
-        MemoriesHandler.close(memory);
-        GlossariesHandler.closeGlossary(glossary);
     }
 
     public JSONArray tmTranslate(JSONObject json)
@@ -2366,46 +2828,95 @@ public class XliffStore {
         String file = json.getString("file");
         String unit = json.getString("unit");
         String segment = json.getString("segment");
-        String memory = json.getString("memory");
+        List<String> memories = getMemories(json);
+
+        String[] sourceData = readSource(file, unit, segment);
+        String pure = sourceData[1];
+        Element original = XliffUtils.buildElement(sourceData[0]);
+        ITmEngine engine = openMemories(memories, json);
+        try {
+            String memoryName = MemoriesHandler.getName(memories.get(0));
+            List<Match> matches = engine.searchTranslation(pure, srcLang, tgtLang, 60, false, MAXMATCHES);
+            for (int i = 0; i < matches.size(); i++) {
+                Match m = matches.get(i);
+                XliffUtils.setTags(new JSONObject());
+                Element matchSource = XliffUtils.toXliff(segment, i, "source", m.getSource());
+                matchSource.setAttribute("xml:lang", srcLang);
+                Element matchTarget = XliffUtils.toXliff(segment, i, "target", m.getTarget());
+                matchTarget.setAttribute("xml:lang", tgtLang);
+                JSONObject obj = new JSONObject();
+                obj.put("dataRef", XliffUtils.getTags());
+                int similarity = m.getSimilarity() - tagDifferences(original, matchSource);
+                String origin = memories.size() == 1 ? memoryName : MemoriesHandler.getName(m.getOrigin());
+                synchronized (this) {
+                    insertMatch(file, unit, segment, origin, Constants.TM, similarity, matchSource, matchTarget, obj);
+                    conn.commit();
+                }
+            }
+        } finally {
+            closeMemories(engine, memories);
+        }
+        return getTaggedtMatches(json);
+    }
 
-        String src = "";
-        String pure = "";
-        getSource.setString(1, file);
-        getSource.setString(2, unit);
-        getSource.setString(3, segment);
-        try (ResultSet rs = getSource.executeQuery()) {
-            while (rs.next()) {
-                src = TMUtils.getString(rs.getNCharacterStream(1));
-                pure = TMUtils.getString(rs.getNCharacterStream(2));
+    // "memories" lists several memories to search at once, "memory" a single one
+    private static List<String> getMemories(JSONObject json) {
+        List<String> result = new Vector<>();
+        if (json.has("memories")) {
+            JSONArray array = json.getJSONArray("memories");
+            for (int i = 0; i < array.length(); i++) {
+                result.add(array.getString(i));
             }
+        } else {
+            result.add(json.getString("memory"));
         }
-        Element original = XliffUtils.buildElement(src);
-        String memoryName = MemoriesHandler.getName(memory);
-        MemoriesHandler.open(memory);
-        ITmEngine engine = MemoriesHandler.getEngine(memory);
-        List<Match> matches = engine.searchTranslation(pure, srcLang, tgtLang, 60, false);
-        for (int i = 0; i < matches.size(); i++) {
-            Match m = matches.get(i);
-            XliffUtils.setTags(new JSONObject());
-            Element matchSource = XliffUtils.toXliff(segment, i, "source", m.getSource());
-            matchSource.setAttribute("xml:lang", srcLang);
-            Element matchTarget = XliffUtils.toXliff(segment, i, "target", m.getTarget());
-            matchTarget.setAttribute("xml:lang", tgtLang);
-            JSONObject obj = new JSONObject();
-            obj.put("dataRef", XliffUtils.getTags());
-            int similarity = m.getSimilarity() - tagDifferences(original, matchSource);
-            insertMatch(file, unit, segment, memoryName, Constants.TM, similarity, matchSource, matchTarget, obj);
-            conn.commit();
+        return result;
+    }
+
+    private static ITmEngine openMemories(List<String> memories, JSONObject json) throws IOException, SQLException {
+        if (memories.size() == 1) {
+            MemoriesHandler.open(memories.get(0));
+            return MemoriesHandler.getEngine(memories.get(0));
         }
-        MemoriesHandler.close(memory);
-        return getTaggedtMatches(json);
+        JSONObject penalties = json.has("penalties") ? json.getJSONObject("penalties") : new JSONObject();
+        FederatedEngine federated = new FederatedEngine("federated");
+        for (int i = 0; i < memories.size(); i++) {
+            String memory = memories.get(i);
+            try {
+                MemoriesHandler.open(memory);
+            } catch (IOException | SQLException e) {
+                // give back the leases taken so far
+                closeMemories(federated, memories.subList(0, i));
+                throw e;
+            }
+            federated.addEngine(MemoriesHandler.getEngine(memory), penalties.optInt(memory, 0),
+                    FederatedEngine.DEFAULT_TIMEOUT);
+        }
+        return federated;
     }
 
-    public int tmTranslateAll(String memory, int penalization, Map<String, JSONObject> processes, String processId)
+    private static void closeMemories(ITmEngine engine, List<String> memories) throws IOException, SQLException {
+        if (engine instanceof FederatedEngine) {
+            engine.close();
+        }
+        for (int i = 0; i < memories.size(); i++) {
+            MemoriesHandler.close(memories.get(i));
+        }
+    }
+
+    public int tmTranslateAll(String memory, int penalization, Job job)
             throws IOException, SQLException, SAXException, ParserConfigurationException {
         String memoryName = MemoriesHandler.getName(memory);
         MemoriesHandler.open(memory);
-        ITmEngine engine = MemoriesHandler.getEngine(memory);
+        try {
+            return tmTranslateAll(MemoriesHandler.getEngine(memory), memoryName, penalization, job);
+        } finally {
+            MemoriesHandler.close(memory);
+        }
+    }
+
+    private int tmTranslateAll(ITmEngine engine, String memoryName, int penalization, Job job)
+            throws IOException, SQLException, SAXException, ParserConfigurationException {
         String sql = "SELECT COUNT(*) FROM segments WHERE type = 'S' AND state <> 'final'";
         int total = 0;
         try (ResultSet rs = stmt.executeQuery(sql)) {
@@ -2420,6 +2931,8 @@ public class XliffStore {
             JSONObject params = new JSONObject();
             params.put("srcLang", srcLang);
             params.put("tgtLang", tgtLang);
+            params.put("maxResults", MAXMATCHES);
+            params.put("threads", tmThreads);
             JSONArray array = new JSONArray();
             while (rs.next()) {
                 String file = rs.getString(1);
@@ -2438,9 +2951,10 @@ public class XliffStore {
                     if (percentage == 100) {
                         percentage = 99;
                     }
-                    processes.get(processId).put("percentage", percentage);
+                    job.setPercentage(percentage);
                 }
                 if (array.length() == 250) {
+                    job.checkCancelled();
                     params.put("segments", array);
                     JSONArray translations = engine.batchTranslate(params);
                     count += storeMatches(translations, memoryName, penalization);
@@ -2450,9 +2964,8 @@ public class XliffStore {
             params.put("segments", array);
             JSONArray translations = engine.batchTranslate(params);
             count += storeMatches(translations, memoryName, penalization);
-            processes.get(processId).put("percentage", 100);
+            job.setPercentage(100);
         }
-        MemoriesHandler.close(memory);
         return count;
     }
 
@@ -2534,7 +3047,7 @@ public class XliffStore {
         return catalog;
     }
 
-    public void removeTranslations() throws SQLException, SAXException, IOException, ParserConfigurationException {
+    public synchronized void removeTranslations() throws SQLException, SAXException, IOException, ParserConfigurationException {
         String sql = "SELECT file, unitId, segId, source FROM segments WHERE type='S' AND translate='Y' and targetText<>'' ";
         try (ResultSet rs = stmt.executeQuery(sql)) {
             while (rs.next()) {
@@ -2552,13 +3065,16 @@ public class XliffStore {
         }
     }
 
-    public void unconfirmTranslations() throws SQLException {
+    public synchronized void unconfirmTranslations() throws SQLException {
+        markDirty("SELECT DISTINCT file, unitId FROM segments WHERE type='S' AND translate='Y' "
+                + "AND ((targetText='' AND state<>'initial') OR (targetText<>'' AND state<>'translated'))");
         stmt.execute("UPDATE segments SET state='initial' WHERE type='S' AND targetText='' AND translate='Y' ");
         stmt.execute("UPDATE segments SET state='translated' WHERE type='S' AND targetText <> '' AND translate='Y' ");
+        countAll();
         conn.commit();
     }
 
-    public void pseudoTranslate() throws SQLException, SAXException, IOException, ParserConfigurationException {
+    public synchronized void pseudoTranslate() throws SQLException, SAXException, IOException, ParserConfigurationException {
         String sql = "SELECT file, unitId, segId, source FROM segments WHERE type='S' AND (state='initial' OR targetText='') AND translate='Y' ";
         try (ResultSet rs = stmt.executeQuery(sql)) {
             while (rs.next()) {
@@ -2613,7 +3129,7 @@ public class XliffStore {
         return result;
     }
 
-    public void copyAllSources() throws SQLException, SAXException, IOException, ParserConfigurationException {
+    public synchronized void copyAllSources() throws SQLException, SAXException, IOException, ParserConfigurationException {
         String sql = "SELECT file, unitId, segId, source FROM segments WHERE type='S' AND (state='initial' OR targetText='') AND translate='Y' ";
         try (ResultSet rs = stmt.executeQuery(sql)) {
             while (rs.next()) {
@@ -2635,15 +3151,15 @@ public class XliffStore {
         }
     }
 
-    public void confirmAllTranslations(String memory)
+    public synchronized void confirmAllTranslations(String memory)
             throws SQLException, SAXException, IOException, ParserConfigurationException {
         if (memory.equals(Constants.NONE)) {
+            markDirty("SELECT DISTINCT file, unitId FROM segments WHERE type='S' AND targetText<>'' AND translate='Y' AND state<>'final'");
             stmt.execute("UPDATE segments SET state='final' WHERE type='S' AND targetText<>'' AND translate='Y' ");
+            countAll();
             conn.commit();
             return;
         }
-        MemoriesHandler.open(memory);
-        ITmEngine engine = MemoriesHandler.getEngine(memory);
         String sql = "SELECT file, unitId, segId, FROM segments WHERE state<>'final' AND type='S' AND targetText<>'' AND translate='Y'";
         try (ResultSet rs = stmt.executeQuery(sql)) {
             try (PreparedStatement updateSegment = conn
@@ -2658,6 +3174,7 @@ public class XliffStore {
                     updateSegment.setString(2, unit);
                     updateSegment.setString(3, segment);
                     updateSegment.executeUpdate();
+                    markDirty(file, unit);
 
                     getSegment.setString(1, file);
                     getSegment.setString(2, unit);
@@ -2676,17 +3193,18 @@ public class XliffStore {
                             key.append(unit);
                             key.append('-');
                             key.append(segment);
-                            engine.storeTu(XliffUtils.toTu(key.toString(), source, target, tags, srcLang, tgtLang));
+                            MemoriesHandler.storeTu(memory,
+                                    XliffUtils.toTu(key.toString(), source, target, tags, srcLang, tgtLang));
                         }
                     }
                 }
             }
         }
-        MemoriesHandler.close(memory);
+        countAll();
         conn.commit();
     }
 
-    public void acceptAll100Matches() throws SQLException, SAXException, IOException, ParserConfigurationException {
+    public synchronized void acceptAll100Matches() throws SQLException, SAXException, IOException, ParserConfigurationException {
         String sql = "SELECT file, unitId, segId, source FROM segments WHERE type='S' AND (state='initial' OR targetText='') AND translate='Y' ";
         try (ResultSet rs = stmt.executeQuery(sql)) {
             try (PreparedStatement perfectMatches = conn.prepareStatement(
@@ -2722,35 +3240,31 @@ public class XliffStore {
         }
     }
 
-    public String generateStatistics()
+    public synchronized String generateStatistics()
             throws SQLException, SAXException, IOException, ParserConfigurationException, URISyntaxException {
-        getCatalog();
-        updateXliff();
         File file = new File(xliffFile);
 
         Map<String, JSONObject> map = new HashMap<>();
+        Map<String, JSONObject> statusMap = new HashMap<>();
         Map<String, Set<String>> filesMap = new HashMap<>();
 
-        String sql = "SELECT file, SUM(words), COUNT(*) FROM segments WHERE type='S' GROUP BY file";
-        try (ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                String fileId = rs.getString(1);
-                JSONObject json = new JSONObject();
-                int words = rs.getInt(2);
-                int segments = rs.getInt(3);
-                json.put("file", fileId);
-                json.put("words", words);
-                json.put("segments", segments);
-                map.put(fileId, json);
-            }
-        }
-
-        sql = "SELECT id, name FROM files";
+        String sql = "SELECT id, name FROM files";
         try (ResultSet rs = stmt.executeQuery(sql)) {
             while (rs.next()) {
                 String id = rs.getString(1);
                 String name = rs.getNString(2);
-                map.get(id).put("name", name);
+                JSONObject json = new JSONObject();
+                json.put("file", id);
+                json.put("name", name);
+                for (int i = 0; i < STATUS_KEYS.length; i++) {
+                    json.put(STATUS_KEYS[i], 0);
+                }
+                map.put(id, json);
+                JSONObject analysis = new JSONObject();
+                for (int i = 0; i < ANALYSIS_KEYS.length; i++) {
+                    analysis.put(ANALYSIS_KEYS[i], 0);
+                }
+                statusMap.put(id, analysis);
                 if (filesMap.containsKey(name)) {
                     Set<String> ids = filesMap.get(name);
                     ids.add(id);
@@ -2763,179 +3277,93 @@ public class XliffStore {
             }
         }
 
-        sql = "SELECT file, SUM(words), COUNT(*) FROM segments WHERE type = 'S' AND targettext = '' GROUP BY file";
-        try (ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                String fileId = rs.getString(1);
-                int untranslated = rs.getInt(2);
-                int untranslatedSegments = rs.getInt(3);
-                map.get(fileId).put("untranslated", untranslated);
-                map.get(fileId).put("untranslatedSegments", untranslatedSegments);
-            }
-        }
-
-        sql = "SELECT file, SUM(words), COUNT(*) FROM segments WHERE type = 'S' AND targettext <> '' GROUP BY file";
-        try (ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                String fileId = rs.getString(1);
-                int translated = rs.getInt(2);
-                int translatedSegments = rs.getInt(3);
-                map.get(fileId).put("translated", translated);
-                map.get(fileId).put("translatedSegments", translatedSegments);
-            }
-        }
-
-        sql = "SELECT file, SUM(words), COUNT(*) FROM segments WHERE type = 'S' AND state = 'final' GROUP BY file";
-        try (ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                String fileId = rs.getString(1);
-                int confirmed = rs.getInt(2);
-                int confirmedSegments = rs.getInt(3);
-                map.get(fileId).put("confirmed", confirmed);
-                map.get(fileId).put("confirmedSegments", confirmedSegments);
-            }
-        }
-
-        Map<String, JSONObject> statusMap = new HashMap<>();
-        Set<String> currentFileSegments = null;
-        Set<String> otherFileSegments = new TreeSet<>();
-
-        sql = "SELECT MAX(similarity) FROM matches WHERE file = ? AND unitid = ? AND segid = ?";
-        try (PreparedStatement st = conn.prepareStatement(sql)) {
-            String currentFile = "";
-            JSONObject json = null;
-            sql = "SELECT file, unitid, segid, source, words,tags FROM segments WHERE type = 'S' ORDER BY file, unitid, segid";
+        // segments and best match per segment are read in the same key order and merged here
+        Set<Long> currentFileSegments = new HashSet<>();
+        Set<Long> otherFileSegments = new HashSet<>();
+        String currentFile = "";
+        sql = "SELECT file, unitId, segId, MAX(similarity) FROM matches GROUP BY file, unitId, segId ORDER BY file, unitId, segId";
+        try (Statement matchesStmt = conn.createStatement(); ResultSet matches = matchesStmt.executeQuery(sql)) {
+            boolean hasMatch = matches.next();
+            sql = "SELECT file, unitId, segId, CAST(source AS VARCHAR), words, tags, targetText = '', state, translate "
+                    + "FROM segments WHERE type = 'S' ORDER BY file, unitId, segId";
             try (ResultSet rs = stmt.executeQuery(sql)) {
                 while (rs.next()) {
                     String fileId = rs.getString(1);
                     String unitId = rs.getString(2);
                     String segId = rs.getString(3);
-                    String source = rs.getNString(4);
+                    long source = sourceHash(rs.getString(4));
                     int words = rs.getInt(5);
                     int tags = rs.getInt(6);
+                    boolean untranslated = rs.getBoolean(7);
+                    String state = rs.getString(8);
+                    boolean locked = "N".equals(rs.getString(9));
                     if (!currentFile.equals(fileId)) {
-                        json = new JSONObject();
-                        json.put("newSegments", 0);
-                        json.put("100Segments", 0);
-                        json.put("95Segments", 0);
-                        json.put("85Segments", 0);
-                        json.put("75Segments", 0);
-                        json.put("50Segments", 0);
-                        json.put("intRepSegment", 0);
-                        json.put("extRepSegment", 0);
-                        json.put("newWords", 0);
-                        json.put("100Words", 0);
-                        json.put("95Words", 0);
-                        json.put("85Words", 0);
-                        json.put("75Words", 0);
-                        json.put("50Words", 0);
-                        json.put("tags", 0);
-                        json.put("intRep", 0);
-                        json.put("extRep", 0);
-                        statusMap.put(fileId, json);
+                        otherFileSegments.addAll(currentFileSegments);
+                        currentFileSegments.clear();
                         currentFile = fileId;
-                        if (currentFileSegments != null) {
-                            otherFileSegments.addAll(currentFileSegments);
-                        }
-                        currentFileSegments = new TreeSet<>();
                     }
-                    json.put("tags", json.getInt("tags") + tags);
-                    st.setString(1, fileId);
-                    st.setString(2, unitId);
-                    st.setString(3, segId);
                     int max = 0;
-                    try (ResultSet rs2 = st.executeQuery()) {
-                        while (rs2.next()) {
-                            max = rs2.getInt(1);
-                        }
+                    while (hasMatch && compareKeys(matches, fileId, unitId, segId) < 0) {
+                        hasMatch = matches.next();
+                    }
+                    if (hasMatch && compareKeys(matches, fileId, unitId, segId) == 0) {
+                        max = matches.getInt(4);
+                    }
+
+                    JSONObject json = map.get(fileId);
+                    increment(json, "words", words);
+                    increment(json, "segments", 1);
+                    if (untranslated) {
+                        increment(json, "untranslated", words);
+                        increment(json, "untranslatedSegments", 1);
+                    } else {
+                        increment(json, "translated", words);
+                        increment(json, "translatedSegments", 1);
+                    }
+                    if (Constants.FINAL.equals(state)) {
+                        increment(json, "confirmed", words);
+                        increment(json, "confirmedSegments", 1);
                     }
+                    if (locked) {
+                        increment(json, "locked", words);
+                        increment(json, "lockedSegments", 1);
+                    }
+
+                    JSONObject analysis = statusMap.get(fileId);
+                    increment(analysis, "tags", tags);
                     if (max < 50) {
                         if (currentFileSegments.contains(source)) {
-                            json.put("intRepSegment", json.getInt("intRepSegment") + 1);
-                            json.put("intRep", json.getInt("intRep") + words);
+                            increment(analysis, "intRepSegment", 1);
+                            increment(analysis, "intRep", words);
                         } else if (otherFileSegments.contains(source)) {
-                            json.put("extRepSegment", json.getInt("extRepSegment") + 1);
-                            json.put("extRep", json.getInt("extRep") + words);
+                            increment(analysis, "extRepSegment", 1);
+                            increment(analysis, "extRep", words);
                         } else {
-                            json.put("newSegments", json.getInt("newSegments") + 1);
-                            json.put("newWords", json.getInt("newWords") + words);
+                            increment(analysis, "newSegments", 1);
+                            increment(analysis, "newWords", words);
                         }
+                    } else if (max == 100) {
+                        increment(analysis, "100Segments", 1);
+                        increment(analysis, "100Words", words);
+                    } else if (max >= 95) {
+                        increment(analysis, "95Segments", 1);
+                        increment(analysis, "95Words", words);
+                    } else if (max >= 85) {
+                        increment(analysis, "85Segments", 1);
+                        increment(analysis, "85Words", words);
+                    } else if (max >= 75) {
+                        increment(analysis, "75Segments", 1);
+                        increment(analysis, "75Words", words);
+                    } else {
+                        increment(analysis, "50Segments", 1);
+                        increment(analysis, "50Words", words);
                     }
                     currentFileSegments.add(source);
-                    if (max == 100) {
-                        json.put("100Segments", json.getInt("100Segments") + 1);
-                        json.put("100Words", json.getInt("100Words") + words);
-                    }
-                    if (max >= 95 && max <= 99) {
-                        json.put("95Segments", json.getInt("95Segments") + 1);
-                        json.put("95Words", json.getInt("95Words") + words);
-                    }
-                    if (max >= 85 && max <= 94) {
-                        json.put("85Segments", json.getInt("85Segments") + 1);
-                        json.put("85Words", json.getInt("85Words") + words);
-                    }
-                    if (max >= 75 && max <= 84) {
-                        json.put("75Segments", json.getInt("75Segments") + 1);
-                        json.put("75Words", json.getInt("75Words") + words);
-                    }
-                    if (max >= 50 && max <= 74) {
-                        json.put("50Segments", json.getInt("50Segments") + 1);
-                        json.put("50Words", json.getInt("50Words") + words);
-                    }
                 }
             }
         }
 
-        sql = "SELECT file, SUM(words), COUNT(*) FROM segments WHERE type = 'S' AND translate = 'N' GROUP BY file";
-        try (ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                String fileId = rs.getString(1);
-                int confirmed = rs.getInt(2);
-                int confirmedSegments = rs.getInt(3);
-                map.get(fileId).put("locked", confirmed);
-                map.get(fileId).put("lockedSegments", confirmedSegments);
-            }
-        }
-
-        Set<String> keys = map.keySet();
-        Iterator<String> it = keys.iterator();
-        while (it.hasNext()) {
-            String key = it.next();
-            JSONObject json = map.get(key);
-            if (!json.has("untranslated")) {
-                json.put("untranslated", 0);
-                map.put(key, json);
-            }
-            if (!json.has("translated")) {
-                json.put("translated", 0);
-                map.put(key, json);
-            }
-            if (!json.has("confirmed")) {
-                json.put("confirmed", 0);
-                map.put(key, json);
-            }
-            if (!json.has("translatedSegments")) {
-                json.put("translatedSegments", 0);
-                map.put(key, json);
-            }
-            if (!json.has("untranslatedSegments")) {
-                json.put("untranslatedSegments", 0);
-                map.put(key, json);
-            }
-            if (!json.has("confirmedSegments")) {
-                json.put("confirmedSegments", 0);
-                map.put(key, json);
-            }
-            if (!json.has("locked")) {
-                json.put("locked", 0);
-                map.put(key, json);
-            }
-            if (!json.has("lockedSegments")) {
-                json.put("lockedSegments", 0);
-                map.put(key, json);
-            }
-        }
-
+        Iterator<String> it;
         File log = new File(file.getAbsolutePath() + ".log.html");
         try (FileOutputStream out = new FileOutputStream(log)) {
 
@@ -3282,6 +3710,9 @@ public class XliffStore {
             writeString(out, "</tr>\n");
             writeString(out, "</table>\n");
 
+            // charts are drawn from the XLIFF file, only units changed since the last save are written
+            getCatalog();
+            updateXliff();
             SvgStats svgStats = new SvgStats();
             svgStats.analyse(xliffFile, catalog);
 
@@ -3307,7 +3738,7 @@ public class XliffStore {
         return log.getAbsolutePath();
     }
 
-    public void replaceText(JSONObject json)
+    public synchronized void replaceText(JSONObject json)
             throws SQLException, SAXException, IOException, ParserConfigurationException {
         String searchText = json.getString("searchText");
         String replaceText = json.getString("replaceText");
@@ -3372,11 +3803,12 @@ public class XliffStore {
         return target;
     }
 
-    public void applyMtAll(MT translator)
+    public void applyMtAll(MT translator, Job job)
             throws SQLException, SAXException, IOException, ParserConfigurationException, InterruptedException {
         String sql = "SELECT file, unitId, segId, sourceText FROM segments WHERE type='S' AND (state='initial' OR targetText='') AND translate='Y' ";
         try (ResultSet rs = stmt.executeQuery(sql)) {
             while (rs.next()) {
+                job.checkCancelled();
                 String file = rs.getString(1);
                 String unit = rs.getString(2);
                 String segment = rs.getString(3);
@@ -3402,7 +3834,7 @@ public class XliffStore {
         }
     }
 
-    public void acceptAllMT() throws SQLException, SAXException, IOException, ParserConfigurationException {
+    public synchronized void acceptAllMT() throws SQLException, SAXException, IOException, ParserConfigurationException {
         String sql = "SELECT file, unitId, segId, source FROM segments WHERE type='S' AND (state='initial' OR targetText='') AND translate='Y' ";
         try (ResultSet rs = stmt.executeQuery(sql)) {
             try (PreparedStatement mtMatches = conn.prepareStatement(
@@ -3433,7 +3865,12 @@ public class XliffStore {
         }
     }
 
-    public void removeMatches(String type) throws SQLException {
+    public synchronized void removeMatches(String type) throws SQLException {
+        try (PreparedStatement prep = conn.prepareStatement(
+                "MERGE INTO dirty (file, unitId) KEY (file, unitId) SELECT DISTINCT file, unitId FROM matches WHERE type=?")) {
+            prep.setString(1, type);
+            prep.execute();
+        }
         try (PreparedStatement prep = conn.prepareStatement("DELETE FROM matches WHERE type=?")) {
             prep.setString(1, type);
             prep.execute();
@@ -3443,20 +3880,26 @@ public class XliffStore {
 
     public JSONArray getTerms(JSONObject json) throws SQLException, IOException {
         JSONArray result = new JSONArray();
-        getTerms.setString(1, json.getString("file"));
-        getTerms.setString(2, json.getString("unit"));
-        getTerms.setString(3, json.getString("segment"));
-        try (ResultSet rs = getTerms.executeQuery()) {
-            while (rs.next()) {
-                JSONObject obj = new JSONObject();
-                obj.put("termId", rs.getString(1));
-                obj.put("origin", rs.getString(2));
-                obj.put("source", TMUtils.getString(rs.getNCharacterStream(3)));
-                obj.put("target", TMUtils.getString(rs.getNCharacterStream(4)));
-                obj.put("srcLang", srcLang);
-                obj.put("tgtLang", tgtLang);
-                result.put(obj);
+        Connection reader = getReader();
+        try (PreparedStatement prep = reader.prepareStatement(
+                "SELECT termid, origin, source, target FROM terms WHERE file=? AND unitId=? AND segId=? ORDER BY source")) {
+            prep.setString(1, json.getString("file"));
+            prep.setString(2, json.getString("unit"));
+            prep.setString(3, json.getString("segment"));
+            try (ResultSet rs = prep.executeQuery()) {
+                while (rs.next()) {
+                    JSONObject obj = new JSONObject();
+                    obj.put("termId", rs.getString(1));
+                    obj.put("origin", rs.getString(2));
+                    obj.put("source", TMUtils.getString(rs.getNCharacterStream(3)));
+                    obj.put("target", TMUtils.getString(rs.getNCharacterStream(4)));
+                    obj.put("srcLang", srcLang);
+                    obj.put("tgtLang", tgtLang);
+                    result.put(obj);
+                }
             }
+        } finally {
+            release(reader);
         }
         return sortTerms(result);
     }
@@ -3468,31 +3911,45 @@ public class XliffStore {
         getPreferences();
         int similarity = fuzzyTermSearches ? 70 : 100;
 
-        String sourceText = "";
-        getSource.setString(1, json.getString("file"));
-        getSource.setString(2, json.getString("unit"));
-        getSource.setString(3, json.getString("segment"));
-        try (ResultSet rs = getSource.executeQuery()) {
-            while (rs.next()) {
-                sourceText = TMUtils.getString(rs.getNCharacterStream(2));
-            }
-        }
+        String sourceText = readSource(json.getString("file"), json.getString("unit"), json.getString("segment"))[1];
         Language sourceLanguage = LanguageUtils.getLanguage(srcLang);
         List<String> words = sourceLanguage.isCJK() ? cjkWordList(sourceText, NGrams.TERM_SEPARATORS)
                 : NGrams.buildWordList(sourceText, NGrams.TERM_SEPARATORS);
 
-        List<Term> terms = new Vector<>();
-
         String glossary = json.getString("glossary");
         GlossariesHandler.openGlossary(glossary);
-        String glossaryName = GlossariesHandler.getGlossaryName(glossary);
-        ITmEngine engine = GlossariesHandler.getEngine(glossary);
+        try {
+            String glossaryName = GlossariesHandler.getGlossaryName(glossary);
+            ITmEngine engine = GlossariesHandler.getEngine(glossary);
+            TermScanner scanner = fuzzyTermSearches ? null
+                    : TermScanner.getScanner(glossary, srcLang, tgtLang, caseSensitiveSearches);
+            List<Term> terms = findTerms(words, sourceLanguage.isCJK(), scanner, engine, similarity, glossaryName);
+            for (int i = 0; i < terms.size(); i++) {
+                Term candidate = terms.get(i);
+                result.put(candidate.toJSON());
+                saveTerm(json.getString("file"), json.getString("unit"), json.getString("segment"), glossaryName,
+                        candidate.getSource(), candidate.getTarget());
+            }
+        } finally {
+            GlossariesHandler.closeGlossary(glossary);
+        }
+        return sortTerms(result);
+    }
+
+    // glossary terms matching windows of up to MAXTERMLENGTH words, the scanner finds exact matches
+    private List<Term> findTerms(List<String> words, boolean cjk, TermScanner scanner, ITmEngine engine,
+            int similarity, String glossaryName)
+            throws IOException, SAXException, ParserConfigurationException, SQLException {
+        if (scanner != null) {
+            return scanner.scan(words);
+        }
+        List<Term> terms = new Vector<>();
         Map<String, String> visited = new Hashtable<>();
         for (int i = 0; i < words.size(); i++) {
             StringBuilder termBuilder = new StringBuilder();
             for (int length = 0; length < MAXTERMLENGTH; length++) {
                 if (i + length < words.size()) {
-                    if (!sourceLanguage.isCJK()) {
+                    if (!cjk) {
                         termBuilder.append(' ');
                     }
                     termBuilder.append(words.get(i + length));
@@ -3505,17 +3962,13 @@ public class XliffStore {
                             Term candidate = array.get(h);
                             if (!terms.contains(candidate)) {
                                 terms.add(candidate);
-                                result.put(candidate.toJSON());
-                                saveTerm(json.getString("file"), json.getString("unit"), json.getString("segment"),
-                                        glossaryName, candidate.getSource(), candidate.getTarget());
                             }
                         }
                     }
                 }
             }
         }
-        GlossariesHandler.closeGlossary(glossary);
-        return sortTerms(result);
+        return terms;
     }
 
     private JSONArray sortTerms(JSONArray array) {
@@ -3539,60 +3992,138 @@ public class XliffStore {
 
     public int getProjectTerms(String glossary)
             throws IOException, SQLException, SAXException, ParserConfigurationException {
+        return getProjectTerms(glossary, null);
+    }
+
+    public int getProjectTerms(String glossary, Job job)
+            throws IOException, SQLException, SAXException, ParserConfigurationException {
         getPreferences();
-        Language sourceLanguage = LanguageUtils.getLanguage(srcLang);
+        boolean cjk = LanguageUtils.getLanguage(srcLang).isCJK();
         int similarity = fuzzyTermSearches ? 70 : 100;
+        int total = 0;
+        try (Statement countStmt = conn.createStatement();
+                ResultSet rs = countStmt.executeQuery("SELECT COUNT(*) FROM segments WHERE type='S' AND translate='Y'")) {
+            while (rs.next()) {
+                total = rs.getInt(1);
+            }
+        }
         GlossariesHandler.openGlossary(glossary);
+        TermScanner scanner;
+        try {
+            scanner = fuzzyTermSearches ? null
+                    : TermScanner.getScanner(glossary, srcLang, tgtLang, caseSensitiveSearches);
+        } catch (IOException | SQLException | SAXException | ParserConfigurationException e) {
+            GlossariesHandler.closeGlossary(glossary);
+            throw e;
+        }
         String glossaryName = GlossariesHandler.getGlossaryName(glossary);
         ITmEngine engine = GlossariesHandler.getEngine(glossary);
         int count = 0;
+        int processed = 0;
+        ExecutorService pool = Executors.newFixedThreadPool(tmThreads);
         try (PreparedStatement segIterator = conn.prepareStatement(
-                "SELECT file, unitId, segId, sourceText FROM segments WHERE type='S' AND translate='Y' ")) {
+                "SELECT file, unitId, segId, sourceText FROM segments WHERE type='S' AND translate='Y' ");
+                PreparedStatement addTerm = conn.prepareStatement(
+                        "INSERT INTO terms (file, unitId, segId, termid, origin, source, target) SELECT ?,?,?,?,?,?,? "
+                                + "WHERE NOT EXISTS (SELECT 1 FROM terms WHERE file=? AND unitId=? AND segId=? AND termid=?)")) {
             try (ResultSet set = segIterator.executeQuery()) {
-                while (set.next()) {
-                    String file = set.getString(1);
-                    String unit = set.getString(2);
-                    String segment = set.getString(3);
-                    String sourceText = TMUtils.getString(set.getNCharacterStream(4));
-                    List<String> words = sourceLanguage.isCJK() ? cjkWordList(sourceText, NGrams.TERM_SEPARATORS)
-                            : NGrams.buildWordList(sourceText, NGrams.TERM_SEPARATORS);
-                    Map<String, String> visited = new Hashtable<>();
-                    boolean added = false;
-                    for (int i = 0; i < words.size(); i++) {
-                        StringBuilder termBuilder = new StringBuilder();
-                        for (int length = 0; length < MAXTERMLENGTH; length++) {
-                            if (i + length < words.size()) {
-                                if (!sourceLanguage.isCJK()) {
-                                    termBuilder.append(' ');
-                                }
-                                termBuilder.append(words.get(i + length));
-                                String term = termBuilder.toString().trim();
-                                if (!visited.containsKey(term)) {
-                                    visited.put(term, "");
-                                    List<Element> res = engine.searchAll(term, srcLang, similarity,
-                                            caseSensitiveSearches);
-                                    List<Term> array = parseMatches(res, glossaryName);
-                                    for (int h = 0; h < array.size(); h++) {
-                                        Term candidate = array.get(h);
-                                        saveTerm(file, unit, segment, glossaryName, candidate.getSource(),
-                                                candidate.getTarget());
-                                        added = true;
-                                    }
-                                }
-                            }
+                List<String[]> batch = new Vector<>();
+                boolean more = true;
+                while (more) {
+                    more = set.next();
+                    if (more) {
+                        batch.add(new String[] { set.getString(1), set.getString(2), set.getString(3),
+                                TMUtils.getString(set.getNCharacterStream(4)) });
+                    }
+                    if (batch.size() == 250 || (!more && !batch.isEmpty())) {
+                        count += extractTerms(batch, cjk, scanner, engine, similarity, glossaryName, pool, addTerm);
+                        processed += batch.size();
+                        batch.clear();
+                        if (job != null) {
+                            int percentage = Math.round(processed * 100f / total);
+                            job.setPercentage(percentage == 100 ? 99 : percentage);
+                            job.checkCancelled();
                         }
                     }
-                    if (added) {
-                        count++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Term extraction interrupted");
+        } finally {
+            pool.shutdown();
+            GlossariesHandler.closeGlossary(glossary);
+        }
+        if (job != null) {
+            job.setPercentage(100);
+        }
+        return count;
+    }
+
+    // searches the batch in the pool and stores all hits with one executeBatch and one commit
+    private int extractTerms(List<String[]> batch, boolean cjk, TermScanner scanner, ITmEngine engine,
+            int similarity, String glossaryName, ExecutorService pool, PreparedStatement addTerm)
+            throws InterruptedException, SQLException, IOException {
+        List<Future<List<Term>>> futures = new Vector<>();
+        for (int i = 0; i < batch.size(); i++) {
+            String sourceText = batch.get(i)[3];
+            futures.add(pool.submit(() -> {
+                List<String> words = cjk ? cjkWordList(sourceText, NGrams.TERM_SEPARATORS)
+                        : NGrams.buildWordList(sourceText, NGrams.TERM_SEPARATORS);
+                return findTerms(words, cjk, scanner, engine, similarity, glossaryName);
+            }));
+        }
+        List<List<Term>> found = new Vector<>();
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                found.add(futures.get(i).get());
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause().getMessage(), e.getCause());
+            }
+        }
+        int count = 0;
+        // the job runs beside grid edits, the writer statements and the commit need the store lock
+        synchronized (this) {
+            // terms already stored are kept and the first one found in the batch wins, as in saveTerm()
+            Set<String> added = new HashSet<>();
+            for (int i = 0; i < batch.size(); i++) {
+                List<Term> terms = found.get(i);
+                if (terms.isEmpty()) {
+                    continue;
+                }
+                count++;
+                String file = batch.get(i)[0];
+                String unit = batch.get(i)[1];
+                String segment = batch.get(i)[2];
+                markDirty(file, unit);
+                for (int j = 0; j < terms.size(); j++) {
+                    Term term = terms.get(j);
+                    String termId = "" + (term.getSource() + glossaryName).hashCode();
+                    if (added.add(file + '\n' + unit + '\n' + segment + '\n' + termId)) {
+                        addTerm.setString(1, file);
+                        addTerm.setString(2, unit);
+                        addTerm.setString(3, segment);
+                        addTerm.setString(4, termId);
+                        addTerm.setString(5, glossaryName);
+                        addTerm.setNCharacterStream(6, new StringReader(term.getSource()));
+                        addTerm.setNCharacterStream(7, new StringReader(term.getTarget()));
+                        addTerm.setString(8, file);
+                        addTerm.setString(9, unit);
+                        addTerm.setString(10, segment);
+                        addTerm.setString(11, termId);
+                        addTerm.addBatch();
                     }
                 }
             }
+            if (!added.isEmpty()) {
+                addTerm.executeBatch();
+                conn.commit();
+            }
         }
-        GlossariesHandler.closeGlossary(glossary);
         return count;
     }
 
-    private void saveTerm(String file, String unit, String segment, String origin, String source, String target)
+    private synchronized void saveTerm(String file, String unit, String segment, String origin, String source, String target)
             throws SQLException {
         boolean found = false;
         checkTerm.setString(1, file);
@@ -3613,6 +4144,7 @@ public class XliffStore {
             insertTerm.setNCharacterStream(6, new StringReader(source));
             insertTerm.setNCharacterStream(7, new StringReader(target));
             insertTerm.execute();
+            markDirty(file, unit);
             conn.commit();
         }
     }
@@ -3636,7 +4168,7 @@ public class XliffStore {
         return result;
     }
 
-    public void lockSegment(JSONObject json) throws SQLException {
+    public synchronized void lockSegment(JSONObject json) throws SQLException {
         String sql = "SELECT translate FROM segments WHERE file=? AND unitId=? AND segId=?";
         String segTranslate = "";
         try (PreparedStatement st = conn.prepareStatement(sql)) {
@@ -3655,17 +4187,22 @@ public class XliffStore {
             st.setString(2, json.getString("file"));
             st.setString(3, json.getString("unit"));
             st.setString(4, json.getString("segment"));
+            countUnit(json.getString("file"), json.getString("unit"), -1);
             st.executeUpdate();
+            countUnit(json.getString("file"), json.getString("unit"), 1);
+            markDirty(json.getString("file"), json.getString("unit"));
             conn.commit();
         }
     }
 
-    public void unlockAll() throws SQLException {
+    public synchronized void unlockAll() throws SQLException {
+        markDirty("SELECT DISTINCT file, unitId FROM segments WHERE type='S' AND translate='N'");
         stmt.executeUpdate("UPDATE segments SET translate='Y' WHERE type='S' AND translate='N' ");
+        countAll();
         conn.commit();
     }
 
-    public void lockDuplicates() throws SQLException, SAXException, IOException, ParserConfigurationException {
+    public synchronized void lockDuplicates() throws SQLException, SAXException, IOException, ParserConfigurationException {
         String sql = "UPDATE segments SET translate='N' WHERE file=? AND unitId=? AND segId=?";
         try (PreparedStatement lockStmt = conn.prepareStatement(sql)) {
             Element currentSource = new Element("source");
@@ -3677,7 +4214,10 @@ public class XliffStore {
                         lockStmt.setString(1, rs.getString(1));
                         lockStmt.setString(2, rs.getString(2));
                         lockStmt.setString(3, rs.getString(3));
+                        countUnit(rs.getString(1), rs.getString(2), -1);
                         lockStmt.executeUpdate();
+                        countUnit(rs.getString(1), rs.getString(2), 1);
+                        markDirty(rs.getString(1), rs.getString(2));
                         conn.commit();
                     } else {
                         currentSource = source;
@@ -3687,7 +4227,7 @@ public class XliffStore {
         }
     }
 
-    public JSONObject analyzeSpaces() throws SQLException, IOException {
+    public synchronized JSONObject analyzeSpaces() throws SQLException, IOException {
         getPreferences();
         JSONObject result = new JSONObject();
         JSONArray errors = new JSONArray();
@@ -3752,7 +4292,7 @@ public class XliffStore {
         return new int[] { start, end };
     }
 
-    public JSONObject analyzeTags() throws SQLException, SAXException, IOException, ParserConfigurationException {
+    public synchronized JSONObject analyzeTags() throws SQLException, SAXException, IOException, ParserConfigurationException {
         getPreferences();
         JSONObject result = new JSONObject();
         JSONArray errors = new JSONArray();
@@ -3884,7 +4424,7 @@ public class XliffStore {
         return result;
     }
 
-    public String exportHTML(String title)
+    public synchronized String exportHTML(String title)
             throws SQLException, IOException, SAXException, ParserConfigurationException {
         File output = new File(xliffFile + ".html");
         try (FileOutputStream out = new FileOutputStream(output)) {
@@ -3949,21 +4489,20 @@ public class XliffStore {
                         box = SVG_LOCK;
                     }
                     String space = segPreserve ? "preserve" : "";
-                    tagsMap = new Hashtable<>();
-                    tag = 1;
+                    TagContext context = new TagContext();
 
                     writeString(out, "<tr>\n");
                     writeString(out, "<td class=\"center " + border + "\"> " + count++ + "</td>\n");
                     writeString(out,
                             "<td class=\"text " + space + " " + border + "\"" + sourceDir + ">"
                                     + XliffUtils.highlightSpaces(
-                                            removeSvg(addHtmlTags(source, "", false, false, tagsData, segPreserve)))
+                                            removeSvg(addHtmlTags(context, source, "", false, false, tagsData, segPreserve)))
                                     + "</td>\n");
                     writeString(out, "<td class=\"center " + border + "\"> " + box + "</td>\n");
                     writeString(out,
                             "<td class=\"text " + space + "\"" + targetDir + ">"
                                     + XliffUtils.highlightSpaces(
-                                            removeSvg(addHtmlTags(target, "", false, false, tagsData, segPreserve)))
+                                            removeSvg(addHtmlTags(context, target, "", false, false, tagsData, segPreserve)))
                                     + "</td>\n");
                     writeString(out, "</tr>\n");
                 }
@@ -3979,6 +4518,32 @@ public class XliffStore {
         out.write(string.getBytes(StandardCharsets.UTF_8));
     }
 
+    private static void increment(JSONObject json, String key, int value) {
+        json.put(key, json.getInt(key) + value);
+    }
+
+    // same order H2 uses for VARCHAR keys, no collation is set in the database
+    private static int compareKeys(ResultSet rs, String file, String unit, String segment) throws SQLException {
+        int result = rs.getString(1).compareTo(file);
+        if (result == 0) {
+            result = rs.getString(2).compareTo(unit);
+        }
+        if (result == 0) {
+            result = rs.getString(3).compareTo(segment);
+        }
+        return result;
+    }
+
+    // 64-bit FNV-1a, collisions are unlikely enough for counting repetitions
+    private static long sourceHash(String source) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < source.length(); i++) {
+            hash ^= source.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
     private static String removeSvg(String segment) {
         if (segment.isEmpty()) {
             return segment;
@@ -4005,11 +4570,11 @@ public class XliffStore {
         return name.substring(0, name.indexOf('.'));
     }
 
-    public void splitSegment(JSONObject json)
+    public synchronized void splitSegment(JSONObject json)
             throws SQLException, SAXException, IOException, ParserConfigurationException {
 
-        currentFile = json.getString("file");
-        currentUnit = json.getString("unit");
+        String fileId = json.getString("file");
+        String unitId = json.getString("unit");
         String segmentId = json.getString("segment");
         int offset = json.getInt("offset");
 
@@ -4019,11 +4584,11 @@ public class XliffStore {
         List<Element> files = document.getRootElement().getChildren("file");
         for (int i = 0; i < files.size(); i++) {
             Element file = files.get(i);
-            if (file.getAttributeValue("id").equals(currentFile)) {
+            if (file.getAttributeValue("id").equals(fileId)) {
                 List<Element> units = file.getChildren("unit");
                 for (int j = 0; j < units.size(); j++) {
                     unit = units.get(j);
-                    if (unit.getAttributeValue("id").equals(currentUnit)) {
+                    if (unit.getAttributeValue("id").equals(unitId)) {
                         List<Element> segments = unit.getChildren("segment");
                         for (int k = 0; k < segments.size(); k++) {
                             segment = segments.get(k);
@@ -4043,8 +4608,8 @@ public class XliffStore {
         while (tt.hasNext()) {
             Element seg = tt.next();
             seg.removeChild("target");
-            Element target = getTarget(currentFile, currentUnit, seg.getAttributeValue("id"));
-            seg.setAttribute("state", getState(currentFile, currentUnit, seg.getAttributeValue("id")));
+            Element target = getTarget(fileId, unitId, seg.getAttributeValue("id"));
+            seg.setAttribute("state", getState(fileId, unitId, seg.getAttributeValue("id")));
             seg.addContent(target);
         }
 
@@ -4087,7 +4652,7 @@ public class XliffStore {
             }
         }
 
-        Element oldTarget = getTarget(currentFile, currentUnit, segmentId);
+        Element oldTarget = getTarget(fileId, unitId, segmentId);
         String pureTarget = XliffUtils.pureText(oldTarget);
 
         Element source1 = new Element("source");
@@ -4138,8 +4703,8 @@ public class XliffStore {
         index = 0;
 
         try (PreparedStatement prep = conn.prepareStatement(sql)) {
-            prep.setString(1, currentFile);
-            prep.setString(2, currentUnit);
+            prep.setString(1, fileId);
+            prep.setString(2, unitId);
             try (ResultSet rs = prep.executeQuery()) {
                 while (rs.next()) {
                     index = rs.getInt(1);
@@ -4147,9 +4712,10 @@ public class XliffStore {
             }
         }
 
-        deleteUnitSegments(currentFile, currentUnit);
+        countUnit(fileId, unitId, -1);
+        deleteUnitSegments(fileId, unitId);
 
-        sql = "UPDATE segments SET child = child + 1 WHERE file = '" + currentFile + "' AND child >= " + index;
+        sql = "UPDATE segments SET child = child + 1 WHERE file = '" + fileId + "' AND child >= " + index;
         stmt.execute(sql);
 
         sql = "INSERT INTO segments (file, unitId, segId, type, state, child, translate, tags, space, source, sourceText, target, targetText, words) VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
@@ -4168,17 +4734,20 @@ public class XliffStore {
                 preserve = preserve || sourcePreserve
                         || "preserve".equals(target.getAttributeValue("xml:space", "default"));
 
-                insertSegment(currentFile, currentUnit, id, "S", true, source, target);
+                insertSegment(fileId, unitId, id, "S", true, source, target);
             }
             if ("ignorable".equals(e.getName())) {
                 String id = e.getAttributeValue("id");
                 state = "";
-                insertSegment(currentFile, currentUnit, id, "I", false, e.getChild("source"), e.getChild("target"));
+                insertSegment(fileId, unitId, id, "I", false, e.getChild("source"), e.getChild("target"));
             }
         }
         insertSegmentStmt.close();
+        countUnit(fileId, unitId, 1);
+        markDirty(fileId, unitId);
         conn.commit();
         indexSegments();
+        buildSourceIndex();
         saveXliff();
     }
 
@@ -4217,11 +4786,11 @@ public class XliffStore {
         }
     }
 
-    public void mergeSegment(JSONObject json)
+    public synchronized void mergeSegment(JSONObject json)
             throws SAXException, IOException, ParserConfigurationException, SQLException {
 
-        currentFile = json.getString("file");
-        currentUnit = json.getString("unit");
+        String fileId = json.getString("file");
+        String unitId = json.getString("unit");
         String segmentId = json.getString("segment");
 
         Element unit = null;
@@ -4230,11 +4799,11 @@ public class XliffStore {
         List<Element> files = document.getRootElement().getChildren("file");
         for (int i = 0; i < files.size(); i++) {
             Element file = files.get(i);
-            if (file.getAttributeValue("id").equals(currentFile)) {
+            if (file.getAttributeValue("id").equals(fileId)) {
                 List<Element> units = file.getChildren("unit");
                 for (int j = 0; j < units.size(); j++) {
                     unit = units.get(j);
-                    if (unit.getAttributeValue("id").equals(currentUnit)) {
+                    if (unit.getAttributeValue("id").equals(unitId)) {
                         List<Element> segments = unit.getChildren("segment");
                         for (int k = 0; k < segments.size(); k++) {
                             segment = segments.get(k);
@@ -4254,8 +4823,8 @@ public class XliffStore {
         while (tt.hasNext()) {
             Element seg = tt.next();
             seg.removeChild("target");
-            Element target = getTarget(currentFile, currentUnit, seg.getAttributeValue("id"));
-            seg.setAttribute("state", getState(currentFile, currentUnit, seg.getAttributeValue("id")));
+            Element target = getTarget(fileId, unitId, seg.getAttributeValue("id"));
+            seg.setAttribute("state", getState(fileId, unitId, seg.getAttributeValue("id")));
             seg.addContent(target);
         }
 
@@ -4263,8 +4832,8 @@ public class XliffStore {
         index = 0;
 
         try (PreparedStatement prep = conn.prepareStatement(sql)) {
-            prep.setString(1, currentFile);
-            prep.setString(2, currentUnit);
+            prep.setString(1, fileId);
+            prep.setString(2, unitId);
             try (ResultSet rs = prep.executeQuery()) {
                 while (rs.next()) {
                     index = rs.getInt(1);
@@ -4272,6 +4841,7 @@ public class XliffStore {
             }
         }
 
+        countUnit(fileId, unitId, -1);
         List<Element> oldContent = unit.getChildren();
         List<XMLNode> newContent = new Vector<>();
 
@@ -4287,7 +4857,7 @@ public class XliffStore {
                     segment.getChild("source").addContent(child.getChild("source").getContent());
                     segment.getChild("target").addContent(child.getChild("target").getContent());
                     deletedId = child.getAttributeValue("id");
-                    deleteSegment(currentFile, currentUnit, deletedId);
+                    deleteSegment(fileId, unitId, deletedId);
                     adding = false;
                 }
                 if (segmentId.equals(child.getAttributeValue("id"))) {
@@ -4332,7 +4902,7 @@ public class XliffStore {
         }
         Indenter.indent(unit, 2);
 
-        deleteUnitSegments(currentFile, currentUnit);
+        deleteUnitSegments(fileId, unitId);
 
         sql = "INSERT INTO segments (file, unitId, segId, type, state, child, translate, tags, space, source, sourceText, target, targetText, words) VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
         insertSegmentStmt = conn.prepareStatement(sql);
@@ -4356,18 +4926,21 @@ public class XliffStore {
                 preserve = preserve || sourcePreserve
                         || "preserve".equals(target.getAttributeValue("xml:space", "default"));
 
-                insertSegment(currentFile, currentUnit, id, "S", true, source, target);
+                insertSegment(fileId, unitId, id, "S", true, source, target);
             }
             if ("ignorable".equals(e.getName())) {
                 String id = e.getAttributeValue("id");
                 state = "";
-                insertSegment(currentFile, currentUnit, id, "I", false, e.getChild("source"), e.getChild("target"));
+                insertSegment(fileId, unitId, id, "I", false, e.getChild("source"), e.getChild("target"));
             }
         }
 
         insertSegmentStmt.close();
+        countUnit(fileId, unitId, 1);
+        markDirty(fileId, unitId);
         conn.commit();
         indexSegments();
+        buildSourceIndex();
         saveXliff();
     }
 
@@ -4417,6 +4990,9 @@ public class XliffStore {
     }
 
     private void indexSegments() throws SQLException {
+        if (renderCache != null) {
+            renderCache.clear();
+        }
         int idx = 0;
         String update = "UPDATE segments SET idx=? WHERE file=? AND unitID=? AND segId=?";
         try (PreparedStatement prep = conn.prepareStatement(update)) {
@@ -4435,4 +5011,50 @@ public class XliffStore {
         }
         conn.commit();
     }
-}
\ No newline at end of file
+
+    // tag numbering and images of the segment being rendered, one per call so
+    // that concurrent readers don't renumber each other's tags
+    private static class TagContext {
+
+        Map<String, String> tagsMap = new HashMap<>();
+        int tag = 1;
+        private Pattern pattern;
+
+        void reset() {
+            tagsMap.clear();
+            tag = 1;
+        }
+
+        Pattern getPattern(String filterText) {
+            if (pattern == null || !pattern.pattern().equals(filterText)) {
+                pattern = Pattern.compile(filterText);
+            }
+            return pattern;
+        }
+    }
+
+    private static class RenderedSegment {
+
+        private String src;
+        private String tgt;
+        private String data;
+        private boolean preserve;
+        String source;
+        String target;
+        boolean tagErrors;
+        boolean spaceErrors;
+
+        RenderedSegment(String src, String tgt, String data, boolean preserve) {
+            this.src = src;
+            this.tgt = tgt;
+            this.data = data;
+            this.preserve = preserve;
+        }
+
+        // segments can also change through bulk updates, compare with what was rendered
+        boolean matches(String src, String tgt, String data, boolean preserve) {
+            return this.preserve == preserve && Objects.equals(this.src, src) && Objects.equals(this.tgt, tgt)
+                    && Objects.equals(this.data, data);
+        }
+    }
+}
@@ -50,8 +50,10 @@ public class XliffUtils {
 	private static final String NOTXLIFF = "Selected file is not an XLIFF document";
 	private static final String NOTSWORDFISH = "Selected file is not a Swordfish project";
 	private static int maxTag = 0;
-	private static JSONObject tags;
-	private static SAXBuilder builder;
+	// matches are converted by request threads and jobs at the same time
+	private static ThreadLocal<JSONObject> tags = new ThreadLocal<>();
+	// SAXBuilder is not thread safe and segments are also parsed by the propagation thread
+	private static ThreadLocal<SAXBuilder> builder = ThreadLocal.withInitial(SAXBuilder::new);
 
 	private XliffUtils() {
 		// empty for security
@@ -116,7 +118,7 @@ public class XliffUtils {
 		return Character.isWhitespace(c);
 	}
 
-	public static void checkSVG(int tag) throws IOException {
+	public static synchronized void checkSVG(int tag) throws IOException {
 		if (tag <= maxTag) {
 			return;
 		}
@@ -212,11 +214,11 @@ public class XliffUtils {
 	}
 
 	public static void setTags(JSONObject json) {
-		tags = json;
+		tags.set(json);
 	}
 
 	public static JSONObject getTags() {
-		return tags;
+		return tags.get();
 	}
 
 	public static Element toXliff(String segId, int match, String name, Element tuv) {
@@ -239,7 +241,7 @@ public class XliffUtils {
 					ph.setAttribute("id", segId + "_" + match + "_ph" + tag);
 					ph.setAttribute("dataRef", segId + "_" + match + "_ph" + tag);
 					newContent.add(ph);
-					tags.put(segId + "_" + match + "_ph" + tag, e.getText());
+					tags.get().put(segId + "_" + match + "_ph" + tag, e.getText());
 				}
 				if ("bpt".equals(e.getName())) {
 					Element sc = new Element("sc");
@@ -247,7 +249,7 @@ public class XliffUtils {
 					sc.setAttribute("id", segId + "_" + match + "_sc" + tag);
 					sc.setAttribute("dataRef", segId + "_" + match + "_sc" + tag);
 					newContent.add(sc);
-					tags.put(segId + "_" + match + "_sc" + tag, e.getText());
+					tags.get().put(segId + "_" + match + "_sc" + tag, e.getText());
 					pairs.put(e.getAttributeValue("i"), segId + "_" + match + "_sc" + tag);
 				}
 				if ("ept".equals(e.getName())) {
@@ -256,7 +258,7 @@ public class XliffUtils {
 					ec.setAttribute("dataRef", segId + "_" + match + "_ec" + tag);
 					ec.setAttribute("startRef", pairs.get(e.getAttributeValue("i")));
 					newContent.add(ec);
-					tags.put(segId + "_" + match + "_ec" + tag, e.getText());
+					tags.get().put(segId + "_" + match + "_ec" + tag, e.getText());
 				}
 			}
 		}
@@ -330,10 +332,7 @@ public class XliffUtils {
 	public static JSONObject getProjectDetails(File xliffFile) throws IOException {
 		try {
 			JSONObject result = new JSONObject();
-			if (builder == null) {
-				builder = new SAXBuilder();
-			}
-			Document doc = builder.build(xliffFile);
+			Document doc = builder.get().build(xliffFile);
 			Element xliff = doc.getRootElement();
 			if (!"xliff".equals(xliff.getName())) {
 				throw new IOException(NOTXLIFF);
@@ -469,10 +468,7 @@ public class XliffUtils {
 	}
 
 	public static Element buildElement(String string) throws SAXException, IOException, ParserConfigurationException {
-		if (builder == null) {
-			builder = new SAXBuilder();
-		}
-		Document doc = builder.build(new ByteArrayInputStream(string.getBytes(StandardCharsets.UTF_8)));
+		Document doc = builder.get().build(new ByteArrayInputStream(string.getBytes(StandardCharsets.UTF_8)));
 		return doc.getRootElement();
 	}
 }
\ No newline at end of file
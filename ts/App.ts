@@ -1937,7 +1937,7 @@ class Swordfish {
             method: 'POST'
         }
         let request: ClientRequest = net.request(options);
-        let responseData: string = '';
+        let responseData: Buffer[] = [];
         request.setHeader('Content-Type', 'application/json');
         request.setHeader('Accept', 'application/json');
         request.on('response', (response: IncomingMessage) => {
@@ -1949,14 +1949,15 @@ class Swordfish {
             });
             response.on('end', () => {
                 try {
-                    let json = JSON.parse(responseData);
+                    let json = JSON.parse(Buffer.concat(responseData).toString());
                     success(json);
                 } catch (reason: any) {
                     error(JSON.stringify(reason));
                 }
             });
             response.on('data', (chunk: Buffer) => {
-                responseData += chunk.toString();
+                // a chunk may end in the middle of a UTF-8 sequence
+                responseData.push(chunk);
             });
         });
         request.write(JSON.stringify(params));
@@ -2865,6 +2866,30 @@ class Swordfish {
         );
     }
 
+    static getPropagated(project: string): void {
+        Swordfish.sendRequest('/projects/propagated', { project: project },
+            (data: any) => {
+                if (data.status !== Swordfish.SUCCESS) {
+                    Swordfish.showMessage({ type: 'error', message: data.reason });
+                    return;
+                }
+                if (data.propagated.length > 0) {
+                    Swordfish.mainWindow.webContents.send('auto-propagate', { project: project, rows: data.propagated });
+                }
+                if (data.pending) {
+                    setTimeout(() => {
+                        Swordfish.getPropagated(project);
+                    }, 500);
+                    return;
+                }
+                Swordfish.mainWindow.webContents.send('set-statistics', { project: project, statistics: data.statistics });
+            },
+            (reason: string) => {
+                Swordfish.showMessage({ type: 'error', message: reason });
+            }
+        );
+    }
+
     static saveTranslation(arg: any): void {
         Swordfish.sendRequest('/projects/save', arg,
             (data: any) => {
@@ -2875,6 +2900,11 @@ class Swordfish {
                 if (data.propagated.length > 0) {
                     Swordfish.mainWindow.webContents.send('auto-propagate', { project: arg.project, rows: data.propagated });
                 }
+                if (data.pending) {
+                    setTimeout(() => {
+                        Swordfish.getPropagated(arg.project);
+                    }, 500);
+                }
                 if (data.tagErrors || data.spaceErrors) {
                     Swordfish.mainWindow.webContents.send('set-errors', {
                         project: arg.project,